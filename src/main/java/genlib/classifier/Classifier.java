@@ -47,7 +47,9 @@ public interface Classifier {
 	public double[] classifyData(Data data) throws Exception;
 
 	/**
-	 * Method which creates the dataset which should be classified.
+	 * Method which creates the dataset which should be classified. Binary
+	 * files ({@link genlib.structures.data.GenLibBinaryFormat}) can be mapped
+	 * into memory instead of loading.
 	 * 
 	 * @param sFile
 	 *            string path of file
@@ -170,8 +170,8 @@ public class EvolutionTreeClassifier implements Serializable {
 		workData.setParam(dataString);
 		// making properties from string
 		makePropsFromString(data.classAttribute().isNumeric());
-		// Shuffle data
-		data.randomize(random);
+		// Shuffle data, snapshots of work data are dropped
+		workData.randomize(random);
 		// setting additional params for created fields
 		setAdditionalParams(workData);
 
@@ -199,8 +199,8 @@ public class EvolutionTreeClassifier implements Serializable {
 		workData.setParam(dataString);
 		// making properties from string
 		makePropsFromString(data.numClasses() == -1);
-		// Shuffle data
-		data.randomize(random);
+		// Shuffle data, snapshots of work data are dropped
+		workData.randomize(random);
 		// setting additional params for created fields
 		setAdditionalParams(workData);
 
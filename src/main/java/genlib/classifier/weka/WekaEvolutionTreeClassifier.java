@@ -12,13 +12,20 @@ import genlib.exceptions.WrongDataException;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
 import genlib.structures.Data;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.GenLibBinaryFormat;
 import genlib.structures.data.GenLibInstance;
-import genlib.structures.trees.Node;
+import genlib.structures.data.GenLibInstances;
+import genlib.structures.data.MappedGenLibInstances;
+import genlib.structures.data.ParallelGenLibLoader;
 import genlib.utils.WekaUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Capabilities;
@@ -59,6 +66,8 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 		implements Randomizable, OptionHandler, TechnicalInformationHandler,
 		Drawable, AdditionalMeasureProducer, Classifier {
 
+	private static final Logger LOG = Logger
+			.getLogger(WekaEvolutionTreeClassifier.class.getName());
 	/** for serialization */
 	private static final long serialVersionUID = 5314273117546487901L;
 	/** Evolution classificator not dependant on weka. */
@@ -372,6 +381,27 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 	 */
 	@Override
 	public void buildClassifier(Instances data) throws Exception {
+		checkParams();
+
+		// can classifier tree handle the data?
+		getCapabilities().testWithFail(data);
+
+		// remove instances with missing class, rows aren't copied
+		data = WekaUtils.withClass(data);
+
+		e_tree_class.buildClassifier(data);
+		// that's all for this method
+	}
+
+	/**
+	 * Method checks that the parameters pulled from config are set.
+	 * 
+	 * @throws ConfigInternalException
+	 *             if any parameter pulled from config is null.
+	 * @throws EmptyConfigParamException
+	 *             if any parameter is empty.
+	 */
+	private void checkParams() {
 		if (e_tree_class.getMutString() == null
 				|| e_tree_class.getXoverString() == null
 				|| e_tree_class.getPopInitString() == null
@@ -390,16 +420,6 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 			throw new EmptyConfigParamException(
 					TextResource.getString(TextKeys.eEmptyInputParams));
 		}
-
-		// can classifier tree handle the data?
-		getCapabilities().testWithFail(data);
-
-		// remove instances with missing class
-		data = new Instances(data);
-		data.deleteWithMissingClass();
-
-		e_tree_class.buildClassifier(data);
-		// that's all for this method
 	}
 
 	/**
@@ -417,62 +437,64 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 		int treesToClassify = e_tree_class.getClassify();
 
 		if (treesToClassify == 1) {
-			TreeIndividual bestIndividual = e_tree_class.getBestIndividuals()
-					.get(0);
-			Node root = bestIndividual.getRootNode();
-
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (genlib.utils.Utils.isValueProper(
-							instance.value(root.getAttribute()),
-							root.getSign(), root.getValue())) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
+			return classifyByTree(0, instance);
+		}
 
-			return root.getValue();
+		double[] values = new double[treesToClassify];
+		for (int i = 0; i < treesToClassify; i++) {
+			values[i] = classifyByTree(i, instance);
 		}
+		return vote(values, instance.numClasses());
+	}
 
-		boolean nominal = instance.numClasses() > 1;
+	/**
+	 * Classifies the row of columnar snapshot with the best trees. Flattened
+	 * trees are used because they evaluate the columns directly.
+	 * 
+	 * @param columnar
+	 *            snapshot of data
+	 * @param row
+	 *            index of row
+	 * @param numClasses
+	 *            number of classes (1 for numeric class)
+	 * @return the classification for the row
+	 */
+	private double classifyRow(ColumnarData columnar, int row, int numClasses) {
+		int treesToClassify = e_tree_class.getClassify();
+		ArrayList<TreeIndividual> best = e_tree_class.getBestIndividuals();
+
+		double[] values = new double[treesToClassify];
+		for (int i = 0; i < treesToClassify; i++) {
+			values[i] = best.get(i).getFlatTree().classify(columnar, row);
+		}
+		return treesToClassify == 1 ? values[0] : vote(values, numClasses);
+	}
+
+	/**
+	 * Method combines the classifications of the best trees. Nominal class is
+	 * voted by majority, numeric class is averaged.
+	 * 
+	 * @param values
+	 *            classifications of the best trees
+	 * @param numClasses
+	 *            number of classes (1 for numeric class)
+	 * @return combined classification
+	 */
+	private double vote(double[] values, int numClasses) {
+		boolean nominal = numClasses > 1;
 		double[] numOfClassifications;
-		ArrayList<TreeIndividual> bestIndividuals = e_tree_class
-				.getBestIndividuals();
 
 		if (nominal) {
-			numOfClassifications = new double[instance.numClasses()];
+			numOfClassifications = new double[numClasses];
 		} else {
 			numOfClassifications = new double[1];
 		}
 
-		for (int i = 0; i < treesToClassify; i++) {
-			TreeIndividual bestIndividual = bestIndividuals.get(i);
-			Node root = bestIndividual.getRootNode();
-
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (genlib.utils.Utils.isValueProper(
-							instance.value(root.getAttribute()),
-							root.getSign(), root.getValue())) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-
+		for (double value : values) {
 			if (nominal) {
-				numOfClassifications[(int) root.getValue()]++;
+				numOfClassifications[(int) value]++;
 			} else {
-				numOfClassifications[0] += root.getValue();
+				numOfClassifications[0] += value;
 			}
 		}
 
@@ -488,24 +510,44 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 			return maxIndex;
 		} else {
 			// only one value in numOfClassifications
-			numOfClassifications[0] /= treesToClassify;
+			numOfClassifications[0] /= values.length;
 			return numOfClassifications[0];
 		}
 
 	}
 
+	/**
+	 * Method classifies instance with one of the best trees (with its
+	 * flattened tree).
+	 * 
+	 * @param index
+	 *            index of the best tree
+	 * @param instance
+	 *            to classify
+	 * @return value of the leaf (predicted class)
+	 */
+	private double classifyByTree(int index, Instance instance) {
+		return e_tree_class.getBestIndividuals().get(index).getFlatTree()
+				.classify(instance);
+	}
+
 	// GENLIB.CLASSIFIER METHODS //
 	/**
 	 * Build classifier for Data object. It test on {@link Instances} type a
-	 * calls {@link #buildClassifier(Instances)}.
+	 * calls {@link #buildClassifier(Instances)}. {@link GenLibInstances} (for
+	 * example mapped binary file) are passed directly to the evolution, so the
+	 * configured components have to handle them.
 	 * 
 	 * @param data
-	 *            object with Instances inside
+	 *            object with Instances or GenLibInstances inside
 	 */
 	@Override
 	public void buildClassifier(Data data) throws Exception {
 		if (data.isInstances()) {
 			buildClassifier(data.toInstances());
+		} else if (data.isGenLibInstances()) {
+			checkParams();
+			e_tree_class.buildClassifier(data.toGenLibInstances());
 		} else {
 			throw new WrongDataException(String.format(
 					TextResource.getString(TextKeys.eTypeParameter),
@@ -517,10 +559,11 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 	/**
 	 * Classify instance method for Data object. It classifies {@link Instances}
 	 * inside data object with created model. That's done by calling
-	 * {@link #classifyInstance(Instance)}
+	 * {@link #classifyInstance(Instance)}. {@link GenLibInstances} are
+	 * classified row by row on columnar snapshot of data.
 	 * 
 	 * @param data
-	 *            object with Instances inside
+	 *            object with Instances or GenLibInstances inside
 	 */
 	@Override
 	public double[] classifyData(Data data) throws Exception {
@@ -540,6 +583,15 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 						.nextElement());
 			}
 			return classifications;
+		} else if (data.isGenLibInstances()) {
+			double[] classifications = new double[data.numInstances()];
+			ColumnarData columnar = data.getColumnarData();
+			int numClasses = data.toGenLibInstances().numClasses();
+
+			for (int row = 0; row < classifications.length; row++) {
+				classifications[row] = classifyRow(columnar, row, numClasses);
+			}
+			return classifications;
 		} else {
 			throw new WrongDataException(String.format(
 					TextResource.getString(TextKeys.eTypeParameter),
@@ -550,10 +602,33 @@ public class WekaEvolutionTreeClassifier extends WekaClassifierExtension
 
 	/**
 	 * {@inheritDoc} </p> It uses DataSource static factory with <i>read</i>
-	 * method which loads the dataset into Instances object.
+	 * method which loads the dataset into Instances object. Files in
+	 * {@link GenLibBinaryFormat} are memory mapped into
+	 * {@link MappedGenLibInstances}. ARFF and CSV files are parsed by
+	 * {@link ParallelGenLibLoader} with number of threads from config (
+	 * {@link Config#getLoadThreads()}) into GenLibInstances, which are
+	 * converted into Instances only by components that need them (see
+	 * {@link Data#toInstances()}). Files that the loader can't read (for
+	 * example with string attributes or sparse rows) are loaded with
+	 * DataSource.
 	 */
 	@Override
 	public Data makeDataFromFile(String sFile) throws Exception {
+		if (GenLibBinaryFormat.isBinaryFile(sFile)) {
+			return new Data(MappedGenLibInstances.open(new File(sFile)), null);
+		}
+
+		int loadThreads = Config.getInstance().getLoadThreads();
+		String lower = sFile.toLowerCase();
+		if (loadThreads > 1
+				&& (lower.endsWith(".arff") || lower.endsWith(".csv"))) {
+			try {
+				return new Data(ParallelGenLibLoader.load(new File(sFile),
+						loadThreads), null);
+			} catch (WrongDataException e) {
+				LOG.log(Level.INFO, e.getMessage());
+			}
+		}
 		return new Data(DataSource.read(sFile), null);
 	}
 
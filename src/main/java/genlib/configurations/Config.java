@@ -106,6 +106,18 @@ public class Config implements Serializable {
 	public static final String DATA = "data";
 	/** Key in property file with data splitting */
 	public static final String CLASSIFY = "classify";
+	/** Key in property file with capacity of fitness cache */
+	public static final String FIT_CACHE = "fit-cache";
+	/** Key in property file with data-major evaluation of population */
+	public static final String FIT_DATA_MAJOR = "fit-data-major";
+	/** Key in property file with maximal number of rows of kept partitions */
+	public static final String FIT_PARTITION_ROWS = "fit-partition-rows";
+	/** Key in property file with number of threads that load data files */
+	public static final String LOAD_THREADS = "load-threads";
+	/** Key in property file with megabytes of cache of derived data */
+	public static final String DATA_CACHE = "data-cache";
+	/** Key in property file with spilling of evicted derived data */
+	public static final String DATA_CACHE_SPILL = "data-cache-spill";
 
 	/**
 	 * Singleton instance of this Config to guarantee uniqueness of config.
@@ -226,6 +238,12 @@ public class Config implements Serializable {
 		putIfAbsent(CLASSIFY, "1");
 		putIfAbsent(DEBUG, "false");
 		putIfAbsent(FIT_THREADS, "1");
+		putIfAbsent(FIT_CACHE, "4096");
+		putIfAbsent(FIT_DATA_MAJOR, "false");
+		putIfAbsent(FIT_PARTITION_ROWS, "65536");
+		putIfAbsent(LOAD_THREADS, "0");
+		putIfAbsent(DATA_CACHE, "256");
+		putIfAbsent(DATA_CACHE_SPILL, "false");
 		putIfAbsent(GEN_THREADS, "1");
 		putIfAbsent(OPER_THREADS, "1");
 		putIfAbsent(FIT_COMPARATOR, "SINGLE 0");
@@ -494,6 +512,69 @@ public class Config implements Serializable {
 		return Integer.parseInt(prop.getProperty(CLASSIFY));
 	}
 
+	/**
+	 * Getter which returns capacity of fitness cache (0 disables caching)
+	 * 
+	 * @return fitness cache parameter
+	 */
+	public int getFitnessCache() {
+		return Integer.parseInt(prop.getProperty(FIT_CACHE));
+	}
+
+	/**
+	 * Getter which returns if the population should be evaluated in
+	 * data-major order
+	 * 
+	 * @return data-major parameter
+	 */
+	public boolean getFitDataMajor() {
+		return Boolean.parseBoolean(prop.getProperty(FIT_DATA_MAJOR));
+	}
+
+	/**
+	 * Getter which returns maximal number of rows of data for which the
+	 * individuals keep partitions of rows (0 disables partitions)
+	 * 
+	 * @return partition rows parameter
+	 */
+	public int getFitPartitionRows() {
+		return Integer.parseInt(prop.getProperty(FIT_PARTITION_ROWS));
+	}
+
+	/**
+	 * Getter which returns number of threads that load data files (0 means
+	 * number of available processors, 1 means loading with weka)
+	 * 
+	 * @return load threads parameter
+	 */
+	public int getLoadThreads() {
+		int loadThreads = Integer.parseInt(prop.getProperty(LOAD_THREADS));
+		if (loadThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return loadThreads;
+	}
+
+	/**
+	 * Getter which returns megabytes of cache of structures derived from data
+	 * (0 disables caching)
+	 * 
+	 * @return data cache parameter
+	 */
+	public int getDataCache() {
+		return Integer.parseInt(prop.getProperty(DATA_CACHE));
+	}
+
+	/**
+	 * Getter which returns if the structures evicted from data cache should
+	 * be written into cache directory
+	 * 
+	 * @return data cache spill parameter
+	 */
+	public boolean getDataCacheSpill() {
+		return Boolean.parseBoolean(prop.getProperty(DATA_CACHE_SPILL));
+	}
+
 	//
 	/*
 	 * SETTERS
@@ -670,6 +751,66 @@ public class Config implements Serializable {
 		prop.setProperty(CLASSIFY, classify);
 	}
 
+	/**
+	 * Sets the capacity of fitness cache string argument
+	 * 
+	 * @param fitCache
+	 *            argument
+	 */
+	public void setFitnessCache(String fitCache) {
+		prop.setProperty(FIT_CACHE, fitCache);
+	}
+
+	/**
+	 * Sets the data-major evaluation string argument
+	 * 
+	 * @param fitDataMajor
+	 *            argument
+	 */
+	public void setFitDataMajor(String fitDataMajor) {
+		prop.setProperty(FIT_DATA_MAJOR, fitDataMajor);
+	}
+
+	/**
+	 * Sets the partition rows string argument
+	 * 
+	 * @param partitionRows
+	 *            argument
+	 */
+	public void setFitPartitionRows(String partitionRows) {
+		prop.setProperty(FIT_PARTITION_ROWS, partitionRows);
+	}
+
+	/**
+	 * Sets the number of threads that load data files
+	 * 
+	 * @param loadThreads
+	 *            argument
+	 */
+	public void setLoadThreads(String loadThreads) {
+		prop.setProperty(LOAD_THREADS, loadThreads);
+	}
+
+	/**
+	 * Sets the data cache string argument
+	 * 
+	 * @param dataCache
+	 *            argument
+	 */
+	public void setDataCache(String dataCache) {
+		prop.setProperty(DATA_CACHE, dataCache);
+	}
+
+	/**
+	 * Sets the data cache spill string argument
+	 * 
+	 * @param dataCacheSpill
+	 *            argument
+	 */
+	public void setDataCacheSpill(String dataCacheSpill) {
+		prop.setProperty(DATA_CACHE_SPILL, dataCacheSpill);
+	}
+
 	/**
 	 * Sets the locale for this run of application (can be reloaded)
 	 * 
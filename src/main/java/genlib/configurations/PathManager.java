@@ -26,6 +26,8 @@ public class PathManager {
 	private File pluginPath;
 	/** Path to logs */
 	private File logPath;
+	/** Path to spilled data cache, created when it is needed */
+	private File cachePath;
 
 	/**
 	 * Method which will return instance of PathManager. Uniqueness of this
@@ -74,6 +76,7 @@ public class PathManager {
 			pluginPath.mkdir();
 			logPath = new File(rootPath, "../_logs");
 			logPath.mkdir();
+			cachePath = new File(rootPath, "../_cache");
 		} catch (SecurityException se) {
 			System.err.println(PermMessages._security_exc);
 		}
@@ -114,6 +117,18 @@ public class PathManager {
 		return logPath;
 	}
 
+	/**
+	 * Getter which return path with spilled structures of data cache.
+	 * 
+	 * Cache directory is in rootDirectory under dir of name _cache. It is
+	 * created by the cache when something is spilled.
+	 * 
+	 * @return cache path
+	 */
+	public File getCachePath() {
+		return cachePath;
+	}
+
 	/**
 	 * Gets the value of the property pluginPath.
 	 * 
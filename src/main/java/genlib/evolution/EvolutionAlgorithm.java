@@ -1,9 +1,12 @@
 package genlib.evolution;
 
 import genlib.configurations.Config;
+import genlib.evolution.fitness.DataMajorEvaluator;
+import genlib.evolution.fitness.FitnessEvaluator;
 import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.fitness.comparators.FitnessComparator;
 import genlib.evolution.individuals.Individual;
+import genlib.evolution.individuals.TreeIndividual;
 import genlib.evolution.operators.Operator;
 import genlib.evolution.population.IPopulation;
 import genlib.evolution.population.Population;
@@ -13,6 +16,7 @@ import genlib.structures.Data;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,6 +47,10 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 	private int fitNumOfThreads = 1;
 	/** blocks of individuals that one thread will process */
 	private int fitBlockSize = 1;
+	/** true iff population is evaluated in data-major order */
+	private boolean fitDataMajor = false;
+	/** service that computes fitness, shared one is used if null */
+	private transient FitnessEvaluator evaluator;
 	// it's not used, but can be in future
 	@SuppressWarnings("unused")
 	private int operNumOfThreads;
@@ -74,6 +82,7 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		this.data = data;
 		this.actualPopulation = population;
 		this.fitNumOfThreads = c.getFitNumOfThreads();
+		this.fitDataMajor = c.getFitDataMajor();
 		this.operNumOfThreads = c.getOperNumOfThreads();
 	}
 
@@ -90,6 +99,7 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		this.data = data;
 		this.numberOfGenerations = numberOfGenerations;
 		this.fitNumOfThreads = c.getFitNumOfThreads();
+		this.fitDataMajor = c.getFitDataMajor();
 		this.operNumOfThreads = c.getOperNumOfThreads();
 	}
 
@@ -110,6 +120,7 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		this.actualPopulation = population;
 		this.numberOfGenerations = numberOfGenerations;
 		this.fitNumOfThreads = c.getFitNumOfThreads();
+		this.fitDataMajor = c.getFitDataMajor();
 		this.operNumOfThreads = c.getOperNumOfThreads();
 	}
 
@@ -281,6 +292,37 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		this.fitComp = fitComp;
 	}
 
+	/**
+	 * Method sets the service that computes fitness of individuals. Evaluator
+	 * with custom pool can be injected this way.
+	 * 
+	 * @param evaluator
+	 *            service that computes fitness
+	 */
+	public void setEvaluator(FitnessEvaluator evaluator) {
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Gets the service that computes fitness of individuals. If no evaluator
+	 * was set, the shared one with {@link Config#getFitNumOfThreads()} threads
+	 * is used, so the threads live across generations and runs. With
+	 * {@link Config#getFitDataMajor()} the algorithm creates its own
+	 * {@link DataMajorEvaluator} that runs in the pool of the shared evaluator
+	 * (see {@link FitnessEvaluator#getSharedPool(int)}), so no pool is left
+	 * running after the algorithm ends.
+	 * 
+	 * @return service that computes fitness
+	 */
+	public FitnessEvaluator getEvaluator() {
+		if (evaluator == null) {
+			evaluator = fitDataMajor ? new DataMajorEvaluator(
+					FitnessEvaluator.getSharedPool(fitNumOfThreads))
+					: FitnessEvaluator.getShared(fitNumOfThreads);
+		}
+		return evaluator;
+	}
+
 	/**
 	 * Run method that start the evolution algorithm. It has the main cycle for
 	 * number of generations. There we call the method {@link #evolve()}.
@@ -300,9 +342,19 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		// setting up fitness functions for this run
 		fitComp.setFitFuncs(fitFunctions);
 		// first computation of fitness for actual population
-		actualPopulation.computeFitness(fitNumOfThreads, fitBlockSize);
+		if (data != null) {
+			data.updateSubsample(0, numberOfGenerations);
+		}
+		ArrayList<T> evaluated = changedIndividuals(actualPopulation);
+		actualPopulation.computeFitness(getEvaluator(), fitBlockSize);
+		fitnessComputed(evaluated);
 
 		for (int i = 0; i < numberOfGenerations; i++) {
+			// new subsample makes the old fitness values incomparable
+			if (i > 0 && data != null
+					&& data.updateSubsample(i, numberOfGenerations)) {
+				recomputeFitness();
+			}
 			// LOGGING OR OTHER ADDITIONAL METHODS CAN BE ADDED IF WE CARE
 			actualPopulation.sortIndividuals();
 			evolve();
@@ -310,6 +362,101 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 
 		}
 
+		// final ranking of individuals is on full data
+		if (data != null && data.clearSubsample()) {
+			recomputeFitness();
+		}
+
+	}
+
+	/**
+	 * Method recomputes fitness of all the individuals in actual population,
+	 * for example when the data on which they are evaluated change.
+	 */
+	protected void recomputeFitness() {
+		for (T individual : actualPopulation.getIndividuals()) {
+			individual.change();
+		}
+		ArrayList<T> evaluated = changedIndividuals(actualPopulation);
+		actualPopulation.computeFitness(getEvaluator(), fitBlockSize);
+		fitnessComputed(evaluated);
+	}
+
+	/**
+	 * Method returns the changed individuals of population, that are the
+	 * ones whose fitness is computed by the next evaluation.
+	 * 
+	 * @param population
+	 *            population before evaluation
+	 * @return changed individuals
+	 */
+	private ArrayList<T> changedIndividuals(IPopulation<T> population) {
+		ArrayList<T> changed = new ArrayList<>();
+		for (T individual : population.getIndividuals()) {
+			if (individual.hasChanged()) {
+				changed.add(individual);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Hook called after the fitness of population is computed. With dynamic
+	 * subset selection (see {@link Data#isDifficultySampled()}) it adds the
+	 * misclassifications of rows of actual subsamples by the tree individuals
+	 * evaluated in this computation to the difficulty of rows, so the next
+	 * subsamples prefer the rows that are hard to classify. Unchanged
+	 * individuals were counted when they were evaluated. Errors are taken
+	 * from the partitions of subsamples kept from evaluation (see
+	 * {@link TreeIndividual#keepsPartition(Data)}).
+	 * 
+	 * @param evaluated
+	 *            individuals whose fitness was computed
+	 */
+	protected void fitnessComputed(List<T> evaluated) {
+		if (data == null || !data.isDifficultySampled()) {
+			return;
+		}
+
+		addDifficulty(evaluated, data);
+		Data trainData = data.getDataOfType(0);
+		if (trainData != data) {
+			addDifficulty(evaluated, trainData);
+		}
+	}
+
+	/**
+	 * Method counts misclassifications of rows of subsample of the data by
+	 * the evaluated tree individuals and adds them to the data.
+	 */
+	private void addDifficulty(List<T> evaluated, Data data) {
+		Data sample = data.getSampleData();
+		if (sample == data || evaluated.isEmpty()) {
+			return;
+		}
+
+		int[] errors = new int[sample.numInstances()];
+		for (T individual : evaluated) {
+			if (individual instanceof TreeIndividual) {
+				((TreeIndividual) individual).countErrors(sample, errors);
+			}
+		}
+		data.addDifficulty(errors);
+	}
+
+	/**
+	 * Method drops cached partitions of rows of the tree individuals in
+	 * population (see {@link TreeIndividual#dropPartitions()}).
+	 * 
+	 * @param population
+	 *            population whose individuals aren't operator targets anymore
+	 */
+	private void dropPartitions(IPopulation<T> population) {
+		for (T individual : population.getIndividuals()) {
+			if (individual instanceof TreeIndividual) {
+				((TreeIndividual) individual).dropPartitions();
+			}
+		}
 	}
 
 	/**
@@ -323,8 +470,13 @@ public class EvolutionAlgorithm<T extends Individual> implements Runnable,
 		// phase of operators evaluation
 		IPopulation<T> offspring = selected.operatorPhaseMates(crossOperators,
 				mutationOperators);
+		// partitions serve only the operators, parents don't need them now
+		dropPartitions(actualPopulation);
+		dropPartitions(selected);
 		// computation of offspring fitness
-		offspring.computeFitness(fitNumOfThreads, fitBlockSize);
+		ArrayList<T> evaluated = changedIndividuals(offspring);
+		offspring.computeFitness(getEvaluator(), fitBlockSize);
+		fitnessComputed(evaluated);
 		// elite phase - choosing elite individuals from original population
 		IPopulation<T> finalPopulation = actualPopulation.elitePhase(elitism);
 		// environmental selection phase from offspring to final population
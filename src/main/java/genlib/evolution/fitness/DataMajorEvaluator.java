@@ -0,0 +1,301 @@
+package genlib.evolution.fitness;
+
+import genlib.evolution.individuals.Individual;
+import genlib.evolution.individuals.TreeIndividual;
+import genlib.structures.Data;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.trees.FlatTree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluator that swaps the order of loops. Instead of traversing the whole
+ * data for each individual, data are processed in blocks of rows and each
+ * block is evaluated by all the changed trees before the next block is loaded
+ * (see {@link ColumnarData#confusionMatrices(FlatTree[], int, int, int, int[])}
+ * ). Each row is then loaded from memory once per thread instead of once per
+ * individual, which pays off for large populations on data that don't fit
+ * into cache. </p> Confusion counters of all the trees are kept in one flat
+ * buffer [individual][true class][predicted class]. Resulting matrices are
+ * stored into individuals (see
+ * {@link TreeIndividual#setConfusionMatrix(Data, int[][])}) and fitness
+ * functions are then computed as in {@link FitnessEvaluator}, they only read
+ * the matrices. Individuals of other types and data with numeric or missing
+ * class are evaluated by fitness functions directly. </p> Chunked data (see
+ * {@link Data#getChunk(int)}) are counted in the same way chunk by chunk:
+ * each chunk is evaluated by all the trees before the next chunk is read and
+ * the counters are accumulated across chunks, so only one chunk is on the
+ * heap.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class DataMajorEvaluator extends FitnessEvaluator {
+
+	/** number of rows in one block (with a few columns it fits L1/L2 cache) */
+	public static final int BLOCK_ROWS = 2048;
+
+	/**
+	 * Task that counts confusion matrices of range of trees. Range is split in
+	 * half until it's smaller than the grain, each leaf task traverses the
+	 * data once.
+	 */
+	@SuppressWarnings("serial")
+	private static class ConfusionTask extends RecursiveAction {
+
+		/** data on which the trees are evaluated */
+		private final ColumnarData columnar;
+		/** evaluated trees */
+		private final FlatTree[] trees;
+		/** buffer with counts */
+		private final int[] counts;
+		/** index of first tree */
+		private final int from;
+		/** end of trees */
+		private final int to;
+		/** maximal number of trees evaluated without split */
+		private final int grain;
+
+		ConfusionTask(ColumnarData columnar, FlatTree[] trees, int[] counts,
+				int from, int to, int grain) {
+			this.columnar = columnar;
+			this.trees = trees;
+			this.counts = counts;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				columnar.confusionMatrices(trees, from, to, BLOCK_ROWS, counts);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new ConfusionTask(columnar, trees, counts, from, middle,
+					grain), new ConfusionTask(columnar, trees, counts, middle,
+					to, grain));
+		}
+	}
+
+	/**
+	 * Constructor of evaluator with its own pool. With one thread the fitness
+	 * is computed sequentially in the calling thread.
+	 *
+	 * @param nThreads
+	 *            number of threads
+	 */
+	public DataMajorEvaluator(int nThreads) {
+		this(nThreads > 1 ? new ForkJoinPool(nThreads) : null);
+	}
+
+	/**
+	 * Constructor of evaluator with injected pool.
+	 *
+	 * @param pool
+	 *            pool that executes the tasks, null for sequential evaluation
+	 */
+	public DataMajorEvaluator(ForkJoinPool pool) {
+		super(pool);
+	}
+
+	/**
+	 * {@inheritDoc} </p> Confusion matrices of changed trees are counted in
+	 * data-major order first.
+	 */
+	@Override
+	public <T extends Individual> void computeFitness(ArrayList<T> individuals,
+			List<FitnessFunction<T>> functions, int blockSize) {
+		countConfusionMatrices(individuals, functions, pool, false);
+		super.computeFitness(individuals, functions, blockSize);
+	}
+
+	/**
+	 * Method counts confusion matrices of all the changed tree individuals on
+	 * the chunked evaluation data of the functions before the individuals are
+	 * dispatched to the threads (see
+	 * {@link FitnessEvaluator#computeFitness(ArrayList, List, int)}). Threads
+	 * then evaluate one individual at a time, so without it each chunk would
+	 * be rebuilt once per individual.
+	 * 
+	 * @param individuals
+	 *            individuals for which we compute fitness
+	 * @param functions
+	 *            fitness functions
+	 * @param pool
+	 *            pool that counts the trees in parallel, null for sequential
+	 *            counting
+	 */
+	public static <T extends Individual> void countChunkedMatrices(
+			List<T> individuals, List<FitnessFunction<T>> functions,
+			ForkJoinPool pool) {
+		countConfusionMatrices(individuals, functions, pool, true);
+	}
+
+	/**
+	 * Method counts confusion matrices of the changed tree individuals on
+	 * evaluation data of each function (once for each distinct data).
+	 * Individuals that already have the matrix are skipped, as well as the
+	 * duplicates whose fitness values on the data are cached by all the
+	 * functions (see {@link FitnessFunction#getFitnessCache(Data)}).
+	 * 
+	 * @param individuals
+	 *            individuals for which we compute fitness
+	 * @param functions
+	 *            fitness functions
+	 * @param pool
+	 *            pool that counts the trees in parallel, null for sequential
+	 *            counting
+	 * @param chunkedOnly
+	 *            true if only chunked data should be counted
+	 */
+	private static <T extends Individual> void countConfusionMatrices(
+			List<T> individuals, List<FitnessFunction<T>> functions,
+			ForkJoinPool pool, boolean chunkedOnly) {
+		IdentityHashMap<Data, Boolean> counted = new IdentityHashMap<>();
+		for (FitnessFunction<T> function : functions) {
+			Data data = function.getEvaluationData();
+			// data whose partitions are kept are left to the individuals
+			if (data == null || (chunkedOnly && !data.isChunked())
+					|| TreeIndividual.keepsPartition(data)
+					|| counted.put(data, Boolean.TRUE) != null) {
+				continue;
+			}
+
+			ArrayList<FitnessCache> caches = new ArrayList<>();
+			for (FitnessFunction<T> other : functions) {
+				if (other.getEvaluationData() == data) {
+					caches.add(other.getFitnessCache(data));
+				}
+			}
+
+			ArrayList<TreeIndividual> changed = new ArrayList<>();
+			for (T individual : individuals) {
+				if (individual.hasChanged()
+						&& individual instanceof TreeIndividual
+						&& !((TreeIndividual) individual)
+								.hasConfusionMatrix(data)
+						&& !isCached(caches, (TreeIndividual) individual)) {
+					changed.add((TreeIndividual) individual);
+				}
+			}
+			if (!changed.isEmpty()) {
+				countConfusionMatrices(changed, data, pool);
+			}
+		}
+	}
+
+	/**
+	 * Tests if the fitness values of the tree are in all the caches, so the
+	 * functions take them from caches without the confusion matrix.
+	 * 
+	 * @param caches
+	 *            caches of functions that evaluate on the same data
+	 * @param individual
+	 *            changed individual
+	 * @return true iff each cache has value for the tree
+	 */
+	private static boolean isCached(List<FitnessCache> caches,
+			TreeIndividual individual) {
+		if (caches.isEmpty() || !caches.get(0).isEnabled()) {
+			return false;
+		}
+
+		long hash = individual.getTreeHash();
+		for (FitnessCache cache : caches) {
+			if (!cache.contains(hash)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method counts confusion matrices of the changed individuals from start
+	 * to end on chunked data in one pass over the chunks, so each chunk is
+	 * read once for all of them instead of once per individual. Individuals
+	 * that already have the matrix are skipped, data without chunks are left
+	 * to the fitness functions.
+	 *
+	 * @param individuals
+	 *            individuals for which we compute fitness
+	 * @param start
+	 *            index of first individual
+	 * @param end
+	 *            end of individuals
+	 * @param data
+	 *            data on which the individuals are evaluated
+	 */
+	public static void countChunkedMatrices(List<TreeIndividual> individuals,
+			int start, int end, Data data) {
+		if (!data.isChunked()) {
+			return;
+		}
+
+		ArrayList<TreeIndividual> changed = new ArrayList<>();
+		for (int i = start; i < Math.min(individuals.size(), end); i++) {
+			TreeIndividual individual = individuals.get(i);
+			if (individual.hasChanged() && !individual.hasConfusionMatrix(data)) {
+				changed.add(individual);
+			}
+		}
+		if (!changed.isEmpty()) {
+			countConfusionMatrices(changed, data, null);
+		}
+	}
+
+	/**
+	 * Method counts confusion matrices of the trees on the data (chunk by
+	 * chunk if the data are chunked) and stores them into individuals.
+	 *
+	 * @param individuals
+	 *            changed individuals
+	 * @param data
+	 *            data on which we count the matrices
+	 * @param pool
+	 *            pool that counts the trees in parallel, null for sequential
+	 *            counting
+	 */
+	public static void countConfusionMatrices(
+			List<TreeIndividual> individuals, Data data, ForkJoinPool pool) {
+		ColumnarData classData = data.getClassData();
+		int numClasses = classData.numClasses();
+		if (numClasses <= 1 || classData.hasMissingClass()) {
+			return;
+		}
+
+		int size = individuals.size();
+		FlatTree[] trees = new FlatTree[size];
+		for (int i = 0; i < size; i++) {
+			trees[i] = individuals.get(i).getFlatTree();
+		}
+
+		int[] counts = new int[size * numClasses * numClasses];
+		for (int chunk = 0; chunk < data.numChunks(); chunk++) {
+			ColumnarData columnar = data.getChunk(chunk);
+			if (pool == null) {
+				columnar.confusionMatrices(trees, 0, size, BLOCK_ROWS, counts);
+			} else {
+				int grain = Math.max(1, size / (pool.getParallelism() * 2));
+				pool.invoke(new ConfusionTask(columnar, trees, counts, 0,
+						size, grain));
+			}
+		}
+
+		for (int i = 0, offset = 0; i < size; i++) {
+			int[][] matrix = new int[numClasses][numClasses];
+			for (int t = 0; t < numClasses; t++) {
+				System.arraycopy(counts, offset, matrix[t], 0, numClasses);
+				offset += numClasses;
+			}
+			individuals.get(i).setConfusionMatrix(data, matrix);
+		}
+	}
+
+}
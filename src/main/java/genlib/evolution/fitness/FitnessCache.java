@@ -0,0 +1,243 @@
+package genlib.evolution.fitness;
+
+import genlib.configurations.Config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of fitness values keyed by structural hash of individual (for
+ * example {@link genlib.evolution.individuals.TreeIndividual#getTreeHash()}).
+ * Instance of cache belongs to one fitness function and it is cleared whenever
+ * data or parameters of the function change, so the hash alone identifies
+ * (tree, data split, fitness function). Population seeded with copies of the
+ * same trees or operators that recreate already evaluated trees are then
+ * evaluated only once. </p> Cache is split into segments, each segment is
+ * synchronized LRU map (access ordered {@link LinkedHashMap}), so the threads
+ * that compute fitness do not lock the whole cache. Capacity 0 disables the
+ * cache.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class FitnessCache {
+
+	/** number of segments (power of 2) */
+	private static final int SEGMENTS = 16;
+	/** segments of cache */
+	private final Segment[] segments;
+	/** maximal number of entries in cache */
+	private final int capacity;
+	/** number of lookups that found value */
+	private final AtomicLong hits = new AtomicLong();
+	/** number of lookups that didn't find value */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * One segment of the cache with eldest entries evicted.
+	 */
+	@SuppressWarnings("serial")
+	private static class Segment extends LinkedHashMap<Long, Double> {
+
+		/** maximal number of entries in segment */
+		private final int segmentCapacity;
+
+		/**
+		 * Constructor of access ordered segment.
+		 *
+		 * @param segmentCapacity
+		 *            maximal number of entries in segment
+		 */
+		Segment(int segmentCapacity) {
+			super(16, 0.75f, true);
+			this.segmentCapacity = segmentCapacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+			return size() > segmentCapacity;
+		}
+	}
+
+	/**
+	 * Constructor of cache with capacity taken from {@link Config}.
+	 */
+	public FitnessCache() {
+		this(Config.getInstance().getFitnessCache());
+	}
+
+	/**
+	 * Constructor of cache with capacity.
+	 *
+	 * @param capacity
+	 *            maximal number of entries, 0 disables the cache
+	 */
+	public FitnessCache(int capacity) {
+		this.capacity = Math.max(0, capacity);
+		this.segments = new Segment[SEGMENTS];
+		int segmentCapacity = (this.capacity + SEGMENTS - 1) / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	 * Gets the segment in which the hash is stored.
+	 *
+	 * @param hash
+	 *            structural hash
+	 * @return segment for hash
+	 */
+	private Segment segment(long hash) {
+		return segments[(int) (hash ^ (hash >>> 32)) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Method tests if the cache is enabled (capacity is positive).
+	 *
+	 * @return true iff cache stores values
+	 */
+	public boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Gets the cached fitness value for the hash.
+	 *
+	 * @param hash
+	 *            structural hash of individual
+	 * @return fitness value or null if it is not cached
+	 */
+	public Double get(long hash) {
+		if (capacity == 0) {
+			return null;
+		}
+
+		Segment segment = segment(hash);
+		Double value;
+		synchronized (segment) {
+			value = segment.get(hash);
+		}
+
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Tests if the fitness value for the hash is cached. Hit and miss counters
+	 * aren't changed.
+	 *
+	 * @param hash
+	 *            structural hash of individual
+	 * @return true iff the value is cached
+	 */
+	public boolean contains(long hash) {
+		if (capacity == 0) {
+			return false;
+		}
+
+		Segment segment = segment(hash);
+		synchronized (segment) {
+			return segment.containsKey(hash);
+		}
+	}
+
+	/**
+	 * Puts the fitness value for the hash into the cache. The least recently
+	 * used value of the segment is evicted when the segment is full.
+	 *
+	 * @param hash
+	 *            structural hash of individual
+	 * @param fitness
+	 *            fitness value of individual
+	 */
+	public void put(long hash, double fitness) {
+		if (capacity == 0) {
+			return;
+		}
+
+		Segment segment = segment(hash);
+		synchronized (segment) {
+			segment.put(hash, fitness);
+		}
+	}
+
+	/**
+	 * Method removes all the values from cache. Hit and miss counters are
+	 * kept.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Number of values in cache.
+	 *
+	 * @return size of cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Number of lookups that found the value.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of lookups that didn't find the value.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Ratio of lookups that found the value.
+	 *
+	 * @return hit rate from interval [0,1], 0 if there was no lookup
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long all = hits + misses.get();
+		return all == 0 ? 0 : (double) hits / all;
+	}
+
+	/**
+	 * Method resets hit and miss counters.
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Maximal number of values in cache.
+	 *
+	 * @return capacity of cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
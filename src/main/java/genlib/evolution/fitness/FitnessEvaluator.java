@@ -0,0 +1,534 @@
+package genlib.evolution.fitness;
+
+import genlib.evolution.individuals.Individual;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Service that computes fitness of individuals in parallel. It keeps one
+ * long-lived {@link ForkJoinPool} so the threads are not created and destroyed
+ * in each generation. Individuals are split recursively into blocks and each
+ * block is computed by all the fitness functions inside one task. Idle workers
+ * steal halves of not yet split blocks, so the load is balanced even if some
+ * individuals take longer to evaluate. </p> Exceptions thrown by fitness
+ * functions are propagated to the caller of
+ * {@link #computeFitness(ArrayList, List, int)}. </p> Evaluator is usually
+ * owned by {@link genlib.evolution.EvolutionAlgorithm} and it can be injected
+ * with custom pool. Evaluators returned by {@link #getShared(int)} are shared
+ * by all the populations with the same number of threads. </p> When there are
+ * too few changed individuals to keep all the threads busy and evaluation of
+ * one individual is expensive (see
+ * {@link FitnessFunction#getEvaluationCost(Individual)}, it is proportional to
+ * number of instances times tree size), evaluator switches to data-parallel
+ * mode. Individuals are then evaluated one by one in calling thread and the
+ * pool is offered to the fitness functions by {@link #getDataParallelPool()},
+ * so they can split the instances of one individual into chunks. </p> If the
+ * costs of changed individuals are known, they are scheduled by
+ * longest-processing-time-first rule: individuals sorted by decreasing cost
+ * are assigned one by one to the thread with the smallest load, so the bushy
+ * trees are spread among all the threads. Otherwise the blocks of
+ * individuals are used. Busy time of each thread and wall time of the last
+ * evaluation are recorded (see {@link #getLastBusyTimes()},
+ * {@link #getIdleRatio()}). Busy times are counted separately for each call,
+ * so the concurrent evaluations with shared evaluator don't mix them, and
+ * the calling thread has its own slot after the threads of pool (it helps
+ * with the tasks while it waits for them, in data-parallel mode it
+ * evaluates the individuals). </p> Confusion matrices on chunked data are
+ * counted for all the changed individuals before they are dispatched (see
+ * {@link DataMajorEvaluator#countChunkedMatrices(List, List, ForkJoinPool)}).
+ *
+ * @author Lukas Surin
+ *
+ */
+public class FitnessEvaluator {
+
+	/**
+	 * minimal cost of evaluation of one individual for which the data-parallel
+	 * mode is used
+	 */
+	public static final long DATA_PARALLEL_COST = 1 << 20;
+	/** minimal number of rows in one chunk of data-parallel mode */
+	public static final int MIN_CHUNK_SIZE = 1 << 12;
+	/** pool offered to fitness functions in data-parallel mode */
+	private static final ThreadLocal<ForkJoinPool> dataParallelPool = new ThreadLocal<>();
+	/** shared evaluators indexed by number of threads */
+	private static final HashMap<Integer, FitnessEvaluator> shared = new HashMap<>();
+	/** pool that executes the tasks, null for sequential evaluation */
+	protected final ForkJoinPool pool;
+	/** busy time of threads in last evaluation (nanoseconds) */
+	private long[] lastBusy = new long[0];
+	/** wall time of last evaluation (nanoseconds) */
+	private long lastWall;
+	/** busy time of all threads in all evaluations (nanoseconds) */
+	private long totalBusy;
+	/** time of all threads in all evaluations (nanoseconds) */
+	private long totalTime;
+
+	/**
+	 * Task that computes fitness of individuals from start to end. If there is
+	 * more individuals than the block size, the range is split in half.
+	 */
+	@SuppressWarnings("serial")
+	private static class FitnessTask<T extends Individual> extends
+			RecursiveAction {
+
+		/** evaluator that records busy time */
+		private final FitnessEvaluator evaluator;
+		/** busy time of threads in this evaluation */
+		private final AtomicLongArray busy;
+		/** individuals for which we compute fitness */
+		private final ArrayList<T> individuals;
+		/** fitness functions that are computed */
+		private final List<FitnessFunction<T>> functions;
+		/** start index */
+		private final int start;
+		/** end index (exclusive) */
+		private final int end;
+		/** maximal number of individuals computed without split */
+		private final int blockSize;
+
+		FitnessTask(FitnessEvaluator evaluator, AtomicLongArray busy,
+				ArrayList<T> individuals, List<FitnessFunction<T>> functions,
+				int start, int end, int blockSize) {
+			this.evaluator = evaluator;
+			this.busy = busy;
+			this.individuals = individuals;
+			this.functions = functions;
+			this.start = start;
+			this.end = end;
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= blockSize) {
+				long time = System.nanoTime();
+				for (FitnessFunction<T> function : functions) {
+					function.computeFitness(individuals, start, end);
+				}
+				evaluator.addBusyTime(busy, System.nanoTime() - time);
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new FitnessTask<>(evaluator, busy, individuals,
+					functions, start, middle, blockSize), new FitnessTask<>(
+					evaluator, busy, individuals, functions, middle, end,
+					blockSize));
+		}
+	}
+
+	/**
+	 * Task that computes fitness of the individuals assigned to one thread by
+	 * the scheduler.
+	 */
+	@SuppressWarnings("serial")
+	private static class ScheduledTask<T extends Individual> extends
+			RecursiveAction {
+
+		/** evaluator that records busy time */
+		private final FitnessEvaluator evaluator;
+		/** busy time of threads in this evaluation */
+		private final AtomicLongArray busy;
+		/** individuals for which we compute fitness */
+		private final ArrayList<T> individuals;
+		/** fitness functions that are computed */
+		private final List<FitnessFunction<T>> functions;
+		/** indices of assigned individuals */
+		private final int[] assigned;
+		/** number of assigned individuals */
+		private int count;
+
+		ScheduledTask(FitnessEvaluator evaluator, AtomicLongArray busy,
+				ArrayList<T> individuals, List<FitnessFunction<T>> functions,
+				int capacity) {
+			this.evaluator = evaluator;
+			this.busy = busy;
+			this.individuals = individuals;
+			this.functions = functions;
+			this.assigned = new int[capacity];
+		}
+
+		@Override
+		protected void compute() {
+			long time = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				for (FitnessFunction<T> function : functions) {
+					function.computeFitness(individuals, assigned[i],
+							assigned[i] + 1);
+				}
+			}
+			evaluator.addBusyTime(busy, System.nanoTime() - time);
+		}
+	}
+
+	/**
+	 * Task that runs the scheduled tasks in the pool.
+	 */
+	@SuppressWarnings("serial")
+	private static class ScheduleTask extends RecursiveAction {
+
+		/** scheduled tasks, one for each thread */
+		private final ScheduledTask<?>[] tasks;
+
+		ScheduleTask(ScheduledTask<?>[] tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Gets the evaluator with number of threads that is shared by all the
+	 * callers. Pool of shared evaluator is never shut down, its worker threads
+	 * are daemon threads that end when idle.
+	 *
+	 * @param nThreads
+	 *            number of threads
+	 * @return shared evaluator
+	 */
+	public static synchronized FitnessEvaluator getShared(int nThreads) {
+		nThreads = Math.max(1, nThreads);
+		FitnessEvaluator evaluator = shared.get(nThreads);
+		if (evaluator == null) {
+			evaluator = new FitnessEvaluator(nThreads);
+			shared.put(nThreads, evaluator);
+		}
+		return evaluator;
+	}
+
+	/**
+	 * Gets the pool of shared evaluator with number of threads (see
+	 * {@link #getShared(int)}). Other evaluators (e.g.
+	 * {@link DataMajorEvaluator}) can be created with it, so they don't start
+	 * their own threads.
+	 *
+	 * @param nThreads
+	 *            number of threads
+	 * @return pool of shared evaluator, null for one thread
+	 */
+	public static ForkJoinPool getSharedPool(int nThreads) {
+		return getShared(nThreads).pool;
+	}
+
+	/**
+	 * Gets the pool which can be used by fitness function to evaluate one
+	 * individual in parallel. It is set only in the thread that evaluates
+	 * individuals in data-parallel mode.
+	 *
+	 * @return pool for data-parallel evaluation or null
+	 */
+	public static ForkJoinPool getDataParallelPool() {
+		return dataParallelPool.get();
+	}
+
+	/**
+	 * Gets the size of chunk of rows for data-parallel evaluation, so there
+	 * are a few chunks for each thread of the pool.
+	 *
+	 * @param pool
+	 *            pool that computes the chunks
+	 * @param numInstances
+	 *            number of rows
+	 * @return number of rows in one chunk
+	 */
+	public static int getChunkSize(ForkJoinPool pool, int numInstances) {
+		return Math.max(MIN_CHUNK_SIZE,
+				numInstances / (pool.getParallelism() * 4));
+	}
+
+	/**
+	 * Constructor of evaluator with its own pool. With one thread the fitness
+	 * is computed sequentially in the calling thread.
+	 *
+	 * @param nThreads
+	 *            number of threads
+	 */
+	public FitnessEvaluator(int nThreads) {
+		this(nThreads > 1 ? new ForkJoinPool(nThreads) : null);
+	}
+
+	/**
+	 * Constructor of evaluator with injected pool.
+	 *
+	 * @param pool
+	 *            pool that executes the tasks, null for sequential evaluation
+	 */
+	public FitnessEvaluator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Number of threads that compute fitness.
+	 *
+	 * @return parallelism of evaluator
+	 */
+	public int getParallelism() {
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	/**
+	 * Method computes fitness of the individuals with all the functions.
+	 *
+	 * @param individuals
+	 *            for which we compute fitness
+	 * @param functions
+	 *            fitness functions
+	 * @param blockSize
+	 *            maximal number of individuals computed by one task
+	 */
+	public <T extends Individual> void computeFitness(ArrayList<T> individuals,
+			List<FitnessFunction<T>> functions, int blockSize) {
+		if (pool == null) {
+			for (FitnessFunction<T> function : functions) {
+				function.computeFitness(individuals, 0, individuals.size());
+			}
+			return;
+		}
+
+		// threads evaluate individuals one by one, so the chunks are read
+		// for all of them at once before dispatch
+		DataMajorEvaluator.countChunkedMatrices(individuals, functions, pool);
+
+		// busy time of threads of pool and of calling thread in this call
+		AtomicLongArray busy = new AtomicLongArray(getParallelism() + 1);
+		if (isDataParallel(individuals, functions)) {
+			long time = System.nanoTime();
+			dataParallelPool.set(pool);
+			try {
+				for (FitnessFunction<T> function : functions) {
+					function.computeFitness(individuals, 0, individuals.size());
+				}
+			} finally {
+				dataParallelPool.remove();
+			}
+			// chunks are computed inside of functions and their threads
+			// aren't measured, only the calling thread is accounted
+			long wall = System.nanoTime() - time;
+			addBusyTime(busy, wall);
+			recordStatistics(busy, wall, 1);
+			return;
+		}
+
+		long[] costs = estimateCosts(individuals, functions);
+		long time = System.nanoTime();
+		if (!schedule(busy, individuals, functions, costs)) {
+			pool.invoke(new FitnessTask<>(this, busy, individuals, functions,
+					0, individuals.size(), Math.max(1, blockSize)));
+		}
+		recordStatistics(busy, System.nanoTime() - time, busy.length());
+	}
+
+	/**
+	 * Method assigns the changed individuals to threads by
+	 * longest-processing-time-first rule and computes their fitness.
+	 *
+	 * @param busy
+	 *            busy time of threads in this evaluation
+	 * @param individuals
+	 *            for which we compute fitness
+	 * @param functions
+	 *            fitness functions
+	 * @param costs
+	 *            estimated costs of individuals
+	 * @return false if the costs are unknown (or there is no changed
+	 *         individual) and nothing was computed
+	 */
+	private <T extends Individual> boolean schedule(AtomicLongArray busy,
+			ArrayList<T> individuals, List<FitnessFunction<T>> functions,
+			final long[] costs) {
+		ArrayList<Integer> changed = new ArrayList<>();
+		long total = 0;
+		for (int i = 0; i < costs.length; i++) {
+			if (costs[i] >= 0) {
+				changed.add(i);
+				total += costs[i];
+			}
+		}
+		if (total == 0) {
+			return false;
+		}
+
+		Collections.sort(changed, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(costs[o2], costs[o1]);
+			}
+		});
+
+		int threads = Math.min(getParallelism(), changed.size());
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		ScheduledTask<T>[] tasks = new ScheduledTask[threads];
+		long[] loads = new long[threads];
+		for (int t = 0; t < threads; t++) {
+			tasks[t] = new ScheduledTask<>(this, busy, individuals,
+					functions, changed.size());
+		}
+		for (int index : changed) {
+			int min = 0;
+			for (int t = 1; t < threads; t++) {
+				if (loads[t] < loads[min]) {
+					min = t;
+				}
+			}
+			loads[min] += costs[index];
+			tasks[min].assigned[tasks[min].count++] = index;
+		}
+
+		pool.invoke(new ScheduleTask(tasks));
+		return true;
+	}
+
+	/**
+	 * Method estimates the costs of evaluation of individuals by all the
+	 * functions (see {@link FitnessFunction#getEvaluationCost(Individual)}).
+	 * Unchanged individuals have cost -1.
+	 *
+	 * @param individuals
+	 *            for which we estimate the costs
+	 * @param functions
+	 *            fitness functions
+	 * @return array with costs
+	 */
+	private <T extends Individual> long[] estimateCosts(
+			ArrayList<T> individuals, List<FitnessFunction<T>> functions) {
+		long[] costs = new long[individuals.size()];
+		for (int i = 0; i < costs.length; i++) {
+			T individual = individuals.get(i);
+			if (!individual.hasChanged()) {
+				costs[i] = -1;
+				continue;
+			}
+			for (FitnessFunction<T> function : functions) {
+				costs[i] += function.getEvaluationCost(individual);
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Method adds busy time to the thread that executes the task. Threads of
+	 * pool of this evaluator have their slots, any other thread (the calling
+	 * one) is counted in the last slot.
+	 *
+	 * @param busy
+	 *            busy time of threads in this evaluation
+	 * @param time
+	 *            busy time in nanoseconds
+	 */
+	private void addBusyTime(AtomicLongArray busy, long time) {
+		int caller = busy.length() - 1;
+		Thread thread = Thread.currentThread();
+		int index = caller;
+		if (thread instanceof ForkJoinWorkerThread
+				&& ((ForkJoinWorkerThread) thread).getPool() == pool) {
+			index = ((ForkJoinWorkerThread) thread).getPoolIndex() % caller;
+		}
+		busy.addAndGet(index, time);
+	}
+
+	/**
+	 * Method stores busy times of finished evaluation as the last one and
+	 * adds them to the totals.
+	 *
+	 * @param busy
+	 *            busy time of threads in this evaluation
+	 * @param wall
+	 *            wall time of evaluation in nanoseconds
+	 * @param threads
+	 *            number of threads whose wall time is added to total time
+	 */
+	private synchronized void recordStatistics(AtomicLongArray busy,
+			long wall, int threads) {
+		lastBusy = new long[busy.length()];
+		for (int i = 0; i < lastBusy.length; i++) {
+			lastBusy[i] = busy.get(i);
+			totalBusy += lastBusy[i];
+		}
+		lastWall = wall;
+		totalTime += wall * threads;
+	}
+
+	/**
+	 * Gets the busy time of each thread in the last parallel evaluation, the
+	 * last one is the busy time of calling thread. Idle time of thread is the
+	 * wall time minus its busy time.
+	 *
+	 * @return busy times in nanoseconds
+	 */
+	public synchronized long[] getLastBusyTimes() {
+		return lastBusy.clone();
+	}
+
+	/**
+	 * Gets the wall time of the last parallel evaluation.
+	 *
+	 * @return wall time in nanoseconds
+	 */
+	public synchronized long getLastWallTime() {
+		return lastWall;
+	}
+
+	/**
+	 * Gets the ratio of time in which the threads were idle in all the
+	 * parallel evaluations of this evaluator.
+	 *
+	 * @return idle ratio from interval [0,1], 0 if nothing was evaluated
+	 */
+	public synchronized double getIdleRatio() {
+		if (totalTime == 0) {
+			return 0;
+		}
+		return Math.max(0, 1 - (double) totalBusy / totalTime);
+	}
+
+	/**
+	 * Method decides if the individuals should be evaluated in data-parallel
+	 * mode. It is when the changed individuals can't occupy all the threads
+	 * and average cost of their evaluation is at least
+	 * {@link #DATA_PARALLEL_COST}.
+	 *
+	 * @param individuals
+	 *            for which we compute fitness
+	 * @param functions
+	 *            fitness functions
+	 * @return true iff data-parallel mode should be used
+	 */
+	public <T extends Individual> boolean isDataParallel(
+			ArrayList<T> individuals, List<FitnessFunction<T>> functions) {
+		int changed = 0;
+		long cost = 0;
+		for (long individualCost : estimateCosts(individuals, functions)) {
+			if (individualCost >= 0) {
+				changed++;
+				cost += individualCost;
+			}
+		}
+
+		return changed > 0 && changed < 2 * getParallelism()
+				&& cost / changed >= DATA_PARALLEL_COST;
+	}
+
+	/**
+	 * Method shuts down the pool of this evaluator. Shared evaluators and
+	 * evaluators created with shared pool (see {@link #getSharedPool(int)})
+	 * should not be shut down.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+}
@@ -34,6 +34,10 @@ public abstract class FitnessFunction<T extends Individual> implements
 	protected EvolutionAlgorithm<T> ea;
 	/** index of this function in individual */
 	protected int index = -1;
+	/** cache of computed fitness values, created lazily */
+	private transient FitnessCache fitnessCache;
+	/** data on which the cached fitness values were computed */
+	private transient Data cachedData;
 
 	/**
 	 * Method which should compute fitness for specific class.
@@ -82,6 +86,72 @@ public abstract class FitnessFunction<T extends Individual> implements
 		}
 	}
 
+	/**
+	 * Method estimates the cost of computing fitness of the individual. It is
+	 * used to choose between population-parallel and data-parallel evaluation
+	 * (see {@link FitnessEvaluator}). Functions that don't traverse the data
+	 * return 0.
+	 * 
+	 * @param individual
+	 *            for which we estimate the cost
+	 * @return estimated number of operations
+	 */
+	public long getEvaluationCost(T individual) {
+		return 0;
+	}
+
+	/**
+	 * Method returns the data on which the individuals are evaluated by this
+	 * function (including actual subsample, see {@link Data#getSampleData()}).
+	 * 
+	 * @return data of evaluation or null if the function doesn't use data
+	 */
+	public Data getEvaluationData() {
+		return null;
+	}
+
+	/**
+	 * Method returns cache of fitness values of this function. Functions that
+	 * can identify individuals by structural hash use it to skip evaluation of
+	 * duplicates. Cache is created lazily with capacity from configuration.
+	 * 
+	 * @return cache of fitness values
+	 */
+	public synchronized FitnessCache getFitnessCache() {
+		if (fitnessCache == null) {
+			fitnessCache = new FitnessCache();
+		}
+		return fitnessCache;
+	}
+
+	/**
+	 * Method returns cache of fitness values computed on the data. The cache is
+	 * cleared when the data differ from the data of previous call, for example
+	 * when new subsample is drawn (see {@link Data#getSampleData()}).
+	 * 
+	 * @param data
+	 *            on which the fitness values are computed
+	 * @return cache of fitness values
+	 */
+	public synchronized FitnessCache getFitnessCache(Data data) {
+		FitnessCache cache = getFitnessCache();
+		if (cachedData != data) {
+			cache.clear();
+			cachedData = data;
+		}
+		return cache;
+	}
+
+	/**
+	 * Method drops all the cached fitness values of this function. It should
+	 * be called whenever the data or parameters of function change.
+	 */
+	protected synchronized void clearFitnessCache() {
+		if (fitnessCache != null) {
+			fitnessCache.clear();
+		}
+	}
+
 	/**
 	 * Method returns the individual class type (Individual.class,
 	 * TreeIndividual.class).
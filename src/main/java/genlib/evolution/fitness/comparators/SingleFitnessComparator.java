@@ -70,6 +70,15 @@ public class SingleFitnessComparator<T extends Individual> extends
 		return -Double.compare(fit1, fit2);
 	}
 
+	/**
+	 * Gets the fitness function with which we compare individuals.
+	 * 
+	 * @return fitness function or null if the complex fitness is compared
+	 */
+	public FitnessFunction<T> getFunction() {
+		return function;
+	}
+
 	/**
 	 * Method parses the index of function that is used to compare individuals.
 	 */
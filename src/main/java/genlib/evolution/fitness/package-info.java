@@ -2,6 +2,7 @@
 		toInjectNames = {
 			genlib.evolution.fitness.TestFit.initName,
 			genlib.evolution.fitness.tree.TreeAccuracyFitness.initName,
+			genlib.evolution.fitness.tree.TreeRacingFitness.initName,
 			genlib.evolution.fitness.tree.look.TreeSizeFitness.initName,
 			genlib.evolution.fitness.tree.look.TreeHeightFitness.initName,
 			genlib.evolution.fitness.tree.confusion.TreeFNFitness.initName,
@@ -17,6 +18,7 @@
 		toInjectClasses = {
 			genlib.evolution.fitness.TestFit.class,
 			genlib.evolution.fitness.tree.TreeAccuracyFitness.class,
+			genlib.evolution.fitness.tree.TreeRacingFitness.class,
 			genlib.evolution.fitness.tree.look.TreeSizeFitness.class,
 			genlib.evolution.fitness.tree.look.TreeHeightFitness.class,
 			genlib.evolution.fitness.tree.confusion.TreeFNFitness.class,
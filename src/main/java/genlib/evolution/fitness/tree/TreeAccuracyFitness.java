@@ -1,22 +1,22 @@
 package genlib.evolution.fitness.tree;
 
+import genlib.evolution.fitness.DataMajorEvaluator;
+import genlib.evolution.fitness.FitnessCache;
 import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.individuals.TreeIndividual;
+import genlib.evolution.population.Population;
 import genlib.locales.PermMessages;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
 import genlib.structures.Data;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.trees.FlatTree;
 import genlib.utils.Utils;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import weka.core.Instance;
-import weka.core.Instances;
-
 /**
  * Class which is used to compute accuracy of the tree on specific data set.
  * 
@@ -73,9 +73,10 @@ public class TreeAccuracyFitness extends FitnessFunction<TreeIndividual> {
 	 * This method that overrides computeFitness from FitnessFunction class
 	 * computes accuracy for an individual handed as parameter. If the
 	 * individual hasn't changed then we can return value of this fitness right
-	 * away from individual. Method calls other method with the same name that
-	 * depends on type of data on which this fitness function works (weka or
-	 * built-in type).
+	 * away from individual, otherwise the value is looked up in
+	 * {@link FitnessCache} by structural hash of the tree. Accuracy is
+	 * computed over columnar snapshot of the data so it doesn't depend on type
+	 * of data on which this fitness function works (weka or built-in type).
 	 */
 	@Override
 	public final double computeFitness(TreeIndividual individual) {
@@ -83,13 +84,17 @@ public class TreeAccuracyFitness extends FitnessFunction<TreeIndividual> {
 			return individual.getFitnessValue(index);
 		}
 
-		double fitness = 0d;
-
-		if (data.isInstances()) {
-			fitness = computeFitness(data.toInstances(), individual);
-		}
-		if (data.isGenLibInstances()) {
-			fitness = computeFitness(data.toGenLibInstances(), individual);
+		// duplicates of already evaluated trees take value from cache
+		Data sample = data.getSampleData();
+		FitnessCache cache = getFitnessCache(sample);
+		long hash = cache.isEnabled() ? individual.getTreeHash() : 0;
+		Double cached = cache.get(hash);
+		double fitness;
+		if (cached != null) {
+			fitness = cached;
+		} else {
+			fitness = computeFitness(sample, individual);
+			cache.put(hash, fitness);
 		}
 
 		individual.setFitnessValue(index, fitness);
@@ -98,65 +103,81 @@ public class TreeAccuracyFitness extends FitnessFunction<TreeIndividual> {
 	}
 
 	/**
-	 * Method computes accuracy criteria from Instances.
+	 * Method computes accuracy criteria from columnar snapshot of data.
 	 * 
-	 * @param instances
-	 *            that are used to compute fitness
+	 * @param data
+	 *            data (or its subsample) that is used to compute fitness
 	 * @param individual
 	 *            for which we compute fitness
 	 * @return accuracy fitness value
 	 */
-	@SuppressWarnings("unchecked")
-	private double computeFitness(Instances instances, TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double allData = instances.numInstances();
+	private double computeFitness(Data data, TreeIndividual individual) {
+		ColumnarData columnar = data.getClassData();
+		int numInstances = columnar.numInstances();
+		double allData = numInstances;
 		double correct = 0;
 
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (genlib.utils.Utils.isValueProper(
-							instance.value(root.getAttribute()),
-							root.getSign(), root.getValue())) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
+		// with nominal class the accuracy is the trace of confusion matrix
+		// which is shared with confusion based fitness functions
+		if (columnar.numClasses() > 1 && !columnar.hasMissingClass()) {
+			int[][] matrix = individual.getConfusionMatrix(data);
+			for (int i = 0; i < matrix.length; i++) {
+				correct += matrix[i][i];
 			}
-			if (instance.classValue() == root.getValue()) {
-				correct++;
+			return correct / allData;
+		}
+
+		FlatTree tree = individual.getFlatTree();
+		for (int chunk = 0; chunk < data.numChunks(); chunk++) {
+			ColumnarData rows = data.getChunk(chunk);
+			for (int row = 0; row < rows.numInstances(); row++) {
+				if (rows.classValue(row) == tree.classify(rows, row)) {
+					correct++;
+				}
 			}
-			root = individual.getRootNode();
 		}
 		double val = correct / allData;
 		return val;
 	}
 
 	/**
-	 * Method computes accuracy criteria from GenLibInstances. GENLIBINSTANCES
-	 * NOT IMPLEMENTED => METHOD NOT PROPERLY IMPLEMENTED
-	 * 
-	 * @param instances
-	 *            that are used to compute fitness
-	 * @param individual
-	 *            for which we compute fitness
-	 * @return accuracy fitness value
+	 * {@inheritDoc} </p> On chunked data the confusion matrices of changed
+	 * individuals are counted first in one pass over the chunks.
 	 */
-	@SuppressWarnings("unchecked")
-	private double computeFitness(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double allData = instances.numInstances();
-		double correct = 0;
-		// TODO
-		double val = correct / allData;
-		return correct;
+	@Override
+	public void computeFitness(Population<TreeIndividual> population) {
+		ArrayList<TreeIndividual> individuals = population.getIndividuals();
+		computeFitness(individuals, 0, individuals.size());
+	}
+
+	/**
+	 * {@inheritDoc} </p> On chunked data the confusion matrices of changed
+	 * individuals from start to end are counted first in one pass over the
+	 * chunks.
+	 */
+	@Override
+	public void computeFitness(ArrayList<TreeIndividual> population,
+			int start, int end) {
+		DataMajorEvaluator.countChunkedMatrices(population, start, end,
+				data.getSampleData());
+		super.computeFitness(population, start, end);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Data getEvaluationData() {
+		return data.getSampleData();
+	}
+
+	/**
+	 * {@inheritDoc} </p> It is number of instances times size of the tree.
+	 */
+	@Override
+	public long getEvaluationCost(TreeIndividual individual) {
+		return (long) data.getSampleData().numInstances()
+				* individual.getTreeSize();
 	}
 
 	/**
@@ -165,6 +186,7 @@ public class TreeAccuracyFitness extends FitnessFunction<TreeIndividual> {
 	@Override
 	public void setData(Data data) {
 		this.data = data.getDataOfType(typeOfData);
+		clearFitnessCache();
 	}
 
 	/**
@@ -183,6 +205,7 @@ public class TreeAccuracyFitness extends FitnessFunction<TreeIndividual> {
 	 */
 	@Override
 	public void setParam(String param) {
+		clearFitnessCache();
 		this.attrIndex = -1;
 
 		if (param.equals(PermMessages._blank_param)) {
@@ -0,0 +1,456 @@
+package genlib.evolution.fitness.tree;
+
+import genlib.configurations.Config;
+import genlib.evolution.fitness.FitnessCache;
+import genlib.evolution.fitness.FitnessFunction;
+import genlib.evolution.individuals.TreeIndividual;
+import genlib.evolution.population.Population;
+import genlib.locales.PermMessages;
+import genlib.locales.TextKeys;
+import genlib.locales.TextResource;
+import genlib.structures.Data;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.trees.FlatTree;
+import genlib.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Racing wrapper of {@link TreeAccuracyFitness}. Exact accuracy is computed
+ * only when it is requested for an individual with
+ * {@link #computeFitness(TreeIndividual)}, evaluation of the whole population
+ * is deferred. Selectors (see
+ * {@link genlib.evolution.selectors.TournamentSelector}) can instead decide
+ * which of two individuals is better with {@link #race(TreeIndividual,
+ * TreeIndividual)}: instances are processed in shuffled blocks and the race
+ * stops as soon as the confidence bounds (Hoeffding or empirical Bernstein)
+ * of accuracies separate. Individuals stopped early keep the lower
+ * confidence bound as their fitness and they are flagged with
+ * {@link TreeIndividual#setFitnessEstimated(boolean)}. They stay changed, so
+ * their exact fitness is computed whenever it is needed (sorting, elitism).
+ * Bounds are tested after each block, so delta is divided among all the
+ * tests of one race and the probability of wrong decision of the whole race
+ * stays at most delta. </p> Limitations: {@link
+ * genlib.evolution.EvolutionAlgorithm#run()} sorts the population at the
+ * start of each generation and sorting requests exact fitness of all the
+ * individuals, so parents are always evaluated on all the data and racing
+ * saves evaluations only when the offspring are selected by environmental
+ * selection with racing tournaments. {@link #race(TreeIndividual, double)}
+ * is not called by the algorithm, it is meant for custom selectors that
+ * compare individuals against fixed threshold (for example fitness of the
+ * elite).
+ *
+ * @author Lukas Surin
+ *
+ */
+public class TreeRacingFitness extends FitnessFunction<TreeIndividual> {
+
+	/**
+	 * RacingEnum that defines what kind of parameters are possible for racing
+	 * fitness function.</p> Defined kinds of parameters: </br>
+	 * {@link RacingEnum#DATA} </br> {@link RacingEnum#DELTA} </br>
+	 * {@link RacingEnum#BLOCK} </br> {@link RacingEnum#BOUND}
+	 *
+	 * @author Lukas Surin
+	 *
+	 */
+	protected enum RacingEnum {
+		/**
+		 * Data parameter to define what kind of splitting we use.
+		 */
+		DATA,
+		/**
+		 * Probability that the race makes wrong decision.
+		 */
+		DELTA,
+		/**
+		 * Number of instances processed before the bounds are tested.
+		 */
+		BLOCK,
+		/**
+		 * Type of confidence bound (HOEFFDING or BERNSTEIN).
+		 */
+		BOUND;
+
+		public static RacingEnum value(String name) {
+			if (name.equals(DATA.name())) {
+				return DATA;
+			}
+
+			if (name.equals(DELTA.name())) {
+				return DELTA;
+			}
+
+			if (name.equals(BLOCK.name())) {
+				return BLOCK;
+			}
+
+			if (name.equals(BOUND.name())) {
+				return BOUND;
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Types of confidence bounds used in race.
+	 *
+	 * @author Lukas Surin
+	 *
+	 */
+	public enum Bound {
+		/** Hoeffding bound that depends only on number of instances */
+		HOEFFDING,
+		/** empirical Bernstein bound that utilizes variance of accuracy */
+		BERNSTEIN
+	}
+
+	/** logger */
+	private static final Logger LOG = Logger.getLogger(TreeRacingFitness.class
+			.getName());
+	/** for serialization */
+	private static final long serialVersionUID = -4361239745418231867L;
+	/** name of fitness function */
+	public static final String initName = "tRace";
+	/** wrapped accuracy function that computes exact fitness */
+	private final TreeAccuracyFitness accuracy = new TreeAccuracyFitness();
+	/** data object */
+	private Data data;
+	/** type of data split used in computing fitness */
+	protected int typeOfData = -1;
+	/** probability of wrong decision in race */
+	private double delta = 0.05;
+	/** number of instances in one block */
+	private int blockSize = 100;
+	/** type of bound */
+	private Bound bound = Bound.HOEFFDING;
+	/** shuffled order of rows used in races */
+	private transient int[] order;
+	/** columnar data for which the order was created */
+	private transient ColumnarData orderColumnar;
+
+	/**
+	 * {@inheritDoc} </p> It computes exact accuracy on all the data (with
+	 * wrapped {@link TreeAccuracyFitness}) and it clears the flag of
+	 * estimated fitness.
+	 */
+	@Override
+	public double computeFitness(TreeIndividual individual) {
+		if (!individual.hasChanged()) {
+			return individual.getFitnessValue(index);
+		}
+
+		double fitness = accuracy.computeFitness(individual);
+		individual.setFitnessEstimated(false);
+		return fitness;
+	}
+
+	/**
+	 * {@inheritDoc} </p> Evaluation of population is deferred. Individuals
+	 * are raced in selection or evaluated exactly when their fitness is
+	 * requested.
+	 */
+	@Override
+	public void computeFitness(Population<TreeIndividual> population) {
+	}
+
+	/**
+	 * {@inheritDoc} </p> Evaluation of individuals is deferred (see
+	 * {@link #computeFitness(Population)}).
+	 */
+	@Override
+	public void computeFitness(ArrayList<TreeIndividual> population,
+			int start, int end) {
+	}
+
+	/**
+	 * Method races two individuals. It returns the same values as
+	 * {@link genlib.evolution.fitness.comparators.SingleFitnessComparator}
+	 * would return for exact fitness values (-1 if the first individual is
+	 * better), but with probability of wrong decision at most delta it
+	 * usually doesn't need all the instances.
+	 *
+	 * @param o1
+	 *            first individual
+	 * @param o2
+	 *            second individual
+	 * @return -1, 0, 1 if the first individual is better, equal, worse
+	 */
+	public int race(TreeIndividual o1, TreeIndividual o2) {
+		return race(o1, o2, 0);
+	}
+
+	/**
+	 * Method races individual against threshold (fitness of the elite or of
+	 * the opponent that is already evaluated).
+	 *
+	 * @param individual
+	 *            raced individual
+	 * @param threshold
+	 *            value of fitness to reach
+	 * @return true iff individual reaches the threshold
+	 */
+	public boolean race(TreeIndividual individual, double threshold) {
+		return race(individual, null, threshold) <= 0;
+	}
+
+	/**
+	 * Method processes instances in shuffled blocks with both individuals (or
+	 * individual and threshold if the second one is null) until the bounds
+	 * separate or until all the instances are processed.
+	 *
+	 * @param o1
+	 *            first individual
+	 * @param o2
+	 *            second individual or null
+	 * @param threshold
+	 *            value raced with the first individual if o2 is null
+	 * @return -1, 0, 1 if the first individual is better, equal, worse
+	 */
+	private int race(TreeIndividual o1, TreeIndividual o2,
+			double threshold) {
+		Data sample = data.getSampleData();
+		ColumnarData columnar = sample.getColumnarData();
+		int[] order = getOrder(columnar);
+		int numInstances = order.length;
+
+		TreeIndividual[] raced = new TreeIndividual[] { o1, o2 };
+		FlatTree[] trees = new FlatTree[2];
+		double[] exact = new double[] { Double.NaN, threshold };
+		for (int i = 0; i < 2; i++) {
+			if (raced[i] != null && !raced[i].hasChanged()) {
+				exact[i] = raced[i].getFitnessValue(index);
+			} else if (raced[i] != null) {
+				trees[i] = raced[i].getFlatTree();
+			}
+		}
+
+		if (trees[0] == null && trees[1] == null) {
+			return -Double.compare(exact[0], exact[1]);
+		}
+
+		// bounds are tested after each block but the last one, so delta is
+		// split among all the looks at both raced trees (union bound)
+		int looks = Math.max(1, (numInstances - 1) / blockSize);
+		double lookDelta = delta
+				/ (looks * (trees[0] != null && trees[1] != null ? 2 : 1));
+
+		int[] correct = new int[2];
+		int processed = 0;
+		while (processed < numInstances) {
+			int end = Math.min(numInstances, processed + blockSize);
+			for (int i = processed; i < end; i++) {
+				int row = order[i];
+				double classValue = columnar.classValue(row);
+				for (int t = 0; t < 2; t++) {
+					if (trees[t] != null
+							&& classValue == trees[t].classify(columnar, row)) {
+						correct[t]++;
+					}
+				}
+			}
+			processed = end;
+
+			if (processed == numInstances) {
+				break;
+			}
+
+			double[] lower = new double[2], upper = new double[2];
+			for (int t = 0; t < 2; t++) {
+				if (trees[t] == null) {
+					lower[t] = upper[t] = exact[t];
+				} else {
+					double mean = (double) correct[t] / processed;
+					double eps = epsilon(mean, processed, lookDelta);
+					lower[t] = mean - eps;
+					upper[t] = mean + eps;
+				}
+			}
+
+			if (lower[0] > upper[1] || lower[1] > upper[0]) {
+				// race stopped early, raced individuals keep lower bounds
+				for (int t = 0; t < 2; t++) {
+					if (trees[t] != null) {
+						raced[t].setFitnessValue(index, Math.max(0, lower[t]));
+						raced[t].setFitnessEstimated(true);
+					}
+				}
+				return lower[0] > upper[1] ? -1 : 1;
+			}
+		}
+
+		// all instances processed, exact accuracy is stored in cache of
+		// accuracy so the next exact computation is for free
+		for (int t = 0; t < 2; t++) {
+			if (trees[t] != null) {
+				exact[t] = (double) correct[t] / numInstances;
+				raced[t].setFitnessValue(index, exact[t]);
+				raced[t].setFitnessEstimated(false);
+				FitnessCache cache = accuracy.getFitnessCache(sample);
+				if (cache.isEnabled()) {
+					cache.put(raced[t].getTreeHash(), exact[t]);
+				}
+			}
+		}
+		return -Double.compare(exact[0], exact[1]);
+	}
+
+	/**
+	 * Method computes half width of confidence interval of accuracy.
+	 *
+	 * @param mean
+	 *            accuracy on processed instances
+	 * @param processed
+	 *            number of processed instances
+	 * @param delta
+	 *            probability that the accuracy is outside of interval
+	 * @return half width of confidence interval
+	 */
+	private double epsilon(double mean, int processed, double delta) {
+		switch (bound) {
+		case BERNSTEIN:
+			double log = Math.log(3 / delta);
+			return Math.sqrt(2 * mean * (1 - mean) * log / processed) + 3
+					* log / processed;
+		case HOEFFDING:
+		default:
+			return Math.sqrt(Math.log(2 / delta) / (2 * processed));
+		}
+	}
+
+	/**
+	 * Gets the shuffled order of rows for columnar data. Order is created
+	 * with seed from configuration so the races are reproducible.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return shuffled row indices
+	 */
+	private synchronized int[] getOrder(ColumnarData columnar) {
+		if (order == null || orderColumnar != columnar) {
+			int numInstances = columnar.numInstances();
+			int[] order = new int[numInstances];
+			for (int i = 0; i < numInstances; i++) {
+				order[i] = i;
+			}
+
+			Random random = new Random(Config.getInstance().getSeed());
+			for (int i = numInstances - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int tmp = order[i];
+				order[i] = order[j];
+				order[j] = tmp;
+			}
+
+			this.order = order;
+			this.orderColumnar = columnar;
+		}
+		return order;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setIndex(int index) {
+		super.setIndex(index);
+		accuracy.setIndex(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setData(Data data) {
+		this.data = data.getDataOfType(typeOfData);
+		accuracy.setData(this.data);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Class<TreeIndividual> getIndividualClassType() {
+		return TreeIndividual.class;
+	}
+
+	/**
+	 * This method sets the parameters DATA, DELTA, BLOCK and BOUND for
+	 * function.
+	 *
+	 * @param parameter
+	 *            in string format
+	 */
+	@Override
+	public void setParam(String param) {
+		this.typeOfData = -1;
+		this.delta = 0.05;
+		this.blockSize = 100;
+		this.bound = Bound.HOEFFDING;
+
+		if (param.equals(PermMessages._blank_param)) {
+			return;
+		}
+
+		String[] parts = param.split(Utils.pDELIM);
+
+		for (int i = 0; i < parts.length; i += 2) {
+			RacingEnum raceEnum = RacingEnum.value(parts[i]);
+
+			if (raceEnum == null) {
+				LOG.log(Level.INFO, String.format(TextResource
+						.getString(TextKeys.iExcessParam), String.format(
+						PermMessages._param_format, parts[i], parts[i + 1])));
+				continue;
+			}
+
+			switch (raceEnum) {
+			case DATA:
+				this.typeOfData = Integer.parseInt(parts[i + 1]);
+				break;
+			case DELTA:
+				this.delta = Double.parseDouble(parts[i + 1]);
+				break;
+			case BLOCK:
+				this.blockSize = Integer.parseInt(parts[i + 1]);
+				break;
+			case BOUND:
+				this.bound = Bound.valueOf(parts[i + 1]);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String objectInfo() {
+		String paramString = String.format(PermMessages._param_format,
+				RacingEnum.DELTA, delta);
+		paramString = String.format(PermMessages._param_format, paramString,
+				RacingEnum.BLOCK + "," + blockSize);
+		paramString = String.format(PermMessages._param_format, paramString,
+				RacingEnum.BOUND + "," + bound);
+		if (typeOfData == 0 || typeOfData == 1) {
+			paramString = String.format(PermMessages._param_format,
+					paramString, RacingEnum.DATA + "," + typeOfData);
+		}
+		return String.format(PermMessages._fit_format, initName, paramString);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean canHandleNumeric() {
+		return true;
+	}
+
+}
@@ -1,20 +1,22 @@
 package genlib.evolution.fitness.tree.confusion;
 
+import genlib.evolution.fitness.DataMajorEvaluator;
+import genlib.evolution.fitness.FitnessCache;
 import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.individuals.TreeIndividual;
+import genlib.evolution.population.Population;
 import genlib.exceptions.MissingParamException;
 import genlib.locales.PermMessages;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
 import genlib.structures.Data;
-import genlib.structures.data.GenLibInstances;
+import genlib.structures.data.ColumnarData;
 import genlib.utils.Utils;
 
+import java.util.ArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import weka.core.Instances;
-
 /**
  * Abstract class (interface) that should be implemented by fitness functions
  * that are based on some criteria from confusion matrix.
@@ -124,11 +126,12 @@ public abstract class TreeConfusionFitness extends
 	 * This method that overrides computeFitness from FitnessFunction class
 	 * computes fitness for an individual handed as parameter. If the individual
 	 * hasn't changed then we can return value of this fitness right away from
-	 * individual. Method calls other method with the same name that depends on
-	 * type of data on which this fitness function works (weka or built-in
-	 * type). </p>It calls {@link #computeFitness(Instances, TreeIndividual)} or
-	 * {@link #computeFitness(GenLibInstances, TreeIndividual)} depending on
-	 * what kind of data are used.
+	 * individual. Otherwise the value is looked up in {@link FitnessCache} by
+	 * structural hash of the tree. </p>It calls
+	 * {@link #computeFitness(ColumnarData, TreeIndividual)} with columnar
+	 * snapshot of data, so it doesn't depend on type of data on which this
+	 * fitness function works (weka or built-in type). Chunked data give only
+	 * the snapshot of class values (see {@link Data#getClassData()}).
 	 */
 	@Override
 	public final double computeFitness(TreeIndividual individual) {
@@ -136,13 +139,17 @@ public abstract class TreeConfusionFitness extends
 			return individual.getFitnessValue(index);
 		}
 
-		double fitness = 0d;
-
-		if (data.isInstances()) {
-			fitness = computeFitness(data.toInstances(), individual);
-		}
-		if (data.isGenLibInstances()) {
-			fitness = computeFitness(data.toGenLibInstances(), individual);
+		// duplicates of already evaluated trees take value from cache
+		Data sample = data.getSampleData();
+		FitnessCache cache = getFitnessCache(sample);
+		long hash = cache.isEnabled() ? individual.getTreeHash() : 0;
+		Double cached = cache.get(hash);
+		double fitness;
+		if (cached != null) {
+			fitness = cached;
+		} else {
+			fitness = computeFitness(sample.getClassData(), individual);
+			cache.put(hash, fitness);
 		}
 
 		// Set the fitness into fitness array in individual
@@ -151,6 +158,31 @@ public abstract class TreeConfusionFitness extends
 		return fitness;
 	}
 
+	/**
+	 * {@inheritDoc} </p> On chunked data the confusion matrices of all the
+	 * changed individuals are counted first in one pass over the chunks (see
+	 * {@link DataMajorEvaluator#countChunkedMatrices(java.util.List, int, int, Data)}),
+	 * so each chunk is read once per population instead of once per
+	 * individual.
+	 */
+	@Override
+	public void computeFitness(Population<TreeIndividual> population) {
+		ArrayList<TreeIndividual> individuals = population.getIndividuals();
+		computeFitness(individuals, 0, individuals.size());
+	}
+
+	/**
+	 * {@inheritDoc} </p> On chunked data the confusion matrices of changed
+	 * individuals from start to end are counted in one pass over the chunks.
+	 */
+	@Override
+	public void computeFitness(ArrayList<TreeIndividual> population,
+			int start, int end) {
+		DataMajorEvaluator.countChunkedMatrices(population, start, end,
+				data.getSampleData());
+		super.computeFitness(population, start, end);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -159,12 +191,30 @@ public abstract class TreeConfusionFitness extends
 		return TreeIndividual.class;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Data getEvaluationData() {
+		return data.getSampleData();
+	}
+
+	/**
+	 * {@inheritDoc} </p> It is number of instances times size of the tree.
+	 */
+	@Override
+	public long getEvaluationCost(TreeIndividual individual) {
+		return (long) data.getSampleData().numInstances()
+				* individual.getTreeSize();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void setData(Data data) {
 		this.data = data.getDataOfType(typeOfData);
+		clearFitnessCache();
 	}
 
 	/**
@@ -209,6 +259,7 @@ public abstract class TreeConfusionFitness extends
 	 */
 	@Override
 	public void setParam(String param) {
+		clearFitnessCache();
 		this.attrIndex = -1;
 		this.averageEnum = null;
 		this.maximize = null;
@@ -275,24 +326,24 @@ public abstract class TreeConfusionFitness extends
 	}
 
 	/**
-	 * Method computes confusion criteria from Instances.
+	 * Method computes confusion criteria from columnar snapshot of data.
 	 * 
-	 * @param instances
-	 *            that are used to compute fitness
+	 * @param columnar
+	 *            snapshot of data that is used to compute fitness
 	 * @param individual
 	 *            for which we compute fitness
 	 * @return fitness value for this criteria
 	 */
-	protected double computeFitness(Instances instances,
+	protected double computeFitness(ColumnarData columnar,
 			TreeIndividual individual) {
 		// test if fitness should be computed in regards to one or all(-1)
 		// attributes
 		if (attrIndex == -1) {
-			if (instances.numClasses() == 2) {
+			if (columnar.numClasses() == 2) {
 				// default is index 1, because at default classification
 				// to false or true (false is 0 and true is 1)
 				attrIndex = 1;
-				double value = attributeConfusionValue(instances, individual);				
+				double value = attributeConfusionValue(columnar, individual);
 				return Double.isNaN(value) ? 0 : value;
 			}
 
@@ -306,7 +357,7 @@ public abstract class TreeConfusionFitness extends
 			}
 
 			double fitness = 0d;
-			double[] criteria = totalConfusionValues(instances, individual);
+			double[] criteria = totalConfusionValues(columnar, individual);
 
 			switch (averageEnum) {
 			case OWNWEIGHT:
@@ -314,16 +365,16 @@ public abstract class TreeConfusionFitness extends
 					fitness += (criteria[i] * criteria[i]);
 				}
 				// divided by all instances
-				fitness /= instances.numInstances();
+				fitness /= columnar.numInstances();
 				break;
 			case WEIGHTED:
-				double[] weight = data.getClassCounts();
+				double[] weight = data.getSampleData().getClassCounts();
 				// weight is their support
 				for (int i = 0; i < criteria.length; i++) {
 					fitness += (weight[i] * criteria[i]);
 				}
 				// divided by all instances as defined in support
-				fitness /= instances.numInstances();
+				fitness /= columnar.numInstances();
 				break;
 			case UNWEIGHTED:
 				// sum of all values
@@ -339,103 +390,59 @@ public abstract class TreeConfusionFitness extends
 					fitness += criteria[i];
 				}
 				// divided by all instances
-				fitness /= instances.numInstances();
+				fitness /= columnar.numInstances();
 				break;
 			}
 			return fitness;
 		} else {
-			double value = attributeConfusionValue(instances, individual);				
+			double value = attributeConfusionValue(columnar, individual);
 			return Double.isNaN(value) ? 0 : value;
 		}
 	}
 
 	/**
-	 * Method computes confusion criteria from GenLibInstances.
+	 * Method computes the confusion values for all the attributes.
 	 * 
-	 * @param instances
-	 *            that are used to compute fitness
 	 * @param individual
-	 *            for which we compute fitness
-	 * @return fitness value for this criteria
+	 *            for which we compute confusion values
+	 * @return array of confusion values
 	 */
-	protected double computeFitness(GenLibInstances instances,
-			TreeIndividual individual) {
-		// test if fitness should be computed in regards to one or all(-1)
-		// attributes
-		if (attrIndex == -1) {
-			if (instances.numClasses() == 2) {
-				attrIndex = 1;
-				return attributeConfusionValue(instances, individual);
-			}
-
-			if (averageEnum == null) {
-				LOG.log(Level.WARNING, String.format(
-						TextResource.getString(TextKeys.eMissParam),
-						ConfusionEnum.AVERAGE.name(), this.getFitnessName()));
-				throw new MissingParamException(String.format(
-						TextResource.getString(TextKeys.eMissParam),
-						ConfusionEnum.AVERAGE.name(), this.getFitnessName()));
-			}
-
-			double fitness = 0d;
-			double[] criteria = totalConfusionValues(instances, individual);
-
-			switch (averageEnum) {
-			case OWNWEIGHT:
-				for (int i = 0; i < criteria.length; i++) {
-					fitness += (criteria[i] * criteria[i]);
-				}
-				// divided by all instances
-				fitness /= instances.numInstances();
-				break;
-			case WEIGHTED:
-				double[] weight = data.getClassCounts();
-				// weight is their support
-				for (int i = 0; i < criteria.length; i++) {
-					fitness += (weight[i] * criteria[i]);
-				}
-				// divided by all instances as defined in support
-				fitness /= instances.numInstances();
-				break;
-			case UNWEIGHTED:
-				// sum of all values
-				for (int i = 0; i < criteria.length; i++) {
-					fitness += criteria[i];
-				}
-				// and then average
-				fitness /= criteria.length;
-				break;
-			case TOTAL:
-				// sum of all values
-				for (int i = 0; i < criteria.length; i++) {
-					fitness += criteria[i];
-				}
-				// divided by all instances
-				fitness /= instances.numInstances();
-				break;
-			}
-			return fitness;
-		} else {
-			return attributeConfusionValue(instances, individual);
-		}
+	public double[] getConfusionValues(TreeIndividual individual) {
+		return totalConfusionValues(data.getSampleData().getClassData(),
+				individual);
 	}
 
 	/**
-	 * Method computes the confusion values for all the attributes.
+	 * Method returns confusion matrix of the individual on data of this
+	 * function (or its actual subsample). The matrix is shared by all the fitness functions that work
+	 * with the same data, so the data are traversed only once per changed
+	 * individual.
 	 * 
 	 * @param individual
-	 *            for which we compute confusion values
-	 * @return array of confusion values
+	 *            for which we get confusion matrix
+	 * @return confusion matrix [true class][predicted class]
 	 */
-	public double[] getConfusionValues(TreeIndividual individual) {
-		if (data.isGenLibInstances()) {
-			return totalConfusionValues(data.toGenLibInstances(), individual);
-		}
-		if (data.isInstances()) {
-			return totalConfusionValues(data.toInstances(), individual);
-		}
+	protected int[][] getConfusionMatrix(TreeIndividual individual) {
+		return individual.getConfusionMatrix(data.getSampleData());
+	}
 
-		return Utils.empty_double_array;
+	/**
+	 * Method returns condition positives of each class (row sums of the
+	 * confusion matrix). They are counted from the matrix itself, so they
+	 * always match the (sub)sample on which the matrix was counted.
+	 * 
+	 * @param matrix
+	 *            confusion matrix [true class][predicted class]
+	 * @return number of instances of each class in evaluated data
+	 */
+	protected static double[] getClassCounts(int[][] matrix) {
+		double[] classCounts = new double[matrix.length];
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				classCounts[t] += matrix[t][p];
+			}
+		}
+		return classCounts;
 	}
 
 	/**
@@ -449,56 +456,29 @@ public abstract class TreeConfusionFitness extends
 
 	/**
 	 * Method which returns fitness value for specific atribute. It uses
-	 * GenLibInstances as data.
-	 * 
-	 * @param instances
-	 *            GenLibInstances
-	 * @param individual
-	 *            TreeIndividual on which we compute fitness
-	 * @return value of particular fitness
-	 */
-	protected abstract double attributeConfusionValue(
-			GenLibInstances instances, TreeIndividual individual);
-
-	/**
-	 * Method which returns fitness value for all atributes. It uses
-	 * GenLibInstances as data. It returns array with 1 row. </br> In the first
-	 * row there is fitness values for each attribute. </br>.
-	 * 
-	 * @param instances
-	 *            GenLibInstances
-	 * @param individual
-	 *            TreeIndividual on which we compute fitness
-	 * @return array with fitness values
-	 */
-	protected abstract double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual);
-
-	/**
-	 * Method which returns fitness value for specific atribute. It uses
-	 * Instances from weka as data.
+	 * columnar snapshot of data.
 	 * 
-	 * @param instances
-	 *            Instances
+	 * @param columnar
+	 *            snapshot of data
 	 * @param individual
 	 *            TreeIndividual on which we compute fitness
 	 * @return value of particular fitness
 	 */
-	protected abstract double attributeConfusionValue(Instances instances,
+	protected abstract double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual);
 
 	/**
-	 * Method which returns fitness value for all atributes. It uses Instances
-	 * from weka as data. It returns array with 1 rows. </br> In the first row
+	 * Method which returns fitness value for all atributes. It uses columnar
+	 * snapshot of data. It returns array with 1 row. </br> In the first row
 	 * there is fitness values for each attribute. </br>
 	 * 
-	 * @param instances
-	 *            Instances
+	 * @param columnar
+	 *            snapshot of data
 	 * @param individual
 	 *            TreeIndividual on which we compute fitness
 	 * @return array with fitness values
 	 */
-	protected abstract double[] totalConfusionValues(Instances instances,
+	protected abstract double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual);
 
 	/**
@@ -4,17 +4,11 @@ import genlib.evolution.individuals.TreeIndividual;
 import genlib.locales.PermMessages;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
+import genlib.structures.data.ColumnarData;
 
-import java.util.Enumeration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import weka.core.Instance;
-import weka.core.Instances;
-
 /**
  * Fitness function that computes f-measure with parameter beta for population
  * and its individuals. It extends from FitnessFunction<TreeIndividual> so it
@@ -159,150 +153,17 @@ public class TreeFMeasureFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0, top = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int pClass = (int) root.getValue();
-			if (pClass != attrIndex) {
-				root = individual.getRootNode();
-				continue;
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			if (tClass == pClass) {
-				// add true positives for attribute
-				tp += 1;
-			}
-			top += 1;
-
-			root = individual.getRootNode();
-		}
-
-		double precision = tp / top;
-		double recall = tp / data.getClassCounts()[attrIndex];
-
-		return (1 + doubleBeta) * precision * recall
-				/ (doubleBeta * precision + recall);
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] precisionArray = new double[instances.numClasses()];
-		double[] recallArray = new double[instances.numClasses()];
-		// in the end will serve the purpose of f-measure array
-		double[] topArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				// add true positives for attribute
-				precisionArray[tClass] += 1;
-			}
-
-			topArray[pClass] += 1;
-			root = individual.getRootNode();
-		}
-
-		double[] classCounts = data.getClassCounts();
-		for (int i = 0; i < precisionArray.length; i++) {
-			// divide true positives (saved in precision array)
-			// with all the positives will give recall
-			recallArray[i] = precisionArray[i] / classCounts[i];
-			// divide with all the test positives will give precision
-			precisionArray[i] /= topArray[i];
-			// compute f-measure into top-array
-			topArray[i] = (1 + doubleBeta) * precisionArray[i] * recallArray[i]
-					/ (doubleBeta * precisionArray[i] + recallArray[i]);
-		}
-
-		return topArray;
-
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0, top = 0;
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
+		int[][] matrix = getConfusionMatrix(individual);
+		double tp = matrix[attrIndex][attrIndex], top = 0;
 
-			int pClass = (int) root.getValue();
-			if (pClass != attrIndex) {
-				root = individual.getRootNode();
-				continue;
-			}
-
-			int tClass = (int) instance.classValue();
-			if (tClass == pClass) {
-				tp += 1;
-			}
-			top += 1;
-
-			root = individual.getRootNode();
+		for (int t = 0; t < matrix.length; t++) {
+			top += matrix[t][attrIndex];
 		}
 
 		double precision = tp / top;
-		double recall = tp / data.getClassCounts()[attrIndex];
+		double recall = tp / getClassCounts(matrix)[attrIndex];
 
 		return (1 + doubleBeta) * precision * recall
 				/ (doubleBeta * precision + recall);
@@ -311,43 +172,24 @@ public class TreeFMeasureFitness extends TreeConfusionFitness {
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double[] totalConfusionValues(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] precisionArray = new double[instances.numClasses()];
-		double[] recallArray = new double[instances.numClasses()];
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] precisionArray = new double[matrix.length];
+		double[] recallArray = new double[matrix.length];
 		// in the end will serve the purpose of f-measure array
-		double[] topArray = new double[instances.numClasses()];
+		double[] topArray = new double[matrix.length];
 
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
+		for (int t = 0; t < matrix.length; t++) {
+			// add true positives for attribute
+			precisionArray[t] = matrix[t][t];
+			for (int p = 0; p < matrix.length; p++) {
+				topArray[p] += matrix[t][p];
 			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				precisionArray[tClass] += 1;
-			}
-
-			topArray[pClass] += 1;
-			root = individual.getRootNode();
 		}
 
-		double[] classCounts = data.getClassCounts();
+		double[] classCounts = getClassCounts(matrix);
 		for (int i = 0; i < precisionArray.length; i++) {
 			// divide true positives (saved in precision array)
 			// with all the positives will give recall
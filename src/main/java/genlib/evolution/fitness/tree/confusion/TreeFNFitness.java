@@ -1,14 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-
-import java.util.Enumeration;
-
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes false negative value/values from confusion
@@ -46,34 +39,15 @@ public class TreeFNFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
+		int[][] matrix = getConfusionMatrix(individual);
 		double fnValue = 0;
 
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass == attrIndex && pClass != attrIndex) {
-				fnValue += 1;
+		for (int p = 0; p < matrix.length; p++) {
+			if (p != attrIndex) {
+				fnValue += matrix[attrIndex][p];
 			}
-			
-			root = individual.getRootNode();
 		}
 
 		return fnValue;
@@ -83,111 +57,19 @@ public class TreeFNFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] fnArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				fnArray[tClass] += 1;
-			}
-			
-			root = individual.getRootNode();
-		}
-		
-		return fnArray;
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double fnValue = 0;
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] fnArray = new double[matrix.length];
 
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				if (t != p) {
+					fnArray[t] += matrix[t][p];
 				}
 			}
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass == attrIndex && pClass != attrIndex) {
-				fnValue += 1;
-			}
-			
-			root = individual.getRootNode();
 		}
 
-		return fnValue;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double[] totalConfusionValues(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] fnArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				fnArray[tClass] += 1;
-			}
-			
-			root = individual.getRootNode();
-		}
-		
 		return fnArray;
 	}
 
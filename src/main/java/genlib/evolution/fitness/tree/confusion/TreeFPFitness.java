@@ -1,13 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
-import java.util.Enumeration;
-
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes false positive value/values from confusion
@@ -37,108 +31,15 @@ public class TreeFPFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double fpValue = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass != attrIndex && pClass == attrIndex) {
-				fpValue += 1;
-			}
-
-			root = individual.getRootNode();
-		}
-
-		return fpValue;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] fpArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				fpArray[pClass] += 1;
-			}
-
-			root = individual.getRootNode();
-		}
-
-		return fpArray;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
+		int[][] matrix = getConfusionMatrix(individual);
 		double fpValue = 0;
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
 
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass != attrIndex && pClass == attrIndex) {
-				fpValue += 1;
+		for (int t = 0; t < matrix.length; t++) {
+			if (t != attrIndex) {
+				fpValue += matrix[t][attrIndex];
 			}
-
-			root = individual.getRootNode();
 		}
 
 		return fpValue;
@@ -147,36 +48,18 @@ public class TreeFPFitness extends TreeConfusionFitness {
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double[] totalConfusionValues(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] fpArray = new double[instances.numClasses()];
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] fpArray = new double[matrix.length];
 
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				if (t != p) {
+					fpArray[p] += matrix[t][p];
 				}
 			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				fpArray[pClass] += 1;
-			}
-
-			root = individual.getRootNode();
 		}
 
 		return fpArray;
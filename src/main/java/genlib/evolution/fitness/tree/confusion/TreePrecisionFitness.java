@@ -1,14 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-
-import java.util.Enumeration;
-
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes sensitivity/recall for population and its
@@ -38,42 +31,13 @@ public class TreePrecisionFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0, top = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}			
+		int[][] matrix = getConfusionMatrix(individual);
+		double tp = matrix[attrIndex][attrIndex], top = 0;
 
-			int pClass = (int) root.getValue();
-			if (pClass != attrIndex) {
-				root = individual.getRootNode();
-				continue;
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			if (tClass == pClass) {
-				// add true positives for attribute
-				tp += 1;
-			}
-			top += 1;
-
-			root = individual.getRootNode();
+		for (int t = 0; t < matrix.length; t++) {
+			top += matrix[t][attrIndex];
 		}
 
 		return tp / top;
@@ -83,129 +47,19 @@ public class TreePrecisionFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] precisionArray = new double[instances.numClasses()];
-		double[] topArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}			
-
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				// add true positives for attribute
-				precisionArray[tClass] += 1;
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] precisionArray = new double[matrix.length];
+		double[] topArray = new double[matrix.length];
+
+		for (int t = 0; t < matrix.length; t++) {
+			precisionArray[t] = matrix[t][t];
+			for (int p = 0; p < matrix.length; p++) {
+				topArray[p] += matrix[t][p];
 			}
-			
-			topArray[pClass] += 1;
-			root = individual.getRootNode();
 		}
 
-		for (int i = 0; i < precisionArray.length; i++) {
-			// divide with all the positives will give recall
-			precisionArray[i] /= topArray[i];
-		}
-		
-		return precisionArray;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0, top = 0;
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}			
-
-			int pClass = (int) root.getValue();
-			if (pClass != attrIndex) {
-				root = individual.getRootNode();
-				continue;
-			}
-
-			int tClass = (int) instance.classValue();
-			if (tClass == pClass) {
-				tp += 1;
-			}
-			top += 1;
-
-			root = individual.getRootNode();
-		}
-
-		return tp / top;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double[] totalConfusionValues(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] precisionArray = new double[instances.numClasses()];
-		double[] topArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				precisionArray[tClass] += 1;
-			}
-			
-			topArray[pClass] += 1;
-			root = individual.getRootNode();
-		}
-		
 		for (int i = 0; i < precisionArray.length; i++) {
 			// divide with all the test positives will give precision
 			precisionArray[i] /= topArray[i];
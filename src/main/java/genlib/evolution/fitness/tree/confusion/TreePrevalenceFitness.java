@@ -1,12 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstances;
-
-import java.util.Enumeration;
-
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes prevalence for population and its individuals.
@@ -33,75 +28,29 @@ public class TreePrevalenceFitness extends TreeConfusionFitness {
 	}
 
 	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
-			TreeIndividual individual) {
-		return instances.getDistribution().getClassCounts()[attrIndex]
-				/ instances.numInstances();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		int numInstances = instances.numInstances();
-		double[] prevalArray = new double[numInstances];
-		prevalArray = instances.getDistribution().getClassCounts();
-
-		for (int i = 0; i < prevalArray.length; i++) {
-			prevalArray[i] /= numInstances;			
-		}
-
-		return prevalArray;
-	}
-
-	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} </p> Prevalence is taken from the counts of classes of
+	 * snapshot, which chunked data count chunk by chunk.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		double preval = 0d;
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-
-			int tClass = (int) instance.classValue();
-
-			if (tClass == attrIndex) {
-				preval += 1;
-			}
-		}
-
-		return preval / instances.numInstances();
+		int[] counts = columnar.classCounts();
+		double preval = attrIndex < counts.length ? counts[attrIndex] : 0;
+		return preval / columnar.numInstances();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double[] totalConfusionValues(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		int numInstances = instances.numInstances();
-		double[] prevalArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-
-			int tClass = (int) instance.classValue();
-			prevalArray[tClass]++;
-		}
+		int numInstances = columnar.numInstances();
+		int[] counts = columnar.classCounts();
+		double[] prevalArray = new double[columnar.numClasses()];
 
 		for (int i = 0; i < prevalArray.length; i++) {
-			prevalArray[i] /= numInstances;
+			prevalArray[i] = (double) counts[i] / numInstances;
 		}
 
 		return prevalArray;
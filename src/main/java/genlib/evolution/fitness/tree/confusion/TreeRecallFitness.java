@@ -1,14 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-
-import java.util.Enumeration;
-
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes sensitivity/recall for population and its
@@ -38,174 +31,31 @@ public class TreeRecallFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			int tClass = (int) instance.getValueOfClass();
-
-			if (tClass != attrIndex) {
-				continue;
-			}
-
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int pClass = (int) root.getValue();
-			if (pClass == attrIndex) {
-				tp += 1;
-			}
-			
-			root = individual.getRootNode();
-		}
-
-		return tp / data.getClassCounts()[attrIndex];
+		int[][] matrix = getConfusionMatrix(individual);
+		double tp = matrix[attrIndex][attrIndex];
 
+		return tp / getClassCounts(matrix)[attrIndex];
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] recallArray = new double[instances.numClasses()];		
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			if (tClass == (int) root.getValue()) {
-				// add true positives for attribute
-				recallArray[tClass] += 1;
-			}
-			
-			root = individual.getRootNode();
-		}
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] recallArray = new double[matrix.length];
 
-		double[] classCounts = data.getClassCounts(); 
+		double[] classCounts = getClassCounts(matrix);
 		for (int i = 0; i < recallArray.length; i++) {
 			// divide with all the positives will give recall
-			recallArray[i] /= classCounts[i];
+			recallArray[i] = matrix[i][i] / classCounts[i];
 		}
 
 		return recallArray;
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tp = 0d;		
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			int tClass = (int) instance.classValue();
-
-			if (tClass != attrIndex) {
-				continue;
-			}
-
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-
-			if (attrIndex == (int) root.getValue()) {
-				// add true positives for attribute
-				tp += 1;
-			}			
-
-			root = individual.getRootNode();
-		}
-
-		return tp / data.getClassCounts()[attrIndex];
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double[] totalConfusionValues(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] recallArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.classValue();
-			if (tClass == (int) root.getValue()) {
-				recallArray[tClass] += 1;
-			}
-			
-			root = individual.getRootNode();
-		}
-
-		double[] classCounts = data.getClassCounts(); 
-		for (int i = 0; i < recallArray.length; i++) {
-			// divide with all the positives will give recall
-			recallArray[i] /= classCounts[i];
-		}
-
-		return recallArray;
-	}
 	
 }
@@ -1,14 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-
-import java.util.Enumeration;
-
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes specificity for population and its
@@ -38,139 +31,22 @@ public class TreeSpecificityFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double specificity = 0;
-		double cn = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-
-			if (tClass != attrIndex) {
-				cn += 1;
-				if (pClass != attrIndex) {
-					specificity += 1;
-				}
-			}
-
-			root = individual.getRootNode();
-
-		}
-
-		return specificity / cn;
-
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		// firstly here will be inverse to condition negative => numInstances -
-		// inv_cn = cn
-		double[] specificity = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-
-			if (tClass == pClass) {
-				specificity[tClass] += 1;
-			} else {
-				specificity[tClass] += 1;
-				specificity[pClass] += 1;
-			}
-
-			root = individual.getRootNode();
-
-		}
-
-		// stored condition positives for each attribute. numinstances - cp = cn
-		double[] classes = data.getClassCounts();
-		for (int i = 0; i < specificity.length; i++) {
-			specificity[i] = (instances.numInstances() - specificity[i])
-					/ (instances.numInstances() - classes[i]);
-		}
-
-		return specificity;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
+		int[][] matrix = getConfusionMatrix(individual);
 		double specificity = 0;
 		double cn = 0;
 
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
+		for (int t = 0; t < matrix.length; t++) {
+			if (t == attrIndex) {
+				continue;
 			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-
-			if (tClass != attrIndex) {
-				cn += 1;
-				if (pClass != attrIndex) {
-					specificity += 1;
+			for (int p = 0; p < matrix.length; p++) {
+				cn += matrix[t][p];
+				if (p != attrIndex) {
+					specificity += matrix[t][p];
 				}
 			}
-
-			root = individual.getRootNode();
 		}
 
 		return specificity / cn;
@@ -179,50 +55,31 @@ public class TreeSpecificityFitness extends TreeConfusionFitness {
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double[] totalConfusionValues(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
+		int[][] matrix = getConfusionMatrix(individual);
+		// instances counted in the matrix (the actual subsample)
+		int numInstances = 0;
 		// firstly here will be inverse to condition negative => numInstances -
 		// inv_cn = cn
-		double[] specificity = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
+		double[] specificity = new double[matrix.length];
+
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				numInstances += matrix[t][p];
+				specificity[t] += matrix[t][p];
+				if (t != p) {
+					specificity[p] += matrix[t][p];
 				}
 			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-
-			if (tClass == pClass) {
-				specificity[tClass] += 1;
-			} else {
-				specificity[tClass] += 1;
-				specificity[pClass] += 1;
-			}
-
-			root = individual.getRootNode();
-
 		}
 
 		// stored condition positives for each attribute. numinstances - cp = cn
-		double[] classes = data.getClassCounts();
+		double[] classes = getClassCounts(matrix);
 		for (int i = 0; i < specificity.length; i++) {
-			specificity[i] = (instances.numInstances() - specificity[i])
-					/ (instances.numInstances() - classes[i]);
+			specificity[i] = (numInstances - specificity[i])
+					/ (numInstances - classes[i]);
 		}
 
 		return specificity;
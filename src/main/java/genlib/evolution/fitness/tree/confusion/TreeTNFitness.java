@@ -1,13 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
-import java.util.Enumeration;
-
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes true negative value/values from confusion
@@ -37,112 +31,17 @@ public class TreeTNFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tnValue = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass != attrIndex && pClass != attrIndex) {
-				tnValue += 1;
-			}
-
-			root = individual.getRootNode();
-		}
-
-		return tnValue;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] tnArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				for (int i = 0; i < instances.numClasses(); i++) {
-					if (i != tClass && i != pClass) {
-						tnArray[i] += 1;
-					}
-				}
-			}
-
-			root = individual.getRootNode();
-		}
-
-		return tnArray;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
+		int[][] matrix = getConfusionMatrix(individual);
 		double tnValue = 0;
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
 
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				if (t != attrIndex && p != attrIndex) {
+					tnValue += matrix[t][p];
 				}
 			}
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass != attrIndex && pClass != attrIndex) {
-				tnValue += 1;
-			}
-
-			root = individual.getRootNode();
 		}
 
 		return tnValue;
@@ -151,40 +50,25 @@ public class TreeTNFitness extends TreeConfusionFitness {
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
-	protected double[] totalConfusionValues(Instances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] tnArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] tnArray = new double[matrix.length];
+
+		// only misclassified instances are counted as true negatives for the
+		// classes that are neither true nor predicted class
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				if (t == p) {
+					continue;
 				}
-			}
-
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass != pClass) {
-				for (int i = 0; i < instances.numClasses(); i++) {
-					if (i != tClass && i != pClass) {
-						tnArray[i] += 1;
+				for (int i = 0; i < tnArray.length; i++) {
+					if (i != t && i != p) {
+						tnArray[i] += matrix[t][p];
 					}
 				}
 			}
-
-			root = individual.getRootNode();
 		}
 
 		return tnArray;
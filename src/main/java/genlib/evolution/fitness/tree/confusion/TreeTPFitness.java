@@ -1,13 +1,7 @@
 package genlib.evolution.fitness.tree.confusion;
 
-import java.util.Enumeration;
-
 import genlib.evolution.individuals.TreeIndividual;
-import genlib.structures.data.GenLibInstance;
-import genlib.structures.data.GenLibInstances;
-import genlib.structures.trees.Node;
-import weka.core.Instance;
-import weka.core.Instances;
+import genlib.structures.data.ColumnarData;
 
 /**
  * Fitness function that computes true positive value/values from confusion
@@ -37,144 +31,24 @@ public class TreeTPFitness extends TreeConfusionFitness {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double attributeConfusionValue(GenLibInstances instances,
+	protected double attributeConfusionValue(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tpValue = 0;
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass == attrIndex && pClass == attrIndex) {
-				tpValue += 1;
-			}
-
-			root = individual.getRootNode();
-		}
+		int[][] matrix = getConfusionMatrix(individual);
 
-		return tpValue;
+		return matrix[attrIndex][attrIndex];
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected double[] totalConfusionValues(GenLibInstances instances,
+	protected double[] totalConfusionValues(ColumnarData columnar,
 			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] tpArray = new double[instances.numClasses()];
-
-		Enumeration<GenLibInstance> eInstances = instances.getInstances();
-		while (eInstances.hasMoreElements()) {
-			GenLibInstance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.getAttribute(root.getAttribute()).isNumeric()) {
-					if (instance.getValueOfAttribute(root.getAttribute()) < root
-							.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance
-							.getValueOfAttribute(root.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.getValueOfClass();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				tpArray[tClass] += 1;
-			}
-
-			root = individual.getRootNode();
-		}
-		return tpArray;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double attributeConfusionValue(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double tpValue = 0;
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass == attrIndex && pClass == attrIndex) {
-				tpValue += 1;
-			}
-
-			root = individual.getRootNode();
-		}
-
-		return tpValue;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@SuppressWarnings("unchecked")
-	@Override
-	protected double[] totalConfusionValues(Instances instances,
-			TreeIndividual individual) {
-		Node root = individual.getRootNode();
-		double[] tpArray = new double[instances.numClasses()];
-
-		Enumeration<Instance> eInstances = instances.enumerateInstances();
-		while (eInstances.hasMoreElements()) {
-			Instance instance = eInstances.nextElement();
-			while (!root.isLeaf()) {
-				if (instance.attribute(root.getAttribute()).isNumeric()) {
-					if (instance.value(root.getAttribute()) < root.getValue()) {
-						root = root.getChildAt(0);
-					} else {
-						root = root.getChildAt(1);
-					}
-				} else {
-					root = root.getChildAt((int) instance.value(root
-							.getAttribute()));
-				}
-			}
-			int tClass = (int) instance.classValue();
-			int pClass = (int) root.getValue();
-			if (tClass == pClass) {
-				tpArray[tClass] += 1;
-			}
+		int[][] matrix = getConfusionMatrix(individual);
+		double[] tpArray = new double[matrix.length];
 
-			root = individual.getRootNode();
+		for (int i = 0; i < tpArray.length; i++) {
+			tpArray[i] = matrix[i][i];
 		}
 
 		return tpArray;
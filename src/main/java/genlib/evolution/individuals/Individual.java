@@ -35,6 +35,11 @@ public abstract class Individual implements Serializable {
 	protected double complexFitness = 0;
 	/** true/false depending whether individual has changed or hasn't */
 	protected boolean hasChanged = true;
+	/**
+	 * true iff fitness values are only estimated (lower bounds from racing
+	 * evaluation) and they are not computed on all the data
+	 */
+	protected boolean fitnessEstimated = false;
 
 	/**
 	 * Method which will set value of fitness into array of fitnesses in this
@@ -120,6 +125,27 @@ public abstract class Individual implements Serializable {
 		return hasChanged;
 	}
 
+	/**
+	 * Gets the flag whether the fitness values are only estimated (lower
+	 * bounds from racing evaluation stopped early). Estimated individual
+	 * stays changed, so the exact fitness is computed when it is needed.
+	 * 
+	 * @return true iff fitness values are estimated
+	 */
+	public boolean isFitnessEstimated() {
+		return fitnessEstimated;
+	}
+
+	/**
+	 * Sets the flag whether the fitness values are only estimated.
+	 * 
+	 * @param fitnessEstimated
+	 *            true iff fitness values are estimated
+	 */
+	public void setFitnessEstimated(boolean fitnessEstimated) {
+		this.fitnessEstimated = fitnessEstimated;
+	}
+
 	/**
 	 * Method makes copy of individual fields.
 	 * 
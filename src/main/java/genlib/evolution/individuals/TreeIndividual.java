@@ -1,17 +1,27 @@
 package genlib.evolution.individuals;
 
+import genlib.configurations.Config;
+import genlib.evolution.fitness.FitnessEvaluator;
 import genlib.evolution.fitness.FitnessFunction;
+import genlib.structures.Data;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.extensions.HashExtension;
 import genlib.structures.extensions.HeightExtension;
 import genlib.structures.extensions.LeavesCountExtension;
 import genlib.structures.extensions.SizeExtension;
 import genlib.structures.trees.BinaryHeightNode;
 import genlib.structures.trees.BinaryNode;
+import genlib.structures.trees.FlatTree;
 import genlib.structures.trees.MultiWayHeightNode;
 import genlib.structures.trees.MultiWayNode;
 import genlib.structures.trees.Node;
+import genlib.structures.trees.TreePartition;
 import genlib.utils.Utils;
 
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class that extends Individual interface used when working with trees from
@@ -27,6 +37,24 @@ public class TreeIndividual extends Individual {
 	private static final long serialVersionUID = -3453723130233326900L;
 	/** root node of this tree individual */
 	protected Node root;
+	/**
+	 * confusion matrices of this tree for each data split, dropped when
+	 * individual changes
+	 */
+	private transient IdentityHashMap<Data, int[][]> confusionMatrices;
+	/**
+	 * partitions of rows (with class histograms of leaves) of this tree for
+	 * each data split, dropped or updated when individual changes
+	 */
+	private transient IdentityHashMap<Data, TreePartition> partitions;
+	/**
+	 * true if the partitions can be referenced from elsewhere (by copies of
+	 * individual or by caller of {@link #getPartition(Data)}), so they must
+	 * be copied when updated
+	 */
+	private transient boolean partitionsShared;
+	/** flattened form of the tree, dropped when individual changes */
+	private transient FlatTree flatTree;
 
 	/**
 	 * Copy constructor that copies the TreeIndividual from the parameters. It
@@ -39,10 +67,23 @@ public class TreeIndividual extends Individual {
 	public TreeIndividual(TreeIndividual toCopy) {
 		this.root = toCopy.root.copy();
 		this.hasChanged = toCopy.hasChanged;
+		this.fitnessEstimated = toCopy.fitnessEstimated;
 		this.complexFitness = toCopy.complexFitness;
 		this.fitness = new double[toCopy.fitness.length];
 		System.arraycopy(toCopy.fitness, 0, this.fitness, 0,
 				this.fitness.length);
+		synchronized (toCopy) {
+			this.flatTree = toCopy.flatTree;
+			if (toCopy.confusionMatrices != null) {
+				this.confusionMatrices = new IdentityHashMap<>(
+						toCopy.confusionMatrices);
+			}
+			if (toCopy.partitions != null) {
+				this.partitions = new IdentityHashMap<>(toCopy.partitions);
+				this.partitionsShared = true;
+				toCopy.partitionsShared = true;
+			}
+		}
 	}
 
 	/**
@@ -158,6 +199,315 @@ public class TreeIndividual extends Individual {
 
 	}
 
+	/**
+	 * Get structural hash of a created tree individual. If the root is instance
+	 * of {@link HashExtension} than it uses the value from the root. Otherwise
+	 * uses {@link Utils#computeTreeHash(Node)}
+	 * 
+	 * @return Structural hash of tree in this individual
+	 */
+	public long getTreeHash() {
+		if (root instanceof HashExtension) {
+			return ((HashExtension) root).getTreeHash();
+		} else {
+			return Utils.computeTreeHash(root);
+		}
+	}
+
+	/**
+	 * Method returns confusion matrix of this tree on the data. Matrix is
+	 * derived from class histograms of leaves (see
+	 * {@link #getLeafHistograms(Data)}) and it is cached for this data until
+	 * the individual changes, so every fitness function based on confusion
+	 * matrix shares the same pass. In data-parallel mode of
+	 * {@link FitnessEvaluator} the histograms are computed in chunks of rows by
+	 * threads of the pool (unless the partition is already cached). Trees with
+	 * only nominal splits are evaluated with bitsets of the data (see
+	 * {@link FlatTree#bitsetHistograms(ColumnarData)}). Chunked data are
+	 * evaluated chunk by chunk and the matrices of chunks are summed (fitness
+	 * functions count the matrices of all changed individuals in one pass over
+	 * the chunks beforehand). Returned matrix should not be modified.
+	 * 
+	 * @param data
+	 *            on which we compute confusion matrix
+	 * @return confusion matrix [true class][predicted class]
+	 */
+	public synchronized int[][] getConfusionMatrix(Data data) {
+		if (confusionMatrices == null) {
+			confusionMatrices = new IdentityHashMap<>();
+		}
+
+		int[][] matrix = confusionMatrices.get(data);
+		if (matrix == null && data.isChunked()) {
+			matrix = new int[data.numClasses()][data.numClasses()];
+			for (int chunk = 0; chunk < data.numChunks(); chunk++) {
+				int[][] chunkMatrix = data.getChunk(chunk).confusionMatrix(
+						getFlatTree());
+				for (int t = 0; t < matrix.length; t++) {
+					for (int p = 0; p < matrix.length; p++) {
+						matrix[t][p] += chunkMatrix[t][p];
+					}
+				}
+			}
+			confusionMatrices.put(data, matrix);
+		}
+		if (matrix == null) {
+			ColumnarData columnar = data.getColumnarData();
+			ForkJoinPool pool = FitnessEvaluator.getDataParallelPool();
+			// errors of rows are taken later from the partition
+			boolean partitioned = (partitions != null && partitions
+					.containsKey(data)) || keepsPartition(data);
+			int[][] histograms;
+			if (pool != null && !partitioned) {
+				// data-parallel mode, rows are split into chunks
+				histograms = getFlatTree().leafHistograms(columnar, pool,
+						FitnessEvaluator.getChunkSize(pool,
+								columnar.numInstances()));
+			} else if (!partitioned && getFlatTree().isNominal(columnar)) {
+				// only nominal splits, leaves are counted with bitsets
+				histograms = getFlatTree().bitsetHistograms(columnar);
+			} else {
+				histograms = getLeafHistograms(data);
+			}
+			matrix = columnar.confusionMatrix(getFlatTree(), histograms);
+			confusionMatrices.put(data, matrix);
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Tests if the confusion matrix of this tree on the data is already
+	 * computed.
+	 * 
+	 * @param data
+	 *            on which the matrix is computed
+	 * @return true iff the matrix is kept by individual
+	 */
+	public synchronized boolean hasConfusionMatrix(Data data) {
+		return confusionMatrices != null && confusionMatrices.containsKey(data);
+	}
+
+	/**
+	 * Method stores confusion matrix of this tree on the data computed outside
+	 * of individual (for example by
+	 * {@link genlib.evolution.fitness.DataMajorEvaluator}). Matrix is kept until
+	 * the individual changes.
+	 * 
+	 * @param data
+	 *            on which the matrix was computed
+	 * @param matrix
+	 *            confusion matrix [true class][predicted class]
+	 */
+	public synchronized void setConfusionMatrix(Data data, int[][] matrix) {
+		if (confusionMatrices == null) {
+			confusionMatrices = new IdentityHashMap<>();
+		}
+		confusionMatrices.put(data, matrix);
+	}
+
+	/**
+	 * Method returns class histograms of the leaves of this tree on the data.
+	 * Histograms are computed in one pass that partitions the data down the
+	 * tree and they are cached for this data until the individual changes.
+	 * Data with more rows than {@link Config#getFitPartitionRows()} are not
+	 * partitioned, histograms are only counted. Histograms are indexed by
+	 * preorder index of node in {@link #getFlatTree()}. Returned histograms
+	 * should not be modified.
+	 * 
+	 * @param data
+	 *            on which we compute histograms
+	 * @return class histograms of leaves
+	 * @see FlatTree#leafHistograms(genlib.structures.data.ColumnarData)
+	 */
+	public synchronized int[][] getLeafHistograms(Data data) {
+		if (!isPartitioned(data)) {
+			return getFlatTree().leafHistograms(data.getColumnarData());
+		}
+		return partition(data).getHistograms();
+	}
+
+	/**
+	 * Method returns partition of rows of the data by this tree. Partition is
+	 * cached for this data until the individual changes (only if the data
+	 * have at most {@link Config#getFitPartitionRows()} rows, partition keeps
+	 * one index for each row). If the individual is changed with
+	 * {@link #change(Node)} the partition is updated only in the replaced
+	 * subtree.
+	 * 
+	 * @param data
+	 *            on which we compute partition
+	 * @return partition of rows by this tree
+	 */
+	public synchronized TreePartition getPartition(Data data) {
+		partitionsShared = true;
+		return partition(data);
+	}
+
+	/**
+	 * Method returns partition of rows of the data by this tree and caches
+	 * it (see {@link #getPartition(Data)}) without publishing it.
+	 * 
+	 * @param data
+	 *            on which we compute partition
+	 * @return partition of rows by this tree
+	 */
+	private TreePartition partition(Data data) {
+		TreePartition partition = partitions == null ? null : partitions
+				.get(data);
+		if (partition == null) {
+			partition = getFlatTree().partition(data.getColumnarData());
+			if (isPartitioned(data)) {
+				if (partitions == null) {
+					partitions = new IdentityHashMap<>();
+				}
+				partitions.put(data, partition);
+			}
+		}
+
+		return partition;
+	}
+
+	/**
+	 * Method drops the cached partitions of data. Evolution calls it for
+	 * individuals that are no longer targets of operators, because
+	 * partitions are needed only to update evaluation after
+	 * {@link #change(Node)}.
+	 */
+	public synchronized void dropPartitions() {
+		partitions = null;
+		partitionsShared = false;
+	}
+
+	/**
+	 * Tests if the partitions of the data can be kept by individuals.
+	 * 
+	 * @param data
+	 *            on which we compute partition
+	 * @return true iff the data have at most
+	 *         {@link Config#getFitPartitionRows()} rows
+	 */
+	private static boolean isPartitioned(Data data) {
+		return data.numInstances() <= Config.getInstance()
+				.getFitPartitionRows();
+	}
+
+	/**
+	 * Tests if the individuals keep the partitions of the data from
+	 * evaluation (see {@link #getConfusionMatrix(Data)}). It's the subsample
+	 * whose misclassified rows are counted (see {@link Data#isErrorCounted()})
+	 * if it isn't chunked and it can be partitioned.
+	 * 
+	 * @param data
+	 *            on which the individuals are evaluated
+	 * @return true iff the partition is made by evaluation
+	 */
+	public static boolean keepsPartition(Data data) {
+		return data.isErrorCounted() && !data.isChunked()
+				&& isPartitioned(data);
+	}
+
+	/**
+	 * Method increments the counters of rows of the data that this tree
+	 * misclassifies. Partition of the data kept from evaluation is used if
+	 * there is one (see {@link #keepsPartition(Data)} and
+	 * {@link TreePartition#countErrors(int[])}), otherwise the rows are
+	 * classified (chunk by chunk for chunked data).
+	 * 
+	 * @param data
+	 *            on which we count errors
+	 * @param errors
+	 *            counters of rows to increment
+	 */
+	public synchronized void countErrors(Data data, int[] errors) {
+		TreePartition partition = partitions == null ? null : partitions
+				.get(data);
+		if (partition != null) {
+			partition.countErrors(errors);
+			return;
+		}
+
+		FlatTree tree = getFlatTree();
+		for (int chunk = 0, offset = 0; chunk < data.numChunks(); chunk++) {
+			ColumnarData columnar = data.getChunk(chunk);
+			for (int row = 0; row < columnar.numInstances(); row++) {
+				if (columnar.classValue(row) != tree.classify(columnar, row)) {
+					errors[offset + row]++;
+				}
+			}
+			offset += columnar.numInstances();
+		}
+	}
+
+	/**
+	 * Method returns flattened form of the tree that is used for evaluation.
+	 * Flattened tree is created lazily and it is kept until the individual
+	 * changes.
+	 * 
+	 * @return flattened tree of this individual
+	 */
+	public synchronized FlatTree getFlatTree() {
+		if (flatTree == null) {
+			flatTree = new FlatTree(root);
+		}
+
+		return flatTree;
+	}
+
+	/**
+	 * {@inheritDoc} </p> It also drops the cached confusion matrices, leaf
+	 * histograms and flattened tree.
+	 */
+	@Override
+	public synchronized void change() {
+		super.change();
+		confusionMatrices = null;
+		partitions = null;
+		partitionsShared = false;
+		flatTree = null;
+	}
+
+	/**
+	 * Make this individual be recognized as the one that has changed only in
+	 * subtree with root handed as parameter (operator replaced this subtree).
+	 * Cached partitions of data are not dropped but updated, only the rows
+	 * that reached the replaced node are routed through the new subtree, so
+	 * the next evaluation does not traverse whole data. Array of row indices
+	 * is updated in place unless the partitions are shared with other
+	 * individuals. If the subtree isn't part of this tree, it behaves as
+	 * {@link #change()}.
+	 * 
+	 * @param subtree
+	 *            root of the replaced subtree
+	 */
+	public synchronized void change(Node subtree) {
+		FlatTree oldTree = flatTree;
+		IdentityHashMap<Data, TreePartition> oldPartitions = partitions;
+		boolean inPlace = !partitionsShared;
+		change();
+
+		if (oldTree == null || oldPartitions == null) {
+			return;
+		}
+
+		int node = Utils.getNodeIndex(root, subtree);
+		if (node <= 0) {
+			return;
+		}
+
+		partitions = new IdentityHashMap<>();
+		for (Map.Entry<Data, TreePartition> entry : oldPartitions.entrySet()) {
+			TreePartition partition = entry.getValue();
+			// partition is valid only for the same tree and rows
+			if (partition.getTree() == oldTree
+					&& partition.getColumnarData() == entry.getKey()
+							.getColumnarData()) {
+				partitions.put(entry.getKey(),
+						partition.update(getFlatTree(), node, inPlace));
+			}
+		}
+	}
+
 	/**
 	 * Method that set the root of this individual.
 	 * 
@@ -167,6 +517,12 @@ public class TreeIndividual extends Individual {
 	public void setRoot(Node root) {
 		root.setParent(null);
 		this.root = root;
+		synchronized (this) {
+			confusionMatrices = null;
+			partitions = null;
+			partitionsShared = false;
+			flatTree = null;
+		}
 	}
 
 	/**
@@ -95,6 +95,7 @@ public class DecisionStumpMutation implements Operator<TreeIndividual> {
 				
 				int sIndex = random.nextInt(stumps.length);				
 				Node nodeToMutateParent = nodeToMutate.getParent();
+				Node mutated = null;
 
 				if (nodeToMutateParent == null) {
 					child.setRoot(stumps[sIndex].getRootNode().copy());
@@ -104,14 +105,15 @@ public class DecisionStumpMutation implements Operator<TreeIndividual> {
 							nodeToMutateParent.setChildAt(i, stumps[sIndex]
 									.getRootNode().copy());
 							Utils.fixNode(nodeToMutateParent.getChildAt(i));
+							mutated = nodeToMutateParent.getChildAt(i);
 							break;
 						}
 					}
 				}
 				
 				
-				// change to recompute fitness
-				child.change();
+				// change to recompute fitness (only in mutated subtree)
+				child.change(mutated);
 			}
 
 			leaves.clear();
@@ -132,6 +134,10 @@ public class DecisionStumpMutation implements Operator<TreeIndividual> {
 	private void createStumps(Node node) {
 		WekaSimpleStumpGenerator wekaSSGen = new WekaSimpleStumpGenerator();
 		wekaSSGen.setInstances(data.toInstances());
+		if (!data.isChunked()) {
+			// presorted rows of views are filtered from their source data
+			wekaSSGen.setSortedRows(data.getSortedRows());
+		}
 		if (node instanceof MultiWayNode) {
 			wekaSSGen.setAutoHeight(false);
 		}
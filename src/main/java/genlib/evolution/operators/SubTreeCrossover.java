@@ -74,9 +74,6 @@ public class SubTreeCrossover implements Operator<TreeIndividual> {
 
 			if (random.nextDouble() < xProb) {
 				crossIndividuals(child1, child2);
-
-				child1.change();
-				child2.change();
 			}
 
 			childs.add(child1);
@@ -86,7 +83,8 @@ public class SubTreeCrossover implements Operator<TreeIndividual> {
 
 	/**
 	 * Method which apply the crossover on individuals. Random chosen subtree is
-	 * changed between individuals.
+	 * changed between individuals. Individuals are changed only in the
+	 * exchanged subtrees (see {@link TreeIndividual#change(Node)}).
 	 * 
 	 * @param c1
 	 *            First child individual
@@ -123,6 +121,7 @@ public class SubTreeCrossover implements Operator<TreeIndividual> {
 		Node parent1 = subTree1.getParent();
 		Node parent2 = subTree2.getParent();
 
+		Node changed1 = subTree2, changed2 = subTree1;
 		if (parent1 == null) {
 			c1.setRoot(subTree2);
 		} else {
@@ -130,6 +129,7 @@ public class SubTreeCrossover implements Operator<TreeIndividual> {
 				if (parent1.getChildAt(i) == subTree1) {
 					parent1.setChildAt(i, subTree2);
 					Utils.fixNode(parent1.getChildAt(i));
+					changed1 = parent1.getChildAt(i);
 				}
 			}
 		}
@@ -141,10 +141,15 @@ public class SubTreeCrossover implements Operator<TreeIndividual> {
 				if (parent2.getChildAt(i) == subTree2) {
 					parent2.setChildAt(i, subTree1);
 					Utils.fixNode(parent2.getChildAt(i));
+					changed2 = parent2.getChildAt(i);
 				}
 			}
 		}
 
+		// change to recompute fitness
+		c1.change(changed1);
+		c2.change(changed2);
+
 	}
 
 	/**
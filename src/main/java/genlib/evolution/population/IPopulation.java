@@ -1,5 +1,6 @@
 package genlib.evolution.population;
 
+import genlib.evolution.fitness.FitnessEvaluator;
 import genlib.evolution.fitness.comparators.FitnessComparator;
 import genlib.evolution.individuals.Individual;
 import genlib.evolution.operators.Operator;
@@ -151,6 +152,17 @@ public interface IPopulation<T extends Individual> {
 	 */
 	public void computeFitness(final int nThreads, final int blockSize);
 
+	/**
+	 * Method that is used to compute fitness for all of the individuals inside
+	 * this population with the evaluator (and its threads).
+	 * 
+	 * @param evaluator
+	 *            service that computes fitness
+	 * @param blockSize
+	 *            number of individuals processed simultaneously by one thread
+	 */
+	public void computeFitness(FitnessEvaluator evaluator, int blockSize);
+
 	/**
 	 * Method that sort the individuals.
 	 */
@@ -1,7 +1,7 @@
 package genlib.evolution.population;
 
 import genlib.configurations.Config;
-import genlib.evolution.fitness.FitnessFunction;
+import genlib.evolution.fitness.FitnessEvaluator;
 import genlib.evolution.fitness.comparators.FitnessComparator;
 import genlib.evolution.individuals.Individual;
 import genlib.evolution.operators.Operator;
@@ -15,9 +15,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Concrete implementation of IPopulation that serves as the default container
@@ -239,55 +236,19 @@ public class Population<T extends Individual> implements Serializable,
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} </p> It uses the shared {@link FitnessEvaluator} with
+	 * nThreads threads.
 	 */
 	public void computeFitness(final int nThreads, final int blockSize) {
-		if (nThreads > 1) {
-			ExecutorService es = Executors.newFixedThreadPool(nThreads);
-
-			if (blockSize == 1) {
-				// execution of individual one by one
-				for (final FitnessFunction<T> function : comparator
-						.getFitnessFuncs()) {
-					for (final T individual : individuals) {
-						es.submit(new Runnable() {
-							@Override
-							public void run() {
-								function.computeFitness(individual);
-							}
-						});
-					}
-				}
-			} else {
-				// block execution of individuals
-				for (final FitnessFunction<T> function : comparator
-						.getFitnessFuncs()) {
-					for (int i = 0; i < actualSize; i += blockSize) {
-						final int start = i;
-						es.submit(new Runnable() {
-							@Override
-							public void run() {
-								function.computeFitness(individuals, start,
-										start + blockSize);
-							}
-						});
-					}
-				}
-			}
-
-			es.shutdown();
-
-			try {
-				es.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-			} catch (InterruptedException e) {
+		computeFitness(FitnessEvaluator.getShared(nThreads), blockSize);
+	}
 
-			}
-		} else {
-			// in this case block execution is worthless
-			for (FitnessFunction<T> function : comparator.getFitnessFuncs()) {
-				function.computeFitness(this);
-			}
-		}
+	/**
+	 * {@inheritDoc}
+	 */
+	public void computeFitness(FitnessEvaluator evaluator, int blockSize) {
+		evaluator.computeFitness(individuals, comparator.getFitnessFuncs(),
+				blockSize);
 
 		// unchange individuals, because all of the fitness functions has been
 		// computed.
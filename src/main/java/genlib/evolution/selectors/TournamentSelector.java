@@ -1,15 +1,24 @@
 package genlib.evolution.selectors;
 
+import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.fitness.comparators.FitnessComparator;
+import genlib.evolution.fitness.comparators.SingleFitnessComparator;
+import genlib.evolution.fitness.tree.TreeRacingFitness;
 import genlib.evolution.individuals.Individual;
+import genlib.evolution.individuals.TreeIndividual;
 import genlib.evolution.population.IPopulation;
+import genlib.locales.PermMessages;
+import genlib.utils.Utils;
 
 import java.util.ArrayList;
 import java.util.Random;
 
 /**
  * Class that implements selector interface and selects individuals as it's
- * defined by tournament selector for 2 individuals.
+ * defined by tournament selector for 2 individuals. With parameter
+ * <i>RACE,true</i> and comparator of one {@link TreeRacingFitness} function
+ * the tournaments are decided by racing evaluation, so the individuals are
+ * not evaluated on all the data.
  * 
  * @author Lukas Surin
  *
@@ -19,8 +28,12 @@ public class TournamentSelector implements Selector {
 	private static final long serialVersionUID = 2541161181988190800L;
 	/** name of selector */
 	public static final String initName = "Tmt";
+	/** name of parameter that turns on racing */
+	public static final String RACE = "RACE";
 	/** random object */
 	private Random rng;
+	/** true iff tournaments are decided by racing evaluation */
+	private boolean race = false;
 
 	/**
 	 * {@inheritDoc}
@@ -46,7 +59,7 @@ public class TournamentSelector implements Selector {
 			T ind1 = origin.get(i1);
 			T ind2 = origin.get(i2);
 
-			if (comp.compare(ind1, ind2) == -1 && rng.nextDouble() < 0.8) {
+			if (compare(comp, ind1, ind2) == -1 && rng.nextDouble() < 0.8) {
 				if (rng.nextDouble() < 0.8) {
 					dest.add(ind1);
 				} else {
@@ -89,7 +102,7 @@ public class TournamentSelector implements Selector {
 			T ind1 = origin.getIndividual(i1);
 			T ind2 = origin.getIndividual(i2);
 
-			if (origin.getFitnessComparator().compare(ind1, ind2) == -1) {
+			if (compare(origin.getFitnessComparator(), ind1, ind2) == -1) {
 				if (rng.nextDouble() < 0.8) {
 					dest.add(ind1);
 				} else {
@@ -107,6 +120,32 @@ public class TournamentSelector implements Selector {
 		return dest;
 	}
 
+	/**
+	 * Method compares two individuals in tournament. If the racing is turned
+	 * on and the comparator compares only by {@link TreeRacingFitness} than
+	 * the individuals are raced, otherwise the comparator is used.
+	 * 
+	 * @param comp
+	 *            comparator of individuals
+	 * @param ind1
+	 *            first individual
+	 * @param ind2
+	 *            second individual
+	 * @return result of comparison (-1 if the first individual is better)
+	 */
+	private <T extends Individual> int compare(FitnessComparator<T> comp,
+			T ind1, T ind2) {
+		if (race && comp instanceof SingleFitnessComparator) {
+			FitnessFunction<T> function = ((SingleFitnessComparator<T>) comp)
+					.getFunction();
+			if (function instanceof TreeRacingFitness) {
+				return ((TreeRacingFitness) function).race(
+						(TreeIndividual) ind1, (TreeIndividual) ind2);
+			}
+		}
+		return comp.compare(ind1, ind2);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -115,8 +154,21 @@ public class TournamentSelector implements Selector {
 	}
 
 	/**
-	 * This method is not used
+	 * This method sets the parameter RACE (true/false) that turns on racing
+	 * evaluation of tournaments.
 	 */
 	public void setParam(String s) {
+		this.race = false;
+
+		if (s.equals(PermMessages._blank_param)) {
+			return;
+		}
+
+		String[] parts = s.split(Utils.pDELIM);
+		for (int i = 0; i + 1 < parts.length; i += 2) {
+			if (parts[i].equals(RACE)) {
+				this.race = Boolean.parseBoolean(parts[i + 1]);
+			}
+		}
 	}
 }
@@ -4,6 +4,7 @@ import genlib.evolution.individuals.TreeIndividual;
 import genlib.initializators.PopulationInitializator;
 import genlib.initializators.TreePopulationInitializator;
 import genlib.splitfunctions.SplitCriteria;
+import genlib.structures.data.SortedRows;
 
 /**
  * Abstract class (interface) that should be implemented by all generator that
@@ -38,6 +39,8 @@ public abstract class TreeGenerator implements Generator<TreeIndividual> {
 	protected TreeIndividual[] individuals;
 	/** Object of the part of instances */
 	protected Object data;
+	/** Presorted rows of numeric attributes of data, can be null */
+	protected SortedRows sortedRows;
 	/** Generator where all individuals will gather */
 	protected TreeGenerator gatherGen;
 	/** Count of individuals in array */
@@ -79,6 +82,19 @@ public abstract class TreeGenerator implements Generator<TreeIndividual> {
 	@Override
 	public void setInstances(Object data) {
 		this.data = data;
+		this.sortedRows = null;
+	}
+
+	/**
+	 * Method sets the presorted rows of numeric attributes of the instances
+	 * set by {@link #setInstances(Object)}. Generators that search for
+	 * thresholds use them instead of sorting the instances again.
+	 * 
+	 * @param sortedRows
+	 *            presorted rows of instances
+	 */
+	public void setSortedRows(SortedRows sortedRows) {
+		this.sortedRows = sortedRows;
 	}
 
 	/**
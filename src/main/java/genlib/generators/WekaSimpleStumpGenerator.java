@@ -3,17 +3,29 @@ package genlib.generators;
 import genlib.evolution.individuals.TreeIndividual;
 import genlib.exceptions.PopulationInitializationException;
 import genlib.splitfunctions.SplitCriteria;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.DataCache;
+import genlib.structures.data.SortedRows;
 import genlib.structures.trees.Node;
-import genlib.utils.Utils;
+import genlib.utils.WekaUtils;
 import genlib.utils.Utils.Sign;
 import weka.classifiers.trees.j48.C45Split;
 import weka.classifiers.trees.j48.Distribution;
+import weka.classifiers.trees.j48.InfoGainSplitCrit;
 import weka.core.Attribute;
 import weka.core.Instances;
+import weka.core.Utils;
 
 /**
  * Class with tree generator that generates simple stump individuals. It uses
- * C45Split class from Weka to make the best split at roots.
+ * C45Split class from Weka to make the best split at roots. Split points of
+ * numeric attributes are searched in the same way as in C45Split but over the
+ * presorted rows of instances (see {@link #setSortedRows(SortedRows)}), so the
+ * instances aren't sorted for each attribute again. Stumps of the same
+ * instances are generated once per process, they are copied from
+ * {@link DataCache}. Only stumps of whole data are cached, instances whose
+ * presorted rows are filtered from other data (parts, subsamples, views) are
+ * neither hashed nor cached.
  * 
  * @author Lukas Surin
  *
@@ -24,6 +36,10 @@ public class WekaSimpleStumpGenerator extends TreeGenerator {
 	private static final long serialVersionUID = 9199025876883616284L;
 	/** name of this generator */
 	public static final String initName = "wSSGen";
+	/** minimal number of instances in subset of split (as in C45Split) */
+	private static final int MIN_NO_OBJ = 2;
+	/** information gain criterion used to find split points */
+	private static final InfoGainSplitCrit infoGainCrit = new InfoGainSplitCrit();
 
 	/**
 	 * Default constructor for this generator
@@ -56,6 +72,25 @@ public class WekaSimpleStumpGenerator extends TreeGenerator {
 	private TreeIndividual[] createPopulation(Instances data) throws Exception {
 		individuals = new TreeIndividual[data.numAttributes() - 1];
 		individualCount = 0;
+		if (sortedRows == null
+				|| sortedRows.numInstances() != data.numInstances()) {
+			sortedRows = new SortedRows(ColumnarData.fromInstances(data));
+		}
+
+		String key = sortedRows.isSubset() ? null : stumpsKey(data);
+		Object cached = key == null ? null : DataCache.getInstance().get(key);
+		TreeIndividual[] stumps;
+		if (cached instanceof TreeIndividual[]
+				&& matches((TreeIndividual[]) cached, data)) {
+			stumps = (TreeIndividual[]) cached;
+			for (int i = 0; i < individuals.length; i++) {
+				individuals[i] = stumps[i] == null ? null : stumps[i].copy();
+			}
+			individualCount = individuals.length;
+			return individuals;
+		}
+
+		double sumOfWeights = data.sumOfWeights();
 
 		for (int attrIndex = 0; attrIndex < individuals.length; attrIndex++) {
 			Attribute attr = data.attribute(attrIndex);
@@ -69,7 +104,8 @@ public class WekaSimpleStumpGenerator extends TreeGenerator {
 				rootNode.setAttribute(attrIndex);
 				rootNode.setChildCount(attr.numValues());
 				// distribution of classes for each child
-				C45Split split = new C45Split(attrIndex, 2, data.sumOfWeights());
+				C45Split split = new C45Split(attrIndex, MIN_NO_OBJ,
+						sumOfWeights);
 				split.buildClassifier(data);
 				Distribution distribution = split.distribution();
 				for (int bagIndex = 0; bagIndex < attr.numValues(); bagIndex++) {
@@ -89,14 +125,10 @@ public class WekaSimpleStumpGenerator extends TreeGenerator {
 				// nodes
 				rootNode.setAttribute(attrIndex);
 				rootNode.setChildCount(2);
-				// distribution of classes for each child
-				C45Split split = new C45Split(attrIndex, 2, data.sumOfWeights());
-				split.buildClassifier(data);
-				Distribution distribution = split.distribution();
-
-				String[] splitPointString = split.rightSide(0, data).split(
-						Utils.oDELIM);
-				rootNode.setValue(Double.parseDouble(splitPointString[2]));
+				// distribution of classes for each child, split point is set
+				// into root node
+				Distribution distribution = numericSplit(data, attrIndex,
+						sortedRows.getOrder(attrIndex), sumOfWeights, rootNode);
 				rootNode.setSign(Sign.LESSEQ);
 
 				Node child0 = rootNode.newInstance();
@@ -111,9 +143,182 @@ public class WekaSimpleStumpGenerator extends TreeGenerator {
 			individualCount++;
 		}
 
+		if (key == null) {
+			return individuals;
+		}
+		stumps = new TreeIndividual[individuals.length];
+		for (int i = 0; i < individuals.length; i++) {
+			stumps[i] = individuals[i] == null ? null : individuals[i].copy();
+		}
+		// stump has root with its children, counted with their objects
+		DataCache.getInstance().put(key, stumps, 512L * stumps.length);
 		return individuals;
 	}
 
+	/**
+	 * Tests if the cached stumps can be stumps of instances. There must be
+	 * stump for each attribute (except class) with the attribute in root and
+	 * with the number of children of its type.
+	 * 
+	 * @param stumps
+	 *            cached stumps
+	 * @param data
+	 *            instances
+	 * @return true iff the stumps match instances
+	 */
+	private boolean matches(TreeIndividual[] stumps, Instances data) {
+		if (stumps.length != data.numAttributes() - 1) {
+			return false;
+		}
+		for (int attrIndex = 0; attrIndex < stumps.length; attrIndex++) {
+			Attribute attr = data.attribute(attrIndex);
+			if (!attr.isNominal() && !attr.isNumeric()) {
+				if (stumps[attrIndex] != null) {
+					return false;
+				}
+				continue;
+			}
+			if (stumps[attrIndex] == null) {
+				return false;
+			}
+			Node rootNode = stumps[attrIndex].getRootNode();
+			if (rootNode.getAttribute() != attrIndex
+					|| rootNode.getChildCount() != (attr.isNominal() ? attr
+							.numValues() : 2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Key of stumps of instances in {@link DataCache}. It is made from
+	 * content of instances and from bins of binned attributes that restrict
+	 * the split points.
+	 * 
+	 * @param data
+	 *            instances
+	 * @return key of stumps
+	 */
+	private String stumpsKey(Instances data) {
+		long hash = WekaUtils.contentHash(data);
+		for (int a = 0; a < data.numAttributes(); a++) {
+			double[] binValues = sortedRows.getBinValues(a);
+			if (binValues != null) {
+				hash = DataCache.mix(hash, a);
+				for (double value : binValues) {
+					hash = DataCache.mix(hash, Double.doubleToLongBits(value));
+				}
+			}
+		}
+		return DataCache.key("stumps" + (autoHeight ? "auto" : ""), hash);
+	}
+
+	/**
+	 * Method finds the split point of numeric attribute exactly as
+	 * C45Split.buildClassifier (information gain with MDL correction, minimal
+	 * number of instances in subsets, split point in the middle of values
+	 * printed with 6 decimal places), but it goes through the presorted rows
+	 * instead of sorting the instances. Instances with missing value are not
+	 * in the distribution. </p> Binned attribute (see
+	 * {@link ColumnarData#getBinValues(int)}) is split only between bins and
+	 * the split point is the value of the lower bin, so the split is the same
+	 * on binned and on original values.
+	 * 
+	 * @param data
+	 *            instances
+	 * @param attrIndex
+	 *            index of numeric attribute
+	 * @param order
+	 *            rows of instances sorted by the attribute
+	 * @param sumOfWeights
+	 *            sum of weights of instances
+	 * @param rootNode
+	 *            node in which the split point is set
+	 * @return distribution of classes in the two subsets of split
+	 * @throws Exception
+	 *             if distribution can't be computed
+	 */
+	private Distribution numericSplit(Instances data, int attrIndex,
+			int[] order, double sumOfWeights, Node rootNode) throws Exception {
+		Distribution distribution = new Distribution(2, data.numClasses());
+		int firstMiss = 0;
+		while (firstMiss < order.length
+				&& !data.instance(order[firstMiss]).isMissing(attrIndex)) {
+			distribution.add(1, data.instance(order[firstMiss]));
+			firstMiss++;
+		}
+
+		double minSplit = 0.1 * distribution.total() / data.numClasses();
+		if (Utils.smOrEq(minSplit, MIN_NO_OBJ)) {
+			minSplit = MIN_NO_OBJ;
+		} else if (Utils.gr(minSplit, 25)) {
+			minSplit = 25;
+		}
+
+		// binned attribute can be split only on edges of bins
+		double[] binValues = sortedRows.getBinValues(attrIndex);
+		double splitPoint = Double.MAX_VALUE;
+		if (!Utils.sm(firstMiss, 2 * minSplit)) {
+			double defaultEnt = infoGainCrit.oldEnt(distribution);
+			double infoGain = 0;
+			int splitIndex = -1, index = 0, last = 0;
+			for (int next = 1; next < firstMiss; next++) {
+				double prevValue = data.instance(order[next - 1]).value(
+						attrIndex);
+				double nextValue = data.instance(order[next]).value(attrIndex);
+				if (binValues == null ? prevValue + 1e-5 < nextValue
+						: ColumnarData.binOf(binValues, prevValue) < ColumnarData
+								.binOf(binValues, nextValue)) {
+					// move instances up to next possible split point
+					for (int i = last; i < next; i++) {
+						distribution.shift(1, 0, data.instance(order[i]));
+					}
+					if (Utils.grOrEq(distribution.perBag(0), minSplit)
+							&& Utils.grOrEq(distribution.perBag(1), minSplit)) {
+						double currentInfoGain = infoGainCrit.splitCritValue(
+								distribution, sumOfWeights, defaultEnt);
+						if (Utils.gr(currentInfoGain, infoGain)) {
+							infoGain = currentInfoGain;
+							splitIndex = next - 1;
+						}
+						index++;
+					}
+					last = next;
+				}
+			}
+
+			if (index > 0
+					&& !Utils.smOrEq(infoGain - Utils.log2(index)
+							/ sumOfWeights, 0)) {
+				double lower = data.instance(order[splitIndex]).value(
+						attrIndex);
+				double upper = data.instance(order[splitIndex + 1]).value(
+						attrIndex);
+				if (binValues != null) {
+					splitPoint = binValues[ColumnarData.binOf(binValues, lower)];
+				} else {
+					splitPoint = (lower + upper) / 2;
+					if (splitPoint == upper) {
+						splitPoint = lower;
+					}
+				}
+
+				distribution = new Distribution(2, data.numClasses());
+				for (int i = 0; i < firstMiss; i++) {
+					distribution.add(i <= splitIndex ? 0 : 1,
+							data.instance(order[i]));
+				}
+			}
+		}
+
+		if (binValues == null) {
+			splitPoint = Double.parseDouble(Utils.doubleToString(splitPoint, 6));
+		}
+		rootNode.setValue(splitPoint);
+		return distribution;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -69,21 +69,14 @@ public class CompletedTrees extends TreePopulationInitializator {
 
 		int multCoef = 1;
 		population = new TreeIndividual[multCoef * divideParam];
+		int[][] parts = partRows(this.data);
 
 		if (nThreads > 1) {
 			gen.setIndividuals(population);
 			ExecutorService es = Executors.newFixedThreadPool(nThreads);
 
 			for (int i = 0; i < divideParam; i++) {
-				GenLibInstances dataPart = null;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.getPart(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
+				GenLibInstances dataPart = data.getSubset(parts[i]);
 				TreeGenerator popG = gen.copy();
 				popG.setPopulationInitializator(this);
 				popG.setInstances(dataPart);
@@ -105,15 +98,7 @@ public class CompletedTrees extends TreePopulationInitializator {
 		} else {
 			gen.setPopulationInitializator(this);
 			for (int i = 0; i < divideParam; i++) {
-				GenLibInstances dataPart = null;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.getPart(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
+				GenLibInstances dataPart = data.getSubset(parts[i]);
 
 				gen.setInstances(dataPart);
 
@@ -13,8 +13,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-import weka.core.Instances;
-
 /**
  * Class can initialize
  * {@link <a href="http://en.wikipedia.org/wiki/Decision_stump">stump</a>}
@@ -120,19 +118,14 @@ public class RandomStumpCombinator extends TreePopulationInitializator {
 
 		int n_attr = data.numAttributes() - 1;
 		population = new TreeIndividual[n_attr * divideParam];
+		int[][] parts = partRows(this.data);
 
 		if (nThreads > 1) {
 			gen.setIndividuals(population);
 			ExecutorService es = Executors.newFixedThreadPool(nThreads);
 
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart = null;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-				}
+				GenLibInstances dataPart = data.getSubset(parts[i]);
 				TreeGenerator popG = gen.copy();
 				popG.setInstances(dataPart);
 				// Gathering of created individuals into TreeGenerator
@@ -153,13 +146,7 @@ public class RandomStumpCombinator extends TreePopulationInitializator {
 			population = gen.getIndividuals();
 		} else {
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart = null;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-				}
+				GenLibInstances dataPart = data.getSubset(parts[i]);
 
 				gen.setInstances(dataPart);
 
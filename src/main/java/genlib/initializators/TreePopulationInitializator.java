@@ -6,6 +6,7 @@ import genlib.generators.TreeGenerator;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
 import genlib.structures.Data;
+import genlib.structures.data.RowIndices;
 import genlib.utils.Utils;
 
 import java.util.ArrayList;
@@ -40,7 +41,7 @@ public abstract class TreePopulationInitializator implements
 	 *
 	 */
 	enum PopInitEnum {
-		RESAMPLE, AUTOHEIGHT, DIVIDEPARAM, MAXHEIGHT, DATA;
+		RESAMPLE, AUTOHEIGHT, DIVIDEPARAM, MAXHEIGHT, DATA, STRATIFY;
 
 		public static PopInitEnum value(String name) {
 			if (RESAMPLE.name().equals(name)) {
@@ -58,6 +59,9 @@ public abstract class TreePopulationInitializator implements
 			if (DATA.name().equals(name)) {
 				return DATA;
 			}
+			if (STRATIFY.name().equals(name)) {
+				return STRATIFY;
+			}
 
 			return null;
 		}
@@ -74,6 +78,8 @@ public abstract class TreePopulationInitializator implements
 	protected int divideParam = 10;
 	/** only resampling instead of dividing */
 	protected boolean resample = true;
+	/** parts or resamples keep the proportions of classes */
+	protected boolean stratify = false;
 	/** recounting of depth inside trees */
 	protected boolean autoHeight = false;
 	/** Individuals that makes this population */
@@ -230,6 +236,55 @@ public abstract class TreePopulationInitializator implements
 		this.resample = resample;
 	}
 
+	/**
+	 * Method sets if the parts or resamples of data used to initialize should
+	 * keep the proportions of classes.
+	 * 
+	 * @param stratify
+	 */
+	public void setStratify(boolean stratify) {
+		this.stratify = stratify;
+	}
+
+	/**
+	 * Method chooses the rows of parts of data from which the trees are
+	 * generated. Without resampling the parts are the same as
+	 * {@link weka.core.Instances#testCV(int, int)} folds (of stratified order
+	 * of rows if stratify is set), with resampling the rows are chosen as in
+	 * {@link weka.core.Instances#resample(Random)} (from each class
+	 * separately if stratify is set). Parts are then only views of data with
+	 * these rows, instances aren't copied.
+	 * 
+	 * @param data
+	 *            data from which the parts are made
+	 * @return rows of each of divideParam parts
+	 */
+	protected int[][] partRows(Data data) {
+		int numInstances = data.numInstances();
+		int[] order = null;
+		if (stratify && !resample) {
+			order = RowIndices.stratifiedOrder(data.getColumnarData());
+		}
+
+		int[][] parts = new int[divideParam][];
+		for (int part = 0; part < divideParam; part++) {
+			if (resample) {
+				// instances of same length as training data. Sampling with
+				// replacement
+				parts[part] = stratify ? RowIndices.stratifiedResample(
+						data.getColumnarData(), random) : RowIndices.resample(
+						numInstances, random);
+			} else {
+				// size of instances = data.length / divideParam.
+				parts[part] = RowIndices.fold(numInstances, divideParam, part);
+				if (order != null) {
+					parts[part] = RowIndices.select(order, parts[part]);
+				}
+			}
+		}
+		return parts;
+	}
+
 	/**
 	 * Method sets if the generated trees should compute the height
 	 * automatically
@@ -306,6 +361,9 @@ public abstract class TreePopulationInitializator implements
 			case DATA:
 				this.typeOfData = Integer.parseInt(params[i + 1]);
 				break;
+			case STRATIFY:
+				this.stratify = Boolean.parseBoolean(params[i + 1]);
+				break;
 			default:
 				break;
 			}
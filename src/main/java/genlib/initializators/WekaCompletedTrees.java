@@ -6,6 +6,7 @@ import genlib.generators.TreeGenerator;
 import genlib.generators.WekaJ48TreeGenerator;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
+import genlib.utils.WekaUtils;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -68,21 +69,14 @@ public class WekaCompletedTrees extends CompletedTrees {
 
 		int multCoef = 1;
 		population = new TreeIndividual[multCoef * divideParam];
+		int[][] parts = partRows(this.data);
 
 		if (nThreads > 1) {
 			gen.setIndividuals(population);
 			ExecutorService es = Executors.newFixedThreadPool(nThreads);
 
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.testCV(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
+				Instances dataPart = WekaUtils.subset(data, parts[i]);
 				TreeGenerator popG = gen.copy();
 				popG.setPopulationInitializator(this);
 				popG.setInstances(dataPart);
@@ -105,15 +99,7 @@ public class WekaCompletedTrees extends CompletedTrees {
 		} else {
 			gen.setPopulationInitializator(this);
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.testCV(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
+				Instances dataPart = WekaUtils.subset(data, parts[i]);
 
 				gen.setInstances(dataPart);
 
@@ -132,7 +118,7 @@ public class WekaCompletedTrees extends CompletedTrees {
 	 */
 	@Override
 	public void initPopulation() throws Exception {
-		if (data.isInstances()) {
+		if (data.isConvertibleToInstances()) {
 			initPopulation(data.toInstances());
 		} else {
 			throw new WrongDataException(String.format(
@@ -5,6 +5,8 @@ import genlib.generators.TreeGenerator;
 import genlib.generators.WekaSimpleStumpGenerator;
 import genlib.locales.PermMessages;
 import genlib.locales.TextResource;
+import genlib.structures.data.SortedRows;
+import genlib.utils.WekaUtils;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -74,14 +76,18 @@ public class WekaRandomStumpCombinator extends RandomStumpCombinator {
 	 * Method initialized the population using Instances. Divided or
 	 * resampled dataset is used to construct decision trees. Construction can
 	 * be done with multiple threads. After generation of trees the combination
-	 * of them takes place.
+	 * of them takes place. Parts get the presorted rows filtered from the
+	 * presorted rows of the whole data, so no part is sorted again.
 	 * 
 	 * @param data
 	 *            to be used to initialize
+	 * @param sortedRows
+	 *            presorted rows of data
 	 * @throws Exception
 	 *             thrown if problem occured initializing population
 	 */
-	private void initPopulation(Instances data) throws Exception {
+	private void initPopulation(Instances data, SortedRows sortedRows)
+			throws Exception {
 		if (gen == null) {
 			this.gen = new WekaSimpleStumpGenerator();
 			this.gen.setPopulationInitializator(this);
@@ -96,23 +102,17 @@ public class WekaRandomStumpCombinator extends RandomStumpCombinator {
 
 		int n_attr = data.numAttributes() - 1;
 		population = new TreeIndividual[n_attr * divideParam];
+		int[][] parts = partRows(this.data);
 
 		if (nThreads > 1) {
 			gen.setIndividuals(population);
 			ExecutorService es = Executors.newFixedThreadPool(nThreads);
 
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.testCV(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
+				int[] rows = parts[i];
 				TreeGenerator popG = gen.copy();
-				popG.setInstances(dataPart);
+				popG.setInstances(WekaUtils.subset(data, rows));
+				popG.setSortedRows(sortedRows.subset(rows));
 				// Gathering of created individuals into TreeGenerator
 				popG.setGatherGen(gen);
 
@@ -131,17 +131,9 @@ public class WekaRandomStumpCombinator extends RandomStumpCombinator {
 			population = gen.getIndividuals();
 		} else {
 			for (int i = 0; i < divideParam; i++) {
-				Instances dataPart;
-				if (!resample) {
-					// size of instances = data.length / divideParam.
-					dataPart = data.testCV(divideParam, i);
-				} else {
-					// instances of same length as training data. Sampling with
-					// replacement
-					dataPart = data.resample(random);
-				}
-
-				gen.setInstances(dataPart);
+				int[] rows = parts[i];
+				gen.setInstances(WekaUtils.subset(data, rows));
+				gen.setSortedRows(sortedRows.subset(rows));
 
 				System.arraycopy(gen.createPopulation(), 0, population, i
 						* n_attr, n_attr);
@@ -160,8 +152,8 @@ public class WekaRandomStumpCombinator extends RandomStumpCombinator {
 	 */
 	@Override
 	public void initPopulation() throws Exception {
-		if (data.isInstances()) {
-			initPopulation(data.toInstances());
+		if (data.isConvertibleToInstances()) {
+			initPopulation(data.toInstances(), data.getSortedRows());
 		} else {
 			throw new Exception(PermMessages._exc_badins);
 		}
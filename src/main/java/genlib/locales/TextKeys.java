@@ -50,6 +50,9 @@ public class TextKeys {
 	public static final String eNullInputEvolution = "eNullInputEvolution";
 	public static final String eBadTypeConversion = "eBadTypeConversion";
 	public static final String eWrongData = "eWrongData";
+	public static final String eDataFormat = "eDataFormat";
+	public static final String eBinaryFormat = "eBinaryFormat";
+	public static final String eChunkedData = "eChunkedData";
 	public static final String eWekaCompatibility = "eWekaCompatibility";
 	public static final String eWekaDependency = "eWekaDependency";
 	public static final String eNumericHandle = "eNumericHandle";
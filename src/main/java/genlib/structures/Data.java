@@ -6,11 +6,21 @@ import genlib.exceptions.WrongDataException;
 import genlib.locales.PermMessages;
 import genlib.locales.TextKeys;
 import genlib.locales.TextResource;
+import genlib.structures.data.ArrayGenLibInstances;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.DataCache;
+import genlib.structures.data.GenLibInstance;
 import genlib.structures.data.GenLibInstances;
+import genlib.structures.data.QuantileSketch;
+import genlib.structures.data.RowIndices;
+import genlib.structures.data.SortedRows;
 import genlib.utils.Utils;
 import genlib.utils.WekaUtils;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -30,7 +40,10 @@ public class Data implements Serializable {
 	/**
 	 * DataEnum with enums of different params for creating train and validation
 	 * data.Defined kinds of params: </br> {@link DataEnum#RESAMPLE} </br>
-	 * {@link DataEnum#TRAINRATIO} </br>
+	 * {@link DataEnum#TRAINRATIO} </br> {@link DataEnum#SUBSAMPLE} </br>
+	 * {@link DataEnum#SUBSAMPLEGEN} </br> {@link DataEnum#BINS} </br>
+	 * {@link DataEnum#STRATIFY} </br> {@link DataEnum#CHUNK} </br>
+	 * {@link DataEnum#DSS} </br> {@link DataEnum#DSSAGE} </br>
 	 * 
 	 * 
 	 * @author Lukas Surin
@@ -46,7 +59,49 @@ public class Data implements Serializable {
 		 * trainratio enum that shows if train and validation data should be
 		 * some ratio from data object
 		 */
-		TRAINRATIO;
+		TRAINRATIO,
+		/**
+		 * subsample enum with ratio of stratified subsample of train data on
+		 * which the individuals are evaluated in first generation. Ratio grows
+		 * linearly to 1 in the last generation.
+		 */
+		SUBSAMPLE,
+		/**
+		 * subsamplegen enum with number of generations after which the
+		 * subsample is drawn again
+		 */
+		SUBSAMPLEGEN,
+		/**
+		 * bins enum with maximal number of bins (at most 255) of numeric
+		 * attributes. Numeric values are replaced by values of their bins
+		 * (lossy mode), 0 means no binning.
+		 */
+		BINS,
+		/**
+		 * stratify enum that shows if train and validation data (split or
+		 * resampled) should keep the proportions of classes
+		 */
+		STRATIFY,
+		/**
+		 * chunk enum with number of rows of one chunk. Data with chunks are
+		 * evaluated chunk by chunk (see {@link Data#getChunk(int)}) and they
+		 * are never held whole on the heap, 0 means no chunks. Chunked data
+		 * can't be split, resampled nor subsampled and the components that
+		 * need the whole data (sorted rows, racing) reject them.
+		 */
+		CHUNK,
+		/**
+		 * dss enum with exponent of difficulty in dynamic subset selection.
+		 * Subsamples are then drawn with probability proportional to
+		 * difficulty^DSS + age^DSSAGE of instances, 0 means uniform
+		 * subsamples.
+		 */
+		DSS,
+		/**
+		 * dssage enum with exponent of age (number of subsamples since the
+		 * instance was chosen) in dynamic subset selection
+		 */
+		DSSAGE;
 
 		public static DataEnum value(String name) {
 			if (name.equals(RESAMPLE.name())) {
@@ -57,14 +112,74 @@ public class Data implements Serializable {
 				return TRAINRATIO;
 			}
 
+			if (name.equals(SUBSAMPLE.name())) {
+				return SUBSAMPLE;
+			}
+
+			if (name.equals(SUBSAMPLEGEN.name())) {
+				return SUBSAMPLEGEN;
+			}
+
+			if (name.equals(BINS.name())) {
+				return BINS;
+			}
+
+			if (name.equals(STRATIFY.name())) {
+				return STRATIFY;
+			}
+
+			if (name.equals(CHUNK.name())) {
+				return CHUNK;
+			}
+
+			if (name.equals(DSS.name())) {
+				return DSS;
+			}
+
+			if (name.equals(DSSAGE.name())) {
+				return DSSAGE;
+			}
+
 			return null;
 		}
 	}
 
 	/** for serialization */
 	private static final long serialVersionUID = 4437040173554934907L;
-	/** data object, final which is initialized in constructor */
-	private final Object data;
+	/**
+	 * Source data shared by this data and by all of its views with their
+	 * snapshots.
+	 * 
+	 * @author Lukas Surin
+	 */
+	private static class Source implements Serializable {
+		/** for serialization */
+		private static final long serialVersionUID = -2412379512418398730L;
+		/** source data (GenLibInstances or Instances) */
+		private final Object data;
+		/** values of bins of numeric attributes, null when nothing is binned */
+		private final double[][] binValues;
+		/** columnar snapshot of source data used by fitness functions */
+		private transient ColumnarData columnarData;
+		/** presorted rows of numeric attributes shared by generators */
+		private transient SortedRows sortedRows;
+		/** true iff some view has rows of source data */
+		private boolean viewed;
+
+		private Source(Object data, double[][] binValues) {
+			this.data = data;
+			this.binValues = binValues;
+		}
+	}
+
+	/** source data of this data object and of its views */
+	private Source source;
+	/** rows of source data in this data, null when all rows are in order */
+	private int[] rows;
+	/** instances of rows of view, created only when they are needed */
+	private Object instances;
+	/** weka instances converted from GenLibInstances when they are needed */
+	private transient Instances converted;
 	/** train data from data object */
 	private Data train;
 	/** validation data from data object */
@@ -79,6 +194,32 @@ public class Data implements Serializable {
 	private boolean isInstances = false;
 	/** class counts in data object */
 	private double[] classCounts;
+	/** view of columnar snapshot of source data with rows of this data */
+	private transient ColumnarData columnarData;
+	/** presorted rows of source data filtered for rows of this data */
+	private transient SortedRows sortedRows;
+	/** number of rows of one chunk, 0 when the data aren't chunked */
+	private int chunkRows = 0;
+	/** counts of classes of chunked data */
+	private transient ColumnarData classData;
+	/** ratio of subsample in first generation, 1 means no subsampling */
+	private double subsampleRatio = 1;
+	/** number of generations after which the subsample is drawn again */
+	private int subsampleGen = 1;
+	/** actual subsample of this data, null when full data are evaluated */
+	private volatile Data sample;
+	/** rows of this data in actual subsample */
+	private int[] sampleRows;
+	/** exponent of difficulty in dynamic subset selection, 0 means off */
+	private double dssDifficulty = 0;
+	/** exponent of age in dynamic subset selection */
+	private double dssAge = 1;
+	/** number of misclassifications of rows since they were last chosen */
+	private int[] difficulty;
+	/** number of subsamples since the rows were last chosen */
+	private int[] age;
+	/** true for subsample whose misclassified rows are added to difficulty */
+	private boolean errorsCounted;
 
 	/** Index of attribute values to access correct array values */
 	public HashMap<String, Integer>[] attrValueIndexMap;
@@ -97,7 +238,7 @@ public class Data implements Serializable {
 		this.random = random;
 		this.train = this;
 		this.validation = this;
-		this.data = data;
+		this.source = new Source(data, null);
 		this.numInstances = data.numInstances();
 		this.numClasses = data.numClasses();
 		this.isInstances = true;
@@ -105,12 +246,23 @@ public class Data implements Serializable {
 
 	/**
 	 * Method returns data (GenLibInstances or Instances). First it should be
-	 * called what kind of instances resides inside.
+	 * called what kind of instances resides inside. Instances of view are
+	 * created at first call (rows are shared, not copied).
 	 * 
 	 * @return object (GenLibInstances or Instances) that needs to be retyped
 	 */
-	public Object getData() {
-		return data;
+	public synchronized Object getData() {
+		if (rows == null) {
+			return source.data;
+		}
+		if (instances == null) {
+			if (isInstances) {
+				instances = WekaUtils.subset((Instances) source.data, rows);
+			} else {
+				instances = ((GenLibInstances) source.data).getSubset(rows);
+			}
+		}
+		return instances;
 	}
 
 	/**
@@ -125,12 +277,32 @@ public class Data implements Serializable {
 		this.random = random;
 		this.train = this;
 		this.validation = this;
-		this.data = data;
+		this.source = new Source(data, null);
 		this.numInstances = data.numInstances();
 		this.numClasses = data.numClasses();
 		this.isInstances = false;
 	}
 
+	/**
+	 * Constructor that creates view of parent data with chosen rows of its
+	 * source data (see {@link #view(int[])}).
+	 * 
+	 * @param parent
+	 *            data from which the view is created
+	 * @param rows
+	 *            rows of source data of parent
+	 */
+	private Data(Data parent, int[] rows) {
+		this.random = new Random(parent.random.nextLong());
+		this.train = this;
+		this.validation = this;
+		this.source = parent.source;
+		this.rows = rows;
+		this.numInstances = rows.length;
+		this.numClasses = parent.numClasses;
+		this.isInstances = parent.isInstances;
+	}
+
 	/**
 	 * Number of instances in data (GenLibInstances or Instances).
 	 * 
@@ -168,18 +340,38 @@ public class Data implements Serializable {
 	}
 
 	/**
-	 * Method which will type the object into Instances. If it's not possible
-	 * then exception is thrown.
+	 * Method which will type the object into Instances. GenLibInstances backed
+	 * by arrays are converted into Instances at first call and the converted
+	 * instances are kept until the data are randomized (see
+	 * {@link WekaUtils#toInstances(ArrayGenLibInstances)}). If it's not
+	 * possible then exception is thrown.
 	 * 
 	 * @return weka.core.Instances from data
 	 */
-	public Instances toInstances() {
+	public synchronized Instances toInstances() {
 		if (isInstances) {
-			return (Instances) data;
+			return (Instances) getData();
+		}
+		if (source.data instanceof ArrayGenLibInstances) {
+			if (converted == null) {
+				converted = WekaUtils
+						.toInstances((ArrayGenLibInstances) getData());
+			}
+			return converted;
 		}
 		throw new WrongDataException(String.format(TextResource
-				.getString(TextKeys.eBadTypeConversion), data.getClass()
-				.getName(), Instances.class.getName()));
+				.getString(TextKeys.eBadTypeConversion), source.data
+				.getClass().getName(), Instances.class.getName()));
+	}
+
+	/**
+	 * Method that tests if the data can be typed or converted into
+	 * {@link Instances} by {@link #toInstances()}.
+	 * 
+	 * @return true iff the data are Instances or array-backed GenLibInstances
+	 */
+	public boolean isConvertibleToInstances() {
+		return isInstances || source.data instanceof ArrayGenLibInstances;
 	}
 
 	/**
@@ -190,86 +382,233 @@ public class Data implements Serializable {
 	 */
 	public GenLibInstances toGenLibInstances() {
 		if (!isInstances) {
-			return (GenLibInstances) data;
+			return (GenLibInstances) getData();
 		}
 		throw new WrongDataException(String.format(TextResource
-				.getString(TextKeys.eBadTypeConversion), data.getClass()
-				.getName(), GenLibInstances.class.getName()));
+				.getString(TextKeys.eBadTypeConversion), source.data
+				.getClass().getName(), GenLibInstances.class.getName()));
 	}
 
 	/**
-	 * Method which randomizes instances inside data field. It throws unchecked
-	 * exception if any other type from Instances or GenLibInstances is pushed
-	 * into data field.
+	 * Method which randomizes instances inside data field with random object
+	 * of this data. It throws unchecked exception if any other type from
+	 * Instances or GenLibInstances is pushed into data field.
 	 * 
-	 * @param random
-	 *            object used to randomize
 	 * @see Instances
 	 * @see GenLibInstances
 	 * @see WrongDataException
 	 */
 	public void randomize() {
-		if (isInstances) {
-			((Instances) data).randomize(random);
-			return;
-		} else {
-			((GenLibInstances) data).randomize(random);
+		randomize(this.random);
+	}
+
+	/**
+	 * Method which randomizes instances inside data field. Snapshots of data
+	 * are dropped, so the data inside shouldn't be randomized directly. Views
+	 * and data with views (their source data are shared) permute only their
+	 * rows in the same way as {@link Instances#randomize(Random)}, so they
+	 * keep the snapshot of source data.
+	 * 
+	 * @param random
+	 *            object used to randomize
+	 */
+	public synchronized void randomize(Random random) {
+		columnarData = null;
+		sortedRows = null;
+		classData = null;
+		instances = null;
+		converted = null;
+		if (rows == null && !source.viewed) {
+			if (isInstances) {
+				((Instances) source.data).randomize(random);
+			} else {
+				((GenLibInstances) source.data).randomize(random);
+			}
+			source = new Source(source.data, source.binValues);
 			return;
 		}
+
+		if (rows == null) {
+			rows = RowIndices.range(0, numInstances);
+		}
+		for (int j = rows.length - 1; j > 0; j--) {
+			int k = random.nextInt(j + 1);
+			int swap = rows[j];
+			rows[j] = rows[k];
+			rows[k] = swap;
+		}
 	}
 
 	/**
 	 * Method which creates new datas from instances pulled out of this data
-	 * object.
+	 * object. Train and validation data are views of this data (see
+	 * {@link #view(int[])}), so the instances aren't copied.
 	 * 
 	 * @param resample
 	 *            if train and validation sets should be resamples
 	 * @param trainRatio
 	 *            what size should trainData have (respectively validation)
+	 * @param stratify
+	 *            if train and validation sets should keep proportions of
+	 *            classes
 	 */
 	private void createValidationAndTrainData(boolean resample,
-			double trainRatio) {
-		if (resample) {
-			if (isInstances) {
-				Instances instances = (Instances) data;
-				train = new Data(instances.resample(random), new Random(
-						random.nextLong()));
-				validation = new Data(instances.resample(random), new Random(
-						random.nextLong()));
-			} else {
-				GenLibInstances instances = (GenLibInstances) data;
-				train = new Data(instances.resample(random), new Random(
-						random.nextLong()));
-				validation = new Data(instances.resample(random), new Random(
-						random.nextLong()));
+			double trainRatio, boolean stratify) {
+		if (chunkRows > 0) {
+			// rows of views aren't consecutive, so they can't be chunked
+			if (resample || trainRatio < 1 || stratify) {
+				throw new WrongDataException(String.format(
+						TextResource.getString(TextKeys.eChunkedData),
+						"RESAMPLE, TRAINRATIO, STRATIFY"));
 			}
+			return;
+		}
+
+		if (resample) {
+			train = view(resampleRows(stratify));
+			validation = view(resampleRows(stratify));
 		} else {
-			if (isInstances) {
-				Instances instances = (Instances) data;
-				int trainCount = (int) (((double) instances.numInstances()) * trainRatio);
+			int trainCount = (int) (((double) numInstances) * trainRatio);
+			int[] trainRows = RowIndices.range(0, trainCount);
+			int[] validationRows = RowIndices.range(trainCount, numInstances
+					- trainCount);
+			if (stratify) {
+				int[] order = RowIndices.stratifiedOrder(getColumnarData());
+				trainRows = RowIndices.select(order, trainRows);
+				validationRows = RowIndices.select(order, validationRows);
+			}
+
+			train = view(trainRows);
+			validation = view(validationRows);
+		}
+	}
 
-				Instances train = new Instances(instances, 0, trainCount);
-				Instances validation = new Instances(instances, trainCount,
-						instances.numInstances() - trainCount);
+	/**
+	 * Method chooses the rows of resample of this data.
+	 * 
+	 * @param stratify
+	 *            if the resample should keep the proportions of classes
+	 * @return rows of resample
+	 */
+	private int[] resampleRows(boolean stratify) {
+		if (stratify) {
+			return RowIndices.stratifiedResample(getColumnarData(), random);
+		}
+		return RowIndices.resample(numInstances, random);
+	}
 
-				this.train = new Data(train, new Random(random.nextLong()));
-				this.validation = new Data(validation, new Random(
-						random.nextLong()));
+	/**
+	 * Method creates view of this data with chosen rows (split, resample,
+	 * fold, subsample). Row i of view is the row rows[i] of this data, rows
+	 * can repeat. View shares the source data and its columnar snapshot with
+	 * this data, it keeps only the array of rows of source data (see
+	 * {@link ColumnarData#view(int[])}). Instances of view are created only
+	 * when they are needed (see {@link #getData()}). Presorted rows of this
+	 * data are filtered for the view if they exist and the view has the same
+	 * bins as this data. Views aren't stored in {@link DataCache}.
+	 * 
+	 * @param rows
+	 *            rows of this data in view
+	 * @return view of this data
+	 */
+	public synchronized Data view(int[] rows) {
+		int[] sourceRows = this.rows == null ? rows.clone() : RowIndices
+				.select(this.rows, rows);
+		Data view = new Data(this, sourceRows);
+		source.viewed = true;
 
-			} else {
-				GenLibInstances instances = (GenLibInstances) data;
-				int trainCount = (int) (((double) instances.numInstances()) * trainRatio);
+		SortedRows sortedRows = this.rows == null ? source.sortedRows
+				: this.sortedRows;
+		if (sortedRows != null) {
+			view.sortedRows = sortedRows.subset(rows);
+		}
+		view.chunkRows = chunkRows;
+		view.dssDifficulty = dssDifficulty;
+		view.dssAge = dssAge;
+		return view;
+	}
 
-				GenLibInstances train = instances.getPart(0, trainCount);
-				GenLibInstances validation = instances.getPart(trainCount,
-						instances.numInstances() - trainCount);
+	/**
+	 * Method computes the values of bins of numeric attributes in one pass
+	 * over the data with {@link QuantileSketch}. Bins have approximately the
+	 * same number of instances. Chunked data are read chunk by chunk. Bins
+	 * are cached in {@link DataCache} by content of data, bins of views
+	 * aren't cached.
+	 * 
+	 * @param bins
+	 *            maximal number of bins of known values
+	 */
+	private synchronized void makeBinValues(int bins) {
+		String key = null;
+		if (rows == null) {
+			key = DataCache.key("bins" + bins, contentHash(null));
+			Object cached = DataCache.getInstance().get(key);
+			if (cached instanceof double[][]
+					&& ((double[][]) cached).length == numAttributes()) {
+				setBinValues((double[][]) cached);
+				return;
+			}
+		}
 
-				this.train = new Data(train, new Random(random.nextLong()));
-				this.validation = new Data(validation, new Random(
-						random.nextLong()));
+		double[][] binValues = new double[numAttributes()][];
+		QuantileSketch[] sketches = new QuantileSketch[binValues.length];
+		boolean[] sparse = new boolean[binValues.length];
+		for (int chunk = 0; chunk < numChunks(); chunk++) {
+			// unbinned snapshots aren't cached, they are used only here
+			ColumnarData columnar = chunkRows > 0 ? makeChunk(chunk, null)
+					: makeColumnarData(null);
+			for (int a = 0; a < binValues.length; a++) {
+				if (!columnar.isNumeric(a) || columnar.isSparse(a)) {
+					// sparse columns are kept sparse
+					sparse[a] = true;
+					continue;
+				}
+				if (sketches[a] == null) {
+					sketches[a] = new QuantileSketch(
+							QuantileSketch.DEFAULT_CAPACITY);
+				}
+				double[] column = columnar.getNumericColumn(a);
+				for (int row = 0; row < column.length; row++) {
+					sketches[a].add(column[row]);
+				}
+			}
+		}
+		for (int a = 0; a < binValues.length; a++) {
+			if (!sparse[a] && sketches[a] != null) {
+				binValues[a] = sketches[a].binValues(bins);
 			}
 		}
 
+		if (key != null) {
+			DataCache.getInstance().put(key, binValues,
+					256L * 8 * binValues.length);
+		}
+		setBinValues(binValues);
+	}
+
+	/**
+	 * Method sets the values of bins. Snapshots are dropped so they are
+	 * created again with binned columns. Views created earlier keep the old
+	 * source data with its bins.
+	 * 
+	 * @param binValues
+	 *            values of bins of attributes
+	 */
+	private synchronized void setBinValues(double[][] binValues) {
+		source = new Source(source.data, binValues);
+		columnarData = null;
+		sortedRows = null;
+	}
+
+	/**
+	 * Getter for values of bins of numeric attributes (see
+	 * {@link DataEnum#BINS}).
+	 * 
+	 * @return values of bins for each attribute (null for attributes that
+	 *         aren't binned) or null if the data aren't binned
+	 */
+	public double[][] getBinValues() {
+		return source.binValues;
 	}
 
 	/**
@@ -310,6 +649,225 @@ public class Data implements Serializable {
 		}
 	}
 
+	/**
+	 * Getter for the data on which the individuals are actually evaluated. It
+	 * is the subsample drawn by {@link #updateSubsample(int, int)} or this
+	 * data if there is no subsample.
+	 * 
+	 * @return subsample or this data
+	 */
+	public Data getSampleData() {
+		Data sample = this.sample;
+		return sample == null ? this : sample;
+	}
+
+	/**
+	 * Method draws new stratified subsample of this data and of its train data
+	 * (validation data are always evaluated whole) if the generation is
+	 * multiple of {@link DataEnum#SUBSAMPLEGEN}. Size of subsample grows
+	 * linearly from {@link DataEnum#SUBSAMPLE} ratio in first generation to
+	 * full data in the last generation.
+	 * 
+	 * @param generation
+	 *            actual generation (starting with 0)
+	 * @param numberOfGenerations
+	 *            number of all generations
+	 * @return true iff the data on which we evaluate have changed
+	 */
+	public boolean updateSubsample(int generation, int numberOfGenerations) {
+		if (subsampleRatio >= 1 || generation % subsampleGen != 0) {
+			return false;
+		}
+
+		double ratio = subsampleRatio + (1 - subsampleRatio) * generation
+				/ Math.max(1, numberOfGenerations - 1);
+		if (ratio >= 1) {
+			return clearSubsample();
+		}
+
+		sample = stratifiedSample(ratio);
+		Data trainData = getDataOfType(0);
+		if (trainData != this) {
+			trainData.sample = trainData.stratifiedSample(ratio);
+		}
+		return true;
+	}
+
+	/**
+	 * Method removes the subsample of this data and of its train data so the
+	 * individuals are evaluated on full data. It should be called before the
+	 * final ranking of individuals.
+	 * 
+	 * @return true iff the data on which we evaluate have changed
+	 */
+	public boolean clearSubsample() {
+		boolean changed = clearSample();
+		return getDataOfType(0).clearSample() || changed;
+	}
+
+	/**
+	 * Method removes the subsample of this data.
+	 * 
+	 * @return true iff there was subsample
+	 */
+	private boolean clearSample() {
+		boolean changed = sample != null;
+		sample = null;
+		sampleRows = null;
+		return changed;
+	}
+
+	/**
+	 * Tests if the subsamples are drawn by dynamic subset selection.
+	 * 
+	 * @return true iff the subsamples are weighted by difficulty and age
+	 */
+	public boolean isDifficultySampled() {
+		return dssDifficulty > 0 && subsampleRatio < 1;
+	}
+
+	/**
+	 * Tests if the misclassified rows of this subsample are added to the
+	 * difficulty of rows of its data (see {@link #addDifficulty(int[])}).
+	 * Individuals keep the partitions of such subsample from evaluation, so
+	 * the errors aren't classified again.
+	 * 
+	 * @return true iff this is subsample drawn by dynamic subset selection
+	 */
+	public boolean isErrorCounted() {
+		return errorsCounted;
+	}
+
+	/**
+	 * Method adds the misclassifications of rows of actual subsample to the
+	 * difficulty of rows of this data. It is called after the fitness of
+	 * population is computed (see
+	 * {@link genlib.evolution.EvolutionAlgorithm#fitnessComputed(java.util.List)}
+	 * ).
+	 * 
+	 * @param errors
+	 *            number of individuals that misclassified each row of
+	 *            subsample
+	 */
+	public synchronized void addDifficulty(int[] errors) {
+		int[] rows = sampleRows;
+		if (difficulty == null || rows == null || rows.length != errors.length) {
+			return;
+		}
+		for (int i = 0; i < rows.length; i++) {
+			difficulty[rows[i]] += errors[i];
+		}
+	}
+
+	/**
+	 * Method creates stratified subsample of this data. From each class there
+	 * is chosen ratio of its instances (at least one), randomly or by
+	 * difficulty and age (see {@link DataEnum#DSS}). Order of chosen
+	 * instances is kept.
+	 * 
+	 * @param ratio
+	 *            ratio of instances from each class
+	 * @return new data with subsample
+	 */
+	private Data stratifiedSample(double ratio) {
+		int rows = numInstances;
+		boolean[] chosen = new boolean[rows];
+		int size = 0;
+		for (int[] group : RowIndices.byClass(getColumnarData())) {
+			if (group.length == 0) {
+				continue;
+			}
+
+			int take = Math.max(1, (int) Math.round(ratio * group.length));
+			if (dssDifficulty > 0) {
+				chooseByDifficulty(group, take, chosen);
+				size += take;
+				continue;
+			}
+			// partial Fisher-Yates shuffle
+			for (int i = 0; i < take; i++) {
+				int j = i + random.nextInt(group.length - i);
+				int swap = group[i];
+				group[i] = group[j];
+				group[j] = swap;
+				chosen[group[i]] = true;
+			}
+			size += take;
+		}
+
+		int[] indices = new int[size];
+		for (int row = 0, i = 0; row < rows; row++) {
+			if (chosen[row]) {
+				indices[i++] = row;
+			}
+		}
+		if (dssDifficulty > 0) {
+			synchronized (this) {
+				// chosen rows start again, the others get older
+				for (int row = 0; row < rows; row++) {
+					if (chosen[row]) {
+						difficulty[row] = 0;
+						age[row] = 0;
+					} else {
+						age[row]++;
+					}
+				}
+				sampleRows = indices;
+			}
+		} else {
+			sampleRows = indices;
+		}
+
+		// subsamples are drawn repeatedly, so the rows are sorted once here
+		// and each subsample filters them
+		getSortedRows();
+		Data sample = view(indices);
+		sample.errorsCounted = dssDifficulty > 0;
+		return sample;
+	}
+
+	/**
+	 * Method chooses rows of one class without replacement with probability
+	 * proportional to difficulty^DSS + age^DSSAGE. Each row gets key log(u) /
+	 * weight with uniform u and the rows with the greatest keys are chosen
+	 * (weighted reservoir sampling of Efraimidis and Spirakis).
+	 * 
+	 * @param group
+	 *            rows of class
+	 * @param take
+	 *            number of rows to choose
+	 * @param chosen
+	 *            flags of chosen rows to fill
+	 */
+	private synchronized void chooseByDifficulty(int[] group, int take,
+			boolean[] chosen) {
+		if (difficulty == null) {
+			difficulty = new int[numInstances];
+			age = new int[numInstances];
+			Arrays.fill(age, 1);
+		}
+
+		final double[] keys = new double[group.length];
+		Integer[] order = new Integer[group.length];
+		for (int i = 0; i < group.length; i++) {
+			int row = group[i];
+			double weight = Math.pow(difficulty[row], dssDifficulty)
+					+ Math.pow(age[row], dssAge);
+			keys[i] = weight > 0 ? Math.log(random.nextDouble()) / weight
+					: Double.NEGATIVE_INFINITY;
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(keys[i2], keys[i1]);
+			}
+		});
+		for (int i = 0; i < take; i++) {
+			chosen[group[order[i]]] = true;
+		}
+	}
+
 	/**
 	 * Method which returns number of classes for this data object.
 	 * 
@@ -319,13 +877,14 @@ public class Data implements Serializable {
 		if (classCounts == null) {
 			if (isInstances) {
 				try {
-					classCounts = new Distribution((Instances) data).matrix()[0];
+					classCounts = new Distribution((Instances) getData())
+							.matrix()[0];
 				} catch (Exception e) {
 				}
 			} else {
 				try {
-					classCounts = ((GenLibInstances) data).getDistribution()
-							.getClassCounts();
+					classCounts = ((GenLibInstances) getData())
+							.getDistribution().getClassCounts();
 				} catch (Exception e) {
 				}
 			}
@@ -334,6 +893,417 @@ public class Data implements Serializable {
 		return classCounts;
 	}
 
+	/**
+	 * Method which returns columnar snapshot of this data object. Snapshot is
+	 * created lazily at first call and it is dropped when the data are
+	 * randomized. Equal snapshot from other build is taken from
+	 * {@link DataCache} (it shares its lazy structures). It is looked up by
+	 * content hash of the data (see {@link #contentHash(double[][])}), so the
+	 * snapshot isn't built just to compute its hash, and it is adopted only
+	 * if its dimensions, types of attributes and class counts match these
+	 * data. Chunked data are never held whole on the heap, so they don't have
+	 * snapshot and the exception is thrown (use {@link #getChunk(int)} and
+	 * {@link #getClassData()}). Views return view of snapshot of their source
+	 * data (see {@link ColumnarData#view(int[])}).
+	 * 
+	 * @return columnar snapshot of data
+	 * @throws WrongDataException
+	 *             if the data are chunked
+	 */
+	public synchronized ColumnarData getColumnarData() {
+		checkNotChunked("columnar snapshot");
+
+		if (rows == null) {
+			return sourceColumnarData();
+		}
+		if (columnarData == null) {
+			columnarData = sourceColumnarData().view(rows);
+		}
+		return columnarData;
+	}
+
+	/**
+	 * Method throws exception if the data are chunked, so the whole data can't
+	 * be used.
+	 * 
+	 * @param what
+	 *            name of structure with whole data
+	 * @throws WrongDataException
+	 *             if the data are chunked
+	 */
+	private void checkNotChunked(String what) {
+		if (chunkRows > 0) {
+			throw new WrongDataException(String.format(
+					TextResource.getString(TextKeys.eChunkedData), what));
+		}
+	}
+
+	/**
+	 * Method returns columnar snapshot of source data, which is shared by
+	 * all views of source data.
+	 * 
+	 * @return columnar snapshot of source data
+	 */
+	private ColumnarData sourceColumnarData() {
+		Source source = this.source;
+		synchronized (source) {
+			if (source.columnarData == null) {
+				DataCache cache = DataCache.getInstance();
+				String key = DataCache.key("columnar",
+						contentHash(source.binValues));
+				Object cached = cache.get(key);
+				if (cached instanceof ColumnarData
+						&& matches((ColumnarData) cached)) {
+					source.columnarData = (ColumnarData) cached;
+				} else {
+					// collision of hashes or stale spilled snapshot is
+					// replaced
+					source.columnarData = makeColumnarData(source.data,
+							source.binValues);
+					cache.put(key, source.columnarData,
+							source.columnarData.estimateBytes());
+				}
+			}
+			return source.columnarData;
+		}
+	}
+
+	/**
+	 * Content hash of source data computed directly from the instances (types
+	 * of attributes, values, weights and class values) and from the values of
+	 * bins. Equal data have the same hash, it's used as the key of snapshots
+	 * in {@link DataCache}.
+	 * 
+	 * @param binValues
+	 *            values of bins or null
+	 * @return content hash of data
+	 */
+	private long contentHash(double[][] binValues) {
+		long hash;
+		if (isInstances) {
+			hash = WekaUtils.contentHash((Instances) source.data);
+		} else {
+			GenLibInstances instances = (GenLibInstances) source.data;
+			hash = DataCache.mix(instances.numInstances(),
+					instances.numAttributes());
+			for (int a = 0; a < instances.numAttributes(); a++) {
+				hash = DataCache.mix(hash, isNumeric(a) ? -2 : -3);
+			}
+			Enumeration<GenLibInstance> eInstances = instances.getInstances();
+			while (eInstances.hasMoreElements()) {
+				GenLibInstance instance = eInstances.nextElement();
+				for (int a = 0; a < instances.numAttributes(); a++) {
+					hash = DataCache.mix(hash, Double
+							.doubleToLongBits(instance.getValueOfAttribute(a)));
+				}
+				hash = DataCache.mix(hash,
+						Double.doubleToLongBits(instance.getValueOfClass()));
+			}
+		}
+
+		if (binValues != null) {
+			for (int a = 0; a < binValues.length; a++) {
+				if (binValues[a] != null) {
+					hash = DataCache.mix(hash, a);
+					for (double value : binValues[a]) {
+						hash = DataCache.mix(hash,
+								Double.doubleToLongBits(value));
+					}
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Tests if the cached snapshot can be snapshot of source data. It checks
+	 * the number of instances, types of attributes and unweighted class
+	 * counts. Mismatch only means that the snapshot is built again.
+	 * 
+	 * @param columnar
+	 *            cached snapshot
+	 * @return true iff the snapshot matches these data
+	 */
+	private boolean matches(ColumnarData columnar) {
+		int numInstances = numSourceInstances();
+		if (columnar.numInstances() != numInstances
+				|| columnar.numClasses() != numClasses
+				|| columnar.numAttributes() != numAttributes()) {
+			return false;
+		}
+
+		for (int a = 0; a < columnar.numAttributes(); a++) {
+			if (columnar.isNumeric(a) != isNumeric(a)) {
+				return false;
+			}
+		}
+
+		// unweighted counts, indices of classes are taken as in snapshot
+		int[] counts = new int[numClasses];
+		int[] sourceCounts = new int[numClasses];
+		int row = 0;
+		if (isInstances) {
+			Instances instances = (Instances) source.data;
+			for (; row < numInstances; row++) {
+				if (!countClass(counts, columnar.classIndex(row))
+						|| !countClass(sourceCounts,
+								(int) instances.instance(row).classValue())) {
+					return false;
+				}
+			}
+		} else {
+			Enumeration<GenLibInstance> eInstances = ((GenLibInstances) source.data)
+					.getInstances();
+			for (; row < numInstances && eInstances.hasMoreElements(); row++) {
+				if (!countClass(counts, columnar.classIndex(row))
+						|| !countClass(sourceCounts, (int) eInstances
+								.nextElement().getValueOfClass())) {
+					return false;
+				}
+			}
+		}
+		return row == numInstances && Arrays.equals(counts, sourceCounts);
+	}
+
+	/**
+	 * Increments count of class with index <i>classIndex</i>.
+	 * 
+	 * @param counts
+	 *            counts of classes
+	 * @param classIndex
+	 *            index of class
+	 * @return false iff the index is out of range
+	 */
+	private static boolean countClass(int[] counts, int classIndex) {
+		if (classIndex < 0 || classIndex >= counts.length) {
+			return false;
+		}
+		counts[classIndex]++;
+		return true;
+	}
+
+	/**
+	 * Number of instances of source data.
+	 * 
+	 * @return number of instances
+	 */
+	private int numSourceInstances() {
+		if (isInstances) {
+			return ((Instances) source.data).numInstances();
+		}
+		return ((GenLibInstances) source.data).numInstances();
+	}
+
+	/**
+	 * Number of attributes of data (including class attribute).
+	 * 
+	 * @return number of attributes
+	 */
+	private int numAttributes() {
+		if (isInstances) {
+			return ((Instances) source.data).numAttributes();
+		}
+		return ((GenLibInstances) source.data).numAttributes();
+	}
+
+	/**
+	 * Tests if the attribute of data is numeric.
+	 * 
+	 * @param attribute
+	 *            index of attribute
+	 * @return true iff the attribute is numeric
+	 */
+	private boolean isNumeric(int attribute) {
+		if (isInstances) {
+			return ((Instances) source.data).attribute(attribute).isNumeric();
+		}
+		Enumeration<GenLibInstance> eInstances = ((GenLibInstances) source.data)
+				.getInstances();
+		return eInstances.hasMoreElements()
+				&& eInstances.nextElement().getAttribute(attribute)
+						.isNumeric();
+	}
+
+	/**
+	 * Tests if the data are evaluated by chunks.
+	 * 
+	 * @return true iff the data have chunks
+	 */
+	public boolean isChunked() {
+		return chunkRows > 0;
+	}
+
+	/**
+	 * Number of chunks of rows of this data. Data without chunks have one
+	 * chunk.
+	 * 
+	 * @return number of chunks
+	 */
+	public int numChunks() {
+		if (chunkRows <= 0) {
+			return 1;
+		}
+		return (numInstances + chunkRows - 1) / chunkRows;
+	}
+
+	/**
+	 * Method creates columnar snapshot of one chunk of consecutive rows. The
+	 * snapshot isn't kept nor cached, so only the chunks that are evaluated
+	 * are on the heap (rows of memory mapped instances are read from the file
+	 * when the chunk is created). Data without chunks return
+	 * {@link #getColumnarData()}.
+	 * 
+	 * @param chunk
+	 *            index of chunk
+	 * @return columnar snapshot of rows of chunk
+	 */
+	public ColumnarData getChunk(int chunk) {
+		if (chunkRows <= 0) {
+			return getColumnarData();
+		}
+		return makeChunk(chunk, source.binValues);
+	}
+
+	/**
+	 * Method creates new columnar snapshot of one chunk of rows. Only the rows
+	 * of chunk are read, instances aren't copied.
+	 * 
+	 * @param chunk
+	 *            index of chunk
+	 * @param binValues
+	 *            values of bins of attributes or null
+	 * @return columnar snapshot of rows of chunk
+	 */
+	private ColumnarData makeChunk(int chunk, double[][] binValues) {
+		int from = chunk * chunkRows;
+		int count = Math.min(chunkRows, numInstances - from);
+		Object data = getData();
+		if (isInstances) {
+			return ColumnarData.fromInstances((Instances) data, binValues,
+					from, count);
+		}
+		return ColumnarData.fromGenLibInstances(
+				((GenLibInstances) data).getPart(from, count), binValues);
+	}
+
+	/**
+	 * Method returns columnar snapshot with classes of this data. Chunked data
+	 * have snapshot with only the counts of classes (see
+	 * {@link ColumnarData#fromClassCounts(int[], int, boolean)}), which are
+	 * counted chunk by chunk, so neither the attributes nor the classes of
+	 * rows are kept. Other data return {@link #getColumnarData()}.
+	 * 
+	 * @return snapshot with classes
+	 */
+	public synchronized ColumnarData getClassData() {
+		if (chunkRows <= 0) {
+			return getColumnarData();
+		}
+
+		if (classData == null) {
+			Object data = getData();
+			int[] counts = new int[Math.max(1, numClasses)];
+			boolean missingClass = false;
+			for (int chunk = 0; chunk < numChunks(); chunk++) {
+				int from = chunk * chunkRows;
+				int count = Math.min(chunkRows, numInstances - from);
+				Enumeration<GenLibInstance> eInstances = isInstances ? null
+						: ((GenLibInstances) data).getPart(from, count)
+								.getInstances();
+				for (int row = from; row < from + count; row++) {
+					double classValue = isInstances ? ((Instances) data)
+							.instance(row).classValue() : eInstances
+							.nextElement().getValueOfClass();
+					missingClass |= Double.isNaN(classValue);
+					int classIndex = (int) classValue;
+					if (classIndex >= 0 && classIndex < counts.length) {
+						counts[classIndex]++;
+					}
+				}
+			}
+			classData = ColumnarData.fromClassCounts(counts, numInstances,
+					missingClass);
+		}
+		return classData;
+	}
+
+	/**
+	 * Method creates new columnar snapshot of data.
+	 * 
+	 * @param binValues
+	 *            values of bins of attributes or null
+	 * @return columnar snapshot of data
+	 */
+	private ColumnarData makeColumnarData(double[][] binValues) {
+		return makeColumnarData(getData(), binValues);
+	}
+
+	/**
+	 * Method creates new columnar snapshot of instances.
+	 * 
+	 * @param data
+	 *            instances (GenLibInstances or Instances)
+	 * @param binValues
+	 *            values of bins of attributes or null
+	 * @return columnar snapshot of instances
+	 */
+	private ColumnarData makeColumnarData(Object data, double[][] binValues) {
+		if (isInstances) {
+			return ColumnarData.fromInstances((Instances) data, binValues);
+		}
+		return ColumnarData.fromGenLibInstances((GenLibInstances) data,
+				binValues);
+	}
+
+	/**
+	 * Method which returns presorted rows of numeric attributes of this data
+	 * object. Order of each attribute is sorted once at its first use and it's
+	 * shared by all generators and operators working with this data. Views
+	 * filter the order of their source data instead of sorting again. Order is
+	 * dropped when the data are randomized.
+	 * 
+	 * @return presorted rows of numeric attributes
+	 * @throws WrongDataException
+	 *             if the data are chunked
+	 */
+	public synchronized SortedRows getSortedRows() {
+		checkNotChunked("sorted rows");
+		if (rows == null) {
+			return sourceSortedRows();
+		}
+		if (sortedRows == null) {
+			sortedRows = sourceSortedRows().subset(rows);
+		}
+		return sortedRows;
+	}
+
+	/**
+	 * Method returns presorted rows of source data, which are shared by all
+	 * views of source data.
+	 * 
+	 * @return presorted rows of source data
+	 */
+	private SortedRows sourceSortedRows() {
+		ColumnarData columnar = sourceColumnarData();
+		Source source = this.source;
+		synchronized (source) {
+			if (source.sortedRows == null) {
+				DataCache cache = DataCache.getInstance();
+				String key = DataCache.key("sorted", columnar.contentHash());
+				Object cached = cache.get(key);
+				if (cached instanceof SortedRows
+						&& ((SortedRows) cached).matches(columnar)) {
+					source.sortedRows = (SortedRows) cached;
+				} else {
+					source.sortedRows = new SortedRows(columnar);
+					cache.put(key, source.sortedRows,
+							source.sortedRows.estimateBytes());
+				}
+			}
+			return source.sortedRows;
+		}
+	}
+
 	/**
 	 * Method which returns index of attribute values to access correct array
 	 * values
@@ -372,10 +1342,10 @@ public class Data implements Serializable {
 	public void makeAttrValueIndexMap() {
 		if (isInstances) {
 			attrValueIndexMap = WekaUtils
-					.makeAttrValueIndexMap((Instances) data);
+					.makeAttrValueIndexMap((Instances) source.data);
 		} else {
 			attrValueIndexMap = Utils
-					.makeAttrValueIndexMap((GenLibInstances) data);
+					.makeAttrValueIndexMap((GenLibInstances) source.data);
 		}
 	}
 
@@ -386,9 +1356,10 @@ public class Data implements Serializable {
 	 */
 	public void makeAttrIndexMap() {
 		if (isInstances) {
-			attrIndexMap = WekaUtils.makeAttrIndexMap((Instances) data);
+			attrIndexMap = WekaUtils.makeAttrIndexMap((Instances) source.data);
 		} else {
-			attrIndexMap = Utils.makeAttrIndexMap((GenLibInstances) data);
+			attrIndexMap = Utils
+					.makeAttrIndexMap((GenLibInstances) source.data);
 		}
 
 	}
@@ -408,6 +1379,8 @@ public class Data implements Serializable {
 
 		boolean resample = false;
 		double trainRatio = 1;
+		int bins = 0;
+		boolean stratify = false;
 
 		for (int i = 0; i < parameters.length; i += 2) {
 			if (parameters[i] == "") {
@@ -427,10 +1400,43 @@ public class Data implements Serializable {
 			case TRAINRATIO:
 				trainRatio = Double.parseDouble(parameters[i + 1]);
 				break;
+			case SUBSAMPLE:
+				subsampleRatio = Double.parseDouble(parameters[i + 1]);
+				break;
+			case SUBSAMPLEGEN:
+				subsampleGen = Math.max(1,
+						Integer.parseInt(parameters[i + 1]));
+				break;
+			case BINS:
+				bins = Integer.parseInt(parameters[i + 1]);
+				break;
+			case STRATIFY:
+				stratify = Boolean.valueOf(parameters[i + 1]);
+				break;
+			case CHUNK:
+				chunkRows = Math.max(0, Integer.parseInt(parameters[i + 1]));
+				break;
+			case DSS:
+				dssDifficulty = Double.parseDouble(parameters[i + 1]);
+				break;
+			case DSSAGE:
+				dssAge = Double.parseDouble(parameters[i + 1]);
+				break;
 			}
 		}
 
-		createValidationAndTrainData(resample, trainRatio);
+		if (chunkRows > 0 && subsampleRatio < 1) {
+			// subsamples are views of data, they can't be chunked
+			throw new WrongDataException(String.format(
+					TextResource.getString(TextKeys.eChunkedData), "SUBSAMPLE"));
+		}
+
+		if (bins > 0) {
+			// one byte per value, the last bin is for missing values
+			makeBinValues(Math.max(2, Math.min(255, bins)));
+		}
+
+		createValidationAndTrainData(resample, trainRatio, stratify);
 	}
 
 }
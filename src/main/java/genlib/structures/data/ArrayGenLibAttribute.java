@@ -0,0 +1,145 @@
+package genlib.structures.data;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+/**
+ * Attribute of {@link ArrayGenLibInstances}. It's numeric or nominal with
+ * defined labels. Values of nominal attribute are stored in instances as
+ * indices of its labels.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ArrayGenLibAttribute implements GenLibAttribute, Serializable {
+
+	/** for serialization */
+	private static final long serialVersionUID = 5027313419446925377L;
+	/** name of attribute */
+	private final String name;
+	/** labels of nominal attribute, null for numeric attribute */
+	private final String[] labels;
+	/** index of labels */
+	private transient HashMap<String, Integer> labelIndex;
+
+	/**
+	 * Constructor of numeric attribute.
+	 *
+	 * @param name
+	 *            of attribute
+	 */
+	public ArrayGenLibAttribute(String name) {
+		this.name = name;
+		this.labels = null;
+	}
+
+	/**
+	 * Constructor of nominal attribute.
+	 *
+	 * @param name
+	 *            of attribute
+	 * @param labels
+	 *            nominal values of attribute
+	 */
+	public ArrayGenLibAttribute(String name, String[] labels) {
+		this.name = name;
+		this.labels = labels;
+	}
+
+	/**
+	 * Constructor of nominal attribute with index of labels that was already
+	 * built (for example while the data were parsed).
+	 *
+	 * @param name
+	 *            of attribute
+	 * @param labels
+	 *            nominal values of attribute
+	 * @param labelIndex
+	 *            mapping of labels to their indices
+	 */
+	public ArrayGenLibAttribute(String name, String[] labels,
+			HashMap<String, Integer> labelIndex) {
+		this.name = name;
+		this.labels = labels;
+		this.labelIndex = labelIndex;
+	}
+
+	/**
+	 * Gets the name of this attribute.
+	 *
+	 * @return name of attribute
+	 */
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Gets the label of nominal value.
+	 *
+	 * @param index
+	 *            of value
+	 * @return label of value
+	 */
+	public String value(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * Gets the index of label of nominal attribute.
+	 *
+	 * @param label
+	 *            of value
+	 * @return index of value or -1 if there is no such label
+	 */
+	public int indexOfValue(String label) {
+		Integer index = getLabelIndex().get(label);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Gets the mapping of labels of nominal attribute to their indices. It's
+	 * created at first call if it wasn't built with the attribute. Returned
+	 * map should not be modified.
+	 *
+	 * @return mapping of labels to indices
+	 */
+	public synchronized HashMap<String, Integer> getLabelIndex() {
+		if (labelIndex == null) {
+			labelIndex = new HashMap<>();
+			for (int i = 0; i < labels.length; i++) {
+				labelIndex.put(labels[i], i);
+			}
+		}
+		return labelIndex;
+	}
+
+	/**
+	 * {@inheritDoc} </p> Numeric attribute has 0 values.
+	 */
+	@Override
+	public int numOfValues() {
+		return labels == null ? 0 : labels.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNumeric() {
+		return labels == null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNominal() {
+		return labels != null;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,46 @@
+package genlib.structures.data;
+
+/**
+ * Distribution of class values of {@link ArrayGenLibInstances}. Class counts
+ * are counted once when the distribution is created.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ArrayGenLibDistribution implements GenLibDistribution {
+
+	/** for serialization */
+	private static final long serialVersionUID = -2950962512226659735L;
+	/** counts of instances for each class */
+	private final double[] classCounts;
+
+	/**
+	 * Constructor that counts the class values of instances. Instances with
+	 * missing class are not counted.
+	 *
+	 * @param instances
+	 *            for which we count the classes
+	 */
+	public ArrayGenLibDistribution(ArrayGenLibInstances instances) {
+		this.classCounts = new double[instances.numClasses()];
+		if (instances.classAttribute().isNumeric()) {
+			return;
+		}
+
+		for (int row = 0; row < instances.numInstances(); row++) {
+			double value = instances.classValue(row);
+			if (!Double.isNaN(value)) {
+				classCounts[(int) value]++;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc} </p> Returned array should not be modified.
+	 */
+	@Override
+	public double[] getClassCounts() {
+		return classCounts;
+	}
+
+}
@@ -0,0 +1,62 @@
+package genlib.structures.data;
+
+/**
+ * Instance of {@link ArrayGenLibInstances}. It doesn't hold any values, it's
+ * only a view of one row of the columns of instances.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ArrayGenLibInstance implements GenLibInstance {
+
+	/** instances with values */
+	private final ArrayGenLibInstances instances;
+	/** index of row in instances */
+	private final int row;
+
+	/**
+	 * Constructor of view of one row.
+	 *
+	 * @param instances
+	 *            with values
+	 * @param row
+	 *            index of row
+	 */
+	public ArrayGenLibInstance(ArrayGenLibInstances instances, int row) {
+		this.instances = instances;
+		this.row = row;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public GenLibAttribute getAttribute(int index) {
+		return instances.attribute(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getValueOfAttribute(int index) {
+		return instances.value(row, index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public GenLibAttribute getClassAttribute() {
+		return instances.classAttribute();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getValueOfClass() {
+		return instances.classValue(row);
+	}
+
+}
@@ -0,0 +1,325 @@
+package genlib.structures.data;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Implementation of {@link GenLibInstances} backed by primitive arrays. Values
+ * are stored by columns (one double array for each attribute, nominal values
+ * are indices of labels, missing values are NaN), so there is no object for
+ * each instance as in weka Instances. </p> Instances object is a view of the
+ * columns through array of row indices. Parts, resamples, subsets and folds
+ * share the columns with this object and they only create new array of
+ * indices. Randomization permutes only the indices of this view.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ArrayGenLibInstances implements GenLibInstances {
+
+	/** for serialization */
+	private static final long serialVersionUID = 3181558734478627101L;
+	/** name of relation */
+	private final String relation;
+	/** attributes of instances */
+	private final ArrayGenLibAttribute[] attributes;
+	/** values of attributes indexed [attribute][row] */
+	private final double[][] columns;
+	/** index of class attribute */
+	private final int classIndex;
+	/** rows of columns that belong to this view */
+	private final int[] rows;
+	/** distribution of class values */
+	private transient ArrayGenLibDistribution distribution;
+
+	/**
+	 * Constructor of instances with all rows of the columns.
+	 *
+	 * @param relation
+	 *            name of relation
+	 * @param attributes
+	 *            attributes of instances
+	 * @param columns
+	 *            values of attributes indexed [attribute][row]
+	 * @param classIndex
+	 *            index of class attribute
+	 */
+	public ArrayGenLibInstances(String relation,
+			ArrayGenLibAttribute[] attributes, double[][] columns,
+			int classIndex) {
+		this.relation = relation;
+		this.attributes = attributes;
+		this.columns = columns;
+		this.classIndex = classIndex;
+		int numRows = columns.length == 0 ? 0 : columns[0].length;
+		this.rows = new int[numRows];
+		for (int i = 0; i < numRows; i++) {
+			rows[i] = i;
+		}
+	}
+
+	/**
+	 * Constructor of instances with all rows for subclasses that store the
+	 * values elsewhere and override {@link #columnValue(int, int)}.
+	 *
+	 * @param relation
+	 *            name of relation
+	 * @param attributes
+	 *            attributes of instances
+	 * @param numRows
+	 *            number of rows
+	 * @param classIndex
+	 *            index of class attribute
+	 */
+	protected ArrayGenLibInstances(String relation,
+			ArrayGenLibAttribute[] attributes, int numRows, int classIndex) {
+		this.relation = relation;
+		this.attributes = attributes;
+		this.columns = null;
+		this.classIndex = classIndex;
+		this.rows = new int[numRows];
+		for (int i = 0; i < numRows; i++) {
+			rows[i] = i;
+		}
+	}
+
+	/**
+	 * Constructor of view of the instances with other rows.
+	 *
+	 * @param source
+	 *            instances with columns
+	 * @param rows
+	 *            rows of columns in new view
+	 */
+	protected ArrayGenLibInstances(ArrayGenLibInstances source, int[] rows) {
+		this.relation = source.relation;
+		this.attributes = source.attributes;
+		this.columns = source.columns;
+		this.classIndex = source.classIndex;
+		this.rows = rows;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int numInstances() {
+		return rows.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int numAttributes() {
+		return attributes.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int numClasses() {
+		ArrayGenLibAttribute classAttribute = attributes[classIndex];
+		return classAttribute.isNumeric() ? 1 : classAttribute.numOfValues();
+	}
+
+	/**
+	 * Gets the name of relation.
+	 *
+	 * @return relation name
+	 */
+	public String relationName() {
+		return relation;
+	}
+
+	/**
+	 * Gets the attribute at index.
+	 *
+	 * @param index
+	 *            of attribute
+	 * @return attribute
+	 */
+	public ArrayGenLibAttribute attribute(int index) {
+		return attributes[index];
+	}
+
+	/**
+	 * Gets the class attribute.
+	 *
+	 * @return class attribute
+	 */
+	public ArrayGenLibAttribute classAttribute() {
+		return attributes[classIndex];
+	}
+
+	/**
+	 * Gets the index of class attribute.
+	 *
+	 * @return class index
+	 */
+	public int classIndex() {
+		return classIndex;
+	}
+
+	/**
+	 * Value of the attribute in the row of this view.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param attribute
+	 *            index of attribute
+	 * @return value of attribute
+	 */
+	public double value(int row, int attribute) {
+		return columnValue(attribute, rows[row]);
+	}
+
+	/**
+	 * Class value in the row of this view.
+	 *
+	 * @param row
+	 *            index of row
+	 * @return class value
+	 */
+	public double classValue(int row) {
+		return columnValue(classIndex, rows[row]);
+	}
+
+	/**
+	 * Value of the attribute in the row of columns (not of this view).
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @param index
+	 *            index of row in columns
+	 * @return value of attribute
+	 */
+	protected double columnValue(int attribute, int index) {
+		return columns[attribute][index];
+	}
+
+	/**
+	 * Creates the view of the same columns with other rows.
+	 *
+	 * @param viewRows
+	 *            rows of columns in new view
+	 * @return new view
+	 */
+	protected ArrayGenLibInstances view(int[] viewRows) {
+		return new ArrayGenLibInstances(this, viewRows);
+	}
+
+	/**
+	 * Gets the instance in the row of this view.
+	 *
+	 * @param row
+	 *            index of row
+	 * @return instance
+	 */
+	public ArrayGenLibInstance instance(int row) {
+		return new ArrayGenLibInstance(this, row);
+	}
+
+	/**
+	 * {@inheritDoc} </p> Folds are created in the same way as in weka, the
+	 * first folds have one instance more if the number of instances isn't
+	 * divisible by number of folds.
+	 */
+	@Override
+	public ArrayGenLibInstances testData(int numFolds, int numFold) {
+		int numInstForFold = rows.length / numFolds;
+		int offset;
+		if (numFold < rows.length % numFolds) {
+			numInstForFold++;
+			offset = numFold;
+		} else {
+			offset = rows.length % numFolds;
+		}
+		int first = numFold * (rows.length / numFolds) + offset;
+		return getPart(first, numInstForFold);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void randomize(Random random) {
+		for (int j = rows.length - 1; j > 0; j--) {
+			int i = random.nextInt(j + 1);
+			int swap = rows[i];
+			rows[i] = rows[j];
+			rows[j] = swap;
+		}
+	}
+
+	/**
+	 * {@inheritDoc} </p> New instances share the columns with this object.
+	 */
+	@Override
+	public ArrayGenLibInstances getPart(int from, int count) {
+		return view(Arrays.copyOfRange(rows, from, from + count));
+	}
+
+	/**
+	 * {@inheritDoc} </p> New instances share the columns with this object.
+	 */
+	@Override
+	public ArrayGenLibInstances getSubset(int[] indices) {
+		int[] subset = new int[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			subset[i] = rows[indices[i]];
+		}
+		return view(subset);
+	}
+
+	/**
+	 * {@inheritDoc} </p> New instances share the columns with this object.
+	 */
+	@Override
+	public ArrayGenLibInstances resample(Random random) {
+		int[] resampled = new int[rows.length];
+		for (int i = 0; i < resampled.length; i++) {
+			resampled[i] = rows[random.nextInt(rows.length)];
+		}
+		return view(resampled);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Enumeration<GenLibInstance> getInstances() {
+		return new Enumeration<GenLibInstance>() {
+			private int row = 0;
+
+			@Override
+			public boolean hasMoreElements() {
+				return row < rows.length;
+			}
+
+			@Override
+			public GenLibInstance nextElement() {
+				if (row >= rows.length) {
+					throw new NoSuchElementException();
+				}
+				return instance(row++);
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc} </p> Distribution is computed once, randomization doesn't
+	 * change it.
+	 */
+	@Override
+	public synchronized ArrayGenLibDistribution getDistribution() {
+		if (distribution == null) {
+			distribution = new ArrayGenLibDistribution(this);
+		}
+		return distribution;
+	}
+
+}
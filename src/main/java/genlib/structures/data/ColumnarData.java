@@ -0,0 +1,1099 @@
+package genlib.structures.data;
+
+import genlib.structures.trees.FlatTree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Read-only columnar snapshot of data (Instances or GenLibInstances). Values of
+ * each attribute are stored in primitive arrays, numeric attributes in double
+ * columns and nominal attributes in columns of indices of values, so fitness
+ * functions can evaluate trees without enumerating objects and without the
+ * virtual calls of the instance interfaces. Nominal column is as narrow as the
+ * number of values of attribute allows: unsigned bytes for at most
+ * {@link #MAX_BYTE_VALUES} values, unsigned shorts for at most
+ * {@link #MAX_SHORT_VALUES} values and ints otherwise (see
+ * {@link #nominalValue(int, int)}). Missing nominal values are stored as 0
+ * which is the same branch that the tree would take with <i>(int) NaN</i>.
+ * </p> Numeric
+ * attribute can be binned (lossy mode, see
+ * {@link QuantileSketch#binValues(int)}): its column is stored as bytes with
+ * indices of bins and the value of row is the value of its bin. </p> Sparse
+ * attributes of sparse data (weka {@link SparseInstance}) are stored by
+ * columns as increasing rows with present values and their values, absent
+ * values are 0 as in sparse instances. Attribute is sparse if at most
+ * {@link #SPARSE_DENSITY} of rows have its value, so dense rows are never
+ * created for data with many attributes. </p> View of snapshot (see
+ * {@link #view(int[])}) shares the columns of its base snapshot and it keeps
+ * only the rows of base in the view. Rows given to the methods are the rows
+ * of view, whole columns are indexed by the rows of base (see
+ * {@link #getRows()}).
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ColumnarData implements Serializable {
+
+	/** for serialization */
+	private static final long serialVersionUID = 4716352208865739012L;
+	/** maximal ratio of present values of sparse attribute */
+	public static final double SPARSE_DENSITY = 0.125;
+	/** maximal number of values of nominal attribute stored in bytes */
+	public static final int MAX_BYTE_VALUES = 1 << 8;
+	/** maximal number of values of nominal attribute stored in shorts */
+	public static final int MAX_SHORT_VALUES = 1 << 16;
+	/** number of rows in snapshot */
+	private final int numInstances;
+	/** number of attributes (with class attribute) */
+	private final int numAttributes;
+	/** number of class values */
+	private final int numClasses;
+	/** flags which attributes are numeric */
+	private final boolean[] isNumeric;
+	/** numeric columns, null for nominal attributes */
+	private final double[][] numericColumns;
+	/**
+	 * nominal columns of attributes with at most {@link #MAX_BYTE_VALUES}
+	 * values (unsigned bytes), null for other attributes
+	 */
+	private final byte[][] nominalBytes;
+	/**
+	 * nominal columns of attributes with at most {@link #MAX_SHORT_VALUES}
+	 * values (unsigned shorts), null for other attributes
+	 */
+	private final short[][] nominalShorts;
+	/** nominal columns of attributes with more values, null for others */
+	private final int[][] nominalColumns;
+	/** binned numeric columns, null for not binned attributes */
+	private final byte[][] binnedColumns;
+	/** values of bins of binned attributes */
+	private final double[][] binValues;
+	/** increasing rows with present values of sparse attributes */
+	private final int[][] sparseRows;
+	/** present values of sparse attributes */
+	private final double[][] sparseValues;
+	/** class values for each row */
+	private final double[] classValues;
+	/** class values typed to int (indices of class) for each row */
+	private final int[] classIndices;
+	/** true iff some row has missing class value */
+	private boolean missingClass = false;
+	/** counts of classes of rows, created lazily */
+	private int[] classCounts;
+	/** snapshot whose columns are shared by this view, null for other snapshots */
+	private final ColumnarData base;
+	/** rows of base snapshot in this view, null if this isn't view */
+	private final int[] rows;
+	/** bitset index of nominal attributes, created lazily */
+	private transient NominalBitsets nominalBitsets;
+	/** rank encoding of numeric columns, created lazily */
+	private transient RankedColumns rankedColumns;
+	/** content hash of snapshot, 0 if it wasn't computed yet */
+	private transient long contentHash;
+
+	/**
+	 * Constructor that allocates empty columns. Columns are filled by
+	 * {@link #set(int, int, double)} from static factory methods.
+	 *
+	 * @param numInstances
+	 *            number of rows
+	 * @param numClasses
+	 *            number of class values
+	 * @param isNumeric
+	 *            numeric flags for each attribute
+	 * @param numValues
+	 *            number of values for each attribute (used for nominal
+	 *            attributes)
+	 * @param binValues
+	 *            values of bins for each attribute (null if the attribute
+	 *            isn't binned) or null if there isn't any binned attribute
+	 * @param sparseCounts
+	 *            number of present values for each sparse attribute (-1 for
+	 *            dense attributes) or null if all attributes are dense
+	 */
+	private ColumnarData(int numInstances, int numClasses,
+			boolean[] isNumeric, int[] numValues, double[][] binValues,
+			int[] sparseCounts) {
+		this.numInstances = numInstances;
+		this.numAttributes = isNumeric.length;
+		this.numClasses = numClasses;
+		this.isNumeric = isNumeric;
+		this.numericColumns = new double[numAttributes][];
+		this.nominalBytes = new byte[numAttributes][];
+		this.nominalShorts = new short[numAttributes][];
+		this.nominalColumns = new int[numAttributes][];
+		this.binnedColumns = new byte[numAttributes][];
+		this.binValues = new double[numAttributes][];
+		this.sparseRows = new int[numAttributes][];
+		this.sparseValues = new double[numAttributes][];
+		this.classValues = new double[numInstances];
+		this.classIndices = new int[numInstances];
+		this.base = null;
+		this.rows = null;
+
+		for (int a = 0; a < numAttributes; a++) {
+			if (sparseCounts != null && sparseCounts[a] >= 0) {
+				// sparse columns are filled by fromSparseInstances
+				sparseRows[a] = new int[sparseCounts[a]];
+				sparseValues[a] = new double[sparseCounts[a]];
+			} else if (isNumeric[a] && binValues != null && a < binValues.length
+					&& binValues[a] != null) {
+				if (binValues[a].length > 256) {
+					throw new IllegalArgumentException();
+				}
+				this.binValues[a] = binValues[a];
+				binnedColumns[a] = new byte[numInstances];
+				if (sparseCounts != null) {
+					// absent values of sparse instances are 0
+					Arrays.fill(binnedColumns[a],
+							(byte) binOf(binValues[a], 0));
+				}
+			} else if (isNumeric[a]) {
+				numericColumns[a] = new double[numInstances];
+			} else if (numValues[a] <= MAX_BYTE_VALUES) {
+				nominalBytes[a] = new byte[numInstances];
+			} else if (numValues[a] <= MAX_SHORT_VALUES) {
+				nominalShorts[a] = new short[numInstances];
+			} else {
+				nominalColumns[a] = new int[numInstances];
+			}
+		}
+	}
+
+	/**
+	 * Constructor of snapshot with only the counts of classes (see
+	 * {@link #fromClassCounts(int[], int, boolean)}). Its rows can't be read.
+	 *
+	 * @param classCounts
+	 *            counts of classes of rows
+	 * @param numInstances
+	 *            number of rows
+	 * @param missingClass
+	 *            true iff some row has missing class value
+	 */
+	private ColumnarData(int[] classCounts, int numInstances,
+			boolean missingClass) {
+		this.numInstances = numInstances;
+		this.numAttributes = 0;
+		this.numClasses = classCounts.length;
+		this.isNumeric = new boolean[0];
+		this.numericColumns = new double[0][];
+		this.nominalBytes = new byte[0][];
+		this.nominalShorts = new short[0][];
+		this.nominalColumns = new int[0][];
+		this.binnedColumns = new byte[0][];
+		this.binValues = new double[0][];
+		this.sparseRows = new int[0][];
+		this.sparseValues = new double[0][];
+		this.classValues = null;
+		this.classIndices = null;
+		this.classCounts = classCounts;
+		this.missingClass = missingClass;
+		this.base = null;
+		this.rows = null;
+	}
+
+	/**
+	 * Constructor of view of base snapshot (see {@link #view(int[])}).
+	 *
+	 * @param base
+	 *            snapshot that isn't view
+	 * @param rows
+	 *            rows of base in view
+	 */
+	private ColumnarData(ColumnarData base, int[] rows) {
+		this.numInstances = rows.length;
+		this.numAttributes = base.numAttributes;
+		this.numClasses = base.numClasses;
+		this.isNumeric = base.isNumeric;
+		this.numericColumns = base.numericColumns;
+		this.nominalBytes = base.nominalBytes;
+		this.nominalShorts = base.nominalShorts;
+		this.nominalColumns = base.nominalColumns;
+		this.binnedColumns = base.binnedColumns;
+		this.binValues = base.binValues;
+		this.sparseRows = base.sparseRows;
+		this.sparseValues = base.sparseValues;
+		this.classValues = base.classValues;
+		this.classIndices = base.classIndices;
+		this.base = base;
+		this.rows = rows;
+		for (int row : rows) {
+			if (Double.isNaN(classValues[row])) {
+				missingClass = true;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Method creates columnar snapshot from weka Instances.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @return columnar snapshot of instances
+	 */
+	public static ColumnarData fromInstances(Instances instances) {
+		return fromInstances(instances, null);
+	}
+
+	/**
+	 * Method creates columnar snapshot from weka Instances with binned numeric
+	 * attributes.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @param binValues
+	 *            values of bins for each attribute, null if no attribute is
+	 *            binned
+	 * @return columnar snapshot of instances
+	 */
+	public static ColumnarData fromInstances(Instances instances,
+			double[][] binValues) {
+		return fromInstances(instances, binValues, 0,
+				instances.numInstances());
+	}
+
+	/**
+	 * Method creates columnar snapshot of count consecutive rows of weka
+	 * Instances (chunk of data) with binned numeric attributes. Instances
+	 * aren't copied, only the rows of chunk are read.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @param binValues
+	 *            values of bins for each attribute, null if no attribute is
+	 *            binned
+	 * @param from
+	 *            first row
+	 * @param count
+	 *            number of rows
+	 * @return columnar snapshot of rows of instances
+	 */
+	public static ColumnarData fromInstances(Instances instances,
+			double[][] binValues, int from, int count) {
+		if (count > 0 && instances.instance(from) instanceof SparseInstance) {
+			return fromSparseInstances(instances, binValues, from, count);
+		}
+
+		boolean[] isNumeric = new boolean[instances.numAttributes()];
+		int[] numValues = new int[isNumeric.length];
+		for (int a = 0; a < isNumeric.length; a++) {
+			isNumeric[a] = instances.attribute(a).isNumeric();
+			numValues[a] = instances.attribute(a).numValues();
+		}
+
+		ColumnarData columnar = new ColumnarData(count,
+				instances.numClasses(), isNumeric, numValues, binValues, null);
+
+		for (int row = 0; row < count; row++) {
+			Instance instance = instances.instance(from + row);
+			for (int a = 0; a < isNumeric.length; a++) {
+				columnar.set(a, row, instance.value(a));
+			}
+			columnar.setClass(row, instance.classValue());
+		}
+
+		return columnar;
+	}
+
+	/**
+	 * Method creates columnar snapshot from sparse weka Instances. Only the
+	 * present values of instances are read. Attributes with at most
+	 * {@link #SPARSE_DENSITY} of present values (except class attribute) are
+	 * stored as sparse columns, other attributes as dense columns with 0 for
+	 * absent values.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @param binValues
+	 *            values of bins for each attribute or null, sparse attributes
+	 *            aren't binned
+	 * @param from
+	 *            first row
+	 * @param numInstances
+	 *            number of rows
+	 * @return columnar snapshot of instances
+	 */
+	private static ColumnarData fromSparseInstances(Instances instances,
+			double[][] binValues, int from, int numInstances) {
+		boolean[] isNumeric = new boolean[instances.numAttributes()];
+		int[] numValues = new int[isNumeric.length];
+		for (int a = 0; a < isNumeric.length; a++) {
+			isNumeric[a] = instances.attribute(a).isNumeric();
+			numValues[a] = instances.attribute(a).numValues();
+		}
+
+		int[] counts = new int[isNumeric.length];
+		for (int row = 0; row < numInstances; row++) {
+			Instance instance = instances.instance(from + row);
+			for (int i = 0; i < instance.numValues(); i++) {
+				counts[instance.index(i)]++;
+			}
+		}
+		for (int a = 0; a < counts.length; a++) {
+			if (a == instances.classIndex()
+					|| counts[a] > SPARSE_DENSITY * numInstances) {
+				counts[a] = -1;
+			}
+		}
+
+		ColumnarData columnar = new ColumnarData(numInstances,
+				instances.numClasses(), isNumeric, numValues, binValues, counts);
+		Arrays.fill(counts, 0);
+		for (int row = 0; row < numInstances; row++) {
+			Instance instance = instances.instance(from + row);
+			for (int i = 0; i < instance.numValues(); i++) {
+				int a = instance.index(i);
+				if (columnar.sparseRows[a] != null) {
+					columnar.sparseRows[a][counts[a]] = row;
+					// missing nominal values are 0 as in dense columns
+					columnar.sparseValues[a][counts[a]++] = isNumeric[a] ? instance
+							.valueSparse(i) : (int) instance.valueSparse(i);
+				} else {
+					columnar.set(a, row, instance.valueSparse(i));
+				}
+			}
+			columnar.setClass(row, instance.classValue());
+		}
+
+		return columnar;
+	}
+
+	/**
+	 * Method creates columnar snapshot from GenLibInstances. Types of
+	 * attributes are taken from the first instance.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @return columnar snapshot of instances
+	 */
+	public static ColumnarData fromGenLibInstances(GenLibInstances instances) {
+		return fromGenLibInstances(instances, null);
+	}
+
+	/**
+	 * Method creates columnar snapshot from GenLibInstances with binned
+	 * numeric attributes.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @param binValues
+	 *            values of bins for each attribute, null if no attribute is
+	 *            binned
+	 * @return columnar snapshot of instances
+	 */
+	public static ColumnarData fromGenLibInstances(GenLibInstances instances,
+			double[][] binValues) {
+		if (instances instanceof ArrayGenLibInstances) {
+			return fromArrayInstances((ArrayGenLibInstances) instances,
+					binValues);
+		}
+
+		boolean[] isNumeric = new boolean[instances.numAttributes()];
+		int[] numValues = new int[isNumeric.length];
+		Enumeration<GenLibInstance> eInstances = instances.getInstances();
+
+		if (eInstances.hasMoreElements()) {
+			GenLibInstance first = instances.getInstances().nextElement();
+			for (int a = 0; a < isNumeric.length; a++) {
+				isNumeric[a] = first.getAttribute(a).isNumeric();
+				numValues[a] = first.getAttribute(a).numOfValues();
+			}
+		}
+
+		ColumnarData columnar = new ColumnarData(instances.numInstances(),
+				instances.numClasses(), isNumeric, numValues, binValues, null);
+
+		int row = 0;
+		while (eInstances.hasMoreElements()) {
+			GenLibInstance instance = eInstances.nextElement();
+			for (int a = 0; a < isNumeric.length; a++) {
+				columnar.set(a, row, instance.getValueOfAttribute(a));
+			}
+			columnar.setClass(row, instance.getValueOfClass());
+			row++;
+		}
+
+		return columnar;
+	}
+
+	/**
+	 * Method creates snapshot with only the counts of classes, without
+	 * attributes and without rows. It is used for data evaluated by chunks,
+	 * where the fitness functions read only the number of rows and classes
+	 * (rows are read from chunks), so the classes of rows aren't kept.
+	 *
+	 * @param classCounts
+	 *            counts of classes of rows (see {@link #classCounts()})
+	 * @param numInstances
+	 *            number of rows
+	 * @param missingClass
+	 *            true iff some row has missing class value
+	 * @return snapshot of counts of classes
+	 */
+	public static ColumnarData fromClassCounts(int[] classCounts,
+			int numInstances, boolean missingClass) {
+		return new ColumnarData(classCounts, numInstances, missingClass);
+	}
+
+	/**
+	 * Method creates columnar snapshot from array-backed instances. Values are
+	 * copied column by column.
+	 *
+	 * @param instances
+	 *            from which we create snapshot
+	 * @param binValues
+	 *            values of bins for each attribute or null
+	 * @return columnar snapshot of instances
+	 */
+	private static ColumnarData fromArrayInstances(
+			ArrayGenLibInstances instances, double[][] binValues) {
+		boolean[] isNumeric = new boolean[instances.numAttributes()];
+		int[] numValues = new int[isNumeric.length];
+		for (int a = 0; a < isNumeric.length; a++) {
+			isNumeric[a] = instances.attribute(a).isNumeric();
+			numValues[a] = instances.attribute(a).numOfValues();
+		}
+
+		ColumnarData columnar = new ColumnarData(instances.numInstances(),
+				instances.numClasses(), isNumeric, numValues, binValues, null);
+
+		for (int a = 0; a < isNumeric.length; a++) {
+			for (int row = 0; row < columnar.numInstances; row++) {
+				columnar.set(a, row, instances.value(row, a));
+			}
+		}
+		for (int row = 0; row < columnar.numInstances; row++) {
+			columnar.setClass(row, instances.classValue(row));
+		}
+
+		return columnar;
+	}
+
+	/**
+	 * Sets the value of attribute in the row.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @param row
+	 *            index of row
+	 * @param value
+	 *            value to set
+	 */
+	private void set(int attribute, int row, double value) {
+		if (binnedColumns[attribute] != null) {
+			binnedColumns[attribute][row] = (byte) binOf(binValues[attribute],
+					value);
+		} else if (isNumeric[attribute]) {
+			numericColumns[attribute][row] = value;
+		} else if (nominalBytes[attribute] != null) {
+			nominalBytes[attribute][row] = (byte) nominalIndex(value,
+					MAX_BYTE_VALUES);
+		} else if (nominalShorts[attribute] != null) {
+			nominalShorts[attribute][row] = (short) nominalIndex(value,
+					MAX_SHORT_VALUES);
+		} else {
+			nominalColumns[attribute][row] = (int) value;
+		}
+	}
+
+	/**
+	 * Index of nominal value that must fit into the narrow column.
+	 *
+	 * @param value
+	 *            nominal value
+	 * @param maxValues
+	 *            number of values that the column can hold
+	 * @return index of value
+	 */
+	private static int nominalIndex(double value, int maxValues) {
+		int index = (int) value;
+		if (index < 0 || index >= maxValues) {
+			throw new IllegalArgumentException();
+		}
+		return index;
+	}
+
+	/**
+	 * Sets the class value in the row.
+	 *
+	 * @param row
+	 *            index of row
+	 * @param value
+	 *            class value
+	 */
+	private void setClass(int row, double value) {
+		classValues[row] = value;
+		classIndices[row] = (int) value;
+		if (Double.isNaN(value)) {
+			missingClass = true;
+		}
+	}
+
+	/**
+	 * Method creates view of this snapshot with chosen rows. Row i of view is
+	 * the row rows[i] of this snapshot, rows can repeat. View shares the
+	 * columns (and the rank encoding) of this snapshot, only the array of rows
+	 * is kept, so the data aren't copied.
+	 *
+	 * @param rows
+	 *            rows of this snapshot in view
+	 * @return view of this snapshot
+	 */
+	public ColumnarData view(int[] rows) {
+		if (this.rows != null) {
+			return new ColumnarData(base, RowIndices.select(this.rows, rows));
+		}
+		return new ColumnarData(this, rows);
+	}
+
+	/**
+	 * Method computes confusion matrix of the flattened tree. Rows of the
+	 * matrix are true classes and columns are predicted classes.
+	 *
+	 * @param tree
+	 *            flattened tree
+	 * @return confusion matrix [true class][predicted class]
+	 * @see FlatTree#leafHistograms(ColumnarData)
+	 */
+	public int[][] confusionMatrix(FlatTree tree) {
+		return confusionMatrix(tree, tree.leafHistograms(this));
+	}
+
+	/**
+	 * Method counts confusion matrices of the trees from (inclusive) to
+	 * (exclusive) in data-major order. Rows are processed in blocks and each
+	 * block is evaluated by all the trees before the next block is loaded, so
+	 * the block stays in cache. Counts are accumulated into flat buffer where
+	 * matrix of tree i starts at index i * numClasses * numClasses.
+	 *
+	 * @param trees
+	 *            flattened trees
+	 * @param from
+	 *            index of first tree
+	 * @param to
+	 *            end of trees
+	 * @param blockRows
+	 *            number of rows in one block
+	 * @param counts
+	 *            buffer with counts [tree][true class][predicted class]
+	 */
+	public void confusionMatrices(FlatTree[] trees, int from, int to,
+			int blockRows, int[] counts) {
+		int size = numClasses * numClasses;
+		for (int start = 0; start < numInstances; start += blockRows) {
+			int end = Math.min(numInstances, start + blockRows);
+			for (int t = from; t < to; t++) {
+				FlatTree tree = trees[t];
+				int offset = t * size;
+				for (int row = start; row < end; row++) {
+					counts[offset + classIndex(row) * numClasses
+							+ (int) tree.classify(this, row)]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method computes confusion matrix of the flattened tree from class
+	 * histograms of its leaves. Every leaf adds its histogram into the column
+	 * of its predicted class.
+	 *
+	 * @param tree
+	 *            flattened tree
+	 * @param histograms
+	 *            class histograms of the leaves of the tree
+	 * @return confusion matrix [true class][predicted class]
+	 */
+	public int[][] confusionMatrix(FlatTree tree, int[][] histograms) {
+		int[][] matrix = new int[numClasses][numClasses];
+		for (int node = 0; node < histograms.length; node++) {
+			int[] histogram = histograms[node];
+			if (histogram == null) {
+				continue;
+			}
+
+			int pClass = (int) tree.getValue(node);
+			for (int tClass = 0; tClass < numClasses; tClass++) {
+				matrix[tClass][pClass] += histogram[tClass];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Gets the bitset index of nominal attributes of this snapshot. Index is
+	 * created at first call.
+	 *
+	 * @return bitset index
+	 */
+	public synchronized NominalBitsets getNominalBitsets() {
+		if (nominalBitsets == null) {
+			nominalBitsets = new NominalBitsets(this);
+		}
+		return nominalBitsets;
+	}
+
+	/**
+	 * Content hash of snapshot computed from types of attributes, values
+	 * (bins and values of bins of binned attributes) and class values. Equal
+	 * snapshots have the same hash, it's used as the key of structures
+	 * derived from data in {@link DataCache}.
+	 *
+	 * @return content hash of snapshot
+	 */
+	public synchronized long contentHash() {
+		if (contentHash != 0) {
+			return contentHash;
+		}
+
+		long hash = DataCache.mix(numInstances, numClasses);
+		if (rows != null) {
+			// values of view are read through its rows
+			for (int a = 0; a < numAttributes; a++) {
+				hash = DataCache.mix(hash, isNumeric[a] ? -2 : -3);
+				for (int row = 0; row < numInstances; row++) {
+					hash = DataCache.mix(hash,
+							Double.doubleToLongBits(value(a, row)));
+				}
+			}
+			for (int row = 0; row < numInstances; row++) {
+				hash = DataCache.mix(hash,
+						Double.doubleToLongBits(classValue(row)));
+			}
+			contentHash = hash == 0 ? 1 : hash;
+			return contentHash;
+		}
+
+		for (int a = 0; a < numAttributes; a++) {
+			if (sparseRows[a] != null) {
+				hash = DataCache.mix(hash, isNumeric[a] ? -2 : -3);
+				for (int i = 0; i < sparseRows[a].length; i++) {
+					hash = DataCache.mix(hash, sparseRows[a][i]);
+					hash = DataCache.mix(hash,
+							Double.doubleToLongBits(sparseValues[a][i]));
+				}
+			} else if (binnedColumns[a] != null) {
+				for (double value : binValues[a]) {
+					hash = DataCache.mix(hash, Double.doubleToLongBits(value));
+				}
+				for (byte bin : binnedColumns[a]) {
+					hash = DataCache.mix(hash, bin);
+				}
+			} else if (isNumeric[a]) {
+				for (double value : numericColumns[a]) {
+					hash = DataCache.mix(hash, Double.doubleToLongBits(value));
+				}
+			} else {
+				hash = DataCache.mix(hash, -1);
+				for (int row = 0; row < numInstances; row++) {
+					hash = DataCache.mix(hash, nominalOf(a, row));
+				}
+			}
+		}
+		if (classValues != null) {
+			for (double value : classValues) {
+				hash = DataCache.mix(hash, Double.doubleToLongBits(value));
+			}
+		}
+		contentHash = hash == 0 ? 1 : hash;
+		return contentHash;
+	}
+
+	/**
+	 * Estimated bytes of columns of snapshot. View counts only its rows.
+	 *
+	 * @return estimated size of snapshot
+	 */
+	public long estimateBytes() {
+		if (rows != null) {
+			return 4L * rows.length;
+		}
+		long bytes = classValues == null ? 0 : 12L * numInstances;
+		for (int a = 0; a < numAttributes; a++) {
+			if (sparseRows[a] != null) {
+				bytes += 12L * sparseRows[a].length;
+			} else if (binnedColumns[a] != null) {
+				bytes += numInstances;
+			} else if (isNumeric[a]) {
+				bytes += 8L * numInstances;
+			} else if (nominalBytes[a] != null) {
+				bytes += numInstances;
+			} else if (nominalShorts[a] != null) {
+				bytes += 2L * numInstances;
+			} else {
+				bytes += 4L * numInstances;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Gets the rank encoding of numeric columns of this snapshot. Encoding is
+	 * created at first call, views share the encoding of their base.
+	 *
+	 * @return rank encoding of numeric columns (indexed by rows of base)
+	 */
+	public synchronized RankedColumns getRankedColumns() {
+		if (base != null) {
+			return base.getRankedColumns();
+		}
+		if (rankedColumns == null) {
+			rankedColumns = new RankedColumns(this);
+		}
+		return rankedColumns;
+	}
+
+	/**
+	 * Value of the attribute in the row. Nominal values are returned as
+	 * indices.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @param row
+	 *            index of row
+	 * @return value of attribute
+	 */
+	public double value(int attribute, int row) {
+		if (rows != null) {
+			row = rows[row];
+		}
+		if (sparseRows[attribute] != null) {
+			int index = Arrays.binarySearch(sparseRows[attribute], row);
+			return index < 0 ? 0 : sparseValues[attribute][index];
+		}
+		if (binnedColumns[attribute] != null) {
+			return binValues[attribute][binnedColumns[attribute][row] & 0xff];
+		}
+		if (isNumeric[attribute]) {
+			return numericColumns[attribute][row];
+		}
+		return nominalOf(attribute, row);
+	}
+
+	/**
+	 * Index of value of dense nominal attribute in the row.
+	 *
+	 * @param attribute
+	 *            index of nominal attribute that isn't sparse
+	 * @param row
+	 *            index of row
+	 * @return index of value
+	 */
+	public int nominalValue(int attribute, int row) {
+		return nominalOf(attribute, rows == null ? row : rows[row]);
+	}
+
+	/**
+	 * Index of value of dense nominal attribute in the row of base.
+	 *
+	 * @param attribute
+	 *            index of nominal attribute that isn't sparse
+	 * @param row
+	 *            index of row of base snapshot
+	 * @return index of value
+	 */
+	private int nominalOf(int attribute, int row) {
+		byte[] bytes = nominalBytes[attribute];
+		if (bytes != null) {
+			return bytes[row] & 0xff;
+		}
+		short[] shorts = nominalShorts[attribute];
+		if (shorts != null) {
+			return shorts[row] & 0xffff;
+		}
+		return nominalColumns[attribute][row];
+	}
+
+	/**
+	 * Method reads the indices of values of dense nominal attribute of the
+	 * rows from (inclusive) to (exclusive). Each column is read by its own
+	 * loop, so the type of column is tested once.
+	 *
+	 * @param attribute
+	 *            index of nominal attribute that isn't sparse
+	 * @param rows
+	 *            indices of rows
+	 * @param from
+	 *            first position in rows
+	 * @param to
+	 *            end position in rows
+	 * @param values
+	 *            indices of values of rows from position 0
+	 */
+	public void nominalValues(int attribute, int[] rows, int from, int to,
+			int[] values) {
+		if (this.rows != null) {
+			for (int i = from; i < to; i++) {
+				values[i - from] = nominalOf(attribute, this.rows[rows[i]]);
+			}
+			return;
+		}
+		byte[] bytes = nominalBytes[attribute];
+		short[] shorts = nominalShorts[attribute];
+		int[] ints = nominalColumns[attribute];
+		if (bytes != null) {
+			for (int i = from; i < to; i++) {
+				values[i - from] = bytes[rows[i]] & 0xff;
+			}
+		} else if (shorts != null) {
+			for (int i = from; i < to; i++) {
+				values[i - from] = shorts[rows[i]] & 0xffff;
+			}
+		} else {
+			for (int i = from; i < to; i++) {
+				values[i - from] = ints[rows[i]];
+			}
+		}
+	}
+
+	/**
+	 * Gets the whole numeric column for attribute (indexed by rows of base,
+	 * see {@link #getRows()}).
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return numeric column or null if the attribute is nominal, binned or
+	 *         sparse
+	 */
+	public double[] getNumericColumn(int attribute) {
+		return numericColumns[attribute];
+	}
+
+	/**
+	 * Gets the whole binned column for attribute (indexed by rows of base).
+	 * Bytes are unsigned indices of bins.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return binned column or null if the attribute isn't binned
+	 */
+	public byte[] getBinnedColumn(int attribute) {
+		return binnedColumns[attribute];
+	}
+
+	/**
+	 * Gets the values of bins of binned attribute. Values are increasing, the
+	 * last one is NaN (bin of missing values).
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return values of bins or null if the attribute isn't binned
+	 */
+	public double[] getBinValues(int attribute) {
+		return binValues[attribute];
+	}
+
+	/**
+	 * Method finds the bin of the value. It is the first bin whose value isn't
+	 * less than the value (in order of {@link Double#compare(double, double)}),
+	 * values greater than the maximum are in the bin of maximum and missing
+	 * values are in the last bin.
+	 *
+	 * @param binValues
+	 *            values of bins with NaN as the last one
+	 * @param value
+	 *            value to bin
+	 * @return index of bin
+	 */
+	public static int binOf(double[] binValues, double value) {
+		int index = Arrays.binarySearch(binValues, value);
+		if (index >= 0) {
+			return index;
+		}
+		// insertion point, greater values than maximum stay with maximum
+		return Math.min(-index - 1, binValues.length - 2);
+	}
+
+	/**
+	 * Gets the whole nominal column of attribute with at most
+	 * {@link #MAX_BYTE_VALUES} values. Bytes are unsigned indices of values.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return nominal column or null if the attribute is numeric, sparse or
+	 *         it has more values
+	 */
+	public byte[] getNominalBytes(int attribute) {
+		return nominalBytes[attribute];
+	}
+
+	/**
+	 * Gets the whole nominal column of attribute with more than
+	 * {@link #MAX_BYTE_VALUES} and at most {@link #MAX_SHORT_VALUES} values.
+	 * Shorts are unsigned indices of values.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return nominal column or null if the attribute is numeric, sparse or
+	 *         it has other number of values
+	 */
+	public short[] getNominalShorts(int attribute) {
+		return nominalShorts[attribute];
+	}
+
+	/**
+	 * Gets the whole nominal column of attribute with more than
+	 * {@link #MAX_SHORT_VALUES} values.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return nominal column or null if the attribute is numeric, sparse or
+	 *         it has less values
+	 */
+	public int[] getNominalColumn(int attribute) {
+		return nominalColumns[attribute];
+	}
+
+	/**
+	 * Tests if the attribute is stored as sparse column.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return true iff attribute is sparse
+	 */
+	public boolean isSparse(int attribute) {
+		return sparseRows[attribute] != null;
+	}
+
+	/**
+	 * Gets the increasing rows with present values of sparse attribute (rows
+	 * of base).
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return rows with present values or null if the attribute isn't sparse
+	 */
+	public int[] getSparseRows(int attribute) {
+		return sparseRows[attribute];
+	}
+
+	/**
+	 * Gets the present values of sparse attribute (value i is the value of
+	 * row i from {@link #getSparseRows(int)}). Nominal values are indices.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return present values or null if the attribute isn't sparse
+	 */
+	public double[] getSparseValues(int attribute) {
+		return sparseValues[attribute];
+	}
+
+	/**
+	 * Class value in the row.
+	 *
+	 * @param row
+	 *            index of row
+	 * @return class value
+	 */
+	public double classValue(int row) {
+		return classValues[rows == null ? row : rows[row]];
+	}
+
+	/**
+	 * Class value in the row typed to int.
+	 *
+	 * @param row
+	 *            index of row
+	 * @return index of class
+	 */
+	public int classIndex(int row) {
+		return classIndices[rows == null ? row : rows[row]];
+	}
+
+	/**
+	 * Counts of classes of rows. Row is counted in the class of its
+	 * {@link #classIndex(int)}, so missing class value is counted as the
+	 * first class. Counts are computed at first call.
+	 *
+	 * @return counts of classes
+	 */
+	public synchronized int[] classCounts() {
+		if (classCounts == null) {
+			int[] counts = new int[Math.max(1, numClasses)];
+			for (int row = 0; row < numInstances; row++) {
+				int classIndex = classIndex(row);
+				if (classIndex >= 0 && classIndex < counts.length) {
+					counts[classIndex]++;
+				}
+			}
+			classCounts = counts;
+		}
+		return classCounts;
+	}
+
+	/**
+	 * Method tests if some row has missing class value.
+	 *
+	 * @return true iff class value is missing in some row
+	 */
+	public boolean hasMissingClass() {
+		return missingClass;
+	}
+
+	/**
+	 * Rows of base snapshot in this view. Whole columns of view are the
+	 * columns of base, so row i of view is at index rows[i] of its columns.
+	 *
+	 * @return rows of base or null if this snapshot isn't view
+	 */
+	public int[] getRows() {
+		return rows;
+	}
+
+	/**
+	 * Snapshot whose columns are shared by this view.
+	 *
+	 * @return base snapshot of view or this snapshot if it isn't view
+	 */
+	public ColumnarData getBase() {
+		return base == null ? this : base;
+	}
+
+	/**
+	 * Method tests if attribute is numeric.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return true iff attribute is numeric
+	 */
+	public boolean isNumeric(int attribute) {
+		return isNumeric[attribute];
+	}
+
+	/**
+	 * Number of rows in snapshot.
+	 *
+	 * @return number of instances
+	 */
+	public int numInstances() {
+		return numInstances;
+	}
+
+	/**
+	 * Number of attributes in snapshot.
+	 *
+	 * @return number of attributes
+	 */
+	public int numAttributes() {
+		return numAttributes;
+	}
+
+	/**
+	 * Number of class values in snapshot.
+	 *
+	 * @return number of classes
+	 */
+	public int numClasses() {
+		return numClasses;
+	}
+
+}
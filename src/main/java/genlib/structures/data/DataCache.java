@@ -0,0 +1,408 @@
+package genlib.structures.data;
+
+import genlib.configurations.Config;
+import genlib.configurations.PathManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide cache of structures derived from data (columnar snapshots,
+ * presorted rows, bins, generated stumps). Structures are keyed by the kind of
+ * structure and by content hash of data (see {@link #key(String, long)} and
+ * {@link ColumnarData#contentHash()}), so the repeated builds of classifiers
+ * on the same data (cross-validation folds of parameter sweeps) reuse them
+ * instead of computing them again. Cached structures are shared and they
+ * must not be modified. Only structures of whole data are cached, views of
+ * data (splits, folds, subsamples) share the structures of their source data
+ * and they are neither hashed nor cached. </p> Size of cache is bounded by estimated bytes of
+ * structures ({@link Config#getDataCache()} megabytes, 0 disables the cache),
+ * the least recently used structures are evicted. If spilling is enabled
+ * ({@link Config#getDataCacheSpill()}), evicted serializable structures are
+ * written into versioned subdirectory of {@link PathManager#getCachePath()}
+ * and read back at the next lookup. Spilled files start with the version of
+ * format and with the key, files that don't match (or can't be read) are
+ * deleted and the directories of other versions are deleted when the spill
+ * directory is set. </p> Users of cache should check that the cached
+ * structure matches their data before they use it (content hashes can
+ * collide) and replace it with {@link #put(String, Object, long)} otherwise.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class DataCache {
+
+	/** logger */
+	private static final Logger LOG = Logger.getLogger(DataCache.class
+			.getName());
+	/** instance of this DataCache */
+	private static DataCache instance;
+	/**
+	 * version of spilled files, it should be changed with the serialized
+	 * form of cached structures
+	 */
+	public static final int SPILL_VERSION = 2;
+	/** prefix of versioned spill directories */
+	private static final String SPILL_PREFIX = "data-v";
+
+	/**
+	 * Cached structure with its estimated size.
+	 */
+	private static class Entry {
+		final Object value;
+		final long bytes;
+
+		Entry(Object value, long bytes) {
+			this.value = value;
+			this.bytes = bytes;
+		}
+	}
+
+	/** structures in access order */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(
+			16, 0.75f, true);
+	/** maximal estimated bytes of cached structures */
+	private long capacity;
+	/**
+	 * versioned directory for evicted structures, null if spilling is
+	 * disabled
+	 */
+	private File spillPath;
+	/** directory which was cleaned of the other versions */
+	private File cleanedPath;
+	/** estimated bytes of cached structures */
+	private long size = 0;
+	/** number of lookups that found structure */
+	private long hits = 0;
+	/** number of lookups that didn't find structure */
+	private long misses = 0;
+
+	/**
+	 * Method which returns process-wide instance of cache. Capacity and
+	 * spilling are taken from {@link Config} at each call, so the changed
+	 * configuration is used by next builds.
+	 *
+	 * @return instance of cache
+	 */
+	public static synchronized DataCache getInstance() {
+		Config c = Config.getInstance();
+		if (instance == null) {
+			instance = new DataCache(0, null);
+		}
+		instance.setLimits((long) c.getDataCache() << 20, c
+				.getDataCacheSpill() ? PathManager.getInstance().getCachePath()
+				: null);
+		return instance;
+	}
+
+	/**
+	 * Constructor of cache.
+	 *
+	 * @param capacity
+	 *            maximal estimated bytes of structures, 0 disables the cache
+	 * @param spillPath
+	 *            directory for evicted structures or null
+	 */
+	public DataCache(long capacity, File spillPath) {
+		setLimits(capacity, spillPath);
+	}
+
+	/**
+	 * Method sets the capacity and spill directory of cache. Structures over
+	 * capacity are evicted.
+	 *
+	 * @param capacity
+	 *            maximal estimated bytes of structures, 0 disables the cache
+	 * @param spillPath
+	 *            directory for evicted structures or null, structures are
+	 *            spilled into its subdirectory of actual version
+	 */
+	public synchronized void setLimits(long capacity, File spillPath) {
+		this.capacity = Math.max(0, capacity);
+		if (spillPath == null) {
+			this.spillPath = null;
+		} else {
+			this.spillPath = new File(spillPath, SPILL_PREFIX + SPILL_VERSION);
+			if (!spillPath.equals(cleanedPath)) {
+				cleanedPath = spillPath;
+				deleteOtherVersions(spillPath);
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Deletes the spilled files of other versions in the directory.
+	 */
+	private static void deleteOtherVersions(File path) {
+		File[] dirs = path.listFiles();
+		if (dirs == null) {
+			return;
+		}
+		for (File dir : dirs) {
+			if (dir.isDirectory() && dir.getName().startsWith(SPILL_PREFIX)
+					&& !dir.getName().equals(SPILL_PREFIX + SPILL_VERSION)) {
+				File[] files = dir.listFiles();
+				if (files != null) {
+					for (File file : files) {
+						file.delete();
+					}
+				}
+				dir.delete();
+			}
+		}
+	}
+
+	/**
+	 * Key of structure of data.
+	 *
+	 * @param kind
+	 *            kind of structure with its parameters
+	 * @param contentHash
+	 *            content hash of data
+	 * @return key of structure
+	 */
+	public static String key(String kind, long contentHash) {
+		return kind + "-" + Long.toHexString(contentHash);
+	}
+
+	/**
+	 * Method mixes the value into the content hash.
+	 *
+	 * @param hash
+	 *            actual hash
+	 * @param value
+	 *            value to add (bits of double for numbers)
+	 * @return new hash
+	 */
+	public static long mix(long hash, long value) {
+		hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
+
+	/**
+	 * Gets the cached structure. Spilled structure is read back into memory.
+	 *
+	 * @param key
+	 *            key of structure
+	 * @return structure or null if it isn't cached
+	 */
+	public synchronized Object get(String key) {
+		if (capacity == 0) {
+			return null;
+		}
+
+		Entry entry = entries.get(key);
+		if (entry == null && spillPath != null) {
+			entry = readSpilled(key);
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Puts the structure into cache if there isn't structure with the same
+	 * key. Structures over capacity are evicted.
+	 *
+	 * @param key
+	 *            key of structure
+	 * @param value
+	 *            structure
+	 * @param bytes
+	 *            estimated size of structure
+	 * @return cached structure with key (value or the structure that was
+	 *         already cached)
+	 */
+	public synchronized Object putIfAbsent(String key, Object value,
+			long bytes) {
+		if (capacity == 0 || bytes > capacity) {
+			return value;
+		}
+
+		Object cached = get(key);
+		if (cached != null) {
+			return cached;
+		}
+		put(key, new Entry(value, bytes));
+		return value;
+	}
+
+	/**
+	 * Puts the structure into cache and replaces the structure with the same
+	 * key (e.g. structure that doesn't match the data because of collision of
+	 * hashes or stale spilled structure). Structures over capacity are
+	 * evicted.
+	 *
+	 * @param key
+	 *            key of structure
+	 * @param value
+	 *            structure
+	 * @param bytes
+	 *            estimated size of structure
+	 */
+	public synchronized void put(String key, Object value, long bytes) {
+		remove(key);
+		if (capacity == 0 || bytes > capacity) {
+			return;
+		}
+		put(key, new Entry(value, bytes));
+	}
+
+	/**
+	 * Removes the structure from memory and its spilled file.
+	 *
+	 * @param key
+	 *            key of structure
+	 */
+	public synchronized void remove(String key) {
+		Entry old = entries.remove(key);
+		if (old != null) {
+			size -= old.bytes;
+		}
+		if (spillPath != null) {
+			new File(spillPath, key + ".ser").delete();
+		}
+	}
+
+	/**
+	 * Puts the entry into memory.
+	 */
+	private void put(String key, Entry entry) {
+		Entry old = entries.put(key, entry);
+		if (old != null) {
+			size -= old.bytes;
+		}
+		size += entry.bytes;
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used structures until the size is within
+	 * capacity.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (size > capacity && it.hasNext()) {
+			Map.Entry<String, Entry> eldest = it.next();
+			it.remove();
+			size -= eldest.getValue().bytes;
+			if (spillPath != null && capacity > 0) {
+				spill(eldest.getKey(), eldest.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes the structure into spill directory.
+	 */
+	private void spill(String key, Entry entry) {
+		if (!(entry.value instanceof Serializable)) {
+			return;
+		}
+
+		File file = new File(spillPath, key + ".ser");
+		if (!spillPath.isDirectory() && !spillPath.mkdirs()) {
+			return;
+		}
+		// evicted structure is the actual one, older file is overwritten
+		try (ObjectOutputStream out = new ObjectOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(SPILL_VERSION);
+			out.writeUTF(key);
+			out.writeLong(entry.bytes);
+			out.writeObject(entry.value);
+		} catch (IOException e) {
+			LOG.warning(e.toString());
+			file.delete();
+		}
+	}
+
+	/**
+	 * Reads the spilled structure back into memory. File of other version or
+	 * key and file that can't be read are deleted.
+	 */
+	private Entry readSpilled(String key) {
+		File file = new File(spillPath, key + ".ser");
+		if (!file.isFile()) {
+			return null;
+		}
+		Entry entry = null;
+		try (ObjectInputStream in = new ObjectInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() == SPILL_VERSION && key.equals(in.readUTF())) {
+				long bytes = in.readLong();
+				entry = new Entry(in.readObject(), bytes);
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			LOG.warning(e.toString());
+		}
+
+		if (entry == null) {
+			file.delete();
+			return null;
+		}
+		put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Method removes all the structures from memory. Spilled structures are
+	 * kept. Hit and miss counters are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * Number of structures in memory.
+	 *
+	 * @return number of structures
+	 */
+	public synchronized int numEntries() {
+		return entries.size();
+	}
+
+	/**
+	 * Estimated bytes of structures in memory.
+	 *
+	 * @return size of cache
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Number of lookups that found the structure.
+	 *
+	 * @return number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of lookups that didn't find the structure.
+	 *
+	 * @return number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,204 @@
+package genlib.structures.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary columnar format of datasets that can be opened with
+ * {@link MappedGenLibInstances} without parsing and without holding the values
+ * on the heap. </p> File starts with header written in big endian
+ * (DataOutput): magic number, version, number of rows, number of attributes,
+ * class index, name of relation, attributes (name, number of labels or -1 for
+ * numeric attribute and labels) and the offsets of column blocks. Blocks follow
+ * the header aligned to 8 bytes and they are written in little endian. Numeric
+ * column is block of doubles (missing value is NaN), nominal column is block of
+ * ints with indices of labels (missing value is -1). </p> Files are created by
+ * {@link #convert(File, File)} from ARFF or CSV files, it can be called from
+ * command line with paths of source and target file.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class GenLibBinaryFormat {
+
+	/** extension of binary files */
+	public static final String EXTENSION = ".gbin";
+	/** magic number at the start of file */
+	public static final int MAGIC = 0x47424e31;
+	/** version of format */
+	public static final int VERSION = 1;
+	/** alignment of column blocks */
+	public static final int ALIGNMENT = 8;
+	/** size of write buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Method checks whether the file is binary file by its extension.
+	 *
+	 * @param file
+	 *            path of file
+	 * @return true iff file has binary extension
+	 */
+	public static boolean isBinaryFile(String file) {
+		return file.toLowerCase().endsWith(EXTENSION);
+	}
+
+	/**
+	 * Method converts ARFF or CSV file into binary file. Source file is loaded
+	 * with {@link GenLibLoader}.
+	 *
+	 * @param source
+	 *            ARFF or CSV file
+	 * @param target
+	 *            binary file
+	 * @throws IOException
+	 *             if files can't be read or written
+	 */
+	public static void convert(File source, File target) throws IOException {
+		write(GenLibLoader.load(source), target);
+	}
+
+	/**
+	 * Method writes instances into binary file.
+	 *
+	 * @param instances
+	 *            to write
+	 * @param target
+	 *            binary file
+	 * @throws IOException
+	 *             if file can't be written
+	 */
+	public static void write(ArrayGenLibInstances instances, File target)
+			throws IOException {
+		int numRows = instances.numInstances();
+		int numAttributes = instances.numAttributes();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeInt(numRows);
+		header.writeInt(numAttributes);
+		header.writeInt(instances.classIndex());
+		header.writeUTF(instances.relationName());
+		for (int a = 0; a < numAttributes; a++) {
+			ArrayGenLibAttribute attribute = instances.attribute(a);
+			header.writeUTF(attribute.name());
+			if (attribute.isNumeric()) {
+				header.writeInt(-1);
+			} else {
+				header.writeInt(attribute.numOfValues());
+				for (int v = 0; v < attribute.numOfValues(); v++) {
+					header.writeUTF(attribute.value(v));
+				}
+			}
+		}
+
+		long offset = align(header.size() + 8L * numAttributes);
+		for (int a = 0; a < numAttributes; a++) {
+			header.writeLong(offset);
+			offset = align(offset + (long) numRows
+					* columnWidth(instances.attribute(a)));
+		}
+		header.flush();
+
+		try (FileOutputStream out = new FileOutputStream(target);
+				FileChannel channel = out.getChannel()) {
+			ByteBuffer headerBuffer = ByteBuffer.wrap(bytes.toByteArray());
+			while (headerBuffer.hasRemaining()) {
+				channel.write(headerBuffer);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(
+					ByteOrder.LITTLE_ENDIAN);
+			pad(buffer, channel);
+
+			for (int a = 0; a < numAttributes; a++) {
+				boolean numeric = instances.attribute(a).isNumeric();
+				for (int row = 0; row < numRows; row++) {
+					if (buffer.remaining() < ALIGNMENT) {
+						flush(buffer, channel);
+					}
+					double value = instances.value(row, a);
+					if (numeric) {
+						buffer.putDouble(value);
+					} else {
+						buffer.putInt(Double.isNaN(value) ? -1 : (int) value);
+					}
+				}
+				if (buffer.remaining() < ALIGNMENT) {
+					flush(buffer, channel);
+				}
+				pad(buffer, channel);
+			}
+			flush(buffer, channel);
+		}
+	}
+
+	/**
+	 * Number of bytes of one value of attribute.
+	 *
+	 * @param attribute
+	 *            of column
+	 * @return width of value
+	 */
+	static int columnWidth(GenLibAttribute attribute) {
+		return attribute.isNumeric() ? 8 : 4;
+	}
+
+	/**
+	 * Rounds the offset up to the alignment.
+	 *
+	 * @param offset
+	 *            in file
+	 * @return aligned offset
+	 */
+	static long align(long offset) {
+		return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * Fills the buffer with zeros up to the aligned offset in file.
+	 */
+	private static void pad(ByteBuffer buffer, FileChannel channel)
+			throws IOException {
+		while ((channel.position() + buffer.position()) % ALIGNMENT != 0) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Writes the content of buffer into channel and clears it.
+	 */
+	private static void flush(ByteBuffer buffer, FileChannel channel)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Converts the ARFF or CSV file into binary file.
+	 *
+	 * @param args
+	 *            path of source file and path of binary file
+	 * @throws IOException
+	 *             if files can't be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: " + GenLibBinaryFormat.class.getName()
+					+ " <source.arff|source.csv> <target" + EXTENSION + ">");
+			return;
+		}
+		convert(new File(args[0]), new File(args[1]));
+	}
+
+}
@@ -68,6 +68,16 @@ public interface GenLibInstances extends Serializable {
 	 */
 	public GenLibInstances getPart(int from, int count);
 
+	/**
+	 * Creates new GenLibInstances with copied instances at given indices. Order
+	 * of indices is kept.
+	 * 
+	 * @param indices
+	 *            indices of instances we copy
+	 * @return new GenLibInstances with copied instances
+	 */
+	public GenLibInstances getSubset(int[] indices);
+
 	/**
 	 * Creates a new dataset of the same size using random sampling with
 	 * replacement.
@@ -0,0 +1,433 @@
+package genlib.structures.data;
+
+import genlib.exceptions.WrongDataException;
+import genlib.locales.TextKeys;
+import genlib.locales.TextResource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Loader of ARFF and CSV files into {@link ArrayGenLibInstances} without weka.
+ * Values are parsed directly into growing primitive columns. </p> ARFF file
+ * can contain numeric (numeric, real, integer) and nominal attributes, class
+ * attribute is the last one. In CSV file the first line contains names of
+ * attributes. Column is numeric if all its values are numbers, otherwise it's
+ * nominal with labels in order of their first appearance. Class column is
+ * always nominal. Missing values are written as ? (or empty in CSV).
+ *
+ * @author Lukas Surin
+ *
+ */
+public class GenLibLoader {
+
+	/** missing value */
+	public static final String MISSING = "?";
+	/** initial capacity of columns */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * Column of values that grows while the data are read.
+	 */
+	static class Column {
+		/** name of column */
+		String name;
+		/** labels of nominal column, null if not known yet */
+		ArrayList<String> labels;
+		/** index of labels */
+		HashMap<String, Integer> labelIndex;
+		/** parsed numeric values */
+		double[] values = new double[INITIAL_CAPACITY];
+		/** indices of labels, used when the column is (or becomes) nominal */
+		double[] indices;
+		/** true iff all the values are numbers */
+		boolean numeric = true;
+		/** true iff type of column is declared and it's fixed */
+		boolean fixed = false;
+
+		Column(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Method makes the column nominal with declared labels.
+		 */
+		void declareNominal(ArrayList<String> declared) {
+			numeric = false;
+			fixed = true;
+			labels = declared;
+			labelIndex = new HashMap<>();
+			for (int i = 0; i < declared.size(); i++) {
+				labelIndex.put(declared.get(i), i);
+			}
+		}
+
+		/**
+		 * Index of label, label is added if the labels aren't fixed.
+		 */
+		int labelIndex(String label) {
+			if (labels == null) {
+				labels = new ArrayList<>();
+				labelIndex = new HashMap<>();
+			}
+
+			Integer index = labelIndex.get(label);
+			if (index == null) {
+				if (fixed) {
+					return -1;
+				}
+				index = labels.size();
+				labels.add(label);
+				labelIndex.put(label, index);
+			}
+			return index;
+		}
+
+		/**
+		 * Adds the token into the row.
+		 */
+		boolean set(int row, String token) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+				if (indices != null) {
+					indices = Arrays.copyOf(indices, values.length);
+				}
+			}
+
+			if (token.isEmpty() || token.equals(MISSING)) {
+				values[row] = Double.NaN;
+				if (indices != null) {
+					indices[row] = Double.NaN;
+				}
+				return true;
+			}
+
+			if (fixed && !numeric) {
+				int index = labelIndex(token);
+				values[row] = index;
+				return index != -1;
+			}
+
+			if (numeric) {
+				try {
+					values[row] = Double.parseDouble(token);
+				} catch (NumberFormatException e) {
+					if (fixed) {
+						return false;
+					}
+					numeric = false;
+				}
+			}
+
+			// undeclared column keeps labels until it's known to be numeric
+			if (!fixed) {
+				if (indices == null) {
+					// previous rows have only missing values
+					indices = new double[values.length];
+					Arrays.fill(indices, 0, row, Double.NaN);
+				}
+				indices[row] = labelIndex(token);
+			}
+			return true;
+		}
+
+		/**
+		 * Creates the attribute and the values of column.
+		 */
+		ArrayGenLibAttribute toAttribute() {
+			if (numeric) {
+				return new ArrayGenLibAttribute(name);
+			}
+			if (labels == null) {
+				return new ArrayGenLibAttribute(name, new String[0]);
+			}
+			return new ArrayGenLibAttribute(name,
+					labels.toArray(new String[labels.size()]), labelIndex);
+		}
+
+		double[] toValues(int numRows) {
+			if (numeric || fixed) {
+				return Arrays.copyOf(values, numRows);
+			}
+			return Arrays.copyOf(indices, numRows);
+		}
+	}
+
+	/**
+	 * Method loads instances from file. Files with extension csv are read as
+	 * CSV files, other as ARFF files.
+	 *
+	 * @param file
+	 *            with data
+	 * @return loaded instances
+	 * @throws IOException
+	 *             if file can't be read
+	 */
+	public static ArrayGenLibInstances load(File file) throws IOException {
+		try (Reader reader = new FileReader(file)) {
+			if (file.getName().toLowerCase().endsWith(".csv")) {
+				return loadCsv(reader, file.getName(), -1);
+			}
+			return loadArff(reader);
+		}
+	}
+
+	/**
+	 * Method loads instances from ARFF data. Class attribute is the last one.
+	 *
+	 * @param reader
+	 *            with ARFF data
+	 * @return loaded instances
+	 * @throws IOException
+	 *             if data can't be read
+	 */
+	public static ArrayGenLibInstances loadArff(Reader reader)
+			throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		String relation = "";
+		ArrayList<Column> columns = new ArrayList<>();
+		boolean data = false;
+		int rows = 0;
+		int lineNumber = 0;
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("%")) {
+				continue;
+			}
+
+			if (data) {
+				String[] tokens = tokenize(line, lineNumber);
+				if (tokens.length != columns.size()) {
+					throw formatException(lineNumber, line);
+				}
+				for (int c = 0; c < tokens.length; c++) {
+					if (!columns.get(c).set(rows, tokens[c])) {
+						throw formatException(lineNumber, line);
+					}
+				}
+				rows++;
+				continue;
+			}
+
+			String lower = line.toLowerCase();
+			if (lower.startsWith("@relation")) {
+				relation = unquote(line.substring(9).trim());
+			} else if (lower.startsWith("@attribute")) {
+				columns.add(parseAttribute(line.substring(10).trim(),
+						lineNumber));
+			} else if (lower.startsWith("@data")) {
+				data = true;
+			} else {
+				throw formatException(lineNumber, line);
+			}
+		}
+
+		return build(relation, columns, rows, columns.size() - 1);
+	}
+
+	/**
+	 * Method loads instances from CSV data with names of attributes in the
+	 * first line.
+	 *
+	 * @param reader
+	 *            with CSV data
+	 * @param relation
+	 *            name of relation
+	 * @param classIndex
+	 *            index of class column, -1 for the last column
+	 * @return loaded instances
+	 * @throws IOException
+	 *             if data can't be read
+	 */
+	public static ArrayGenLibInstances loadCsv(Reader reader, String relation,
+			int classIndex) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		ArrayList<Column> columns = new ArrayList<>();
+		int rows = 0;
+		int lineNumber = 0;
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			String[] tokens = tokenize(line, lineNumber);
+			if (columns.isEmpty()) {
+				for (String name : tokens) {
+					columns.add(new Column(name));
+				}
+				if (classIndex < 0) {
+					classIndex = columns.size() - 1;
+				}
+				// class is always nominal
+				columns.get(classIndex).numeric = false;
+				continue;
+			}
+
+			if (tokens.length != columns.size()) {
+				throw formatException(lineNumber, line);
+			}
+			for (int c = 0; c < tokens.length; c++) {
+				columns.get(c).set(rows, tokens[c]);
+			}
+			rows++;
+		}
+
+		return build(relation, columns, rows, classIndex);
+	}
+
+	/**
+	 * Method creates instances from the read columns.
+	 *
+	 * @param relation
+	 *            name of relation
+	 * @param columns
+	 *            read columns
+	 * @param rows
+	 *            number of read rows
+	 * @param classIndex
+	 *            index of class attribute
+	 * @return instances
+	 */
+	private static ArrayGenLibInstances build(String relation,
+			ArrayList<Column> columns, int rows, int classIndex) {
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[columns
+				.size()];
+		double[][] values = new double[columns.size()][];
+		for (int c = 0; c < attributes.length; c++) {
+			attributes[c] = columns.get(c).toAttribute();
+			values[c] = columns.get(c).toValues(rows);
+		}
+		return new ArrayGenLibInstances(relation, attributes, values,
+				classIndex);
+	}
+
+	/**
+	 * Method parses the declaration of ARFF attribute (without the keyword).
+	 *
+	 * @param declaration
+	 *            name and type of attribute
+	 * @param lineNumber
+	 *            number of line with declaration
+	 * @return empty column of attribute
+	 */
+	static Column parseAttribute(String declaration, int lineNumber) {
+		int end;
+		if (declaration.startsWith("'") || declaration.startsWith("\"")) {
+			end = declaration.indexOf(declaration.charAt(0), 1) + 1;
+		} else {
+			end = 0;
+			while (end < declaration.length()
+					&& !Character.isWhitespace(declaration.charAt(end))) {
+				end++;
+			}
+		}
+		if (end <= 0 || end >= declaration.length()) {
+			throw formatException(lineNumber, declaration);
+		}
+
+		Column column = new Column(unquote(declaration.substring(0, end)));
+		String type = declaration.substring(end).trim();
+		if (type.startsWith("{") && type.endsWith("}")) {
+			column.declareNominal(new ArrayList<>(Arrays.asList(tokenize(
+					type.substring(1, type.length() - 1), lineNumber))));
+			return column;
+		}
+
+		String lower = type.toLowerCase();
+		if (lower.equals("numeric") || lower.equals("real")
+				|| lower.equals("integer")) {
+			column.fixed = true;
+			return column;
+		}
+
+		throw formatException(lineNumber, declaration);
+	}
+
+	/**
+	 * Method splits the line by commas. Values can be quoted with ' or ".
+	 *
+	 * @param line
+	 *            line to split
+	 * @param lineNumber
+	 *            number of line
+	 * @return trimmed values without quotes
+	 */
+	static String[] tokenize(String line, int lineNumber) {
+		ArrayList<String> tokens = new ArrayList<>();
+		int length = line.length();
+		int i = 0;
+		while (i <= length) {
+			while (i < length && Character.isWhitespace(line.charAt(i))) {
+				i++;
+			}
+
+			if (i < length && (line.charAt(i) == '\'' || line.charAt(i) == '"')) {
+				char quote = line.charAt(i);
+				int end = line.indexOf(quote, i + 1);
+				if (end == -1) {
+					throw formatException(lineNumber, line);
+				}
+				tokens.add(line.substring(i + 1, end));
+				i = line.indexOf(',', end);
+				if (i == -1) {
+					break;
+				}
+				i++;
+				continue;
+			}
+
+			int end = line.indexOf(',', i);
+			if (end == -1) {
+				tokens.add(line.substring(i).trim());
+				break;
+			}
+			tokens.add(line.substring(i, end).trim());
+			i = end + 1;
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Removes quotes around the value.
+	 *
+	 * @param value
+	 *            possibly quoted value
+	 * @return value without quotes
+	 */
+	static String unquote(String value) {
+		if (value.length() >= 2
+				&& (value.startsWith("'") && value.endsWith("'") || value
+						.startsWith("\"") && value.endsWith("\""))) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Creates the exception for wrong line of data.
+	 *
+	 * @param lineNumber
+	 *            number of line
+	 * @param line
+	 *            content of line
+	 * @return exception to throw
+	 */
+	static WrongDataException formatException(int lineNumber,
+			String line) {
+		return new WrongDataException(String.format(
+				TextResource.getString(TextKeys.eDataFormat), lineNumber, line));
+	}
+
+}
@@ -0,0 +1,245 @@
+package genlib.structures.data;
+
+import genlib.exceptions.WrongDataException;
+import genlib.locales.TextKeys;
+import genlib.locales.TextResource;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Random;
+
+/**
+ * Instances of binary file in {@link GenLibBinaryFormat} format. Columns are
+ * memory mapped with {@link FileChannel#map}, so values aren't read or parsed
+ * while opening and they are not held on the heap (operating system pages them
+ * in when they are used). Views (parts, subsets, resamples, folds) share the
+ * mapped columns in the same way as {@link ArrayGenLibInstances} share arrays.
+ * </p> Columns are mapped in segments of {@link #SEGMENT_ROWS} rows, so the
+ * size of column isn't limited by the size of one mapping (2<sup>31</sup> - 1
+ * bytes) and data larger than the heap can be evaluated by chunks (see
+ * {@link genlib.structures.Data#getChunk(int)}). After deserialization the
+ * columns are mapped again from the same file.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class MappedGenLibInstances extends ArrayGenLibInstances {
+
+	/** for serialization */
+	private static final long serialVersionUID = -4150437322049843390L;
+	/** log2 of number of rows of one mapped segment */
+	private static final int SEGMENT_SHIFT = 27;
+	/** number of rows of one mapped segment (1 GB of numeric values) */
+	public static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+	/** binary file with columns */
+	private final File file;
+	/** number of rows in file */
+	private final int numRows;
+	/** offsets of columns in file */
+	private final long[] offsets;
+	/** mapped segments of numeric columns, null for nominal columns */
+	private transient DoubleBuffer[][] numericColumns;
+	/** mapped segments of nominal columns, null for numeric columns */
+	private transient IntBuffer[][] nominalColumns;
+
+	/**
+	 * Constructor of instances with all rows of the file. Columns are mapped
+	 * here.
+	 */
+	private MappedGenLibInstances(File file, String relation,
+			ArrayGenLibAttribute[] attributes, int numRows, int classIndex,
+			long[] offsets) throws IOException {
+		super(relation, attributes, numRows, classIndex);
+		this.file = file;
+		this.numRows = numRows;
+		this.offsets = offsets;
+		map();
+	}
+
+	/**
+	 * Constructor of view of the instances with other rows.
+	 *
+	 * @param source
+	 *            instances with mapped columns
+	 * @param rows
+	 *            rows of columns in new view
+	 */
+	protected MappedGenLibInstances(MappedGenLibInstances source, int[] rows) {
+		super(source, rows);
+		this.file = source.file;
+		this.numRows = source.numRows;
+		this.offsets = source.offsets;
+		this.numericColumns = source.numericColumns;
+		this.nominalColumns = source.nominalColumns;
+	}
+
+	/**
+	 * Method opens the binary file and maps its columns.
+	 *
+	 * @param file
+	 *            binary file
+	 * @return instances of file
+	 * @throws IOException
+	 *             if file can't be read or it's not binary dataset
+	 */
+	public static MappedGenLibInstances open(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			if (in.readInt() != GenLibBinaryFormat.MAGIC
+					|| in.readInt() != GenLibBinaryFormat.VERSION) {
+				throw new WrongDataException(String.format(
+						TextResource.getString(TextKeys.eBinaryFormat),
+						file.getPath(), GenLibBinaryFormat.VERSION));
+			}
+
+			int numRows = in.readInt();
+			int numAttributes = in.readInt();
+			int classIndex = in.readInt();
+			String relation = in.readUTF();
+
+			ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[numAttributes];
+			for (int a = 0; a < numAttributes; a++) {
+				String name = in.readUTF();
+				int numLabels = in.readInt();
+				if (numLabels < 0) {
+					attributes[a] = new ArrayGenLibAttribute(name);
+				} else {
+					String[] labels = new String[numLabels];
+					for (int v = 0; v < numLabels; v++) {
+						labels[v] = in.readUTF();
+					}
+					attributes[a] = new ArrayGenLibAttribute(name, labels);
+				}
+			}
+
+			long[] offsets = new long[numAttributes];
+			for (int a = 0; a < numAttributes; a++) {
+				offsets[a] = in.readLong();
+			}
+
+			return new MappedGenLibInstances(file, relation, attributes,
+					numRows, classIndex, offsets);
+		}
+	}
+
+	/**
+	 * Method maps the segments of columns of file. Mapping stays valid after
+	 * the channel is closed.
+	 *
+	 * @throws IOException
+	 *             if file can't be mapped
+	 */
+	private void map() throws IOException {
+		int numAttributes = numAttributes();
+		int numSegments = (int) (((long) numRows + SEGMENT_ROWS - 1) >>> SEGMENT_SHIFT);
+		numericColumns = new DoubleBuffer[numAttributes][];
+		nominalColumns = new IntBuffer[numAttributes][];
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			for (int a = 0; a < numAttributes; a++) {
+				int width = GenLibBinaryFormat.columnWidth(attribute(a));
+				if (attribute(a).isNumeric()) {
+					numericColumns[a] = new DoubleBuffer[numSegments];
+				} else {
+					nominalColumns[a] = new IntBuffer[numSegments];
+				}
+
+				for (int segment = 0; segment < numSegments; segment++) {
+					long first = (long) segment << SEGMENT_SHIFT;
+					long size = Math.min(SEGMENT_ROWS, numRows - first) * width;
+					ByteBuffer buffer = channel.map(MapMode.READ_ONLY,
+							offsets[a] + first * width, size).order(
+							ByteOrder.LITTLE_ENDIAN);
+					if (numericColumns[a] != null) {
+						numericColumns[a][segment] = buffer.asDoubleBuffer();
+					} else {
+						nominalColumns[a][segment] = buffer.asIntBuffer();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc} </p> Value is read from the mapped segment of column,
+	 * missing nominal value (-1) is returned as NaN.
+	 */
+	@Override
+	protected double columnValue(int attribute, int index) {
+		int segment = index >>> SEGMENT_SHIFT;
+		int offset = index & (SEGMENT_ROWS - 1);
+		if (numericColumns[attribute] != null) {
+			return numericColumns[attribute][segment].get(offset);
+		}
+		int value = nominalColumns[attribute][segment].get(offset);
+		return value < 0 ? Double.NaN : value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected MappedGenLibInstances view(int[] viewRows) {
+		return new MappedGenLibInstances(this, viewRows);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MappedGenLibInstances testData(int numFolds, int numFold) {
+		return (MappedGenLibInstances) super.testData(numFolds, numFold);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MappedGenLibInstances getPart(int from, int count) {
+		return (MappedGenLibInstances) super.getPart(from, count);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MappedGenLibInstances getSubset(int[] indices) {
+		return (MappedGenLibInstances) super.getSubset(indices);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MappedGenLibInstances resample(Random random) {
+		return (MappedGenLibInstances) super.resample(random);
+	}
+
+	/**
+	 * Gets the binary file of these instances.
+	 *
+	 * @return binary file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+
+}
@@ -0,0 +1,175 @@
+package genlib.structures.data;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bitset index of nominal attributes of {@link ColumnarData}. For each value
+ * of nominal attribute there is a bitmap (array of longs, bit i of word w is
+ * row 64 * w + i) of the rows with this value, and for each class there is a
+ * bitmap of the rows of the class. Rows that reach a node of nominal tree are
+ * then the AND of bitmaps along the path and class counts of leaf are
+ * popcounts of its rows AND class bitmaps, so 64 rows are processed by one
+ * operation (see
+ * {@link genlib.structures.trees.FlatTree#bitsetHistograms(ColumnarData)}).
+ * </p> Missing nominal values are stored in columns as 0, so they are in the
+ * bitmap of the first value, as the absent values of sparse attributes.
+ * Bitmaps of attribute are created at the first use; each value takes
+ * numInstances / 8 bytes.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class NominalBitsets {
+
+	/** number of rows */
+	private final int numInstances;
+	/** number of words of one bitmap */
+	private final int numWords;
+	/** snapshot of data */
+	private final ColumnarData columnar;
+	/** bitmap with all the rows */
+	private final long[] all;
+	/** bitmaps of classes */
+	private final long[][] classSets;
+	/** bitmaps of values of nominal attributes, created lazily */
+	private final AtomicReferenceArray<long[][]> valueSets;
+
+	/**
+	 * Constructor that creates the bitmaps of classes. Bitmaps of attributes
+	 * are created later by {@link #getValueSets(int)}.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 */
+	public NominalBitsets(ColumnarData columnar) {
+		this.columnar = columnar;
+		this.numInstances = columnar.numInstances();
+		this.numWords = (numInstances + 63) >>> 6;
+		this.valueSets = new AtomicReferenceArray<>(columnar.numAttributes());
+
+		this.all = new long[numWords];
+		for (int row = 0; row < numInstances; row++) {
+			all[row >>> 6] |= 1L << row;
+		}
+
+		this.classSets = new long[Math.max(1, columnar.numClasses())][numWords];
+		for (int row = 0; row < numInstances; row++) {
+			int classIndex = columnar.classIndex(row);
+			if (classIndex >= 0 && classIndex < classSets.length) {
+				classSets[classIndex][row >>> 6] |= 1L << row;
+			}
+		}
+	}
+
+	/**
+	 * Gets the bitmaps of values of nominal attribute. Bitmaps are indexed by
+	 * value, there is one bitmap for each value from 0 to the maximal value in
+	 * column.
+	 *
+	 * @param attribute
+	 *            index of nominal attribute
+	 * @return bitmaps of values
+	 */
+	public long[][] getValueSets(int attribute) {
+		long[][] sets = valueSets.get(attribute);
+		if (sets == null) {
+			sets = makeValueSets(attribute);
+			if (!valueSets.compareAndSet(attribute, null, sets)) {
+				sets = valueSets.get(attribute);
+			}
+		}
+		return sets;
+	}
+
+	/**
+	 * Creates bitmaps of values of nominal attribute.
+	 */
+	private long[][] makeValueSets(int attribute) {
+		boolean sparse = columnar.isSparse(attribute);
+		if (sparse && columnar.getRows() == null) {
+			return makeSparseValueSets(attribute);
+		}
+
+		// sparse columns of view are read through its rows
+		int[] values = new int[numInstances];
+		int max = 0;
+		for (int row = 0; row < numInstances; row++) {
+			values[row] = sparse ? (int) columnar.value(attribute, row)
+					: columnar.nominalValue(attribute, row);
+			max = Math.max(max, values[row]);
+		}
+
+		long[][] sets = new long[max + 1][numWords];
+		for (int row = 0; row < numInstances; row++) {
+			sets[values[row]][row >>> 6] |= 1L << row;
+		}
+		return sets;
+	}
+
+	/**
+	 * Creates bitmaps of values of sparse nominal attribute from its present
+	 * values. Absent rows have value 0.
+	 */
+	private long[][] makeSparseValueSets(int attribute) {
+		int[] rows = columnar.getSparseRows(attribute);
+		double[] values = columnar.getSparseValues(attribute);
+		int max = 0;
+		for (double value : values) {
+			max = Math.max(max, (int) value);
+		}
+
+		long[][] sets = new long[max + 1][];
+		sets[0] = all.clone();
+		for (int value = 1; value <= max; value++) {
+			sets[value] = new long[numWords];
+		}
+		for (int k = 0; k < rows.length; k++) {
+			int value = (int) values[k];
+			if (value != 0) {
+				sets[0][rows[k] >>> 6] &= ~(1L << rows[k]);
+				sets[value][rows[k] >>> 6] |= 1L << rows[k];
+			}
+		}
+		return sets;
+	}
+
+	/**
+	 * Gets the bitmap with all the rows. Returned bitmap should not be
+	 * modified.
+	 *
+	 * @return bitmap of all rows
+	 */
+	public long[] getAll() {
+		return all;
+	}
+
+	/**
+	 * Method counts the rows of bitmap in each class.
+	 *
+	 * @param rows
+	 *            bitmap of rows
+	 * @return class histogram of rows
+	 */
+	public int[] classHistogram(long[] rows) {
+		int[] histogram = new int[columnar.numClasses()];
+		for (int c = 0; c < histogram.length; c++) {
+			long[] classSet = classSets[c];
+			int count = 0;
+			for (int w = 0; w < numWords; w++) {
+				count += Long.bitCount(rows[w] & classSet[w]);
+			}
+			histogram[c] = count;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Number of words of one bitmap.
+	 *
+	 * @return number of words
+	 */
+	public int numWords() {
+		return numWords;
+	}
+
+}
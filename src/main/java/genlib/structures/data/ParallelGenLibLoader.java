@@ -0,0 +1,850 @@
+package genlib.structures.data;
+
+import genlib.structures.data.GenLibLoader.Column;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel loader of ARFF and CSV files into {@link ArrayGenLibInstances}. It
+ * reads the same files as {@link GenLibLoader} and creates the same instances
+ * (values, labels and their order), but the data section of file is split into
+ * byte ranges that are parsed by multiple threads. </p> Header (ARFF
+ * declarations or the first line of CSV) is read sequentially. Then each chunk
+ * of file is read with positional reads of one shared {@link FileChannel} and
+ * parsed directly from bytes: tokens are not converted into strings, numbers
+ * are parsed from digits and nominal values are looked up in byte
+ * dictionaries, so nothing is allocated for ordinary values. Line belongs to
+ * the chunk in which it starts. </p> Labels of undeclared nominal columns (CSV)
+ * are collected in each chunk separately and they are merged in order of
+ * chunks, which gives the order of the first appearance. Mapping of labels to
+ * indices built while merging is kept in attributes, so
+ * {@link genlib.structures.Data#getAttrValueIndexMap()} doesn't need to build
+ * it again.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class ParallelGenLibLoader {
+
+	/** minimal size of one chunk of file in bytes */
+	public static final int MIN_CHUNK_BYTES = 1 << 20;
+	/** number of chunks for each thread (smaller chunks balance the load) */
+	private static final int CHUNKS_PER_THREAD = 4;
+	/** initial size of line buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** initial number of rows of chunk */
+	private static final int INITIAL_ROWS = 1024;
+	/** number of digits that fits into long mantissa */
+	private static final int MAX_DIGITS = 18;
+	/** powers of ten that are exact doubles */
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	/**
+	 * Declarations read from the header of file.
+	 */
+	private static class Header {
+		/** name of relation */
+		String relation;
+		/** declared (ARFF) or named (CSV) columns */
+		ArrayList<Column> columns = new ArrayList<>();
+		/** dictionaries of declared nominal columns */
+		ByteDictionary[] declared;
+		/** index of class column */
+		int classIndex;
+		/** offset of the first line of data */
+		long dataStart;
+		/** number of lines before data */
+		int lines;
+		/** true iff file is ARFF file */
+		boolean arff;
+	}
+
+	/**
+	 * Method loads instances from file with the number of threads. Files with
+	 * extension csv are read as CSV files with class as the last column, other
+	 * as ARFF files.
+	 *
+	 * @param file
+	 *            with data
+	 * @param nThreads
+	 *            number of threads that parse the data
+	 * @return loaded instances
+	 * @throws IOException
+	 *             if file can't be read
+	 */
+	public static ArrayGenLibInstances load(File file, int nThreads)
+			throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			Header header = file.getName().toLowerCase().endsWith(".csv") ? readCsvHeader(
+					channel, file.getName()) : readArffHeader(channel);
+
+			long length = channel.size() - header.dataStart;
+			int numChunks = (int) Math.max(1, Math.min(
+					(long) Math.max(1, nThreads) * CHUNKS_PER_THREAD, length
+							/ MIN_CHUNK_BYTES));
+			Chunk[] chunks = new Chunk[numChunks];
+			boolean[] labelled = new boolean[header.columns.size()];
+			for (int c = 0; c < labelled.length; c++) {
+				labelled[c] = !header.columns.get(c).numeric;
+			}
+			for (int i = 0; i < numChunks; i++) {
+				chunks[i] = new Chunk(channel, header, labelled,
+						header.dataStart + length * i / numChunks,
+						header.dataStart + length * (i + 1) / numChunks);
+			}
+
+			ForkJoinPool pool = nThreads > 1 ? new ForkJoinPool(nThreads)
+					: null;
+			try {
+				parse(pool, chunks);
+				checkErrors(header, chunks);
+
+				// columns that are nominal only in some chunks
+				boolean[] nominal = new boolean[labelled.length];
+				for (int c = 0; c < nominal.length; c++) {
+					Column column = header.columns.get(c);
+					nominal[c] = !column.fixed && !column.numeric;
+					for (Chunk chunk : chunks) {
+						nominal[c] |= !column.fixed && !chunk.numeric[c];
+					}
+				}
+
+				ArrayList<Chunk> incomplete = new ArrayList<>();
+				for (int i = 0; i < numChunks; i++) {
+					if (!chunks[i].isComplete(nominal)) {
+						chunks[i] = new Chunk(channel, header, nominal,
+								chunks[i].start, chunks[i].end);
+						incomplete.add(chunks[i]);
+					}
+				}
+				parse(pool, incomplete.toArray(new Chunk[incomplete.size()]));
+
+				return merge(header, chunks, nominal);
+			} finally {
+				if (pool != null) {
+					pool.shutdown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the chunks in pool or in calling thread if the pool is null.
+	 */
+	private static void parse(ForkJoinPool pool, Chunk[] chunks)
+			throws IOException {
+		if (pool == null) {
+			for (Chunk chunk : chunks) {
+				chunk.invoke();
+			}
+		} else {
+			for (Chunk chunk : chunks) {
+				pool.execute(chunk);
+			}
+			for (Chunk chunk : chunks) {
+				chunk.join();
+			}
+		}
+
+		for (Chunk chunk : chunks) {
+			if (chunk.ioError != null) {
+				throw chunk.ioError;
+			}
+		}
+	}
+
+	/**
+	 * Throws the exception for the first wrong line of file.
+	 */
+	private static void checkErrors(Header header, Chunk[] chunks) {
+		int lines = header.lines;
+		for (Chunk chunk : chunks) {
+			if (chunk.errorText != null) {
+				throw GenLibLoader.formatException(lines + chunk.errorLine,
+						chunk.errorText);
+			}
+			lines += chunk.lines;
+		}
+	}
+
+	/**
+	 * Method merges the parsed chunks into instances.
+	 *
+	 * @param header
+	 *            of file
+	 * @param chunks
+	 *            parsed chunks in order of file
+	 * @param nominal
+	 *            undeclared columns that are nominal
+	 * @return instances with all the rows
+	 */
+	private static ArrayGenLibInstances merge(Header header, Chunk[] chunks,
+			boolean[] nominal) {
+		int numRows = 0;
+		for (Chunk chunk : chunks) {
+			numRows += chunk.rows;
+		}
+
+		int numColumns = header.columns.size();
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[numColumns];
+		double[][] values = new double[numColumns][numRows];
+		for (int c = 0; c < numColumns; c++) {
+			Column column = header.columns.get(c);
+			if (!nominal[c]) {
+				int offset = 0;
+				for (Chunk chunk : chunks) {
+					System.arraycopy(chunk.values[c], 0, values[c], offset,
+							chunk.rows);
+					offset += chunk.rows;
+				}
+				attributes[c] = column.numeric ? new ArrayGenLibAttribute(
+						column.name) : new ArrayGenLibAttribute(column.name,
+						column.labels.toArray(new String[column.labels.size()]),
+						column.labelIndex);
+				continue;
+			}
+
+			ArrayList<String> labels = new ArrayList<>();
+			HashMap<String, Integer> labelIndex = new HashMap<>();
+			int offset = 0;
+			for (Chunk chunk : chunks) {
+				ByteDictionary dictionary = chunk.dictionaries[c];
+				int[] remap = new int[dictionary.size()];
+				for (int i = 0; i < remap.length; i++) {
+					String label = dictionary.label(i);
+					Integer index = labelIndex.get(label);
+					if (index == null) {
+						index = labels.size();
+						labels.add(label);
+						labelIndex.put(label, index);
+					}
+					remap[i] = index;
+				}
+
+				int[] local = chunk.labels[c];
+				for (int row = 0; row < chunk.rows; row++) {
+					values[c][offset + row] = local[row] == -1 ? Double.NaN
+							: remap[local[row]];
+				}
+				offset += chunk.rows;
+			}
+			attributes[c] = new ArrayGenLibAttribute(column.name,
+					labels.toArray(new String[labels.size()]), labelIndex);
+		}
+
+		return new ArrayGenLibInstances(header.relation, attributes, values,
+				header.classIndex);
+	}
+
+	/**
+	 * Reads the ARFF declarations up to the line with data keyword.
+	 */
+	private static Header readArffHeader(FileChannel channel)
+			throws IOException {
+		Header header = new Header();
+		header.arff = true;
+		header.relation = "";
+		LineReader reader = new LineReader(channel, 0);
+		while (reader.nextLine()) {
+			header.lines++;
+			String line = reader.lineString().trim();
+			if (line.isEmpty() || line.startsWith("%")) {
+				continue;
+			}
+
+			String lower = line.toLowerCase();
+			if (lower.startsWith("@relation")) {
+				header.relation = GenLibLoader.unquote(line.substring(9).trim());
+			} else if (lower.startsWith("@attribute")) {
+				header.columns.add(GenLibLoader.parseAttribute(line
+						.substring(10).trim(), header.lines));
+			} else if (lower.startsWith("@data")) {
+				header.dataStart = reader.position();
+				break;
+			} else {
+				throw GenLibLoader.formatException(header.lines, line);
+			}
+		}
+
+		if (header.dataStart == 0) {
+			header.dataStart = channel.size();
+		}
+		header.classIndex = header.columns.size() - 1;
+		makeDeclaredDictionaries(header);
+		return header;
+	}
+
+	/**
+	 * Reads the names of columns from the first line of CSV file.
+	 */
+	private static Header readCsvHeader(FileChannel channel, String relation)
+			throws IOException {
+		Header header = new Header();
+		header.relation = relation;
+		header.dataStart = channel.size();
+		LineReader reader = new LineReader(channel, 0);
+		while (reader.nextLine()) {
+			header.lines++;
+			String line = reader.lineString();
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			for (String name : GenLibLoader.tokenize(line, header.lines)) {
+				header.columns.add(new Column(name));
+			}
+			header.dataStart = reader.position();
+			break;
+		}
+
+		header.classIndex = header.columns.size() - 1;
+		if (header.classIndex >= 0) {
+			// class is always nominal
+			header.columns.get(header.classIndex).numeric = false;
+		}
+		makeDeclaredDictionaries(header);
+		return header;
+	}
+
+	/**
+	 * Creates byte dictionaries with labels of declared nominal columns.
+	 */
+	private static void makeDeclaredDictionaries(Header header) {
+		header.declared = new ByteDictionary[header.columns.size()];
+		for (int c = 0; c < header.declared.length; c++) {
+			Column column = header.columns.get(c);
+			if (column.fixed && !column.numeric) {
+				header.declared[c] = new ByteDictionary();
+				for (String label : column.labels) {
+					byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+					header.declared[c].add(bytes, 0, bytes.length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Task that parses the lines starting in one byte range of file.
+	 */
+	private static class Chunk extends RecursiveAction {
+
+		/** for serialization */
+		private static final long serialVersionUID = 2846530124618264311L;
+		/** channel of file */
+		private final FileChannel channel;
+		/** header of file */
+		private final Header header;
+		/** offset where the chunk starts */
+		final long start;
+		/** offset where the chunk ends */
+		final long end;
+		/** undeclared columns which labels are collected from the first row */
+		private final boolean[] labelled;
+		/** parsed values of columns */
+		double[][] values;
+		/** local indices of labels of undeclared columns, -1 for missing */
+		int[][] labels;
+		/** local labels of undeclared columns */
+		ByteDictionary[] dictionaries;
+		/** true iff all the values of undeclared column are numbers */
+		boolean[] numeric;
+		/** undeclared columns with labels collected only from some row */
+		private boolean[] partial;
+		/** number of parsed rows */
+		int rows;
+		/** number of lines of chunk */
+		int lines;
+		/** line of chunk with error */
+		int errorLine;
+		/** content of line with error */
+		String errorText;
+		/** exception thrown while reading */
+		IOException ioError;
+		/** true iff the last number was parsed */
+		private boolean parsed;
+
+		Chunk(FileChannel channel, Header header, boolean[] labelled,
+				long start, long end) {
+			this.channel = channel;
+			this.header = header;
+			this.labelled = labelled;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Checks that the labels of nominal columns are collected from all the
+		 * rows.
+		 */
+		boolean isComplete(boolean[] nominal) {
+			for (int c = 0; c < nominal.length; c++) {
+				if (nominal[c] && (labels[c] == null || partial[c])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		protected void compute() {
+			int numColumns = header.columns.size();
+			values = new double[numColumns][INITIAL_ROWS];
+			labels = new int[numColumns][];
+			dictionaries = new ByteDictionary[numColumns];
+			numeric = new boolean[numColumns];
+			partial = new boolean[numColumns];
+			for (int c = 0; c < numColumns; c++) {
+				Column column = header.columns.get(c);
+				numeric[c] = column.fixed ? column.numeric : true;
+				if (!column.fixed && labelled[c]) {
+					labels[c] = new int[INITIAL_ROWS];
+					dictionaries[c] = new ByteDictionary();
+				}
+			}
+
+			try {
+				LineReader reader;
+				if (start == header.dataStart) {
+					reader = new LineReader(channel, start);
+				} else {
+					// the line that starts in previous chunk is skipped
+					reader = new LineReader(channel, start - 1);
+					reader.nextLine();
+				}
+
+				while (reader.nextLine() && reader.lineStart < end) {
+					lines++;
+					if (!parseLine(reader.buffer, reader.from, reader.to)) {
+						errorLine = lines;
+						errorText = reader.lineString();
+						return;
+					}
+				}
+			} catch (IOException e) {
+				ioError = e;
+			}
+		}
+
+		/**
+		 * Parses one line into the next row.
+		 *
+		 * @return false if the line has wrong format
+		 */
+		private boolean parseLine(byte[] b, int i, int end) {
+			i = skipWhitespace(b, i, end);
+			if (i == end || header.arff && b[i] == '%') {
+				return true;
+			}
+			ensureCapacity();
+
+			int numColumns = values.length;
+			for (int c = 0; c < numColumns; c++) {
+				i = skipWhitespace(b, i, end);
+				int from, to;
+				if (i < end && (b[i] == '\'' || b[i] == '"')) {
+					byte quote = b[i];
+					from = i + 1;
+					to = from;
+					while (to < end && b[to] != quote) {
+						to++;
+					}
+					if (to == end) {
+						return false;
+					}
+					i = to + 1;
+					while (i < end && b[i] != ',') {
+						i++;
+					}
+				} else {
+					from = i;
+					while (i < end && b[i] != ',') {
+						i++;
+					}
+					to = i;
+					while (to > from && (b[to - 1] == ' ' || b[to - 1] == '\t')) {
+						to--;
+					}
+				}
+
+				if (!set(c, b, from, to)) {
+					return false;
+				}
+
+				if (c < numColumns - 1) {
+					if (i >= end) {
+						return false;
+					}
+					i++;
+				} else if (i < end) {
+					return false;
+				}
+			}
+
+			rows++;
+			return true;
+		}
+
+		/**
+		 * Sets the value of token into the column of actual row.
+		 *
+		 * @return false if the value isn't allowed in column
+		 */
+		private boolean set(int c, byte[] b, int from, int to) {
+			if (from == to || to - from == 1 && b[from] == '?') {
+				values[c][rows] = Double.NaN;
+				if (labels[c] != null) {
+					labels[c][rows] = -1;
+				}
+				return true;
+			}
+
+			Column column = header.columns.get(c);
+			if (column.fixed) {
+				if (column.numeric) {
+					values[c][rows] = parseNumber(b, from, to);
+					return parsed;
+				}
+				int index = header.declared[c].get(b, from, to);
+				values[c][rows] = index;
+				return index != -1;
+			}
+
+			if (numeric[c]) {
+				values[c][rows] = parseNumber(b, from, to);
+				if (!parsed) {
+					numeric[c] = false;
+					if (labels[c] == null) {
+						// labels of previous rows have to be parsed again
+						labels[c] = new int[values[c].length];
+						dictionaries[c] = new ByteDictionary();
+						partial[c] = rows > 0;
+					}
+				}
+			}
+			if (labels[c] != null) {
+				labels[c][rows] = dictionaries[c].add(b, from, to);
+			}
+			return true;
+		}
+
+		/**
+		 * Method parses the number from bytes. Numbers with at most 18
+		 * significant digits and small exponent are computed exactly from
+		 * digits (with one rounding as in {@link Double#parseDouble(String)}),
+		 * other tokens are parsed by {@link Double#parseDouble(String)}.
+		 * Variable parsed is set to false if the token isn't number.
+		 */
+		private double parseNumber(byte[] b, int from, int to) {
+			parsed = true;
+			int i = from;
+			boolean negative = b[i] == '-';
+			if (b[i] == '-' || b[i] == '+') {
+				i++;
+			}
+
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean any = false;
+			for (; i < to && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+				if (digits < MAX_DIGITS) {
+					mantissa = mantissa * 10 + (b[i] - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+				} else {
+					digits++;
+					exponent++;
+				}
+			}
+			if (i < to && b[i] == '.') {
+				for (i++; i < to && b[i] >= '0' && b[i] <= '9'; i++, any = true) {
+					if (digits < MAX_DIGITS) {
+						mantissa = mantissa * 10 + (b[i] - '0');
+						exponent--;
+						if (mantissa != 0) {
+							digits++;
+						}
+					} else {
+						digits++;
+					}
+				}
+			}
+			if (any && i < to && (b[i] == 'e' || b[i] == 'E')) {
+				i++;
+				boolean negativeExponent = i < to && b[i] == '-';
+				if (i < to && (b[i] == '-' || b[i] == '+')) {
+					i++;
+				}
+				int value = 0;
+				boolean anyExponent = false;
+				for (; i < to && b[i] >= '0' && b[i] <= '9' && value < 10000; i++) {
+					value = value * 10 + (b[i] - '0');
+					anyExponent = true;
+				}
+				any &= anyExponent;
+				exponent += negativeExponent ? -value : value;
+			}
+
+			if (any && i == to && digits <= MAX_DIGITS
+					&& mantissa < (1L << 53)
+					&& Math.abs(exponent) < POWERS_OF_TEN.length) {
+				double value = exponent < 0 ? mantissa
+						/ POWERS_OF_TEN[-exponent] : mantissa
+						* POWERS_OF_TEN[exponent];
+				return negative ? -value : value;
+			}
+
+			try {
+				return Double.parseDouble(new String(b, from, to - from,
+						StandardCharsets.UTF_8));
+			} catch (NumberFormatException e) {
+				parsed = false;
+				return Double.NaN;
+			}
+		}
+
+		/**
+		 * Grows the columns if there is no place for the next row.
+		 */
+		private void ensureCapacity() {
+			if (rows < values[0].length) {
+				return;
+			}
+			int capacity = values[0].length * 2;
+			for (int c = 0; c < values.length; c++) {
+				values[c] = Arrays.copyOf(values[c], capacity);
+				if (labels[c] != null) {
+					labels[c] = Arrays.copyOf(labels[c], capacity);
+				}
+			}
+		}
+
+		private static int skipWhitespace(byte[] b, int i, int end) {
+			while (i < end && (b[i] == ' ' || b[i] == '\t')) {
+				i++;
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Reader of lines of file from the offset. Line is available in buffer
+	 * between indices from and to (without line separator).
+	 */
+	private static class LineReader {
+		/** channel of file */
+		private final FileChannel channel;
+		/** buffer with read bytes */
+		byte[] buffer = new byte[BUFFER_SIZE];
+		/** offset of the first byte of buffer in file */
+		private long bufferStart;
+		/** index of the first unread byte */
+		private int position;
+		/** number of valid bytes in buffer */
+		private int limit;
+		/** true iff the end of file was reached */
+		private boolean eof;
+		/** start of line in buffer */
+		int from;
+		/** end of line in buffer */
+		int to;
+		/** offset of the start of line in file */
+		long lineStart;
+
+		LineReader(FileChannel channel, long start) {
+			this.channel = channel;
+			this.bufferStart = start;
+		}
+
+		/**
+		 * Reads the next line.
+		 *
+		 * @return false if there are no more lines
+		 */
+		boolean nextLine() throws IOException {
+			int scan = position;
+			while (true) {
+				for (; scan < limit; scan++) {
+					if (buffer[scan] == '\n') {
+						return line(scan, scan + 1);
+					}
+				}
+				if (eof) {
+					return position < limit && line(limit, limit);
+				}
+				int scanned = scan - position;
+				fill();
+				scan = position + scanned;
+			}
+		}
+
+		private boolean line(int lineEnd, int next) {
+			from = position;
+			to = lineEnd;
+			if (to > from && buffer[to - 1] == '\r') {
+				to--;
+			}
+			lineStart = bufferStart + position;
+			position = next;
+			return true;
+		}
+
+		/**
+		 * Moves the unread bytes to the start of buffer (or grows the buffer
+		 * for long line) and reads the next bytes.
+		 */
+		private void fill() throws IOException {
+			if (position == 0 && limit == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			} else {
+				System.arraycopy(buffer, position, buffer, 0, limit - position);
+				bufferStart += position;
+				limit -= position;
+				position = 0;
+			}
+
+			ByteBuffer wrapped = ByteBuffer.wrap(buffer, limit, buffer.length
+					- limit);
+			int read = channel.read(wrapped, bufferStart + limit);
+			if (read < 0) {
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+
+		/**
+		 * Offset of the next line in file.
+		 */
+		long position() {
+			return bufferStart + position;
+		}
+
+		/**
+		 * Actual line as string.
+		 */
+		String lineString() {
+			return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Dictionary of labels that looks up labels directly by their bytes.
+	 * Labels are indexed in order in which they are added.
+	 */
+	static class ByteDictionary {
+		/** bytes of labels in hash table */
+		private byte[][] keys = new byte[16][];
+		/** indices of labels in hash table */
+		private int[] indices = new int[16];
+		/** labels in order of indices */
+		private final ArrayList<String> labels = new ArrayList<>();
+
+		/**
+		 * Gets the index of label.
+		 *
+		 * @return index of label or -1 if it's not in dictionary
+		 */
+		int get(byte[] b, int from, int to) {
+			int slot = find(b, from, to);
+			return keys[slot] == null ? -1 : indices[slot];
+		}
+
+		/**
+		 * Gets the index of label, label is added if it's not in dictionary.
+		 *
+		 * @return index of label
+		 */
+		int add(byte[] b, int from, int to) {
+			int slot = find(b, from, to);
+			if (keys[slot] != null) {
+				return indices[slot];
+			}
+
+			int index = labels.size();
+			keys[slot] = Arrays.copyOfRange(b, from, to);
+			indices[slot] = index;
+			labels.add(new String(b, from, to - from, StandardCharsets.UTF_8));
+			if (labels.size() * 2 > keys.length) {
+				rehash();
+			}
+			return index;
+		}
+
+		/**
+		 * Number of labels.
+		 */
+		int size() {
+			return labels.size();
+		}
+
+		/**
+		 * Label with index.
+		 */
+		String label(int index) {
+			return labels.get(index);
+		}
+
+		/**
+		 * Finds the slot with label or empty slot where it belongs.
+		 */
+		private int find(byte[] b, int from, int to) {
+			int hash = 0;
+			for (int i = from; i < to; i++) {
+				hash = 31 * hash + b[i];
+			}
+			int mask = keys.length - 1;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != null && !equal(keys[slot], b, from, to)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private static boolean equal(byte[] key, byte[] b, int from, int to) {
+			if (key.length != to - from) {
+				return false;
+			}
+			for (int i = 0; i < key.length; i++) {
+				if (key[i] != b[from + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void rehash() {
+			byte[][] oldKeys = keys;
+			int[] oldIndices = indices;
+			keys = new byte[oldKeys.length * 2][];
+			indices = new int[keys.length];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int slot = find(oldKeys[i], 0, oldKeys[i].length);
+					keys[slot] = oldKeys[i];
+					indices[slot] = oldIndices[i];
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+package genlib.structures.data;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantile sketch of numeric values. Values are added one by one
+ * into buffer of level 0, full buffer of level is sorted and compacted into
+ * the next level by keeping every other value (value of level l stands for
+ * 2<sup>l</sup> values), so the sketch of n values keeps only about capacity *
+ * log2(n / capacity) values. The offset of kept values alternates between
+ * compactions of the level. Maximum is kept exactly, it is the value of the
+ * last bin of known values (minimum isn't kept, the first bin holds all the
+ * values up to the first cut point). </p> It is
+ * used to compute edges of bins of numeric attributes in one pass over the
+ * data (see {@link #binValues(int)}).
+ *
+ * @author Lukas Surin
+ *
+ */
+public class QuantileSketch {
+
+	/** default capacity of one level */
+	public static final int DEFAULT_CAPACITY = 2048;
+
+	/** capacity of one level */
+	private final int capacity;
+	/** buffers of levels */
+	private double[][] levels;
+	/** number of values in buffers of levels */
+	private int[] sizes;
+	/** offsets of kept values in next compactions of levels */
+	private boolean[] odd;
+	/** number of added values */
+	private long count = 0;
+	/** the greatest added value */
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Constructor of sketch with the capacity of one level.
+	 *
+	 * @param capacity
+	 *            capacity of level (at least 2)
+	 */
+	public QuantileSketch(int capacity) {
+		this.capacity = Math.max(2, capacity);
+		this.levels = new double[][] { new double[this.capacity] };
+		this.sizes = new int[1];
+		this.odd = new boolean[1];
+	}
+
+	/**
+	 * Adds the value into sketch. Missing values (NaN) are skipped.
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		count++;
+		if (value > max) {
+			max = value;
+		}
+
+		levels[0][sizes[0]++] = value;
+		if (sizes[0] == capacity) {
+			compact(0);
+		}
+	}
+
+	/**
+	 * Compacts the level into the next level.
+	 */
+	private void compact(int level) {
+		if (level + 1 == levels.length) {
+			levels = Arrays.copyOf(levels, level + 2);
+			levels[level + 1] = new double[capacity];
+			sizes = Arrays.copyOf(sizes, level + 2);
+			odd = Arrays.copyOf(odd, level + 2);
+		}
+		int size = sizes[level];
+		if (sizes[level + 1] + (size + 1) / 2 > capacity) {
+			compact(level + 1);
+		}
+
+		double[] values = levels[level];
+		Arrays.sort(values, 0, size);
+		double[] next = levels[level + 1];
+		for (int i = odd[level] ? 1 : 0; i < size; i += 2) {
+			next[sizes[level + 1]++] = values[i];
+		}
+		odd[level] = !odd[level];
+		sizes[level] = 0;
+	}
+
+	/**
+	 * Number of added values.
+	 *
+	 * @return number of values
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Method returns the cut points that split the values into parts with
+	 * approximately the same number of values.
+	 *
+	 * @param parts
+	 *            number of parts
+	 * @return increasing cut points (at most parts - 1, equal ones are merged)
+	 */
+	public double[] quantiles(int parts) {
+		if (count == 0 || parts < 2) {
+			return new double[0];
+		}
+
+		long total = 0;
+		for (int level = 0; level < levels.length; level++) {
+			Arrays.sort(levels[level], 0, sizes[level]);
+			total += (long) sizes[level] << level;
+		}
+
+		// merge of sorted levels with weights
+		double[] cuts = new double[parts - 1];
+		int numCuts = 0, part = 1;
+		int[] positions = new int[levels.length];
+		long seen = 0;
+		while (part < parts) {
+			int best = -1;
+			for (int level = 0; level < levels.length; level++) {
+				if (positions[level] < sizes[level]
+						&& (best == -1 || levels[level][positions[level]] < levels[best][positions[best]])) {
+					best = level;
+				}
+			}
+			if (best == -1) {
+				break;
+			}
+
+			double value = levels[best][positions[best]++];
+			seen += 1L << best;
+			while (part < parts && seen * parts >= part * total) {
+				if (numCuts == 0 || cuts[numCuts - 1] < value) {
+					cuts[numCuts++] = value;
+				}
+				part++;
+			}
+		}
+		return Arrays.copyOf(cuts, numCuts);
+	}
+
+	/**
+	 * Method returns the representative values of bins for at most bins bins.
+	 * Bin i (except the last two) contains the values that are greater than
+	 * the value of bin i - 1 and less or equal to the value of bin i, its
+	 * value is the cut point from {@link #quantiles(int)}. The second last
+	 * bin contains the greatest values and its value is the maximum, the last
+	 * bin contains missing values and its value is NaN.
+	 *
+	 * @param bins
+	 *            maximal number of bins of known values
+	 * @return increasing values of bins (NaN as the last), null if no value
+	 *         was added
+	 */
+	public double[] binValues(int bins) {
+		if (count == 0) {
+			return null;
+		}
+
+		double[] cuts = quantiles(bins);
+		int numCuts = 0;
+		while (numCuts < cuts.length && cuts[numCuts] < max) {
+			numCuts++;
+		}
+		double[] values = Arrays.copyOf(cuts, numCuts + 2);
+		values[numCuts] = max;
+		values[numCuts + 1] = Double.NaN;
+		return values;
+	}
+
+}
@@ -0,0 +1,170 @@
+package genlib.structures.data;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rank encoding of numeric columns of {@link ColumnarData}. Value of numeric
+ * column is stored as its rank (char, 2 bytes) in the sorted distinct values
+ * of the column, so the columns that are read while evaluating trees are four
+ * times smaller than columns of doubles. Values are sorted and compared by
+ * {@link Double#compare(double, double)} (NaN is the greatest value, -0.0 is
+ * less than 0.0), so the encoding is lossless. </p> Threshold t of node is
+ * encoded by {@link #threshold(int, double)} as 2k if t is the distinct value
+ * with rank k, or as 2k - 1 if t lies between distinct values with ranks k - 1
+ * and k. The sign of Double.compare(value, t) is then the sign of 2 * rank -
+ * code, so all the signs of nodes are evaluated with integer compares exactly
+ * as by {@link genlib.utils.Utils#isValueProper(double, genlib.utils.Utils.Sign, double)}.
+ * </p> Ranks of column are created at its first use. Columns with more than
+ * {@link #MAX_DISTINCT} distinct values are not encoded, they are evaluated
+ * with doubles. Binned and sparse columns aren't encoded either.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class RankedColumns {
+
+	/** maximal number of distinct values of encoded column */
+	public static final int MAX_DISTINCT = Character.MAX_VALUE + 1;
+	/** encoding of column that can't be encoded */
+	private static final Column NOT_RANKED = new Column(null, null);
+
+	/**
+	 * Rank encoding of one column.
+	 */
+	private static class Column {
+		/** sorted distinct values */
+		final double[] distinct;
+		/** ranks of values */
+		final char[] ranks;
+
+		Column(double[] distinct, char[] ranks) {
+			this.distinct = distinct;
+			this.ranks = ranks;
+		}
+	}
+
+	/** snapshot of data */
+	private final ColumnarData columnar;
+	/** encoded columns, created lazily */
+	private final AtomicReferenceArray<Column> columns;
+
+	/**
+	 * Constructor of encoding of numeric columns. Columns are encoded later by
+	 * {@link #getRanks(int)}.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 */
+	public RankedColumns(ColumnarData columnar) {
+		this.columnar = columnar;
+		this.columns = new AtomicReferenceArray<>(columnar.numAttributes());
+	}
+
+	/**
+	 * Gets the ranks of values of numeric column. Returned array should not be
+	 * modified.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return ranks of values or null if the attribute is not numeric or it
+	 *         has too many distinct values
+	 */
+	public char[] getRanks(int attribute) {
+		return column(attribute).ranks;
+	}
+
+	/**
+	 * Encodes the threshold of numeric node (see {@link RankedColumns}).
+	 *
+	 * @param attribute
+	 *            index of encoded attribute
+	 * @param value
+	 *            threshold of node
+	 * @return code of threshold that is compared with 2 * rank
+	 */
+	public int threshold(int attribute, double value) {
+		return threshold(column(attribute).distinct, value);
+	}
+
+	/**
+	 * Encodes the threshold against the sorted distinct values (see
+	 * {@link RankedColumns}). It is used also for values of bins of binned
+	 * columns.
+	 *
+	 * @param distinct
+	 *            sorted distinct values
+	 * @param value
+	 *            threshold of node
+	 * @return code of threshold that is compared with 2 * index of value
+	 */
+	public static int threshold(double[] distinct, double value) {
+		int index = Arrays.binarySearch(distinct, value);
+		if (index >= 0) {
+			return index << 1;
+		}
+		// insertion point
+		return ((-index - 1) << 1) - 1;
+	}
+
+	/**
+	 * Number of distinct values of the column.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return number of distinct values or -1 if the column is not encoded
+	 */
+	public int numDistinct(int attribute) {
+		double[] distinct = column(attribute).distinct;
+		return distinct == null ? -1 : distinct.length;
+	}
+
+	/**
+	 * Gets the encoding of the column, it is created at first call.
+	 */
+	private Column column(int attribute) {
+		Column column = columns.get(attribute);
+		if (column == null) {
+			column = encode(attribute);
+			if (!columns.compareAndSet(attribute, null, column)) {
+				column = columns.get(attribute);
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * Sorts the distinct values of column and finds the ranks of values.
+	 * {@link Arrays#sort(double[])} and
+	 * {@link Arrays#binarySearch(double[], double)} use the same order as
+	 * Double.compare.
+	 */
+	private Column encode(int attribute) {
+		double[] values = columnar.getNumericColumn(attribute);
+		if (values == null) {
+			// binned columns are already narrower, sparse columns are
+			// evaluated from their present values
+			return NOT_RANKED;
+		}
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int numDistinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || Double.compare(sorted[i - 1], sorted[i]) != 0) {
+				sorted[numDistinct++] = sorted[i];
+			}
+		}
+		if (numDistinct > MAX_DISTINCT) {
+			return NOT_RANKED;
+		}
+
+		double[] distinct = Arrays.copyOf(sorted, numDistinct);
+		char[] ranks = new char[values.length];
+		for (int row = 0; row < values.length; row++) {
+			ranks[row] = (char) Arrays.binarySearch(distinct, values[row]);
+		}
+		return new Column(distinct, ranks);
+	}
+
+}
@@ -0,0 +1,200 @@
+package genlib.structures.data;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Class with static methods that choose rows of data for its views (train and
+ * validation splits, resamples, folds). Views are then defined only by the
+ * array of rows and they share the values with the data (see
+ * {@link genlib.structures.Data#view(int[])},
+ * {@link GenLibInstances#getSubset(int[])} and
+ * {@link genlib.utils.WekaUtils#subset(weka.core.Instances, int[])}). </p>
+ * Stratified variants keep the proportions of classes. Rows with missing or
+ * non nominal class are in the stratum of the first class.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class RowIndices {
+
+	/**
+	 * Consecutive rows.
+	 *
+	 * @param from
+	 *            first row
+	 * @param count
+	 *            number of rows
+	 * @return rows from, from + 1, ..., from + count - 1
+	 */
+	public static int[] range(int from, int count) {
+		int[] rows = new int[count];
+		for (int i = 0; i < count; i++) {
+			rows[i] = from + i;
+		}
+		return rows;
+	}
+
+	/**
+	 * Rows of fold, they are the same as in
+	 * {@link weka.core.Instances#testCV(int, int)}.
+	 *
+	 * @param numInstances
+	 *            number of rows of data
+	 * @param numFolds
+	 *            number of folds
+	 * @param fold
+	 *            index of fold
+	 * @return rows of fold
+	 */
+	public static int[] fold(int numInstances, int numFolds, int fold) {
+		int numInstForFold = numInstances / numFolds;
+		int offset;
+		if (fold < numInstances % numFolds) {
+			numInstForFold++;
+			offset = fold;
+		} else {
+			offset = numInstances % numFolds;
+		}
+		return range(fold * (numInstances / numFolds) + offset, numInstForFold);
+	}
+
+	/**
+	 * Rows sampled with replacement as in
+	 * {@link weka.core.Instances#resample(Random)}.
+	 *
+	 * @param numInstances
+	 *            number of rows of data
+	 * @param random
+	 *            object used to sample
+	 * @return numInstances randomly chosen rows
+	 */
+	public static int[] resample(int numInstances, Random random) {
+		int[] rows = new int[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			rows[i] = random.nextInt(numInstances);
+		}
+		return rows;
+	}
+
+	/**
+	 * Rows sampled with replacement separately from each class, so the
+	 * resample has the same class counts as data.
+	 *
+	 * @param columnar
+	 *            columnar snapshot of data
+	 * @param random
+	 *            object used to sample
+	 * @return numInstances randomly chosen rows ordered by class
+	 */
+	public static int[] stratifiedResample(ColumnarData columnar, Random random) {
+		int[] rows = new int[columnar.numInstances()];
+		int i = 0;
+		for (int[] group : byClass(columnar)) {
+			for (int j = 0; j < group.length; j++) {
+				rows[i++] = group[random.nextInt(group.length)];
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Permutation of rows in which the classes are interleaved so evenly that
+	 * each range of consecutive rows (train and validation split, fold made
+	 * by {@link #select(int[], int[])} with {@link #fold(int, int, int)}) has
+	 * approximately the proportions of classes of data. Rows of the same
+	 * class keep their order.
+	 *
+	 * @param columnar
+	 *            columnar snapshot of data
+	 * @return stratified permutation of rows
+	 */
+	public static int[] stratifiedOrder(ColumnarData columnar) {
+		final int[][] byClass = byClass(columnar);
+		final int[] taken = new int[byClass.length];
+		// j-th row of class with n rows has position (j + 0.5) / n, rows are
+		// merged by their positions
+		PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1,
+				byClass.length), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer g1, Integer g2) {
+				int c = Long.compare((2L * taken[g1] + 1) * byClass[g2].length,
+						(2L * taken[g2] + 1) * byClass[g1].length);
+				return c != 0 ? c : Integer.compare(g1, g2);
+			}
+		});
+		for (int group = 0; group < byClass.length; group++) {
+			if (byClass[group].length > 0) {
+				queue.add(group);
+			}
+		}
+
+		int[] order = new int[columnar.numInstances()];
+		for (int i = 0; i < order.length; i++) {
+			int group = queue.poll();
+			order[i] = byClass[group][taken[group]++];
+			if (taken[group] < byClass[group].length) {
+				queue.add(group);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Composition of rows, rows of view of view.
+	 *
+	 * @param rows
+	 *            rows of data in view
+	 * @param indices
+	 *            indices of rows of view
+	 * @return rows[indices[i]] for each i
+	 */
+	public static int[] select(int[] rows, int[] indices) {
+		int[] selected = new int[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			selected[i] = rows[indices[i]];
+		}
+		return selected;
+	}
+
+	/**
+	 * Rows of data grouped by their class.
+	 *
+	 * @param columnar
+	 *            columnar snapshot of data
+	 * @return increasing rows of each class
+	 */
+	public static int[][] byClass(ColumnarData columnar) {
+		int rows = columnar.numInstances();
+		int groups = Math.max(1, columnar.numClasses());
+		int[] counts = new int[groups];
+		for (int row = 0; row < rows; row++) {
+			counts[classGroup(columnar, row, groups)]++;
+		}
+
+		int[][] byClass = new int[groups][];
+		for (int group = 0; group < groups; group++) {
+			byClass[group] = new int[counts[group]];
+			counts[group] = 0;
+		}
+		for (int row = 0; row < rows; row++) {
+			int group = classGroup(columnar, row, groups);
+			byClass[group][counts[group]++] = row;
+		}
+		return byClass;
+	}
+
+	/**
+	 * Stratum of the row. Rows with missing or non nominal class are in the
+	 * first stratum.
+	 */
+	private static int classGroup(ColumnarData columnar, int row, int groups) {
+		if (Double.isNaN(columnar.classValue(row))) {
+			return 0;
+		}
+		int group = columnar.classIndex(row);
+		return group >= 0 && group < groups ? group : 0;
+	}
+
+}
@@ -0,0 +1,355 @@
+package genlib.structures.data;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Presorted order of rows for numeric attributes of {@link ColumnarData}. For
+ * each numeric attribute there is an array of row indices sorted by value of
+ * attribute in ascending order, missing values (NaN) are at the end and rows
+ * with the same value keep their order. Orders are created at the first use
+ * of attribute and they are shared by all the users of the data (generators,
+ * threshold searches). </p> Orders of views of the data (subsets, parts,
+ * resamples) are made by {@link #subset(int[])} with stable filtering of this
+ * order in linear time instead of sorting again. Binned attributes are sorted
+ * by counting sort of bins, sparse attributes sort only their present values
+ * and the absent rows (value 0) are merged at the place of 0.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class SortedRows implements Serializable {
+
+	/** for serialization */
+	private static final long serialVersionUID = 6254312967408834211L;
+	/** number of rows */
+	private final int numInstances;
+	/** snapshot of data, null for derived orders */
+	private final ColumnarData columnar;
+	/** order from which this order is filtered, null for sorted orders */
+	private final SortedRows parent;
+	/**
+	 * offsets of rows of parent row in {@link #children}, null for sorted
+	 * orders
+	 */
+	private final int[] start;
+	/** rows of this order grouped by their parent row */
+	private final int[] children;
+	/** orders of numeric attributes, created lazily */
+	private final AtomicReferenceArray<int[]> orders;
+
+	/**
+	 * Constructor of order of rows of columnar data. Attributes are sorted
+	 * later by {@link #getOrder(int)}. Order of view of snapshot is the subset
+	 * of order of its base (see {@link #subset(int[])}).
+	 *
+	 * @param columnar
+	 *            snapshot of data that isn't view
+	 */
+	public SortedRows(ColumnarData columnar) {
+		if (columnar.getRows() != null) {
+			throw new IllegalArgumentException();
+		}
+		this.numInstances = columnar.numInstances();
+		this.columnar = columnar;
+		this.parent = null;
+		this.start = null;
+		this.children = null;
+		this.orders = new AtomicReferenceArray<>(columnar.numAttributes());
+	}
+
+	/**
+	 * Constructor of order filtered from the parent order.
+	 *
+	 * @param parent
+	 *            order of the data from which the rows are taken
+	 * @param rows
+	 *            parent row for each row of view
+	 */
+	private SortedRows(SortedRows parent, int[] rows) {
+		this.numInstances = rows.length;
+		this.columnar = null;
+		this.parent = parent;
+		this.orders = new AtomicReferenceArray<>(parent.orders.length());
+
+		// counting sort of rows by parent row, rows of the same parent row
+		// stay in increasing order
+		this.start = new int[parent.numInstances + 1];
+		for (int row : rows) {
+			start[row + 1]++;
+		}
+		for (int p = 0; p < parent.numInstances; p++) {
+			start[p + 1] += start[p];
+		}
+		this.children = new int[rows.length];
+		int[] next = new int[parent.numInstances];
+		System.arraycopy(start, 0, next, 0, parent.numInstances);
+		for (int row = 0; row < rows.length; row++) {
+			children[next[rows[row]]++] = row;
+		}
+	}
+
+	/**
+	 * Creates the order of view of the data. Row i of view is the row rows[i]
+	 * of this data, rows can be in any order and they can repeat (resample).
+	 * Orders of attributes are filtered from the orders of this data when
+	 * they are needed. </p> If the rows are increasing (parts, folds,
+	 * subsets), filtered order is the same as if the view was sorted.
+	 *
+	 * @param rows
+	 *            rows of this data in the view
+	 * @return order of view
+	 */
+	public SortedRows subset(int[] rows) {
+		return new SortedRows(this, rows);
+	}
+
+	/**
+	 * Tests if this order is filtered from the order of other data (see
+	 * {@link #subset(int[])}).
+	 *
+	 * @return true iff this is order of view
+	 */
+	public boolean isSubset() {
+		return parent != null;
+	}
+
+	/**
+	 * Gets the sorted order of rows by numeric attribute. Returned array
+	 * should not be modified.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return rows sorted by value of attribute or null if the attribute is
+	 *         not numeric
+	 */
+	public int[] getOrder(int attribute) {
+		if (!isNumeric(attribute)) {
+			return null;
+		}
+
+		int[] order = orders.get(attribute);
+		if (order == null) {
+			order = parent == null ? sort(attribute) : filter(attribute);
+			if (!orders.compareAndSet(attribute, null, order)) {
+				order = orders.get(attribute);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Tests if the attribute is numeric.
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return true iff attribute is numeric
+	 */
+	public boolean isNumeric(int attribute) {
+		return parent == null ? columnar.isNumeric(attribute) : parent
+				.isNumeric(attribute);
+	}
+
+	/**
+	 * Tests if this order can be used as the order of the snapshot (e.g. when
+	 * it's taken from {@link DataCache}). It must be sorted order of the
+	 * same snapshot or of the snapshot with the same dimensions and types of
+	 * attributes.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return true iff this order matches the snapshot
+	 */
+	public boolean matches(ColumnarData columnar) {
+		if (parent != null || this.columnar == null) {
+			return false;
+		}
+		if (this.columnar == columnar) {
+			return true;
+		}
+		if (numInstances != columnar.numInstances()
+				|| orders.length() != columnar.numAttributes()
+				|| this.columnar.contentHash() != columnar.contentHash()) {
+			return false;
+		}
+		for (int a = 0; a < orders.length(); a++) {
+			if (this.columnar.isNumeric(a) != columnar.isNumeric(a)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Number of rows.
+	 *
+	 * @return number of rows
+	 */
+	public int numInstances() {
+		return numInstances;
+	}
+
+	/**
+	 * Estimated bytes of orders of all numeric attributes.
+	 *
+	 * @return estimated size of orders
+	 */
+	public long estimateBytes() {
+		long bytes = children == null ? 0 : 8L * children.length;
+		for (int a = 0; a < orders.length(); a++) {
+			if (isNumeric(a)) {
+				bytes += 4L * numInstances;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Sorts the rows by values of column with stable merge sort.
+	 */
+	private int[] sort(int attribute) {
+		byte[] bins = columnar.getBinnedColumn(attribute);
+		if (bins != null) {
+			return countingSort(bins, columnar.getBinValues(attribute).length);
+		}
+		if (columnar.isSparse(attribute)) {
+			return sparseSort(columnar.getSparseRows(attribute),
+					columnar.getSparseValues(attribute));
+		}
+
+		double[] column = columnar.getNumericColumn(attribute);
+		int[] order = new int[numInstances];
+		for (int row = 0; row < numInstances; row++) {
+			order[row] = row;
+		}
+		mergeSort(order, new int[numInstances], column, 0, numInstances);
+		return order;
+	}
+
+	/**
+	 * Sorts the rows of binned column by their bins with stable counting sort.
+	 */
+	private int[] countingSort(byte[] bins, int numBins) {
+		int[] starts = new int[numBins + 1];
+		for (int row = 0; row < numInstances; row++) {
+			starts[(bins[row] & 0xff) + 1]++;
+		}
+		for (int b = 0; b < numBins; b++) {
+			starts[b + 1] += starts[b];
+		}
+		int[] order = new int[numInstances];
+		for (int row = 0; row < numInstances; row++) {
+			order[starts[bins[row] & 0xff]++] = row;
+		}
+		return order;
+	}
+
+	/**
+	 * Sorts the rows of sparse column. Present values are sorted by merge
+	 * sort, rows with value 0 (present +0.0 and absent rows) are emitted in
+	 * increasing order between negative and positive values.
+	 */
+	private int[] sparseSort(int[] sparseRows, double[] sparseValues) {
+		int numPresent = sparseRows.length;
+		int[] present = new int[numPresent];
+		for (int k = 0; k < numPresent; k++) {
+			present[k] = k;
+		}
+		// positions of present values are in the order of their rows
+		mergeSort(present, new int[numPresent], sparseValues, 0, numPresent);
+
+		int[] order = new int[numInstances];
+		int i = 0, k = 0;
+		while (k < numPresent && Double.compare(sparseValues[present[k]], 0) < 0) {
+			order[i++] = sparseRows[present[k++]];
+		}
+		int next = 0;
+		for (int row = 0; row < numInstances; row++) {
+			if (next < numPresent && sparseRows[next] == row) {
+				next++;
+				if (k < numPresent && sparseRows[present[k]] == row
+						&& Double.compare(sparseValues[present[k]], 0) == 0) {
+					order[i++] = row;
+					k++;
+				}
+			} else {
+				order[i++] = row;
+			}
+		}
+		while (k < numPresent) {
+			order[i++] = sparseRows[present[k++]];
+		}
+		return order;
+	}
+
+	/**
+	 * Gets the values of bins of binned attribute (see
+	 * {@link ColumnarData#getBinValues(int)}).
+	 *
+	 * @param attribute
+	 *            index of attribute
+	 * @return values of bins or null if the attribute isn't binned
+	 */
+	public double[] getBinValues(int attribute) {
+		return parent == null ? columnar.getBinValues(attribute) : parent
+				.getBinValues(attribute);
+	}
+
+	/**
+	 * Filters the parent order, rows of each parent row are emitted at its
+	 * place.
+	 */
+	private int[] filter(int attribute) {
+		int[] parentOrder = parent.getOrder(attribute);
+		int[] order = new int[numInstances];
+		int i = 0;
+		for (int p : parentOrder) {
+			for (int c = start[p]; c < start[p + 1]; c++) {
+				order[i++] = children[c];
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Stable merge sort of rows from index from (inclusive) to index to
+	 * (exclusive). Values are compared with {@link Double#compare} so NaN is
+	 * the greatest value.
+	 */
+	private static void mergeSort(int[] rows, int[] tmp, double[] column,
+			int from, int to) {
+		if (to - from < 8) {
+			// insertion sort
+			for (int i = from + 1; i < to; i++) {
+				int row = rows[i];
+				int j = i - 1;
+				while (j >= from && Double.compare(column[rows[j]], column[row]) > 0) {
+					rows[j + 1] = rows[j];
+					j--;
+				}
+				rows[j + 1] = row;
+			}
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(rows, tmp, column, from, middle);
+		mergeSort(rows, tmp, column, middle, to);
+		if (Double.compare(column[rows[middle - 1]], column[rows[middle]]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(rows, from, tmp, from, to - from);
+		int left = from, right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to
+					|| left < middle
+					&& Double.compare(column[tmp[left]], column[tmp[right]]) <= 0) {
+				rows[i] = tmp[left++];
+			} else {
+				rows[i] = tmp[right++];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package genlib.structures.extensions;
+
+import genlib.structures.trees.BinaryNode;
+import genlib.structures.trees.MultiWayNode;
+
+/**
+ * Simple interface that distincts Nodes from being automated in computing the
+ * structural hash of tree and being dependent on manually computing. The hash
+ * is computed from attributes, values, signs and shape of the subtree and it
+ * is invalidated (with hashes of ascendants) whenever the subtree changes.
+ * 
+ * @see BinaryNode
+ * @see MultiWayNode
+ *
+ */
+public interface HashExtension {
+
+	/**
+	 * Gets the structural hash of subtree defined by this node
+	 * 
+	 * @return structural hash of subtree
+	 */
+	public long getTreeHash();
+
+	/**
+	 * Method invalidates the structural hash of this node and its ascendants.
+	 */
+	public void invalidateTreeHash();
+
+}
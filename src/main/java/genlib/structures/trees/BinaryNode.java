@@ -3,7 +3,9 @@ package genlib.structures.trees;
 import genlib.exceptions.NodeCreationException;
 import genlib.exceptions.NotInitializedFieldException;
 import genlib.locales.TextResource;
+import genlib.structures.extensions.HashExtension;
 import genlib.structures.extensions.SizeExtension;
+import genlib.utils.Utils;
 import genlib.utils.Utils.Sign;
 
 /**
@@ -12,7 +14,7 @@ import genlib.utils.Utils.Sign;
  * 
  * @author Lukas Surin
  */
-public class BinaryNode implements Node, SizeExtension {
+public class BinaryNode implements Node, SizeExtension, HashExtension {
 
 	/** for serialization */
 	private static final long serialVersionUID = -5557876005762565687L;
@@ -30,6 +32,10 @@ public class BinaryNode implements Node, SizeExtension {
 	protected double criteriaValue;
 	/** sign of this node */
 	protected Sign sign;
+	/** cached structural hash of subtree of this node */
+	protected transient long treeHash;
+	/** true iff cached structural hash is valid */
+	protected transient volatile boolean validTreeHash = false;
 
 	/**
 	 * Static factory that creates leaf with value of classification. It only
@@ -128,6 +134,7 @@ public class BinaryNode implements Node, SizeExtension {
 	 */
 	public void setAttribute(int attribute) {
 		this.attribute = attribute;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -135,6 +142,7 @@ public class BinaryNode implements Node, SizeExtension {
 	 */
 	public void setValue(double value) {
 		this.value = value;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -142,6 +150,7 @@ public class BinaryNode implements Node, SizeExtension {
 	 */
 	public void setSign(Sign sign) {
 		this.sign = sign;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -162,6 +171,7 @@ public class BinaryNode implements Node, SizeExtension {
 		childs[index] = (BinaryNode) node;
 		newTreeSize = childs[index].getTreeSize();
 		node.setParent(this);
+		invalidateTreeHash();
 
 		// it will serve the purpose of diff
 		newTreeSize = newTreeSize - oldTreeSize;
@@ -184,6 +194,7 @@ public class BinaryNode implements Node, SizeExtension {
 		this.childs[0].setParent(this);
 		this.childs[1].setParent(this);
 		this.treeSize = 1 + this.childs[0].treeSize + this.childs[1].treeSize;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -281,6 +292,19 @@ public class BinaryNode implements Node, SizeExtension {
 		return treeSize;
 	}
 
+	/**
+	 * {@inheritDoc} </p> Hash is computed lazily and cached until some node
+	 * of the subtree changes.
+	 */
+	@Override
+	public long getTreeHash() {
+		if (!validTreeHash) {
+			treeHash = Utils.computeTreeHash(this);
+			validTreeHash = true;
+		}
+		return treeHash;
+	}
+
 	// OTHER METHODS
 
 	/**
@@ -291,6 +315,7 @@ public class BinaryNode implements Node, SizeExtension {
 		this.attribute = -1;
 		this.childs = null;
 		updateTreeSize(1 - this.treeSize);
+		invalidateTreeHash();
 	}
 
 	/**
@@ -302,6 +327,7 @@ public class BinaryNode implements Node, SizeExtension {
 		childs = new BinaryNode[childs.length];
 		int treeSizeToUpdate = 1 - treeSize;
 		updateTreeSize(treeSizeToUpdate);
+		invalidateTreeHash();
 	}
 
 	/**
@@ -326,7 +352,9 @@ public class BinaryNode implements Node, SizeExtension {
 
 		BinaryNode node = ((BinaryNode) obj);
 
-		if (this.attribute != node.attribute || this.value != node.value
+		// values are compared as in routing, so 0.0 and -0.0 differ
+		if (this.attribute != node.attribute
+				|| Double.compare(this.value, node.value) != 0
 				|| this.sign != node.sign
 				|| this.criteriaValue != node.criteriaValue) {
 			return false;
@@ -347,6 +375,16 @@ public class BinaryNode implements Node, SizeExtension {
 
 	}
 
+	/**
+	 * Hash code consistent with {@link #equals(Object)}. It is derived from
+	 * structural hash of the subtree.
+	 */
+	@Override
+	public int hashCode() {
+		long hash = getTreeHash();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -358,6 +396,17 @@ public class BinaryNode implements Node, SizeExtension {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateTreeHash() {
+		this.validTreeHash = false;
+		if (parent != null) {
+			parent.invalidateTreeHash();
+		}
+	}
+
 	@Override
 	public String toString() {
 		if (isLeaf()) {
@@ -0,0 +1,1022 @@
+package genlib.structures.trees;
+
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.NominalBitsets;
+import genlib.structures.data.RankedColumns;
+import genlib.utils.Utils;
+import genlib.utils.Utils.Sign;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import weka.core.Instance;
+
+/**
+ * Flattened (array-encoded) form of the tree used for evaluation. Nodes of the
+ * tree are laid out in preorder into parallel primitive arrays (attribute,
+ * value, sign mask, offset to children), so classification of instance is a
+ * loop over arrays without calls through {@link Node} interface. Instance of
+ * this class is immutable snapshot of the tree, so it has to be created again
+ * whenever the tree changes.
+ * </p>
+ * Numeric nodes are routed with the same semantics as
+ * {@link Utils#isValueProper(double, Sign, double)}. The sign of node is
+ * encoded as mask of the results of {@link Double#compare(double, double)}
+ * (-1, 0, 1 shifted to bits 0, 1, 2) for which the instance goes to the first
+ * child. </p> Rows of {@link ColumnarData} are routed by ranks of their values
+ * (see {@link RankedColumns}) if the numeric column is rank encoded, so the
+ * column of chars is read and the signs are evaluated by integer compares
+ * with the same results. Binned columns (lossy mode) are routed in the same
+ * way by the bytes of bins. </p> Sparse columns are read only at their present
+ * values, absent values are 0: partition gathers the values of its range of
+ * rows, bitset evaluation sends all the rows the way of 0 and then moves only
+ * the present rows, so no dense column of sparse attribute is created.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class FlatTree implements Serializable {
+
+	/** for serialization */
+	private static final long serialVersionUID = 6380134262290614472L;
+	/** mask for node without sign */
+	private static final byte NO_SIGN = -1;
+	/** number of nodes in flattened tree */
+	private final int numNodes;
+	/** attribute of node, -1 for leaf */
+	private final int[] attributes;
+	/** value of node (threshold or class value of leaf) */
+	private final double[] values;
+	/** sign of node encoded as mask */
+	private final byte[] signMasks;
+	/** offset into children array where children of node start */
+	private final int[] childOffsets;
+	/** number of children of node */
+	private final int[] childCounts;
+	/** indices of children nodes */
+	private final int[] children;
+
+	/** position of next node while flattening */
+	private transient int nextNode;
+	/** position of next children slot while flattening */
+	private transient int nextChild;
+	/** encoded thresholds of nodes for the last evaluated data */
+	private transient volatile RankedNodes rankedNodes;
+
+	/**
+	 * Rank columns and encoded thresholds of numeric nodes for one snapshot of
+	 * data.
+	 */
+	private static class RankedNodes {
+		/** snapshot of data */
+		final ColumnarData columnar;
+		/** ranks of attribute of node, null if the node isn't rank encoded */
+		final char[][] ranks;
+		/** bins of attribute of node, null if the attribute isn't binned */
+		final byte[][] bins;
+		/** encoded threshold of node */
+		final int[] thresholds;
+
+		RankedNodes(ColumnarData columnar, char[][] ranks, byte[][] bins,
+				int[] thresholds) {
+			this.columnar = columnar;
+			this.ranks = ranks;
+			this.bins = bins;
+			this.thresholds = thresholds;
+		}
+	}
+
+	/**
+	 * Constructor which flattens the tree with root handed as parameter.
+	 *
+	 * @param root
+	 *            root of the tree to flatten
+	 */
+	public FlatTree(Node root) {
+		int[] counts = new int[2];
+		count(root, counts);
+
+		this.numNodes = counts[0];
+		this.attributes = new int[numNodes];
+		this.values = new double[numNodes];
+		this.signMasks = new byte[numNodes];
+		this.childOffsets = new int[numNodes];
+		this.childCounts = new int[numNodes];
+		this.children = new int[counts[1]];
+
+		flatten(root);
+	}
+
+	/**
+	 * Method counts nodes and children slots of the subtree.
+	 *
+	 * @param node
+	 *            root of the subtree
+	 * @param counts
+	 *            array with number of nodes and number of children slots
+	 */
+	private static void count(Node node, int[] counts) {
+		counts[0]++;
+		if (node.isLeaf() || node.getChilds() == null) {
+			return;
+		}
+
+		counts[1] += node.getChilds().length;
+		for (Node child : node.getChilds()) {
+			if (child != null) {
+				count(child, counts);
+			}
+		}
+	}
+
+	/**
+	 * Method writes the subtree into arrays in preorder.
+	 *
+	 * @param node
+	 *            root of the subtree
+	 * @return index of the node in arrays
+	 */
+	private int flatten(Node node) {
+		int index = nextNode++;
+		attributes[index] = node.getAttribute();
+		values[index] = node.getValue();
+		signMasks[index] = encodeSign(node.getSign());
+		childOffsets[index] = nextChild;
+
+		if (node.isLeaf() || node.getChilds() == null) {
+			return index;
+		}
+
+		Node[] childs = node.getChilds();
+		int offset = nextChild;
+		nextChild += childs.length;
+		childCounts[index] = childs.length;
+		for (int i = 0; i < childs.length; i++) {
+			children[offset + i] = childs[i] == null ? -1 : flatten(childs[i]);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Method encodes sign into mask of compare results that go to the first
+	 * child.
+	 *
+	 * @param sign
+	 *            of the node
+	 * @return mask of the sign
+	 */
+	private static byte encodeSign(Sign sign) {
+		if (sign == null) {
+			return NO_SIGN;
+		}
+
+		switch (sign) {
+		case LESS:
+			return 1;
+		case EQUALS:
+			return 2;
+		case LESSEQ:
+			return 3;
+		case GREATER:
+			return 4;
+		case NEQUALS:
+			return 5;
+		case GREATEQ:
+			return 6;
+		}
+
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Method tests if numeric value goes to the first child of node.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param value
+	 *            numeric value of instance
+	 * @return true iff value goes to the first child
+	 */
+	private boolean isFirstChild(int node, double value) {
+		return isFirstChild(node, Double.compare(value, values[node]));
+	}
+
+	/**
+	 * Method tests if the rank of value goes to the first child of node.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param rank
+	 *            rank of numeric value of instance
+	 * @param threshold
+	 *            encoded threshold of node
+	 * @return true iff value goes to the first child
+	 */
+	private boolean isFirstChild(int node, char rank, int threshold) {
+		return isFirstChild(node, (rank << 1) - threshold);
+	}
+
+	/**
+	 * Method tests if the bin of value goes to the first child of node.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param bin
+	 *            unsigned bin of numeric value of instance
+	 * @param threshold
+	 *            encoded threshold of node
+	 * @return true iff value goes to the first child
+	 */
+	private boolean isFirstChild(int node, byte bin, int threshold) {
+		return isFirstChild(node, ((bin & 0xff) << 1) - threshold);
+	}
+
+	/**
+	 * Method tests if the result of comparison of value with threshold goes to
+	 * the first child of node.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param compare
+	 *            negative, zero or positive result of comparison
+	 * @return true iff value goes to the first child
+	 */
+	private boolean isFirstChild(int node, int compare) {
+		byte mask = signMasks[node];
+		if (mask == NO_SIGN) {
+			throw new IllegalArgumentException();
+		}
+		if (childCounts[node] < 2) {
+			throw new ArrayIndexOutOfBoundsException(childCounts[node]);
+		}
+
+		return ((mask >> (Integer.signum(compare) + 1)) & 1) != 0;
+	}
+
+	/**
+	 * Method returns rank columns and encoded thresholds of nodes for the
+	 * snapshot of data. They are computed once for the last snapshot, views
+	 * share them with their base (ranks are indexed by rows of base).
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return ranks and thresholds of nodes
+	 */
+	private RankedNodes rankedNodes(ColumnarData columnar) {
+		columnar = columnar.getBase();
+		RankedNodes ranked = rankedNodes;
+		if (ranked != null && ranked.columnar == columnar) {
+			return ranked;
+		}
+
+		RankedColumns rankedColumns = columnar.getRankedColumns();
+		char[][] ranks = new char[numNodes][];
+		byte[][] bins = new byte[numNodes][];
+		int[] thresholds = new int[numNodes];
+		for (int node = 0; node < numNodes; node++) {
+			int attribute = attributes[node];
+			if (attribute == -1 || !columnar.isNumeric(attribute)) {
+				continue;
+			}
+			bins[node] = columnar.getBinnedColumn(attribute);
+			if (bins[node] != null) {
+				thresholds[node] = RankedColumns.threshold(
+						columnar.getBinValues(attribute), values[node]);
+				continue;
+			}
+			ranks[node] = rankedColumns.getRanks(attribute);
+			if (ranks[node] != null) {
+				thresholds[node] = rankedColumns.threshold(attribute,
+						values[node]);
+			}
+		}
+		ranked = new RankedNodes(columnar, ranks, bins, thresholds);
+		rankedNodes = ranked;
+		return ranked;
+	}
+
+	/**
+	 * Method which returns index of child node for numeric value.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param value
+	 *            numeric value of instance
+	 * @return index of child node
+	 */
+	private int numericChild(int node, double value) {
+		if (isFirstChild(node, value)) {
+			return children[childOffsets[node]];
+		}
+		return children[childOffsets[node] + 1];
+	}
+
+	/**
+	 * Method which returns index of child node for rank of numeric value.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param rank
+	 *            rank of numeric value of instance
+	 * @param threshold
+	 *            encoded threshold of node
+	 * @return index of child node
+	 */
+	private int numericChild(int node, char rank, int threshold) {
+		if (isFirstChild(node, rank, threshold)) {
+			return children[childOffsets[node]];
+		}
+		return children[childOffsets[node] + 1];
+	}
+
+	/**
+	 * Method which returns index of child node for bin of numeric value.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param bin
+	 *            bin of numeric value of instance
+	 * @param threshold
+	 *            encoded threshold of node
+	 * @return index of child node
+	 */
+	private int numericChild(int node, byte bin, int threshold) {
+		if (isFirstChild(node, bin, threshold)) {
+			return children[childOffsets[node]];
+		}
+		return children[childOffsets[node] + 1];
+	}
+
+	/**
+	 * Method which returns index of child node for nominal value.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param value
+	 *            nominal value (index) of instance
+	 * @return index of child node
+	 */
+	private int nominalChild(int node, int value) {
+		if (value >= childCounts[node]) {
+			throw new ArrayIndexOutOfBoundsException(value);
+		}
+		return children[childOffsets[node] + value];
+	}
+
+	/**
+	 * Method which routes the row of columnar data through the tree and returns
+	 * the value of the leaf that the row ends in.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @param row
+	 *            index of row
+	 * @return value of the leaf (predicted class)
+	 */
+	public double classify(ColumnarData columnar, int row) {
+		return values[leaf(columnar, rankedNodes(columnar), row)];
+	}
+
+	/**
+	 * Method which routes the row of columnar data through the tree and returns
+	 * the preorder index of the leaf that the row ends in.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @param ranked
+	 *            ranks and thresholds of nodes for the snapshot
+	 * @param row
+	 *            index of row
+	 * @return index of leaf
+	 */
+	private int leaf(ColumnarData columnar, RankedNodes ranked, int row) {
+		int[] rows = columnar.getRows();
+		int baseRow = rows == null ? row : rows[row];
+		int node = 0;
+		int attribute;
+		while ((attribute = attributes[node]) != -1) {
+			char[] ranks = ranked.ranks[node];
+			byte[] bins = ranked.bins[node];
+			if (ranks != null) {
+				node = numericChild(node, ranks[baseRow],
+						ranked.thresholds[node]);
+			} else if (bins != null) {
+				node = numericChild(node, bins[baseRow],
+						ranked.thresholds[node]);
+			} else if (columnar.isSparse(attribute)) {
+				double value = columnar.value(attribute, row);
+				node = columnar.isNumeric(attribute) ? numericChild(node, value)
+						: nominalChild(node, (int) value);
+			} else if (columnar.isNumeric(attribute)) {
+				node = numericChild(node,
+						columnar.getNumericColumn(attribute)[baseRow]);
+			} else {
+				node = nominalChild(node, columnar.nominalValue(attribute, row));
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Method which routes the weka instance through the tree and returns the
+	 * value of the leaf that the instance ends in.
+	 *
+	 * @param instance
+	 *            to classify
+	 * @return value of the leaf (predicted class)
+	 */
+	public double classify(Instance instance) {
+		int node = 0;
+		int attribute;
+		while ((attribute = attributes[node]) != -1) {
+			if (instance.attribute(attribute).isNumeric()) {
+				node = numericChild(node, instance.value(attribute));
+			} else {
+				node = nominalChild(node, (int) instance.value(attribute));
+			}
+		}
+		return values[node];
+	}
+
+	/**
+	 * Method evaluates all rows of columnar data at once. Instead of walking
+	 * from root to leaf for each row, array of row indices is pushed down the
+	 * tree: in each node the indices of the node are partitioned in place by
+	 * the split of the node (one column is read sequentially), and in each
+	 * leaf the class histogram of its partition is computed.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return class histograms indexed by preorder index of node, null for
+	 *         inner nodes and leaves without any row
+	 */
+	public int[][] leafHistograms(ColumnarData columnar) {
+		return partition(columnar).getHistograms();
+	}
+
+	/**
+	 * Method computes class histograms of leaves (see
+	 * {@link #leafHistograms(ColumnarData)}) in parallel. Rows are split into
+	 * chunks, each chunk routes its rows with its own histograms and the
+	 * histograms of chunks are merged by parallel reduction. It doesn't keep
+	 * the partition of rows, so it is suitable when few trees are evaluated on
+	 * many rows.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @param pool
+	 *            pool that computes the chunks
+	 * @param chunkSize
+	 *            maximal number of rows in one chunk
+	 * @return class histograms indexed by preorder index of node, null for
+	 *         inner nodes and leaves without any row
+	 */
+	public int[][] leafHistograms(ColumnarData columnar, ForkJoinPool pool,
+			int chunkSize) {
+		return pool.invoke(new HistogramTask(columnar, 0, columnar
+				.numInstances(), Math.max(1, chunkSize)));
+	}
+
+	/**
+	 * Method computes class histograms of leaves for rows from (inclusive) to
+	 * (exclusive) by routing each row to its leaf.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @param from
+	 *            first row
+	 * @param to
+	 *            end of rows
+	 * @return class histograms indexed by preorder index of node
+	 */
+	int[][] leafHistograms(ColumnarData columnar, int from, int to) {
+		RankedNodes ranked = rankedNodes(columnar);
+		int[][] histograms = new int[attributes.length][];
+		for (int row = from; row < to; row++) {
+			int node = leaf(columnar, ranked, row);
+			if (histograms[node] == null) {
+				histograms[node] = new int[columnar.numClasses()];
+			}
+			histograms[node][columnar.classIndex(row)]++;
+		}
+		return histograms;
+	}
+
+	/**
+	 * Task that computes histograms of range of rows. Range larger than chunk
+	 * is split in half and histograms of halves are summed.
+	 */
+	@SuppressWarnings("serial")
+	private class HistogramTask extends RecursiveTask<int[][]> {
+
+		/** snapshot of data */
+		private final ColumnarData columnar;
+		/** first row */
+		private final int from;
+		/** end of rows */
+		private final int to;
+		/** maximal number of rows computed without split */
+		private final int chunkSize;
+
+		HistogramTask(ColumnarData columnar, int from, int to, int chunkSize) {
+			this.columnar = columnar;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected int[][] compute() {
+			if (to - from <= chunkSize) {
+				return leafHistograms(columnar, from, to);
+			}
+
+			int middle = (from + to) >>> 1;
+			HistogramTask right = new HistogramTask(columnar, middle, to,
+					chunkSize);
+			right.fork();
+			int[][] histograms = new HistogramTask(columnar, from, middle,
+					chunkSize).compute();
+			int[][] other = right.join();
+			for (int node = 0; node < histograms.length; node++) {
+				if (histograms[node] == null) {
+					histograms[node] = other[node];
+				} else if (other[node] != null) {
+					for (int c = 0; c < other[node].length; c++) {
+						histograms[node][c] += other[node][c];
+					}
+				}
+			}
+			return histograms;
+		}
+	}
+
+	/**
+	 * Method tests if all the inner nodes of the tree split nominal attributes
+	 * of data. Such tree is evaluated fastest by
+	 * {@link #bitsetHistograms(ColumnarData)}.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return true iff there isn't any numeric split
+	 */
+	public boolean isNominal(ColumnarData columnar) {
+		for (int node = 0; node < numNodes; node++) {
+			if (attributes[node] != -1 && columnar.isNumeric(attributes[node])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method computes class histograms of leaves (see
+	 * {@link #leafHistograms(ColumnarData)}) with bitset algebra. Rows of each
+	 * node are kept as bitmap: bitmap of child of nominal node is the bitmap
+	 * of node AND bitmap of the value from {@link NominalBitsets}, so nodes
+	 * share the bitmaps of their common path prefix and 64 rows are routed by
+	 * one operation. Class histogram of leaf is counted by popcounts of its
+	 * bitmap AND class bitmaps. Numeric nodes split the bitmap by testing the
+	 * rows of its set bits. Subtrees without any row are skipped.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return class histograms indexed by preorder index of node, null for
+	 *         inner nodes and leaves without any row
+	 */
+	public int[][] bitsetHistograms(ColumnarData columnar) {
+		NominalBitsets bitsets = columnar.getNominalBitsets();
+		int[][] histograms = new int[numNodes][];
+		// one bitmap for each depth of the path
+		long[][] levels = new long[numNodes + 1][];
+		levels[0] = bitsets.getAll().clone();
+		bitsetHistograms(0, 0, levels, bitsets, columnar, histograms);
+		return histograms;
+	}
+
+	/**
+	 * Method computes histograms of the subtree which rows are in the bitmap
+	 * of depth.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param depth
+	 *            depth of node
+	 * @param levels
+	 *            bitmaps of nodes on the path
+	 * @param bitsets
+	 *            bitset index of data
+	 * @param columnar
+	 *            snapshot of data
+	 * @param histograms
+	 *            histograms to fill
+	 */
+	private void bitsetHistograms(int node, int depth, long[][] levels,
+			NominalBitsets bitsets, ColumnarData columnar, int[][] histograms) {
+		long[] rows = levels[depth];
+		if (isEmpty(rows)) {
+			return;
+		}
+
+		int attribute = attributes[node];
+		if (attribute == -1) {
+			histograms[node] = bitsets.classHistogram(rows);
+			return;
+		}
+
+		if (levels[depth + 1] == null) {
+			levels[depth + 1] = new long[rows.length];
+		}
+		long[] childRows = levels[depth + 1];
+		int offset = childOffsets[node];
+
+		if (columnar.isNumeric(attribute)) {
+			RankedNodes ranked = rankedNodes(columnar);
+			char[] ranks = ranked.ranks[node];
+			byte[] bins = ranked.bins[node];
+			int threshold = ranked.thresholds[node];
+			double[] column = columnar.getNumericColumn(attribute);
+			int[] baseRows = columnar.getRows();
+			if (columnar.isSparse(attribute) && baseRows == null) {
+				sparseFirstRows(node, rows, childRows,
+						columnar.getSparseRows(attribute),
+						columnar.getSparseValues(attribute));
+			} else {
+				for (int w = 0; w < rows.length; w++) {
+					long word = rows[w];
+					long first = 0;
+					while (word != 0) {
+						int bit = Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+						int row = (w << 6) + bit;
+						int baseRow = baseRows == null ? row : baseRows[row];
+						boolean isFirst;
+						if (ranks != null) {
+							isFirst = isFirstChild(node, ranks[baseRow],
+									threshold);
+						} else if (bins != null) {
+							isFirst = isFirstChild(node, bins[baseRow],
+									threshold);
+						} else if (column != null) {
+							isFirst = isFirstChild(node, column[baseRow]);
+						} else {
+							// sparse attribute of view
+							isFirst = isFirstChild(node,
+									columnar.value(attribute, row));
+						}
+						if (isFirst) {
+							first |= 1L << bit;
+						}
+					}
+					childRows[w] = first;
+				}
+			}
+			bitsetHistograms(child(offset), depth + 1, levels, bitsets,
+					columnar, histograms);
+			for (int w = 0; w < rows.length; w++) {
+				childRows[w] = rows[w] & ~childRows[w];
+			}
+			bitsetHistograms(child(offset + 1), depth + 1, levels, bitsets,
+					columnar, histograms);
+			return;
+		}
+
+		long[][] valueSets = bitsets.getValueSets(attribute);
+		int childCount = childCounts[node];
+		// rows with value without child can't be routed
+		for (int value = childCount; value < valueSets.length; value++) {
+			if (intersects(rows, valueSets[value])) {
+				throw new ArrayIndexOutOfBoundsException(value);
+			}
+		}
+		for (int value = 0; value < childCount; value++) {
+			if (value >= valueSets.length) {
+				continue;
+			}
+			long[] valueSet = valueSets[value];
+			for (int w = 0; w < rows.length; w++) {
+				childRows[w] = rows[w] & valueSet[w];
+			}
+			bitsetHistograms(child(offset + value), depth + 1, levels,
+					bitsets, columnar, histograms);
+		}
+	}
+
+	/**
+	 * Method computes the bitmap of rows that go to the first child of
+	 * numeric node on sparse attribute. All rows go the way of 0, then the
+	 * present rows are moved.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param rows
+	 *            bitmap of rows of node
+	 * @param firstRows
+	 *            bitmap to fill
+	 * @param sparseRows
+	 *            rows with present values
+	 * @param sparseValues
+	 *            present values
+	 */
+	private void sparseFirstRows(int node, long[] rows, long[] firstRows,
+			int[] sparseRows, double[] sparseValues) {
+		boolean zeroFirst = isFirstChild(node, 0.0);
+		for (int w = 0; w < rows.length; w++) {
+			firstRows[w] = zeroFirst ? rows[w] : 0;
+		}
+		for (int k = 0; k < sparseRows.length; k++) {
+			int w = sparseRows[k] >>> 6;
+			long bit = 1L << sparseRows[k];
+			if ((rows[w] & bit) == 0) {
+				continue;
+			}
+			if (isFirstChild(node, sparseValues[k])) {
+				firstRows[w] |= bit;
+			} else {
+				firstRows[w] &= ~bit;
+			}
+		}
+	}
+
+	/**
+	 * Index of child node in children slot, missing child can't be reached.
+	 */
+	private int child(int slot) {
+		int child = children[slot];
+		if (child == -1) {
+			throw new ArrayIndexOutOfBoundsException(child);
+		}
+		return child;
+	}
+
+	private static boolean isEmpty(long[] rows) {
+		for (long word : rows) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean intersects(long[] rows, long[] other) {
+		for (int w = 0; w < rows.length; w++) {
+			if ((rows[w] & other[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method pushes all rows of columnar data down the tree (see
+	 * {@link #leafHistograms(ColumnarData)}) and keeps the partitioned row
+	 * indices with ranges of each node, so the partition can be later updated
+	 * when one subtree is replaced.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @return partition of rows by this tree
+	 */
+	public TreePartition partition(ColumnarData columnar) {
+		int numInstances = columnar.numInstances();
+		int[] indices = new int[numInstances];
+		for (int i = 0; i < numInstances; i++) {
+			indices[i] = i;
+		}
+
+		TreePartition partition = new TreePartition(this, columnar, indices);
+		partition(0, new int[numInstances], 0, numInstances, partition);
+		return partition;
+	}
+
+	/**
+	 * Method partitions the indices from (inclusive) to (exclusive) that
+	 * reached the node into its children and recursively continues in them.
+	 *
+	 * @param node
+	 *            index of node
+	 * @param buffer
+	 *            helper array with length at least to - from
+	 * @param from
+	 *            start of partition of node
+	 * @param to
+	 *            end of partition of node
+	 * @param partition
+	 *            partition with indices, ranges and histograms to fill
+	 */
+	void partition(int node, int[] buffer, int from, int to,
+			TreePartition partition) {
+		partition.from[node] = from;
+		partition.to[node] = to;
+		if (from == to) {
+			return;
+		}
+
+		int[] indices = partition.indices;
+		ColumnarData columnar = partition.columnar;
+		int attribute = attributes[node];
+		if (attribute == -1) {
+			int[] histogram = new int[columnar.numClasses()];
+			for (int i = from; i < to; i++) {
+				histogram[columnar.classIndex(indices[i])]++;
+			}
+			partition.histograms[node] = histogram;
+			return;
+		}
+
+		if (columnar.isNumeric(attribute)) {
+			RankedNodes ranked = rankedNodes(columnar);
+			char[] ranks = ranked.ranks[node];
+			byte[] bins = ranked.bins[node];
+			int threshold = ranked.thresholds[node];
+			// columns of view are indexed by rows of its base
+			int[] rows = columnar.getRows();
+			int left = from, right = to - 1;
+			if (ranks != null) {
+				while (left <= right) {
+					int row = indices[left];
+					if (isFirstChild(node,
+							ranks[rows == null ? row : rows[row]], threshold)) {
+						left++;
+					} else {
+						indices[left] = indices[right];
+						indices[right--] = row;
+					}
+				}
+			} else if (bins != null) {
+				while (left <= right) {
+					int row = indices[left];
+					if (isFirstChild(node,
+							bins[rows == null ? row : rows[row]], threshold)) {
+						left++;
+					} else {
+						indices[left] = indices[right];
+						indices[right--] = row;
+					}
+				}
+			} else if (columnar.isSparse(attribute)) {
+				double[] gathered = gather(columnar, attribute, from, to,
+						partition);
+				while (left <= right) {
+					if (isFirstChild(node, gathered[left - from])) {
+						left++;
+					} else {
+						int row = indices[left];
+						indices[left] = indices[right];
+						indices[right] = row;
+						double value = gathered[left - from];
+						gathered[left - from] = gathered[right - from];
+						gathered[right-- - from] = value;
+					}
+				}
+			} else {
+				double[] column = columnar.getNumericColumn(attribute);
+				while (left <= right) {
+					int row = indices[left];
+					if (isFirstChild(node, column[rows == null ? row
+							: rows[row]])) {
+						left++;
+					} else {
+						indices[left] = indices[right];
+						indices[right--] = row;
+					}
+				}
+			}
+			partition(children[childOffsets[node]], buffer, from, left,
+					partition);
+			partition(children[childOffsets[node] + 1], buffer, left, to,
+					partition);
+			return;
+		}
+
+		// counting sort of indices by nominal value
+		int[] values = new int[to - from];
+		if (columnar.isSparse(attribute)) {
+			double[] gathered = gather(columnar, attribute, from, to, partition);
+			for (int i = 0; i < values.length; i++) {
+				values[i] = (int) gathered[i];
+			}
+		} else {
+			columnar.nominalValues(attribute, indices, from, to, values);
+		}
+		int childCount = childCounts[node];
+		int[] starts = new int[childCount + 1];
+		for (int value : values) {
+			if (value >= childCount) {
+				throw new ArrayIndexOutOfBoundsException(value);
+			}
+			starts[value + 1]++;
+		}
+		for (int c = 0; c < childCount; c++) {
+			starts[c + 1] += starts[c];
+		}
+		int[] positions = new int[childCount];
+		System.arraycopy(starts, 0, positions, 0, childCount);
+		for (int i = from; i < to; i++) {
+			buffer[positions[values[i - from]]++] = indices[i];
+		}
+		System.arraycopy(buffer, 0, indices, from, to - from);
+
+		for (int c = 0; c < childCount; c++) {
+			partition(children[childOffsets[node] + c], buffer, from
+					+ starts[c], from + starts[c + 1], partition);
+		}
+	}
+
+	/**
+	 * Method gathers the values of sparse attribute of the indices from
+	 * (inclusive) to (exclusive) of partition. Rows of small range are
+	 * searched in the present rows, for large range the present rows are
+	 * mapped to their positions, so the cost is the smaller of range * log(nnz)
+	 * and range + nnz.
+	 *
+	 * @param columnar
+	 *            snapshot of data
+	 * @param attribute
+	 *            index of sparse attribute
+	 * @param from
+	 *            start of range
+	 * @param to
+	 *            end of range
+	 * @param partition
+	 *            partition with the indices
+	 * @return values of rows of range (0 for absent values)
+	 */
+	private static double[] gather(ColumnarData columnar, int attribute,
+			int from, int to, TreePartition partition) {
+		int[] indices = partition.indices;
+		int[] rows = columnar.getRows();
+		int[] sparseRows = columnar.getSparseRows(attribute);
+		double[] sparseValues = columnar.getSparseValues(attribute);
+		double[] gathered = new double[to - from];
+		if ((long) (to - from)
+				* (32 - Integer.numberOfLeadingZeros(sparseRows.length)) < sparseRows.length) {
+			for (int i = from; i < to; i++) {
+				int k = Arrays.binarySearch(sparseRows, rows == null ? indices[i]
+						: rows[indices[i]]);
+				gathered[i - from] = k < 0 ? 0 : sparseValues[k];
+			}
+			return gathered;
+		}
+
+		int[] positions = partition.getSparsePositions();
+		for (int k = 0; k < sparseRows.length; k++) {
+			positions[sparseRows[k]] = k + 1;
+		}
+		for (int i = from; i < to; i++) {
+			int k = positions[rows == null ? indices[i] : rows[indices[i]]];
+			gathered[i - from] = k == 0 ? 0 : sparseValues[k - 1];
+		}
+		for (int k = 0; k < sparseRows.length; k++) {
+			positions[sparseRows[k]] = 0;
+		}
+		return gathered;
+	}
+
+	/**
+	 * Method returns preorder index that follows the last node of subtree.
+	 *
+	 * @param node
+	 *            index of root of subtree
+	 * @return end of subtree (exclusive)
+	 */
+	int subtreeEnd(int node) {
+		int end = node + 1;
+		while (attributes[node] != -1) {
+			int last = -1;
+			for (int c = childCounts[node] - 1; c >= 0 && last == -1; c--) {
+				last = children[childOffsets[node] + c];
+			}
+			if (last == -1) {
+				break;
+			}
+			node = last;
+			end = node + 1;
+		}
+		return end;
+	}
+
+	/**
+	 * Value of the node at preorder index (threshold or class value of leaf).
+	 *
+	 * @param node
+	 *            index of node
+	 * @return value of the node
+	 */
+	public double getValue(int node) {
+		return values[node];
+	}
+
+	/**
+	 * Number of nodes in flattened tree.
+	 *
+	 * @return number of nodes
+	 */
+	public int numNodes() {
+		return numNodes;
+	}
+
+}
@@ -194,6 +194,7 @@ public class MultiWayHeightNode extends MultiWayNode implements HeightExtension
 	public void setChildCount(int count) {
 		if (count > 0) {
 			this.childs = new MultiWayHeightNode[count];
+			invalidateTreeHash();
 		}
 	}
 
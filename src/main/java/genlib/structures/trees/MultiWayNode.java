@@ -3,7 +3,9 @@ package genlib.structures.trees;
 import genlib.exceptions.NodeCreationException;
 import genlib.exceptions.NotInitializedFieldException;
 import genlib.locales.TextResource;
+import genlib.structures.extensions.HashExtension;
 import genlib.structures.extensions.SizeExtension;
+import genlib.utils.Utils;
 import genlib.utils.Utils.Sign;
 
 /**
@@ -12,7 +14,7 @@ import genlib.utils.Utils.Sign;
  * 
  * @author Lukas Surin
  */
-public class MultiWayNode implements Node, SizeExtension {
+public class MultiWayNode implements Node, SizeExtension, HashExtension {
 
 	/** for serialization */
 	private static final long serialVersionUID = -6016127157752225320L;
@@ -30,6 +32,10 @@ public class MultiWayNode implements Node, SizeExtension {
 	protected double criteriaValue = 0;
 	/** sign of this node */
 	protected Sign sign;
+	/** cached structural hash of subtree of this node */
+	protected transient long treeHash;
+	/** true iff cached structural hash is valid */
+	protected transient volatile boolean validTreeHash = false;
 
 	/**
 	 * Static factory that creates leaf with value of classification. It only
@@ -158,6 +164,7 @@ public class MultiWayNode implements Node, SizeExtension {
 		childs[index] = (MultiWayNode) node;
 		newTreeSize = childs[index].getTreeSize();
 		node.setParent(this);
+		invalidateTreeHash();
 
 		// it will serve the purpose of diff
 		newTreeSize = newTreeSize - oldTreeSize;
@@ -171,6 +178,7 @@ public class MultiWayNode implements Node, SizeExtension {
 	 */
 	public void setAttribute(int attribute) {
 		this.attribute = attribute;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -178,6 +186,7 @@ public class MultiWayNode implements Node, SizeExtension {
 	 */
 	public void setValue(double value) {
 		this.value = value;
+		invalidateTreeHash();
 	}
 
 	/**
@@ -185,14 +194,17 @@ public class MultiWayNode implements Node, SizeExtension {
 	 */
 	public void setSign(Sign sign) {
 		this.sign = sign;
+		invalidateTreeHash();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public void setChildCount(int count) {
-		if (count > 0)
+		if (count > 0) {
 			this.childs = new MultiWayNode[count];
+			invalidateTreeHash();
+		}
 	}
 
 	/**
@@ -205,6 +217,7 @@ public class MultiWayNode implements Node, SizeExtension {
 			treeSize += node.treeSize;
 			node.setParent(this);
 		}
+		invalidateTreeHash();
 	}
 
 	/**
@@ -302,6 +315,7 @@ public class MultiWayNode implements Node, SizeExtension {
 		this.attribute = -1;
 		this.childs = null;
 		updateTreeSize(1 - this.treeSize);
+		invalidateTreeHash();
 	}
 
 	/**
@@ -347,6 +361,19 @@ public class MultiWayNode implements Node, SizeExtension {
 		return treeSize;
 	}
 
+	/**
+	 * {@inheritDoc} </p> Hash is computed lazily and cached until some node
+	 * of the subtree changes.
+	 */
+	@Override
+	public long getTreeHash() {
+		if (!validTreeHash) {
+			treeHash = Utils.computeTreeHash(this);
+			validTreeHash = true;
+		}
+		return treeHash;
+	}
+
 	/**** OTHER METHODS ****/
 
 	/**
@@ -360,6 +387,17 @@ public class MultiWayNode implements Node, SizeExtension {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateTreeHash() {
+		this.validTreeHash = false;
+		if (parent != null) {
+			parent.invalidateTreeHash();
+		}
+	}
+
 	/**
 	 * Clear/Reset all the childs to null. Changes treeSize and parents treeSize
 	 * because of this reset.
@@ -369,6 +407,7 @@ public class MultiWayNode implements Node, SizeExtension {
 		childs = new MultiWayNode[childs.length];
 		int treeSizeToUpdate = 1 - treeSize;
 		updateTreeSize(treeSizeToUpdate);
+		invalidateTreeHash();
 	}
 
 	/**
@@ -402,7 +441,9 @@ public class MultiWayNode implements Node, SizeExtension {
 
 		MultiWayNode node = ((MultiWayNode) obj);
 
-		if (this.attribute != node.attribute || this.value != node.value
+		// values are compared as in routing, so 0.0 and -0.0 differ
+		if (this.attribute != node.attribute
+				|| Double.compare(this.value, node.value) != 0
 				|| this.sign != node.sign
 				|| this.criteriaValue != node.criteriaValue) {
 			return false;
@@ -425,6 +466,16 @@ public class MultiWayNode implements Node, SizeExtension {
 
 	}
 
+	/**
+	 * Hash code consistent with {@link #equals(Object)}. It is derived from
+	 * structural hash of the subtree.
+	 */
+	@Override
+	public int hashCode() {
+		long hash = getTreeHash();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
 	@Override
 	public String toString() {
 		if (isLeaf()) {
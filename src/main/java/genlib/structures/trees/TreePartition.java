@@ -0,0 +1,175 @@
+package genlib.structures.trees;
+
+import genlib.structures.data.ColumnarData;
+
+import java.util.Arrays;
+
+/**
+ * Result of pushing the rows of columnar data down the {@link FlatTree}. It
+ * keeps the array of row indices partitioned by the tree, so the rows that
+ * reached a node are the contiguous range <i>[from, to)</i> of this array, and
+ * the class histograms of the leaves. Instance of this class is not modified
+ * after it is created (unless it is updated in place), so it can be shared by
+ * copies of individual. </p> When an operator replaces one subtree, the new
+ * partition is derived by {@link #update(FlatTree, int, boolean)} which routes
+ * only the rows that reached the replaced node. Ranges and histograms of all the other nodes are taken from
+ * this partition.
+ *
+ * @author Lukas Surin
+ *
+ */
+public class TreePartition {
+
+	/** partitioned tree */
+	final FlatTree tree;
+	/** columnar data whose rows are partitioned */
+	final ColumnarData columnar;
+	/** row indices partitioned by the tree */
+	final int[] indices;
+	/** start of range of rows for each node (preorder index) */
+	final int[] from;
+	/** end of range of rows for each node (preorder index) */
+	final int[] to;
+	/** class histograms of leaves, null for inner nodes and empty leaves */
+	final int[][] histograms;
+	/**
+	 * positions of present values of sparse attribute by row (position + 1, 0
+	 * for absent rows), used only while partitioning, created lazily
+	 */
+	private int[] sparsePositions;
+
+	/**
+	 * Constructor of partition with empty ranges and histograms.
+	 *
+	 * @param tree
+	 *            partitioned tree
+	 * @param columnar
+	 *            partitioned data
+	 * @param indices
+	 *            array with row indices
+	 */
+	TreePartition(FlatTree tree, ColumnarData columnar, int[] indices) {
+		this.tree = tree;
+		this.columnar = columnar;
+		this.indices = indices;
+		this.from = new int[tree.numNodes()];
+		this.to = new int[tree.numNodes()];
+		this.histograms = new int[tree.numNodes()][];
+	}
+
+	/**
+	 * Gets the helper array that maps rows to positions of present values of
+	 * sparse attribute. It is all zeros between uses.
+	 *
+	 * @return array with zero for each row (of base of view)
+	 */
+	int[] getSparsePositions() {
+		if (sparsePositions == null) {
+			// positions are indexed by rows of base of view
+			sparsePositions = new int[columnar.getBase().numInstances()];
+		}
+		return sparsePositions;
+	}
+
+	/**
+	 * Method creates partition of the new tree that differs from the tree of
+	 * this partition only in subtree at preorder index node. Rows that reached
+	 * the node (it has the same preorder index in both trees) are routed
+	 * through the new subtree, ranges and histograms of nodes before the
+	 * subtree are copied and those after the subtree are shifted by the
+	 * difference of subtree sizes.
+	 *
+	 * @param newTree
+	 *            flattened tree with the replaced subtree
+	 * @param node
+	 *            preorder index of root of the replaced subtree
+	 * @param inPlace
+	 *            true if the array of row indices can be reused (this
+	 *            partition isn't shared and it is not used after the update),
+	 *            otherwise it is copied
+	 * @return partition of the new tree
+	 */
+	public TreePartition update(FlatTree newTree, int node, boolean inPlace) {
+		int oldEnd = tree.subtreeEnd(node);
+		int newEnd = newTree.subtreeEnd(node);
+		int tail = tree.numNodes() - oldEnd;
+
+		TreePartition partition = new TreePartition(newTree, columnar,
+				inPlace ? indices : indices.clone());
+		System.arraycopy(from, 0, partition.from, 0, node);
+		System.arraycopy(to, 0, partition.to, 0, node);
+		System.arraycopy(histograms, 0, partition.histograms, 0, node);
+		System.arraycopy(from, oldEnd, partition.from, newEnd, tail);
+		System.arraycopy(to, oldEnd, partition.to, newEnd, tail);
+		System.arraycopy(histograms, oldEnd, partition.histograms, newEnd,
+				tail);
+
+		int start = from[node], end = to[node];
+		Arrays.fill(partition.from, node, newEnd, start);
+		Arrays.fill(partition.to, node, newEnd, start);
+		newTree.partition(node, new int[end - start], start, end, partition);
+		return partition;
+	}
+
+	/**
+	 * Gets the partitioned tree.
+	 *
+	 * @return flattened tree
+	 */
+	public FlatTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Gets the columnar data whose rows are partitioned.
+	 *
+	 * @return columnar snapshot of data
+	 */
+	public ColumnarData getColumnarData() {
+		return columnar;
+	}
+
+	/**
+	 * Gets the class histograms of leaves indexed by preorder index of node.
+	 * Returned histograms should not be modified.
+	 *
+	 * @return class histograms of leaves
+	 */
+	public int[][] getHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * Method counts the misclassified rows of the partitioned data. Rows of
+	 * each leaf with class other than the class of leaf are misclassified, so
+	 * the rows aren't routed again.
+	 *
+	 * @param errors
+	 *            counters of rows to increment
+	 */
+	public void countErrors(int[] errors) {
+		for (int node = 0; node < histograms.length; node++) {
+			if (histograms[node] == null) {
+				continue;
+			}
+			int pClass = (int) tree.getValue(node);
+			for (int i = from[node]; i < to[node]; i++) {
+				if (columnar.classIndex(indices[i]) != pClass) {
+					errors[indices[i]]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Number of rows that reached the node.
+	 *
+	 * @param node
+	 *            preorder index of node
+	 * @return number of rows in node
+	 */
+	public int size(int node) {
+		return to[node] - from[node];
+	}
+
+}
@@ -4,8 +4,11 @@ import genlib.evolution.individuals.Individual;
 import genlib.evolution.individuals.TreeIndividual;
 import genlib.evolution.population.Population;
 import genlib.locales.PermMessages;
+import genlib.structures.data.ArrayGenLibAttribute;
+import genlib.structures.data.ArrayGenLibInstances;
 import genlib.structures.data.GenLibInstance;
 import genlib.structures.data.GenLibInstances;
+import genlib.structures.extensions.HashExtension;
 import genlib.structures.extensions.SizeExtension;
 import genlib.structures.trees.MultiWayHeightNode;
 import genlib.structures.trees.Node;
@@ -36,6 +39,8 @@ public class Utils {
 	public static final String oDELIM = "(;|[ ]+)";
 	/** delimiter for global use when delimiting parameters */
 	public static final String pDELIM = ",";
+	/** prime used when combining structural hashes of nodes */
+	private static final long HASH_PRIME = 0x100000001b3L;
 	/** reused blank param from perm messages */
 	public static final String bPARAM = PermMessages._blank_param;
 
@@ -410,6 +415,49 @@ public class Utils {
 
 	}
 
+	/**
+	 * Method which computes structural hash of a tree given by parameter root.
+	 * Hash is computed from attribute, value (its raw bits) and sign of each
+	 * node and from hashes of its childs (in order). Childs that are {@link HashExtension}
+	 * use their cached hash. Criteria value of nodes is not part of hash.
+	 * 
+	 * @param root
+	 *            of a tree
+	 * @return structural hash of a tree
+	 */
+	public static long computeTreeHash(Node root) {
+		if (root == null) {
+			return 0;
+		}
+
+		long hash = root.getAttribute();
+		// raw bits, because routing uses Double.compare where 0.0 and -0.0
+		// split data differently
+		hash = hash * HASH_PRIME + Double.doubleToLongBits(root.getValue());
+		hash = hash * HASH_PRIME
+				+ (root.getSign() == null ? 0 : root.getSign().ordinal() + 1);
+
+		if (!root.isLeaf() && root.getChilds() != null) {
+			for (Node child : root.getChilds()) {
+				long childHash;
+				if (child instanceof HashExtension) {
+					childHash = ((HashExtension) child).getTreeHash();
+				} else {
+					childHash = computeTreeHash(child);
+				}
+				hash = hash * HASH_PRIME + childHash;
+			}
+		}
+
+		// finalization mix so similar trees are spread over whole range
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
 	/**
 	 * Method which computes size of a tree given by parameter root. Root must
 	 * be of type Node.
@@ -604,6 +652,54 @@ public class Utils {
 		throw new IndexOutOfBoundsException();
 	}
 
+	/**
+	 * Method that finds preorder index of the node in the tree with root. It is
+	 * the counterpart of {@link #getNode(Node, int)}. Null childs are skipped
+	 * and childs of leaves are not visited.
+	 * 
+	 * @param root
+	 *            Node from which we start
+	 * @param node
+	 *            that we search for
+	 * @return preorder index of node or -1 if the node isn't in the tree
+	 */
+	public static int getNodeIndex(Node root, Node node) {
+		return getNodeIndex(root, node, new int[1]);
+	}
+
+	/**
+	 * Recursive part of {@link #getNodeIndex(Node, Node)}.
+	 * 
+	 * @param root
+	 *            Node from which we start
+	 * @param node
+	 *            that we search for
+	 * @param counter
+	 *            preorder index of root
+	 * @return preorder index of node or -1 if the node isn't in subtree
+	 */
+	private static int getNodeIndex(Node root, Node node, int[] counter) {
+		int index = counter[0]++;
+		if (root == node) {
+			return index;
+		}
+
+		if (root.isLeaf() || root.getChilds() == null) {
+			return -1;
+		}
+
+		for (Node child : root.getChilds()) {
+			if (child != null) {
+				int childIndex = getNodeIndex(child, node, counter);
+				if (childIndex != -1) {
+					return childIndex;
+				}
+			}
+		}
+
+		return -1;
+	}
+
 	/**
 	 * Method count the number of leaves in tree (recursively).
 	 * 
@@ -977,37 +1073,76 @@ public class Utils {
 	}
 
 	/**
-	 * NOT IMPLEMENTED YET
+	 * Method which makes the hashmap with mapping of attributes to indeces.
+	 * Only {@link ArrayGenLibInstances} have named attributes, for other
+	 * instances the hashmap is empty.
 	 * 
 	 * @param data
-	 * @return
+	 *            instances to be used on creating hashmap
+	 * @return HashMap
 	 */
 	public static HashMap<String, Integer> makeAttrIndexMap(GenLibInstances data) {
 		HashMap<String, Integer> retHashMap = new HashMap<String, Integer>();
+		if (data instanceof ArrayGenLibInstances) {
+			ArrayGenLibInstances instances = (ArrayGenLibInstances) data;
+			for (int i = 0; i < instances.numAttributes(); i++) {
+				retHashMap.put(instances.attribute(i).name(), i);
+			}
+		}
 		return retHashMap;
 	}
 
 	/**
-	 * NOT IMPLEMENTED YET
+	 * Methodh which makes the array of hashmaps (length = number of attribute)
+	 * with mapping of attribute values to indeces. Hashmaps of
+	 * {@link ArrayGenLibInstances} are taken from attributes (loaders build
+	 * them while parsing), for other instances it returns null.
 	 * 
 	 * @param data
-	 * @return
+	 *            instances to be used on creating hashmaps
+	 * @return Hashmap[]
 	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static HashMap<String, Integer>[] makeAttrValueIndexMap(
 			GenLibInstances data) {
-		return null;
+		if (!(data instanceof ArrayGenLibInstances)) {
+			return null;
+		}
+
+		ArrayGenLibInstances instances = (ArrayGenLibInstances) data;
+		HashMap<String, Integer>[] retHashMap = new HashMap[instances
+				.numAttributes()];
+		for (int i = 0; i < instances.numAttributes(); i++) {
+			ArrayGenLibAttribute attr = instances.attribute(i);
+			if (attr.isNominal()) {
+				retHashMap[i] = attr.getLabelIndex();
+			}
+		}
+		return retHashMap;
 	}
 
 	/**
-	 * NOT IMPLEMENTED YET
+	 * Method which mimics the behavior of
+	 * {@link #makeAttrIndexMap(GenLibInstances)} and
+	 * {@link #makeAttrValueIndexMap(GenLibInstances)} but instead of returning
+	 * hashmaps it uses reference approach and fill the parameters.
 	 * 
 	 * @param data
-	 * @return
+	 *            instances to be used on creating hashmaps
+	 * @param attrIndexMap
+	 *            hashmap with mapping attribute <-> index
+	 * @param attrValueIndexMap
+	 *            hashmap with mapping attributevalue <-> index
 	 */
 	public static void makeAttrMap(GenLibInstances data,
 			HashMap<String, Integer> attrIndexMap,
 			HashMap<String, Integer>[] attrValueIndexMap) {
-
+		attrIndexMap.putAll(makeAttrIndexMap(data));
+		HashMap<String, Integer>[] valueMaps = makeAttrValueIndexMap(data);
+		if (valueMaps != null) {
+			System.arraycopy(valueMaps, 0, attrValueIndexMap, 0,
+					valueMaps.length);
+		}
 	}
 
 	/**
@@ -1,11 +1,15 @@
 package genlib.utils;
 
 import genlib.evolution.individuals.TreeIndividual;
+import genlib.structures.data.ArrayGenLibAttribute;
+import genlib.structures.data.ArrayGenLibInstances;
+import genlib.structures.data.DataCache;
 import genlib.structures.trees.MultiWayHeightNode;
 import genlib.structures.trees.MultiWayNode;
 import genlib.structures.trees.Node;
 import genlib.utils.Utils.Sign;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -13,6 +17,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import weka.core.Attribute;
+import weka.core.FastVector;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -536,6 +541,132 @@ public class WekaUtils {
 		}
 	}
 
+	/**
+	 * Method which converts array-backed instances into weka
+	 * {@link Instances}. Attributes keep their names and labels, values of rows
+	 * are copied into new weka instances (missing values are NaN in both
+	 * representations).
+	 * 
+	 * @param data
+	 *            array-backed instances
+	 * @return weka instances with the same values
+	 */
+	public static Instances toInstances(ArrayGenLibInstances data) {
+		FastVector attributes = new FastVector(data.numAttributes());
+		for (int i = 0; i < data.numAttributes(); i++) {
+			ArrayGenLibAttribute attr = data.attribute(i);
+			if (attr.isNumeric()) {
+				attributes.addElement(new Attribute(attr.name()));
+			} else {
+				FastVector labels = new FastVector(attr.numOfValues());
+				for (int j = 0; j < attr.numOfValues(); j++) {
+					labels.addElement(attr.value(j));
+				}
+				attributes.addElement(new Attribute(attr.name(), labels));
+			}
+		}
+
+		Instances instances = new Instances(data.relationName(), attributes,
+				data.numInstances());
+		instances.setClassIndex(data.classIndex());
+		for (int row = 0; row < data.numInstances(); row++) {
+			double[] values = new double[data.numAttributes()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = data.value(row, i);
+			}
+			instances.add(new Instance(1, values));
+		}
+		return instances;
+	}
+
+	/**
+	 * Instances that share the rows (instance objects) with other instances.
+	 * Only the vector of references is created, values aren't copied.
+	 */
+	private static class InstancesView extends Instances {
+
+		/** for serialization */
+		private static final long serialVersionUID = -2305736017342853170L;
+
+		/**
+		 * Constructor of view with chosen rows of data.
+		 * 
+		 * @param data
+		 *            instances from which we take rows
+		 * @param rows
+		 *            indices of rows in view
+		 */
+		InstancesView(Instances data, int[] rows) {
+			super(data, rows.length);
+			for (int row : rows) {
+				m_Instances.addElement(data.instance(row));
+			}
+		}
+	}
+
+	/**
+	 * Method which creates new {@link Instances} with chosen rows of data.
+	 * Rows aren't copied (as in {@link Instances#resample(java.util.Random)}
+	 * or {@link Instances#testCV(int, int)}), new instances share them with
+	 * data, so only the array of references is allocated. Rows can repeat.
+	 * Shared rows shouldn't be modified. New instances can be randomized and
+	 * rows can be added or deleted without affecting data.
+	 *
+	 * @param data
+	 *            instances from which we take rows
+	 * @param rows
+	 *            indices of rows in new instances
+	 * @return instances with chosen rows
+	 */
+	public static Instances subset(Instances data, int[] rows) {
+		return new InstancesView(data, rows);
+	}
+
+	/**
+	 * Method computes content hash of instances from their values, class
+	 * values and weights (see {@link DataCache}).
+	 *
+	 * @param data
+	 *            instances
+	 * @return content hash of instances
+	 */
+	public static long contentHash(Instances data) {
+		long hash = DataCache.mix(data.numInstances(), data.numAttributes());
+		hash = DataCache.mix(hash, data.classIndex());
+		for (int a = 0; a < data.numAttributes(); a++) {
+			hash = DataCache.mix(hash, data.attribute(a).type());
+		}
+		for (int row = 0; row < data.numInstances(); row++) {
+			Instance instance = data.instance(row);
+			for (int a = 0; a < data.numAttributes(); a++) {
+				hash = DataCache.mix(hash,
+						Double.doubleToLongBits(instance.value(a)));
+			}
+			hash = DataCache.mix(hash,
+					Double.doubleToLongBits(instance.weight()));
+		}
+		return hash;
+	}
+
+	/**
+	 * Method which creates view of data without the rows with missing class
+	 * (see {@link #subset(Instances, int[])}).
+	 *
+	 * @param data
+	 *            instances
+	 * @return view of rows with class
+	 */
+	public static Instances withClass(Instances data) {
+		int[] rows = new int[data.numInstances()];
+		int size = 0;
+		for (int row = 0; row < rows.length; row++) {
+			if (!data.instance(row).classIsMissing()) {
+				rows[size++] = row;
+			}
+		}
+		return subset(data, Arrays.copyOf(rows, size));
+	}
+
 	/**
 	 * Method that converts the tree defined by the root node into tree
 	 * representation as in weka. It uses {@link Instances} to get attribute
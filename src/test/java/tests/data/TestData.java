@@ -1,12 +1,32 @@
 package tests.data;
 
 import static org.junit.Assert.*;
+import genlib.classifier.weka.WekaEvolutionTreeClassifier;
 import genlib.configurations.Config;
+import genlib.generators.WekaSimpleStumpGenerator;
+import genlib.exceptions.WrongDataException;
 import genlib.structures.Data;
+import genlib.structures.data.ArrayGenLibAttribute;
+import genlib.structures.data.ArrayGenLibInstances;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.DataCache;
+import genlib.structures.data.GenLibBinaryFormat;
+import genlib.structures.data.GenLibLoader;
+import genlib.structures.data.MappedGenLibInstances;
+import genlib.structures.data.ParallelGenLibLoader;
+import genlib.structures.data.RowIndices;
+import genlib.utils.WekaUtils;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
 import java.util.Random;
+
 import org.junit.Test;
 
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.datagenerators.classifiers.classification.RDG1;
 
@@ -47,4 +67,586 @@ public class TestData {
 		assertTrue(data != data.getTrainData());
 		assertTrue(data != data.getValidationData());
 	}
+
+	@Test
+	public void testColumnarData() {
+		Data data = new Data(wekaData, new Random(0));
+		ColumnarData columnar = data.getColumnarData();
+
+		assertTrue(columnar == data.getColumnarData());
+		assertEquals(wekaData.numInstances(), columnar.numInstances());
+		assertEquals(wekaData.numAttributes(), columnar.numAttributes());
+
+		for (int row = 0; row < wekaData.numInstances(); row++) {
+			for (int a = 0; a < wekaData.numAttributes(); a++) {
+				assertEquals(wekaData.instance(row).value(a),
+						columnar.value(a, row), 0);
+			}
+			assertEquals(wekaData.instance(row).classValue(),
+					columnar.classValue(row), 0);
+		}
+
+		data.randomize();
+		assertTrue(columnar != data.getColumnarData());
+	}
+
+	@Test
+	public void testNarrowNominalColumns() {
+		String[] many = new String[300];
+		for (int i = 0; i < many.length; i++) {
+			many[i] = "v" + i;
+		}
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("few", new String[] { "a", "b", "c" }),
+				new ArrayGenLibAttribute("many", many),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		double[][] columns = new double[3][600];
+		for (int row = 0; row < 600; row++) {
+			columns[0][row] = row % 3;
+			columns[1][row] = row % 300;
+			columns[2][row] = row % 2;
+		}
+		ColumnarData columnar = ColumnarData
+				.fromGenLibInstances(new ArrayGenLibInstances("n", attributes,
+						columns, 2));
+
+		// columns are as narrow as the number of values allows
+		assertNotNull(columnar.getNominalBytes(0));
+		assertNotNull(columnar.getNominalShorts(1));
+		assertNull(columnar.getNominalBytes(1));
+		assertNull(columnar.getNominalColumn(1));
+		int[] rows = new int[600];
+		for (int row = 0; row < 600; row++) {
+			rows[row] = row;
+		}
+		int[] values = new int[600];
+		columnar.nominalValues(1, rows, 0, 600, values);
+		for (int row = 0; row < 600; row++) {
+			assertEquals(row % 3, columnar.nominalValue(0, row));
+			assertEquals(row % 300, columnar.value(1, row), 0);
+			assertEquals(row % 300, values[row]);
+		}
+		assertEquals(600L * (12 + 1 + 2 + 1), columnar.estimateBytes());
+	}
+
+	@Test
+	public void testSubsample() {
+		Data data = new Data(wekaData, new Random(0));
+		data.setParam("TRAINRATIO,0.8,SUBSAMPLE,0.1,SUBSAMPLEGEN,2");
+		Data train = data.getTrainData();
+		assertTrue(train.getSampleData() == train);
+
+		assertTrue(data.updateSubsample(0, 11));
+		Data sample = train.getSampleData();
+		assertTrue(sample != train);
+		assertEquals(8, sample.numInstances(), 1);
+		// each class keeps its proportion
+		double[] all = train.getClassCounts();
+		double[] sampled = sample.getClassCounts();
+		for (int i = 0; i < all.length; i++) {
+			assertEquals(all[i] * 0.1, sampled[i], 1);
+		}
+
+		// new sample is drawn only every second generation
+		assertFalse(data.updateSubsample(1, 11));
+		assertTrue(sample == train.getSampleData());
+		assertTrue(data.updateSubsample(8, 11));
+		assertEquals(80 * (0.1 + 0.9 * 0.8), train.getSampleData()
+				.numInstances(), 2);
+
+		// last generation and final ranking evaluate whole train data
+		assertTrue(data.updateSubsample(10, 11));
+		assertTrue(train.getSampleData() == train);
+		assertTrue(data.getSampleData() == data);
+		assertFalse(data.clearSubsample());
+	}
+
+	@Test
+	public void testChunkedBins() {
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("a"),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		double[][] columns = new double[2][100];
+		for (int row = 0; row < 100; row++) {
+			columns[0][row] = (row * 37) % 100;
+			columns[1][row] = row % 2;
+		}
+		ArrayGenLibInstances instances = new ArrayGenLibInstances("c",
+				attributes, columns, 1);
+		Data data = new Data(instances, new Random(0));
+		data.setParam("BINS,8");
+		Data chunked = new Data(instances, new Random(0));
+		chunked.setParam("CHUNK,30,BINS,8");
+
+		// bins are sketched chunk by chunk from the same values
+		assertArrayEquals(data.getBinValues()[0], chunked.getBinValues()[0], 0);
+		ColumnarData columnar = data.getColumnarData();
+		for (int chunk = 0; chunk < chunked.numChunks(); chunk++) {
+			ColumnarData part = chunked.getChunk(chunk);
+			for (int row = 0; row < part.numInstances(); row++) {
+				assertEquals(columnar.value(0, chunk * 30 + row),
+						part.value(0, row), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testDifficultySampling() {
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("id"),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		double[][] columns = new double[2][200];
+		for (int row = 0; row < 200; row++) {
+			columns[0][row] = row;
+			columns[1][row] = row % 2;
+		}
+		Data data = new Data(new ArrayGenLibInstances("d", attributes,
+				columns, 1), new Random(0));
+		data.setParam("SUBSAMPLE,0.25,DSS,1,DSSAGE,1");
+		assertTrue(data.isDifficultySampled());
+
+		assertTrue(data.updateSubsample(0, 1000));
+		ColumnarData first = data.getSampleData().getColumnarData();
+		assertEquals(50, first.numInstances());
+		// first half of the sample is misclassified by many individuals
+		int[] errors = new int[first.numInstances()];
+		HashSet<Integer> hard = new HashSet<>();
+		HashSet<Integer> easy = new HashSet<>();
+		for (int i = 0; i < errors.length; i++) {
+			if (i < errors.length / 2) {
+				errors[i] = 1000;
+				hard.add((int) first.value(0, i));
+			} else {
+				easy.add((int) first.value(0, i));
+			}
+		}
+		data.addDifficulty(errors);
+
+		assertTrue(data.updateSubsample(1, 1000));
+		ColumnarData second = data.getSampleData().getColumnarData();
+		HashSet<Integer> chosen = new HashSet<>();
+		for (int i = 0; i < second.numInstances(); i++) {
+			chosen.add((int) second.value(0, i));
+		}
+		// hard rows are chosen again, easy rows wait for their age
+		assertTrue(chosen.containsAll(hard));
+		for (int id : easy) {
+			assertFalse(chosen.contains(id));
+		}
+	}
+
+	@Test
+	public void testViews() {
+		Instances instances = new Instances(wekaData);
+		Data data = new Data(instances, new Random(0));
+		data.setParam("TRAINRATIO,0.5,STRATIFY,true");
+		Instances train = data.getTrainData().toInstances();
+		Instances validation = data.getValidationData().toInstances();
+		assertEquals(50, train.numInstances());
+		assertEquals(50, validation.numInstances());
+		// rows are shared, not copied
+		HashSet<Instance> rows = new HashSet<>();
+		for (int row = 0; row < instances.numInstances(); row++) {
+			rows.add(instances.instance(row));
+		}
+		for (int row = 0; row < train.numInstances(); row++) {
+			assertTrue(rows.contains(train.instance(row)));
+		}
+		double[] all = data.getClassCounts();
+		double[] trainCounts = data.getTrainData().getClassCounts();
+		for (int i = 0; i < all.length; i++) {
+			assertEquals(all[i] / 2, trainCounts[i], 1);
+		}
+
+		// views can be shuffled without changing data
+		Instance first = instances.instance(0);
+		data.getTrainData().randomize();
+		assertTrue(first == instances.instance(0));
+
+		// folds are the same as weka folds
+		int[] rowsOfFold = RowIndices.fold(100, 7, 3);
+		Instances fold = instances.testCV(7, 3);
+		assertEquals(fold.numInstances(), rowsOfFold.length);
+		for (int i = 0; i < rowsOfFold.length; i++) {
+			assertEquals(fold.instance(i).toString(),
+					instances.instance(rowsOfFold[i]).toString());
+		}
+
+		// stratified order is permutation and its folds are stratified
+		ColumnarData columnar = data.getColumnarData();
+		int[] order = RowIndices.stratifiedOrder(columnar);
+		boolean[] seen = new boolean[order.length];
+		for (int row : order) {
+			assertFalse(seen[row]);
+			seen[row] = true;
+		}
+		for (int f = 0; f < 5; f++) {
+			int[] counts = new int[2];
+			for (int row : RowIndices.select(order, RowIndices.fold(100, 5, f))) {
+				counts[columnar.classIndex(row)]++;
+			}
+			assertEquals(all[0] / 5, counts[0], 1);
+		}
+
+		int[] resample = RowIndices.stratifiedResample(columnar, new Random(1));
+		int[] counts = new int[2];
+		for (int row : resample) {
+			counts[columnar.classIndex(row)]++;
+		}
+		assertEquals(all[0], counts[0], 0);
+		assertEquals(all[1], counts[1], 0);
+
+		instances.instance(5).setClassMissing();
+		assertEquals(99, WekaUtils.withClass(instances).numInstances());
+	}
+
+	@Test
+	public void testViewsShareSnapshot() {
+		Data data = new Data(new Instances(wekaData), new Random(0));
+		data.setParam("TRAINRATIO,0.5,STRATIFY,true");
+		Data train = data.getTrainData();
+		ColumnarData columnar = data.getColumnarData();
+		ColumnarData trainColumnar = train.getColumnarData();
+		// view keeps only its rows
+		assertTrue(trainColumnar.getBase() == columnar);
+		assertEquals(50, trainColumnar.numInstances());
+		assertEquals(4 * 50, trainColumnar.estimateBytes());
+		assertTrue(train.getSortedRows() != null);
+
+		Instances trainInstances = train.toInstances();
+		for (int row = 0; row < trainInstances.numInstances(); row++) {
+			for (int a = 0; a < trainInstances.numAttributes(); a++) {
+				assertEquals(trainInstances.instance(row).value(a),
+						trainColumnar.value(a, row), 0);
+			}
+			assertEquals(trainInstances.instance(row).classValue(),
+					trainColumnar.classValue(row), 0);
+		}
+
+		// shuffled data only permute their rows, views keep theirs
+		data.randomize();
+		assertTrue(data.getColumnarData().getBase() == columnar);
+		trainColumnar = train.getColumnarData();
+		for (int row = 0; row < trainInstances.numInstances(); row++) {
+			assertEquals(trainInstances.instance(row).classValue(),
+					trainColumnar.classValue(row), 0);
+			assertTrue(trainInstances.instance(row) == train.toInstances()
+					.instance(row));
+		}
+	}
+
+	@Test
+	public void testViewsNotCached() throws Exception {
+		Data data = new Data(new Instances(wekaData), new Random(0));
+		data.setParam("TRAINRATIO,0.5,SUBSAMPLE,0.5");
+		data.getSortedRows();
+		DataCache cache = DataCache.getInstance();
+		int entries = cache.numEntries();
+
+		// views and subsamples share the structures of their source data
+		data.updateSubsample(0, 10);
+		Data sample = data.getSampleData();
+		assertTrue(sample != data);
+		sample.getColumnarData();
+		sample.getSortedRows();
+		data.getTrainData().getSortedRows();
+		data.getValidationData().getColumnarData();
+		WekaSimpleStumpGenerator gen = new WekaSimpleStumpGenerator();
+		gen.setInstances(sample.toInstances());
+		gen.setSortedRows(sample.getSortedRows());
+		gen.createPopulation();
+		assertEquals(entries, cache.numEntries());
+	}
+
+	@Test
+	public void testDataCache() throws IOException {
+		// equal data from different builds share snapshots
+		Data data = new Data(new Instances(wekaData), new Random(0));
+		Data other = new Data(new Instances(wekaData), new Random(1));
+		assertTrue(data.getColumnarData() == other.getColumnarData());
+		assertTrue(data.getSortedRows() == other.getSortedRows());
+		other.randomize();
+		assertTrue(data.getColumnarData() != other.getColumnarData());
+
+		File spill = File.createTempFile("cache", "");
+		spill.delete();
+		DataCache cache = new DataCache(100, spill);
+		cache.putIfAbsent(DataCache.key("a", 1), new double[] { 1 }, 60);
+		assertTrue(cache.putIfAbsent(DataCache.key("a", 1), new double[] { 2 },
+				60) == cache.get(DataCache.key("a", 1)));
+		cache.putIfAbsent(DataCache.key("b", 1), new double[] { 3 }, 60);
+		// first one was evicted into spill directory
+		assertEquals(1, cache.numEntries());
+		assertEquals(60, cache.size());
+		double[] spilled = (double[]) cache.get(DataCache.key("a", 1));
+		assertEquals(1, spilled[0], 0);
+		assertNull(new DataCache(100, null).get(DataCache.key("a", 1)));
+		assertNull(new DataCache(0, spill).get(DataCache.key("a", 1)));
+		delete(spill);
+	}
+
+	@Test
+	public void testDataCacheValidation() throws IOException {
+		// snapshot of other data under the key of these data isn't adopted
+		Instances instances = new Instances(wekaData);
+		String key = DataCache.key("columnar",
+				WekaUtils.contentHash(instances));
+		ColumnarData wrong = ColumnarData.fromInstances(new Instances(
+				wekaData, 0, 50));
+		DataCache.getInstance().put(key, wrong, wrong.estimateBytes());
+		Data data = new Data(instances, new Random(0));
+		ColumnarData columnar = data.getColumnarData();
+		assertTrue(columnar != wrong);
+		assertEquals(100, columnar.numInstances());
+		assertTrue(DataCache.getInstance().get(key) == columnar);
+
+		File spill = File.createTempFile("cache", "");
+		spill.delete();
+		File old = new File(spill, "data-v0");
+		old.mkdirs();
+		new FileWriter(new File(old, "a-1.ser")).close();
+		DataCache cache = new DataCache(100, spill);
+		// spilled files of other versions are deleted
+		assertFalse(old.exists());
+
+		// file of other key is deleted instead of being read
+		cache.putIfAbsent(DataCache.key("a", 1), new double[] { 1 }, 60);
+		cache.putIfAbsent(DataCache.key("b", 1), new double[] { 2 }, 60);
+		File[] dirs = spill.listFiles();
+		assertEquals(1, dirs.length);
+		File spilled = new File(dirs[0], DataCache.key("a", 1) + ".ser");
+		assertTrue(spilled.renameTo(new File(dirs[0], DataCache.key("c", 1)
+				+ ".ser")));
+		assertNull(cache.get(DataCache.key("c", 1)));
+		assertEquals(0, dirs[0].listFiles().length);
+
+		// replaced structure doesn't come back from spill directory
+		cache.putIfAbsent(DataCache.key("c", 1), new double[] { 3 }, 60);
+		cache.put(DataCache.key("b", 1), new double[] { 4 }, 60);
+		assertEquals(4, ((double[]) cache.get(DataCache.key("b", 1)))[0], 0);
+		delete(spill);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testGenLibLoaders() throws IOException {
+		String arff = "% comment\n@relation test\n"
+				+ "@attribute a numeric\n@attribute 'b c' {x, 'y z'}\n"
+				+ "@attribute class {yes,no}\n@data\n"
+				+ "1.5,x,yes\n?,'y z',no\n-2,x,no\n";
+		ArrayGenLibInstances instances = GenLibLoader
+				.loadArff(new StringReader(arff));
+		assertEquals("test", instances.relationName());
+		assertEquals(3, instances.numInstances());
+		assertEquals(3, instances.numAttributes());
+		assertEquals(2, instances.numClasses());
+		assertEquals(2, instances.classIndex());
+		assertTrue(instances.attribute(0).isNumeric());
+		assertEquals("b c", instances.attribute(1).name());
+		assertEquals(1, instances.attribute(1).indexOfValue("y z"));
+		assertTrue(Double.isNaN(instances.value(1, 0)));
+		assertEquals(-2, instances.value(2, 0), 0);
+		assertEquals(1, instances.classValue(2), 0);
+		assertArrayEquals(new double[] { 1, 2 }, instances.getDistribution()
+				.getClassCounts(), 0);
+
+		String csv = "a,b,class\n1,x,0\n2,3,1\n,y,0\n";
+		instances = GenLibLoader.loadCsv(new StringReader(csv), "csv", -1);
+		assertTrue(instances.attribute(0).isNumeric());
+		assertTrue(instances.attribute(1).isNominal());
+		assertEquals(3, instances.attribute(1).numOfValues());
+		// class is nominal even if its values are numbers
+		assertTrue(instances.classAttribute().isNominal());
+		assertEquals(2, instances.numClasses());
+		assertTrue(Double.isNaN(instances.value(2, 0)));
+		assertEquals(1, instances.value(1, 1), 0);
+	}
+
+	@Test
+	public void testArrayGenLibInstances() {
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("a"),
+				new ArrayGenLibAttribute("class", new String[] { "p", "n" }) };
+		double[][] columns = new double[2][100];
+		for (int i = 0; i < 100; i++) {
+			columns[0][i] = i;
+			columns[1][i] = i % 2;
+		}
+		ArrayGenLibInstances instances = new ArrayGenLibInstances("r",
+				attributes, columns, 1);
+
+		ArrayGenLibInstances part = instances.getPart(10, 20);
+		assertEquals(20, part.numInstances());
+		assertEquals(10, part.value(0, 0), 0);
+		assertEquals(34, instances.testData(3, 1).value(0, 0), 0);
+		assertEquals(34, instances.testData(3, 0).numInstances());
+
+		Data data = new Data(instances, new Random(0));
+		data.setParam("TRAINRATIO,0.7");
+		assertEquals(70, data.getTrainData().numInstances());
+		assertEquals(30, data.getValidationData().numInstances());
+		assertArrayEquals(new double[] { 50, 50 }, data.getClassCounts(), 0);
+
+		// randomization permutes only the view
+		data.randomize();
+		ColumnarData columnar = data.getColumnarData();
+		double sum = 0;
+		for (int row = 0; row < columnar.numInstances(); row++) {
+			assertEquals(columnar.value(0, row) % 2, columnar.classValue(row),
+					0);
+			sum += columnar.value(0, row);
+		}
+		assertEquals(4950, sum, 0);
+		assertEquals(10, part.value(0, 0), 0);
+
+		ArrayGenLibInstances resampled = instances.resample(new Random(1));
+		assertEquals(100, resampled.numInstances());
+		for (int row = 0; row < resampled.numInstances(); row++) {
+			assertEquals(resampled.value(row, 0) % 2,
+					resampled.classValue(row), 0);
+		}
+	}
+
+	@Test
+	public void testBinaryFormat() throws Exception {
+		String arff = "@relation bin\n@attribute a numeric\n"
+				+ "@attribute b {x,y,z}\n@attribute class {yes,no}\n@data\n"
+				+ "1.5,x,yes\n?,?,no\n-2,z,no\n4,y,yes\n7,x,no\n";
+		ArrayGenLibInstances instances = GenLibLoader
+				.loadArff(new StringReader(arff));
+		File file = File.createTempFile("genlib", GenLibBinaryFormat.EXTENSION);
+		file.deleteOnExit();
+		GenLibBinaryFormat.write(instances, file);
+
+		MappedGenLibInstances mapped = MappedGenLibInstances.open(file);
+		assertEquals("bin", mapped.relationName());
+		assertEquals(5, mapped.numInstances());
+		assertEquals(2, mapped.numClasses());
+		assertEquals(2, mapped.classIndex());
+		assertEquals("z", mapped.attribute(1).value(2));
+		for (int row = 0; row < 5; row++) {
+			for (int a = 0; a < 3; a++) {
+				assertEquals(instances.value(row, a), mapped.value(row, a), 0);
+			}
+		}
+		assertTrue(Double.isNaN(mapped.value(1, 1)));
+		assertArrayEquals(new double[] { 2, 3 }, mapped.getDistribution()
+				.getClassCounts(), 0);
+
+		// views share the mapped columns
+		MappedGenLibInstances part = mapped.getPart(2, 2);
+		assertEquals(-2, part.value(0, 0), 0);
+		assertEquals(4, part.value(1, 0), 0);
+
+		Data data = new WekaEvolutionTreeClassifier().makeDataFromFile(file.getPath());
+		assertTrue(data.isGenLibInstances());
+		assertEquals(7, data.getColumnarData().value(0, 4), 0);
+
+		File wrong = File.createTempFile("genlib", GenLibBinaryFormat.EXTENSION);
+		wrong.deleteOnExit();
+		try {
+			MappedGenLibInstances.open(wrong);
+			fail();
+		} catch (IOException | WrongDataException e) {
+		}
+	}
+
+	@Test
+	public void testParallelLoader() throws IOException {
+		// more than one chunk of file for each thread
+		File csv = File.createTempFile("genlib", ".csv");
+		csv.deleteOnExit();
+		Random random = new Random(0);
+		int rows = 120000;
+		try (FileWriter writer = new FileWriter(csv)) {
+			writer.write("num,mixed,'nom x',class\n");
+			for (int i = 0; i < rows; i++) {
+				writer.write((random.nextInt(2000) - 1000) / 8.0 + ",");
+				// column becomes nominal only at the end of file
+				writer.write(i == rows - 1 ? "last" : i % 7 == 0 ? "?" : ""
+						+ random.nextInt(50));
+				writer.write(",'v " + random.nextInt(5) + "',c"
+						+ random.nextInt(3) + "\n");
+			}
+		}
+
+		ArrayGenLibInstances expected = GenLibLoader.load(csv);
+		ArrayGenLibInstances parallel = ParallelGenLibLoader.load(csv, 4);
+		assertEquals(rows, parallel.numInstances());
+		assertEquals(expected.numAttributes(), parallel.numAttributes());
+		for (int a = 0; a < expected.numAttributes(); a++) {
+			assertEquals(expected.attribute(a).name(), parallel.attribute(a)
+					.name());
+			assertEquals(expected.attribute(a).numOfValues(), parallel
+					.attribute(a).numOfValues());
+			for (int v = 0; v < expected.attribute(a).numOfValues(); v++) {
+				assertEquals(expected.attribute(a).value(v), parallel
+						.attribute(a).value(v));
+			}
+			for (int row = 0; row < rows; row++) {
+				assertEquals(expected.value(row, a), parallel.value(row, a), 0);
+			}
+		}
+		assertTrue(parallel.attribute(0).isNumeric());
+		assertTrue(parallel.attribute(1).isNominal());
+
+		Data data = new Data(parallel, new Random(0));
+		assertEquals(Integer.valueOf(2), data.getAttrIndexMap().get("nom x"));
+		assertEquals(parallel.attribute(2).indexOfValue("v 3"), data
+				.getAttrValueIndexMap()[2].get("v 3").intValue());
+
+		String arff = "@relation p\n@attribute a numeric\n"
+				+ "@attribute class {yes,no}\n@data\n1e2,yes\n"
+				+ "-0.125,'no'\n?,yes\n";
+		File arffFile = File.createTempFile("genlib", ".arff");
+		arffFile.deleteOnExit();
+		try (FileWriter writer = new FileWriter(arffFile)) {
+			writer.write(arff);
+		}
+		parallel = ParallelGenLibLoader.load(arffFile, 2);
+		assertEquals(3, parallel.numInstances());
+		assertEquals(100, parallel.value(0, 0), 0);
+		assertEquals(-0.125, parallel.value(1, 0), 0);
+		assertEquals(1, parallel.classValue(1), 0);
+		assertTrue(Double.isNaN(parallel.value(2, 0)));
+
+		// loaded data are converted into weka instances only when needed
+		int loadThreads = c.getLoadThreads();
+		c.setLoadThreads("2");
+		try {
+			data = new WekaEvolutionTreeClassifier().makeDataFromFile(arffFile
+					.getPath());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		} finally {
+			c.setLoadThreads(String.valueOf(loadThreads));
+		}
+		assertTrue(data.isGenLibInstances());
+		assertTrue(data.isConvertibleToInstances());
+		Instances converted = data.toInstances();
+		assertEquals(3, converted.numInstances());
+		assertEquals(-0.125, converted.instance(1).value(0), 0);
+		assertEquals("no", converted.instance(1).stringValue(1));
+		assertTrue(converted == data.toInstances());
+
+		try (FileWriter writer = new FileWriter(arffFile)) {
+			writer.write(arff + "1,maybe\n");
+		}
+		try {
+			ParallelGenLibLoader.load(arffFile, 2);
+			fail();
+		} catch (WrongDataException e) {
+			assertTrue(e.getMessage().contains("1,maybe"));
+			assertTrue(e.getMessage().contains("8"));
+		}
+	}
 }
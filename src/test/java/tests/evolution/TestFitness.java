@@ -2,8 +2,10 @@ package tests.evolution;
 
 import static org.junit.Assert.assertTrue;
 import genlib.GenDTLib;
+import genlib.evolution.fitness.FitnessCache;
 import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.fitness.tree.TreeAccuracyFitness;
+import genlib.evolution.fitness.tree.TreeRacingFitness;
 import genlib.evolution.fitness.tree.confusion.TreeConfusionFitness;
 import genlib.evolution.fitness.tree.confusion.TreeFMeasureFitness;
 import genlib.evolution.fitness.tree.confusion.TreeFNFitness;
@@ -18,11 +20,14 @@ import genlib.evolution.fitness.tree.look.TreeSizeFitness;
 import genlib.evolution.fitness.tree.look.TreeHeightFitness;
 import genlib.evolution.individuals.TreeIndividual;
 import genlib.exceptions.MissingParamException;
+import genlib.exceptions.WrongDataException;
 import genlib.structures.Data;
 import genlib.structures.trees.MultiWayHeightNode;
 import genlib.utils.Utils.Sign;
 import genlib.utils.WekaUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.logging.Level;
@@ -31,6 +36,7 @@ import java.util.logging.Logger;
 import org.junit.Test;
 
 import tests.TestProperties;
+import weka.core.Instances;
 import weka.datagenerators.classifiers.classification.RDG1;
 
 public class TestFitness {
@@ -876,5 +882,292 @@ public class TestFitness {
 		assertTrue(fitValues[1] == (2 * (58d / 62) * (58d / 62) / ((58d / 62) + (58d / 62))));
 		assertTrue(fitValues[2] == (2 * (16d / 19) * (16d / 17) / ((16d / 19) + (16d / 17))));		
 	}
-	
+
+	@Test
+	public void testSharedConfusionMatrix() {
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+
+		int[][] matrix = individual.getConfusionMatrix(wekaDataThree);
+		assertTrue(matrix == individual.getConfusionMatrix(wekaDataThree));
+
+		int all = 0, correct = 0;
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				all += matrix[t][p];
+			}
+			correct += matrix[t][t];
+		}
+		assertTrue(all == wekaDataThree.numInstances());
+
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(wekaDataThree);
+		assertTrue(function.computeFitness(individual) == (double) correct
+				/ all);
+
+		individual.change();
+		assertTrue(matrix != individual.getConfusionMatrix(wekaDataThree));
+	}
+
+	@Test
+	public void testChunkedFitness() {
+		Data chunked = new Data((Instances) wekaDataThree.getData(),
+				new Random(0));
+		chunked.setParam("CHUNK,7");
+		assertTrue(chunked.isChunked());
+		assertTrue(chunked.numChunks() == (chunked.numInstances() + 6) / 7);
+		assertTrue(chunked.getChunk(chunked.numChunks() - 1).numInstances() == chunked
+				.numInstances() - 7 * (chunked.numChunks() - 1));
+		assertTrue(chunked.getClassData().numAttributes() == 0);
+		assertTrue(chunked.getClassData().numInstances() == chunked
+				.numInstances());
+
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+		int[][] matrix = individual.getConfusionMatrix(chunked);
+		int[][] expected = individual.getConfusionMatrix(wekaDataThree);
+		for (int t = 0; t < matrix.length; t++) {
+			assertTrue(Arrays.equals(expected[t], matrix[t]));
+		}
+
+		FitnessFunction<TreeIndividual> accuracy = new TreeAccuracyFitness();
+		accuracy.setIndex(0);
+		accuracy.setData(wekaDataThree);
+		FitnessFunction<TreeIndividual> chunkedAccuracy = new TreeAccuracyFitness();
+		chunkedAccuracy.setIndex(1);
+		chunkedAccuracy.setData(chunked);
+		TreeConfusionFitness recall = new TreeRecallFitness();
+		recall.setParam("AVERAGE,UNWEIGHTED");
+		recall.setIndex(0);
+		recall.setData(wekaDataThree);
+		TreeConfusionFitness chunkedRecall = new TreeRecallFitness();
+		chunkedRecall.setParam("AVERAGE,UNWEIGHTED");
+		chunkedRecall.setIndex(1);
+		chunkedRecall.setData(chunked);
+
+		ArrayList<TreeIndividual> individuals = new ArrayList<>();
+		individuals.add(wekaThreeIndividual.copy());
+		individuals.add(testIndividual.copy());
+		for (TreeIndividual changed : individuals) {
+			changed.change();
+		}
+		// matrices of all changed individuals are counted in one pass
+		chunkedAccuracy.computeFitness(individuals, 0, individuals.size());
+		for (TreeIndividual changed : individuals) {
+			assertTrue(changed.hasConfusionMatrix(chunked));
+			assertTrue(changed.getFitnessValue(1) == accuracy
+					.computeFitness(changed));
+		}
+		for (TreeIndividual changed : individuals) {
+			changed.change();
+		}
+		chunkedRecall.computeFitness(individuals, 0, individuals.size());
+		for (TreeIndividual changed : individuals) {
+			assertTrue(changed.getFitnessValue(1) == recall
+					.computeFitness(changed));
+		}
+	}
+
+	@Test
+	public void testChunkedDataNotMaterialized() {
+		Data chunked = new Data((Instances) wekaDataThree.getData(),
+				new Random(0));
+		chunked.setParam("CHUNK,7");
+		TreePrevalenceFitness prevalence = new TreePrevalenceFitness();
+		prevalence.setParam("AVERAGE,UNWEIGHTED");
+		prevalence.setIndex(0);
+		prevalence.setData(wekaDataThree);
+		TreePrevalenceFitness chunkedPrevalence = new TreePrevalenceFitness();
+		chunkedPrevalence.setParam("AVERAGE,UNWEIGHTED");
+		chunkedPrevalence.setIndex(1);
+		chunkedPrevalence.setData(chunked);
+		FitnessFunction<TreeIndividual> chunkedAccuracy = new TreeAccuracyFitness();
+		chunkedAccuracy.setIndex(0);
+		chunkedAccuracy.setData(chunked);
+
+		// classes are only counted, their rows aren't kept
+		int[] counts = chunked.getClassData().classCounts();
+		int[] expected = wekaDataThree.getColumnarData().classCounts();
+		assertTrue(Arrays.equals(expected, counts));
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+		assertTrue(Arrays.equals(prevalence.getConfusionValues(individual),
+				chunkedPrevalence.getConfusionValues(individual)));
+		chunkedAccuracy.computeFitness(individual);
+		chunkedPrevalence.computeFitness(individual);
+
+		// whole data would be built only by the snapshot, so it never is
+		try {
+			chunked.getColumnarData();
+			assertTrue(false);
+		} catch (WrongDataException e) {
+		}
+		try {
+			chunked.getSortedRows();
+			assertTrue(false);
+		} catch (WrongDataException e) {
+		}
+		String[] views = { "CHUNK,7,TRAINRATIO,0.5", "CHUNK,7,RESAMPLE,true",
+				"CHUNK,7,STRATIFY,true", "CHUNK,7,SUBSAMPLE,0.5" };
+		for (String param : views) {
+			Data data = new Data((Instances) wekaDataThree.getData(),
+					new Random(0));
+			try {
+				data.setParam(param);
+				assertTrue(false);
+			} catch (WrongDataException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testSubsampleConfusionFitness() {
+		Data data = new Data((Instances) wekaDataThree.getData(), new Random(0));
+		data.setParam("SUBSAMPLE,0.3");
+		assertTrue(data.updateSubsample(0, 10));
+		Data sample = data.getSampleData();
+		assertTrue(sample != data);
+
+		TreeConfusionFitness[] sampled = { new TreeRecallFitness(),
+				new TreeSpecificityFitness(), new TreeFMeasureFitness() };
+		TreeConfusionFitness[] expected = { new TreeRecallFitness(),
+				new TreeSpecificityFitness(), new TreeFMeasureFitness() };
+		for (int i = 0; i < sampled.length; i++) {
+			sampled[i].setParam("AVERAGE,UNWEIGHTED");
+			sampled[i].setIndex(0);
+			sampled[i].setData(data);
+			expected[i].setParam("AVERAGE,UNWEIGHTED");
+			expected[i].setIndex(0);
+			expected[i].setData(sample);
+
+			// values on subsample are computed from subsample class counts
+			TreeIndividual individual = wekaThreeIndividual.copy();
+			individual.change();
+			double[] values = sampled[i].getConfusionValues(individual);
+			assertTrue(Arrays.equals(expected[i]
+					.getConfusionValues(individual), values));
+			for (double value : values) {
+				assertTrue(Double.isNaN(value) || value >= 0 && value <= 1);
+			}
+		}
+	}
+
+	@Test
+	public void testCountErrors() {
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+		int numInstances = wekaDataThree.numInstances();
+		int[] classified = new int[numInstances];
+		individual.countErrors(wekaDataThree, classified);
+
+		// errors are read from leaves of cached partition
+		individual.getPartition(wekaDataThree);
+		int[] partitioned = new int[numInstances];
+		individual.countErrors(wekaDataThree, partitioned);
+		assertTrue(Arrays.equals(classified, partitioned));
+
+		int[][] matrix = individual.getConfusionMatrix(wekaDataThree);
+		int errors = 0, wrong = 0;
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				errors += t != p ? matrix[t][p] : 0;
+			}
+		}
+		for (int count : partitioned) {
+			wrong += count;
+		}
+		assertTrue(errors == wrong);
+	}
+
+	@Test
+	public void testErrorCountedSample() throws Exception {
+		Data data = new Data(new Instances(
+				(Instances) wekaDataThree.getData()), new Random(0));
+		data.setParam("SUBSAMPLE,0.5,DSS,1");
+		data.updateSubsample(0, 10);
+		Data sample = data.getSampleData();
+		assertTrue(sample.isErrorCounted());
+		assertTrue(TreeIndividual.keepsPartition(sample));
+		assertTrue(!data.isErrorCounted());
+
+		// errors are taken from the partition made by evaluation
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+		int[][] matrix = individual.getConfusionMatrix(sample);
+		int[] errors = new int[sample.numInstances()];
+		individual.countErrors(sample, errors);
+		int[] classified = new int[sample.numInstances()];
+		wekaThreeIndividual.copy().countErrors(sample, classified);
+		assertTrue(Arrays.equals(classified, errors));
+		int wrong = 0;
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				wrong += t != p ? matrix[t][p] : 0;
+			}
+		}
+		for (int count : errors) {
+			wrong -= count;
+		}
+		assertTrue(wrong == 0);
+	}
+
+	@Test
+	public void testFitnessCache() {
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(wekaDataThree);
+		FitnessCache cache = function.getFitnessCache();
+		cache.resetStatistics();
+
+		TreeIndividual individual = wekaThreeIndividual.copy();
+		individual.change();
+		double fitness = function.computeFitness(individual);
+		assertTrue(cache.getMisses() == 1 && cache.getHits() == 0);
+
+		TreeIndividual duplicate = wekaThreeIndividual.copy();
+		duplicate.change();
+		assertTrue(function.computeFitness(duplicate) == fitness);
+		assertTrue(cache.getHits() == 1);
+		assertTrue(cache.getHitRate() == 0.5);
+
+		function.setData(wekaDataThree);
+		assertTrue(cache.size() == 0);
+
+		FitnessCache bounded = new FitnessCache(16);
+		for (long hash = 0; hash < 1000; hash++) {
+			bounded.put(hash, hash);
+		}
+		assertTrue(bounded.size() <= 16);
+		assertTrue(bounded.get(999) == 999);
+		assertTrue(new FitnessCache(0).get(0) == null);
+	}
+
+	@Test
+	public void testRacingFitness() {
+		TreeRacingFitness racing = new TreeRacingFitness();
+		racing.setParam("BLOCK,10,DELTA,0.05");
+		racing.setIndex(0);
+		racing.setData(wekaDataThree);
+
+		TreeIndividual good = wekaThreeIndividual.copy();
+		good.change();
+		TreeIndividual bad = wekaThreeIndividual.copy();
+		bad.setRoot(new MultiWayHeightNode());
+		bad.change();
+
+		assertTrue(racing.race(good, bad) == -1);
+		assertTrue(racing.race(bad, good) == 1);
+		assertTrue(bad.isFitnessEstimated() && bad.hasChanged());
+		assertTrue(bad.getFitnessValue(0) == 0);
+		assertTrue(!racing.race(bad, 0.5));
+
+		TreeAccuracyFitness accuracy = new TreeAccuracyFitness();
+		accuracy.setIndex(0);
+		accuracy.setData(wekaDataThree);
+		double exact = accuracy.computeFitness(good.copy());
+		assertTrue(racing.computeFitness(good) == exact);
+		assertTrue(!good.isFitnessEstimated());
+	}
+
 }
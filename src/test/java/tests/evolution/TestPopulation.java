@@ -1,6 +1,13 @@
 package tests.evolution;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import genlib.evolution.fitness.DataMajorEvaluator;
+import genlib.evolution.fitness.FitnessEvaluator;
 import genlib.evolution.fitness.FitnessFunction;
 import genlib.evolution.fitness.comparators.FitnessComparator;
 import genlib.evolution.fitness.comparators.SingleFitnessComparator;
@@ -14,9 +21,11 @@ import genlib.utils.Utils.Sign;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import weka.core.Instances;
 import weka.datagenerators.classifiers.classification.RDG1;
 
 public class TestPopulation {
@@ -84,4 +93,207 @@ public class TestPopulation {
 		individuals.computeFitness(5, 10);		
 	}
 
+	@Test
+	public void testFitnessEvaluator() {
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(wekaData);
+		ArrayList<FitnessFunction<TreeIndividual>> fitFuncs = new ArrayList<>();
+		fitFuncs.add(function);
+		FitnessComparator<TreeIndividual> comparator = new SingleFitnessComparator<>();
+		comparator.setFitFuncs(fitFuncs);
+		comparator.setParam("0");
+		individuals.setFitnessComparator(comparator);
+
+		double expected = function.computeFitness(new TreeIndividual(
+				testIndividual));
+		FitnessEvaluator evaluator = new FitnessEvaluator(new ForkJoinPool(3));
+		for (int blockSize : new int[] { 1, 3, 100 }) {
+			for (TreeIndividual individual : individuals.getIndividuals()) {
+				individual.change();
+			}
+			individuals.computeFitness(evaluator, blockSize);
+			for (TreeIndividual individual : individuals.getIndividuals()) {
+				assertEquals(expected, individual.getFitnessValue(0), 0);
+			}
+		}
+
+		// busy time of threads is reported
+		long[] busy = evaluator.getLastBusyTimes();
+		// threads of pool and calling thread
+		assertEquals(4, busy.length);
+		long sum = 0;
+		for (long time : busy) {
+			assertTrue(time >= 0);
+			sum += time;
+		}
+		assertTrue(sum > 0);
+		assertTrue(evaluator.getIdleRatio() >= 0
+				&& evaluator.getIdleRatio() <= 1);
+
+		// few expensive individuals are evaluated in data-parallel mode
+		for (TreeIndividual individual : individuals.getIndividuals()) {
+			individual.change();
+		}
+		assertFalse(evaluator.isDataParallel(individuals.getIndividuals(),
+				fitFuncs));
+		ArrayList<TreeIndividual> few = new ArrayList<>(individuals
+				.getIndividuals().subList(0, 2));
+		assertEquals(wekaData.numInstances() * testIndividual.getTreeSize(),
+				function.getEvaluationCost(testIndividual));
+		assertFalse(evaluator.isDataParallel(few, fitFuncs));
+
+		// statistics of data-parallel evaluation are kept in its own call
+		FitnessFunction<TreeIndividual> expensive = new TreeAccuracyFitness() {
+			@Override
+			public long getEvaluationCost(TreeIndividual individual) {
+				return FitnessEvaluator.DATA_PARALLEL_COST;
+			}
+		};
+		expensive.setIndex(0);
+		expensive.setData(wekaData);
+		ArrayList<FitnessFunction<TreeIndividual>> expensiveFuncs = new ArrayList<>();
+		expensiveFuncs.add(expensive);
+		for (TreeIndividual individual : few) {
+			individual.change();
+		}
+		assertTrue(evaluator.isDataParallel(few, expensiveFuncs));
+		evaluator.computeFitness(few, expensiveFuncs, 1);
+		busy = evaluator.getLastBusyTimes();
+		assertEquals(4, busy.length);
+		assertEquals(0, busy[0] + busy[1] + busy[2]);
+		assertTrue(busy[3] > 0);
+		assertEquals(evaluator.getLastWallTime(), busy[3]);
+		for (TreeIndividual individual : few) {
+			assertEquals(expected, individual.getFitnessValue(0), 0);
+		}
+
+		// exceptions of fitness functions are not swallowed (function
+		// without data fails)
+		FitnessFunction<TreeIndividual> failing = new TreeAccuracyFitness();
+		failing.setIndex(1);
+		fitFuncs.add(failing);
+		for (TreeIndividual individual : individuals.getIndividuals()) {
+			individual.change();
+		}
+		try {
+			individuals.computeFitness(evaluator, 2);
+			fail();
+		} catch (NullPointerException e) {
+		}
+		evaluator.shutdown();
+	}
+
+	@Test
+	public void testDataMajorEvaluator() {
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(wekaData);
+		ArrayList<FitnessFunction<TreeIndividual>> fitFuncs = new ArrayList<>();
+		fitFuncs.add(function);
+		FitnessComparator<TreeIndividual> comparator = new SingleFitnessComparator<>();
+		comparator.setFitFuncs(fitFuncs);
+		comparator.setParam("0");
+		individuals.setFitnessComparator(comparator);
+
+		TreeIndividual fresh = new TreeIndividual(testIndividual);
+		double expected = function.computeFitness(fresh);
+		int[][] matrix = fresh.getConfusionMatrix(wekaData);
+		for (FitnessEvaluator evaluator : new FitnessEvaluator[] {
+				new DataMajorEvaluator(1), new DataMajorEvaluator(3) }) {
+			for (TreeIndividual individual : individuals.getIndividuals()) {
+				individual.change();
+			}
+			individuals.computeFitness(evaluator, 1);
+			for (TreeIndividual individual : individuals.getIndividuals()) {
+				assertEquals(expected, individual.getFitnessValue(0), 0);
+				int[][] counted = individual.getConfusionMatrix(wekaData);
+				for (int t = 0; t < matrix.length; t++) {
+					assertArrayEquals(matrix[t], counted[t]);
+				}
+			}
+			evaluator.shutdown();
+		}
+
+		// data-major evaluator of algorithm runs in the shared pool
+		assertNull(FitnessEvaluator.getSharedPool(1));
+		ForkJoinPool pool = FitnessEvaluator.getSharedPool(3);
+		assertTrue(pool == FitnessEvaluator.getSharedPool(3));
+		FitnessEvaluator evaluator = new DataMajorEvaluator(pool);
+		for (TreeIndividual individual : individuals.getIndividuals()) {
+			individual.change();
+		}
+		individuals.computeFitness(evaluator, 1);
+		for (TreeIndividual individual : individuals.getIndividuals()) {
+			assertEquals(expected, individual.getFitnessValue(0), 0);
+		}
+		assertFalse(pool.isShutdown());
+	}
+
+	@Test
+	public void testDataMajorSkipsCached() {
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(wekaData);
+		ArrayList<FitnessFunction<TreeIndividual>> fitFuncs = new ArrayList<>();
+		fitFuncs.add(function);
+		assertTrue(function.getFitnessCache(wekaData).isEnabled());
+
+		double expected = function.computeFitness(new TreeIndividual(
+				testIndividual));
+		ArrayList<TreeIndividual> duplicates = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			TreeIndividual individual = new TreeIndividual(testIndividual);
+			individual.change();
+			duplicates.add(individual);
+		}
+		// duplicates take cached values, their matrices aren't counted
+		FitnessEvaluator evaluator = new DataMajorEvaluator(1);
+		evaluator.computeFitness(duplicates, fitFuncs, 1);
+		for (TreeIndividual individual : duplicates) {
+			assertFalse(individual.hasConfusionMatrix(wekaData));
+			assertEquals(expected, individual.getFitnessValue(0), 0);
+		}
+		evaluator.shutdown();
+	}
+
+	@Test
+	public void testChunkedParallelEvaluation() {
+		Data chunked = new Data((Instances) wekaData.getData(),
+				new Random(0));
+		chunked.setParam("CHUNK,7");
+		FitnessFunction<TreeIndividual> function = new TreeAccuracyFitness();
+		function.setIndex(0);
+		function.setData(chunked);
+		ArrayList<FitnessFunction<TreeIndividual>> fitFuncs = new ArrayList<>();
+		fitFuncs.add(function);
+
+		ArrayList<TreeIndividual> changed = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			TreeIndividual individual = new TreeIndividual(testIndividual);
+			individual.change();
+			changed.add(individual);
+		}
+		// matrices are counted for all the individuals before dispatch
+		DataMajorEvaluator.countChunkedMatrices(changed, fitFuncs, null);
+		for (TreeIndividual individual : changed) {
+			assertTrue(individual.hasConfusionMatrix(chunked));
+		}
+
+		FitnessFunction<TreeIndividual> accuracy = new TreeAccuracyFitness();
+		accuracy.setIndex(0);
+		accuracy.setData(wekaData);
+		double expected = accuracy.computeFitness(new TreeIndividual(
+				testIndividual));
+		FitnessEvaluator evaluator = new FitnessEvaluator(3);
+		for (TreeIndividual individual : changed) {
+			individual.change();
+		}
+		evaluator.computeFitness(changed, fitFuncs, 1);
+		for (TreeIndividual individual : changed) {
+			assertEquals(expected, individual.getFitnessValue(0), 0);
+		}
+		evaluator.shutdown();
+	}
+
 }
@@ -123,7 +123,7 @@ public class TestInit {
 		EvolutionTreeClassifier etc = new EvolutionTreeClassifier(true);
 		etc.makePropsFromString(false);			
 				
-		assertTrue(PluginManager.fitFuncs.size() == 13);
+		assertTrue(PluginManager.fitFuncs.size() == 14);
 		assertTrue(PluginManager.mutOper.size() == 5);
 		assertTrue(PluginManager.xOper.size() == 2);
 		assertTrue(PluginManager.selectors.size() == 3);
@@ -1,16 +1,28 @@
 package tests.initializators;
 
+import genlib.evolution.individuals.TreeIndividual;
 import genlib.generators.WekaJ48TreeGenerator;
 import genlib.generators.WekaSimpleStumpGenerator;
 import genlib.generators.WekaTreeGenerator;
 import genlib.plugins.PluginManager;
 import genlib.splitfunctions.InformationGainCriteria;
 import genlib.splitfunctions.SplitCriteria;
+import genlib.structures.data.ColumnarData;
 import genlib.structures.data.GenLibInstances;
+import genlib.structures.data.SortedRows;
+import genlib.structures.trees.Node;
+import genlib.utils.WekaUtils;
+
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import weka.classifiers.trees.j48.C45Split;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.datagenerators.classifiers.classification.RDG1;
 
@@ -82,4 +94,82 @@ public class TestGenerators {
 		wssg.setAutoHeight(true);
 		assertTrue(wssg.isAutoHeight());		
 	}
+
+	@Test
+	public void testPresortedStumps() throws Exception {
+		FastVector attributes = new FastVector();
+		for (int a = 0; a < 4; a++) {
+			attributes.addElement(new Attribute("num" + a));
+		}
+		FastVector labels = new FastVector();
+		labels.addElement("a");
+		labels.addElement("b");
+		labels.addElement("c");
+		attributes.addElement(new Attribute("nom", labels));
+		attributes.addElement(new Attribute("class", labels));
+
+		Random random = new Random(7);
+		Instances data = new Instances("sorted", attributes, 600);
+		data.setClassIndex(5);
+		for (int row = 0; row < 600; row++) {
+			double[] values = new double[6];
+			for (int a = 0; a < 4; a++) {
+				// few distinct values so there are ties, some missing
+				values[a] = random.nextInt(20) == 0 ? Instance.missingValue()
+						: Math.round(random.nextGaussian() * 10) / (a + 1d);
+			}
+			values[4] = random.nextInt(3);
+			values[5] = values[0] > 3 ? 0 : random.nextInt(3);
+			data.add(new Instance(1, values));
+		}
+
+		SortedRows sortedRows = new SortedRows(ColumnarData.fromInstances(data));
+		assertNull(sortedRows.getOrder(4));
+		for (int a = 0; a < 4; a++) {
+			int[] order = sortedRows.getOrder(a);
+			assertEquals(data.numInstances(), order.length);
+			for (int i = 1; i < order.length; i++) {
+				int cmp = Double.compare(data.instance(order[i - 1]).value(a),
+						data.instance(order[i]).value(a));
+				assertTrue(cmp < 0 || cmp == 0 && order[i - 1] < order[i]);
+			}
+		}
+
+		// filtered order of fold is the same as sorted order of fold
+		int[] rows = new int[200];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = 3 * i + 1;
+		}
+		Instances part = WekaUtils.subset(data, rows);
+		SortedRows partRows = sortedRows.subset(rows);
+		SortedRows partSorted = new SortedRows(ColumnarData.fromInstances(part));
+		for (int a = 0; a < 4; a++) {
+			assertTrue(Arrays.equals(partSorted.getOrder(a),
+					partRows.getOrder(a)));
+		}
+
+		// stumps are the same as from C45Split
+		WekaSimpleStumpGenerator wssg = new WekaSimpleStumpGenerator();
+		for (Instances instances : new Instances[] { data, part }) {
+			wssg.setInstances(instances);
+			if (instances == part) {
+				wssg.setSortedRows(partRows);
+			}
+			TreeIndividual[] stumps = wssg.createPopulation();
+			assertEquals(5, stumps.length);
+			for (int a = 0; a < 4; a++) {
+				Instances copy = new Instances(instances);
+				C45Split split = new C45Split(a, 2, copy.sumOfWeights());
+				split.buildClassifier(copy);
+				Node root = stumps[a].getRootNode();
+				assertEquals(a, root.getAttribute());
+				assertEquals(Double.parseDouble(split.rightSide(0, copy)
+						.trim().split("[ ]+")[1]), root.getValue(), 0d);
+				for (int bag = 0; bag < 2; bag++) {
+					assertEquals(split.distribution().maxClass(bag), root
+							.getChildAt(bag).getValue(), 0d);
+				}
+			}
+		}
+	}
 }
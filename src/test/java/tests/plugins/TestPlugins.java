@@ -26,7 +26,7 @@ public class TestPlugins {
 		assertTrue(PluginManager.classifiers.size() == 1);
 		assertTrue(PluginManager.gens.size() == 3);
 		assertTrue(PluginManager.popInits.size() == 4);
-		assertTrue(PluginManager.fitFuncs.size() == 13);
+		assertTrue(PluginManager.fitFuncs.size() == 14);
 		assertTrue(PluginManager.mutOper.size() == 5);
 		assertTrue(PluginManager.xOper.size() == 2);
 		assertTrue(PluginManager.envSelectors.size() == 3);
@@ -1,21 +1,40 @@
 package tests.trees;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import genlib.configurations.Config;
 import genlib.evolution.individuals.TreeIndividual;
 import genlib.structures.Data;
+import genlib.structures.data.ArrayGenLibAttribute;
+import genlib.structures.data.ArrayGenLibInstances;
+import genlib.structures.data.ColumnarData;
+import genlib.structures.data.QuantileSketch;
+import genlib.structures.data.RankedColumns;
+import genlib.structures.data.SortedRows;
 import genlib.structures.extensions.HeightExtension;
 import genlib.structures.trees.BinaryHeightNode;
+import genlib.structures.trees.FlatTree;
 import genlib.structures.trees.MultiWayHeightNode;
+import genlib.structures.trees.Node;
+import genlib.structures.trees.TreePartition;
 import genlib.utils.Utils;
 import genlib.utils.Utils.Sign;
 import genlib.utils.WekaUtils;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
 import weka.datagenerators.classifiers.classification.RDG1;
 
 public class TestTrees {
@@ -310,4 +329,463 @@ public class TestTrees {
 		assertTrue(Utils.computeNumNodes(mn) == 10);
 	}
 
+	@Test
+	public void testFlatTree() {
+		FlatTree flatTree = wekaIndividual.getFlatTree();
+		assertTrue(flatTree == wekaIndividual.getFlatTree());
+		assertTrue(flatTree.numNodes() == wekaIndividual.getTreeSize());
+
+		Instances instances = wekaData.toInstances();
+		ColumnarData columnar = wekaData.getColumnarData();
+		for (int row = 0; row < instances.numInstances(); row++) {
+			Instance instance = instances.instance(row);
+			Node node = wekaIndividual.getRootNode();
+			while (!node.isLeaf()) {
+				node = node.getChildAt((int) instance.value(node
+						.getAttribute()));
+			}
+
+			assertTrue(flatTree.classify(instance) == node.getValue());
+			assertTrue(flatTree.classify(columnar, row) == node.getValue());
+		}
+
+		wekaIndividual.change();
+		assertTrue(flatTree != wekaIndividual.getFlatTree());
+	}
+
+	@Test
+	public void testLeafHistograms() {
+		TreeIndividual individual = wekaIndividual.copy();
+		individual.change();
+		FlatTree flatTree = individual.getFlatTree();
+		ColumnarData columnar = wekaData.getColumnarData();
+
+		int[][] matrix = new int[columnar.numClasses()][columnar.numClasses()];
+		for (int row = 0; row < columnar.numInstances(); row++) {
+			matrix[columnar.classIndex(row)][(int) flatTree.classify(
+					columnar, row)]++;
+		}
+
+		int[][] histograms = individual.getLeafHistograms(wekaData);
+		assertTrue(histograms == individual.getLeafHistograms(wekaData));
+
+		int all = 0;
+		for (int[] histogram : histograms) {
+			if (histogram != null) {
+				for (int count : histogram) {
+					all += count;
+				}
+			}
+		}
+		assertTrue(all == columnar.numInstances());
+
+		int[][] partitioned = individual.getConfusionMatrix(wekaData);
+		for (int t = 0; t < matrix.length; t++) {
+			for (int p = 0; p < matrix.length; p++) {
+				assertTrue(matrix[t][p] == partitioned[t][p]);
+			}
+		}
+	}
+
+	@Test
+	public void testTreeHash() {
+		MultiWayHeightNode root = (MultiWayHeightNode) wekaIndividual
+				.getRootNode();
+		MultiWayHeightNode copy = root.copy();
+		assertTrue(root.getTreeHash() == copy.getTreeHash());
+		assertTrue(root.hashCode() == copy.hashCode());
+		assertTrue(root.getTreeHash() == Utils.computeTreeHash(root));
+
+		long hash = copy.getTreeHash();
+		Node node = copy.getChildAt(1).getChildAt(1);
+		node.setValue(node.getValue() + 1);
+		assertTrue(copy.getTreeHash() != hash);
+		assertTrue(copy.getTreeHash() == Utils.computeTreeHash(copy));
+
+		node.setValue(node.getValue() - 1);
+		assertTrue(copy.getTreeHash() == hash);
+
+		copy.getChildAt(1).makeLeaf();
+		assertTrue(copy.getTreeHash() != hash);
+		assertTrue(copy.getTreeHash() == Utils.computeTreeHash(copy));
+
+		// 0.0 and -0.0 route differently so they are different trees
+		MultiWayHeightNode positive = root.copy();
+		positive.setValue(0.0);
+		MultiWayHeightNode negative = root.copy();
+		negative.setValue(-0.0);
+		assertTrue(positive.getTreeHash() != negative.getTreeHash());
+		assertTrue(!positive.equals(negative));
+		negative.setValue(0.0);
+		assertTrue(positive.getTreeHash() == negative.getTreeHash());
+		assertTrue(positive.equals(negative));
+	}
+
+	@Test
+	public void testIncrementalPartition() {
+		TreeIndividual individual = wekaIndividual.copy();
+		individual.change();
+		individual.getLeafHistograms(wekaData);
+
+		Node node = individual.getRootNode().getChildAt(1);
+		node.setChildAt(0, node.getChildAt(1).copy());
+		individual.change(node.getChildAt(0));
+
+		int[][] updated = individual.getLeafHistograms(wekaData);
+		int[][] computed = new FlatTree(individual.getRootNode())
+				.leafHistograms(wekaData.getColumnarData());
+		assertTrue(updated.length == computed.length);
+		for (int i = 0; i < computed.length; i++) {
+			assertTrue(Arrays.equals(updated[i], computed[i]));
+		}
+
+		TreeIndividual fresh = new TreeIndividual(individual.getRootNode()
+				.copy());
+		int[][] matrix = fresh.getConfusionMatrix(wekaData);
+		int[][] partitioned = individual.getConfusionMatrix(wekaData);
+		for (int t = 0; t < matrix.length; t++) {
+			assertTrue(Arrays.equals(matrix[t], partitioned[t]));
+		}
+	}
+
+	@Test
+	public void testPartitionRows() {
+		TreeIndividual individual = wekaIndividual.copy();
+		individual.change();
+		TreePartition partition = individual.getPartition(wekaData);
+		assertTrue(partition == individual.getPartition(wekaData));
+		individual.dropPartitions();
+		assertTrue(partition != individual.getPartition(wekaData));
+
+		// partitions of bigger data than the limit are not kept
+		Config config = Config.getInstance();
+		int rows = config.getFitPartitionRows();
+		config.setFitPartitionRows("0");
+		try {
+			individual.change();
+			assertTrue(individual.getPartition(wekaData) != individual
+					.getPartition(wekaData));
+			int[][] histograms = individual.getLeafHistograms(wekaData);
+			int[][] computed = individual.getFlatTree().leafHistograms(
+					wekaData.getColumnarData());
+			for (int i = 0; i < computed.length; i++) {
+				assertTrue(Arrays.equals(histograms[i], computed[i]));
+			}
+		} finally {
+			config.setFitPartitionRows(Integer.toString(rows));
+		}
+	}
+
+	@Test
+	public void testParallelHistograms() {
+		FlatTree tree = wekaIndividual.getFlatTree();
+		ColumnarData columnar = wekaData.getColumnarData();
+		int[][] sequential = tree.leafHistograms(columnar);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int chunkSize : new int[] { 1, 7, columnar.numInstances() }) {
+			int[][] parallel = tree.leafHistograms(columnar, pool, chunkSize);
+			assertTrue(parallel.length == sequential.length);
+			for (int i = 0; i < sequential.length; i++) {
+				assertTrue(Arrays.equals(sequential[i], parallel[i]));
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBitsetHistograms() {
+		TreeIndividual individual = wekaIndividual.copy();
+		individual.change();
+		FlatTree tree = individual.getFlatTree();
+		ColumnarData columnar = wekaData.getColumnarData();
+		assertTrue(tree.isNominal(columnar));
+		assertHistogramsEqual(tree.leafHistograms(columnar),
+				tree.bitsetHistograms(columnar));
+
+		// nominal tree is evaluated with bitsets, partition isn't created
+		int[][] matrix = individual.getConfusionMatrix(wekaData);
+		int[][] partitioned = columnar.confusionMatrix(tree,
+				tree.leafHistograms(columnar));
+		for (int t = 0; t < matrix.length; t++) {
+			assertTrue(Arrays.equals(matrix[t], partitioned[t]));
+		}
+
+		// mixed tree on data with more words of rows
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("x"),
+				new ArrayGenLibAttribute("n", new String[] { "a", "b", "c" }),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		Random random = new Random(3);
+		double[][] columns = new double[3][200];
+		for (int row = 0; row < 200; row++) {
+			columns[0][row] = random.nextDouble();
+			columns[1][row] = random.nextInt(3);
+			columns[2][row] = random.nextInt(2);
+		}
+		ColumnarData mixed = new Data(new ArrayGenLibInstances("m",
+				attributes, columns, 2), null).getColumnarData();
+
+		MultiWayHeightNode root = MultiWayHeightNode.makeNode(3, 1,
+				Sign.EQUALS, 0);
+		MultiWayHeightNode split = MultiWayHeightNode.makeNode(2, 0,
+				Sign.LESS, 0.5);
+		split.setChildAt(0, MultiWayHeightNode.makeLeaf(0));
+		split.setChildAt(1, MultiWayHeightNode.makeLeaf(1));
+		root.setChildAt(0, split);
+		root.setChildAt(1, MultiWayHeightNode.makeLeaf(1));
+		root.setChildAt(2, MultiWayHeightNode.makeLeaf(0));
+		FlatTree mixedTree = new FlatTree(root);
+		assertTrue(!mixedTree.isNominal(mixed));
+		assertHistogramsEqual(mixedTree.leafHistograms(mixed),
+				mixedTree.bitsetHistograms(mixed));
+	}
+
+	@Test
+	public void testRankEncoding() {
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("x"),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		double[] pool = new double[] { -1, -0.0, 0.0, 0.5, 1, Double.NaN,
+				Double.NEGATIVE_INFINITY, 3 };
+		Random random = new Random(5);
+		double[][] columns = new double[2][300];
+		for (int row = 0; row < 300; row++) {
+			columns[0][row] = random.nextBoolean() ? pool[random
+					.nextInt(pool.length)] : random.nextInt(9) / 4d;
+			columns[1][row] = random.nextInt(2);
+		}
+		ColumnarData columnar = new Data(new ArrayGenLibInstances("r",
+				attributes, columns, 1), null).getColumnarData();
+		RankedColumns ranked = columnar.getRankedColumns();
+		char[] ranks = ranked.getRanks(0);
+		assertTrue(ranks != null && ranked.numDistinct(0) < 300);
+		assertNull(ranked.getRanks(1));
+
+		double[] thresholds = new double[] { -0.0, 0.0, 0.5, 0.3, 1,
+				Double.NaN, -7, 10, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY };
+		ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+		for (double threshold : thresholds) {
+			int code = ranked.threshold(0, threshold);
+			for (int row = 0; row < 300; row++) {
+				assertTrue(Integer.signum((ranks[row] << 1) - code) == Integer
+						.signum(Double.compare(columns[0][row], threshold)));
+			}
+
+			for (Sign sign : Sign.values()) {
+				MultiWayHeightNode root = MultiWayHeightNode.makeNode(2, 0,
+						sign, threshold);
+				root.setChildAt(0, MultiWayHeightNode.makeLeaf(0));
+				root.setChildAt(1, MultiWayHeightNode.makeLeaf(1));
+				FlatTree tree = new FlatTree(root);
+
+				int[][] expected = new int[3][];
+				for (int row = 0; row < 300; row++) {
+					int leaf = Utils.isValueProper(columns[0][row], sign,
+							threshold) ? 1 : 2;
+					assertTrue(tree.classify(columnar, row) == leaf - 1);
+					if (expected[leaf] == null) {
+						expected[leaf] = new int[2];
+					}
+					expected[leaf][(int) columns[1][row]]++;
+				}
+				assertHistogramsEqual(expected, tree.leafHistograms(columnar));
+				assertHistogramsEqual(expected,
+						tree.leafHistograms(columnar, forkJoinPool, 7));
+				assertHistogramsEqual(expected,
+						tree.bitsetHistograms(columnar));
+			}
+		}
+		forkJoinPool.shutdown();
+	}
+
+	@Test
+	public void testBinning() {
+		QuantileSketch sketch = new QuantileSketch(64);
+		for (int i = 0; i < 10000; i++) {
+			sketch.add(i);
+		}
+		sketch.add(Double.NaN);
+		assertEquals(10000, sketch.count());
+		double[] quartiles = sketch.quantiles(4);
+		assertEquals(3, quartiles.length);
+		for (int q = 0; q < 3; q++) {
+			assertEquals(2500 * (q + 1), quartiles[q], 500);
+		}
+
+		ArrayGenLibAttribute[] attributes = new ArrayGenLibAttribute[] {
+				new ArrayGenLibAttribute("x"),
+				new ArrayGenLibAttribute("class", new String[] { "p", "q" }) };
+		Random random = new Random(7);
+		double[][] columns = new double[2][500];
+		for (int row = 0; row < 500; row++) {
+			columns[0][row] = row % 50 == 0 ? Double.NaN : random
+					.nextGaussian();
+			columns[1][row] = random.nextInt(2);
+		}
+		Data data = new Data(new ArrayGenLibInstances("r", attributes,
+				columns, 1), new Random(0));
+		data.setParam("BINS,8");
+		ColumnarData columnar = data.getColumnarData();
+		double[] binValues = columnar.getBinValues(0);
+		assertTrue(binValues == data.getBinValues()[0]);
+		assertTrue(binValues.length <= 10
+				&& Double.isNaN(binValues[binValues.length - 1]));
+		assertNotNull(columnar.getBinnedColumn(0));
+		assertNull(columnar.getNumericColumn(0));
+		assertNull(columnar.getRankedColumns().getRanks(0));
+
+		double[] represented = new double[500];
+		for (int row = 0; row < 500; row++) {
+			represented[row] = columnar.value(0, row);
+			int bin = ColumnarData.binOf(binValues, columns[0][row]);
+			assertEquals(binValues[bin], represented[row], 0);
+			assertTrue(Double.compare(columns[0][row], represented[row]) <= 0);
+		}
+
+		int[] order = data.getSortedRows().getOrder(0);
+		for (int i = 1; i < order.length; i++) {
+			assertTrue(Double.compare(represented[order[i - 1]],
+					represented[order[i]]) <= 0);
+		}
+
+		double[] thresholds = new double[] { binValues[0], binValues[3], 0.1,
+				Double.NaN, -10, 10 };
+		for (double threshold : thresholds) {
+			for (Sign sign : Sign.values()) {
+				MultiWayHeightNode root = MultiWayHeightNode.makeNode(2, 0,
+						sign, threshold);
+				root.setChildAt(0, MultiWayHeightNode.makeLeaf(0));
+				root.setChildAt(1, MultiWayHeightNode.makeLeaf(1));
+				FlatTree tree = new FlatTree(root);
+
+				int[][] expected = new int[3][];
+				for (int row = 0; row < 500; row++) {
+					int leaf = Utils.isValueProper(represented[row], sign,
+							threshold) ? 1 : 2;
+					assertTrue(tree.classify(columnar, row) == leaf - 1);
+					if (expected[leaf] == null) {
+						expected[leaf] = new int[2];
+					}
+					expected[leaf][(int) columns[1][row]]++;
+				}
+				assertHistogramsEqual(expected, tree.leafHistograms(columnar));
+				assertHistogramsEqual(expected,
+						tree.bitsetHistograms(columnar));
+			}
+		}
+	}
+
+	@Test
+	public void testSparse() {
+		FastVector attributes = new FastVector();
+		attributes.addElement(new Attribute("x"));
+		attributes.addElement(new Attribute("d"));
+		FastVector values = new FastVector();
+		values.addElement("a");
+		values.addElement("b");
+		values.addElement("c");
+		attributes.addElement(new Attribute("n", values));
+		FastVector labels = new FastVector();
+		labels.addElement("p");
+		labels.addElement("q");
+		attributes.addElement(new Attribute("class", labels));
+		Instances dense = new Instances("dense", attributes, 400);
+		Instances sparse = new Instances("sparse", attributes, 400);
+		dense.setClassIndex(3);
+		sparse.setClassIndex(3);
+
+		Random random = new Random(11);
+		for (int row = 0; row < 400; row++) {
+			double[] rowValues = new double[4];
+			if (row % 90 == 0) {
+				rowValues[0] = Double.NaN;
+			} else if (row % 9 == 0 || row % 97 == 0) {
+				rowValues[0] = row % 27 == 0 ? 0 : random.nextGaussian();
+			}
+			rowValues[1] = random.nextDouble() < 0.3 ? 0 : random
+					.nextGaussian();
+			rowValues[2] = row % 97 == 0 ? 2 : row % 41 == 1 ? 1 : 0;
+			rowValues[3] = random.nextInt(2);
+			dense.add(new Instance(1, rowValues));
+			sparse.add(new SparseInstance(1, rowValues));
+		}
+
+		ColumnarData columnar = ColumnarData.fromInstances(sparse);
+		assertTrue(columnar.isSparse(0) && !columnar.isSparse(1)
+				&& columnar.isSparse(2) && !columnar.isSparse(3));
+		assertNull(columnar.getNumericColumn(0));
+		assertNull(columnar.getNominalBytes(2));
+		assertNull(columnar.getRankedColumns().getRanks(0));
+		for (int row = 0; row < 400; row++) {
+			for (int a = 0; a < 3; a++) {
+				assertEquals(dense.instance(row).value(a),
+						columnar.value(a, row), 0);
+			}
+			assertEquals(dense.instance(row).classValue(),
+					columnar.classValue(row), 0);
+		}
+
+		int[] order = new SortedRows(columnar).getOrder(0);
+		boolean[] seen = new boolean[400];
+		for (int i = 0; i < order.length; i++) {
+			seen[order[i]] = true;
+			if (i > 0) {
+				int c = Double.compare(columnar.value(0, order[i - 1]),
+						columnar.value(0, order[i]));
+				assertTrue(c < 0 || c == 0 && order[i - 1] < order[i]);
+			}
+		}
+		for (boolean s : seen) {
+			assertTrue(s);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		double[] thresholds = new double[] { 0, -0.5, 0.5, Double.NaN };
+		for (double threshold : thresholds) {
+			for (Sign sign : Sign.values()) {
+				MultiWayHeightNode root = MultiWayHeightNode.makeNode(3, 2,
+						Sign.EQUALS, 0);
+				for (int c = 0; c < 3; c++) {
+					MultiWayHeightNode split = MultiWayHeightNode.makeNode(2,
+							c == 1 ? 1 : 0, sign, threshold);
+					split.setChildAt(0, MultiWayHeightNode.makeLeaf(0));
+					split.setChildAt(1, MultiWayHeightNode.makeLeaf(1));
+					root.setChildAt(c, split);
+				}
+				FlatTree tree = new FlatTree(root);
+
+				int[][] expected = new int[tree.numNodes()][];
+				for (int row = 0; row < 400; row++) {
+					Instance instance = dense.instance(row);
+					int n = (int) instance.value(2);
+					int split = 1 + 3 * n;
+					int leaf = Utils.isValueProper(
+							instance.value(n == 1 ? 1 : 0), sign, threshold) ? split + 1
+							: split + 2;
+					assertEquals(tree.classify(instance),
+							tree.classify(columnar, row), 0);
+					assertEquals(tree.getValue(leaf),
+							tree.classify(columnar, row), 0);
+					if (expected[leaf] == null) {
+						expected[leaf] = new int[2];
+					}
+					expected[leaf][(int) instance.classValue()]++;
+				}
+				assertHistogramsEqual(expected, tree.leafHistograms(columnar));
+				assertHistogramsEqual(expected,
+						tree.bitsetHistograms(columnar));
+				assertHistogramsEqual(expected,
+						tree.leafHistograms(columnar, pool, 64));
+			}
+		}
+	}
+
+	private static void assertHistogramsEqual(int[][] expected, int[][] actual) {
+		assertTrue(expected.length == actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertTrue(Arrays.equals(expected[i], actual[i]));
+		}
+	}
+
 }